@@ -0,0 +1,205 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package org.angular2.cli;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import static org.angular2.lang.Angular2LangUtil.ANGULAR_CLI_PACKAGE;
+
+/**
+ * On-disk cache of schematics loaded by {@link SchematicsLoaderKt#loadFromNode}, so that schematics can be shown without running Node.js.
+ * Entries are keyed by the Angular CLI location, versions of Angular CLI and of installed packages providing schematic collections,
+ * and by contents of the lock file.
+ * <p>
+ * Only the latest entry of each Angular CLI location is kept, and entries that haven't been read for {@link #MAX_UNUSED_DAYS} days,
+ * e.g. of deleted projects, are removed when another entry is written.
+ */
+final class AngularCliSchematicsDiskCache {
+
+  private static final Logger LOG = Logger.getInstance(AngularCliSchematicsDiskCache.class);
+
+  private static final int FORMAT_VERSION = 2;
+  static final int MAX_UNUSED_DAYS = 30;
+  @NonNls private static final String CACHE_DIR = "angular-cli-schematics";
+  @NonNls private static final String NODE_MODULES = "node_modules";
+  @NonNls private static final String PACKAGE_JSON = "package.json";
+  @NonNls private static final String[] DEPENDENCIES_PROPS = {"dependencies", "devDependencies"};
+  @NonNls private static final String VERSION_PROP = "version";
+  @NonNls private static final String SCHEMATICS_PROP = "schematics";
+  @NonNls private static final String[] LOCK_FILES = {"package-lock.json", "yarn.lock", "pnpm-lock.yaml"};
+  @NonNls private static final String EXTENSION = ".json";
+  private static final char KEY_SEPARATOR = '-';
+
+  private AngularCliSchematicsDiskCache() {
+  }
+
+  /**
+   * @return key of the cache entry or {@code null} if Angular CLI is not installed in the folder. The key consists of a hash of
+   * the location, which is the same for all entries of the folder, and a hash of the installed packages.
+   */
+  static @Nullable String computeKey(@NotNull VirtualFile cliFolder, boolean includeHidden) {
+    try {
+      File folder = new File(cliFolder.getPath());
+      File nodeModules = new File(folder, NODE_MODULES);
+      JsonObject cliPackageJson = readJsonObject(new File(nodeModules, ANGULAR_CLI_PACKAGE + "/" + PACKAGE_JSON));
+      String cliVersion = cliPackageJson != null ? getString(cliPackageJson, VERSION_PROP) : null;
+      if (cliVersion == null) {
+        return null;
+      }
+      String location = FORMAT_VERSION + "\n" + folder.getPath() + "\n" + includeHidden;
+      StringBuilder key = new StringBuilder()
+        .append(ANGULAR_CLI_PACKAGE).append('@').append(cliVersion).append('\n');
+      for (String dependency : getDependencies(new File(folder, PACKAGE_JSON))) {
+        JsonObject packageJson = readJsonObject(new File(nodeModules, dependency + "/" + PACKAGE_JSON));
+        if (packageJson != null && packageJson.has(SCHEMATICS_PROP)) {
+          key.append(dependency).append('@').append(getString(packageJson, VERSION_PROP)).append('\n');
+        }
+      }
+      for (String lockFileName : LOCK_FILES) {
+        File lockFile = new File(folder, lockFileName);
+        if (lockFile.isFile()) {
+          key.append(lockFileName).append(':').append(sha1(FileUtil.loadFileBytes(lockFile))).append('\n');
+        }
+      }
+      return sha1(location.getBytes(StandardCharsets.UTF_8)) + KEY_SEPARATOR + sha1(key.toString().getBytes(StandardCharsets.UTF_8));
+    }
+    catch (Exception e) {
+      LOG.info("Failed to compute schematics cache key for " + cliFolder.getPath(), e);
+      return null;
+    }
+  }
+
+  static @Nullable List<Schematic> read(@NotNull String key) {
+    File file = getCacheFile(key);
+    if (!file.isFile()) {
+      return null;
+    }
+    try {
+      List<Schematic> result = SchematicsJsonParser.parse(FileUtil.loadFile(file, StandardCharsets.UTF_8));
+      // the modification time tells when the entry was used last, no need to be precise
+      long now = System.currentTimeMillis();
+      if (file.lastModified() < now - TimeUnit.DAYS.toMillis(1)) {
+        //noinspection ResultOfMethodCallIgnored
+        file.setLastModified(now);
+      }
+      return result;
+    }
+    catch (Exception e) {
+      LOG.info("Failed to read cached schematics from " + file.getPath(), e);
+      FileUtil.delete(file);
+      return null;
+    }
+  }
+
+  /**
+   * Stores the schematics and removes previous entries of the same Angular CLI location.
+   *
+   * @return {@code true} if the stored schematics have changed, {@code false} if they are the same or could not be stored
+   */
+  static boolean write(@NotNull String key, @NotNull List<Schematic> schematics) {
+    File file = getCacheFile(key);
+    File tempFile = new File(file.getPath() + ".tmp");
+    try {
+      String content = new GsonBuilder().create().toJson(schematics);
+      if (file.isFile() && content.equals(FileUtil.loadFile(file, StandardCharsets.UTF_8))) {
+        return false;
+      }
+      FileUtil.writeToFile(tempFile, content);
+      FileUtil.rename(tempFile, file);
+    }
+    catch (IOException e) {
+      LOG.info("Failed to write cached schematics to " + file.getPath(), e);
+      FileUtil.delete(tempFile);
+      return false;
+    }
+    removeObsoleteEntries(key, System.currentTimeMillis() - TimeUnit.DAYS.toMillis(MAX_UNUSED_DAYS));
+    return true;
+  }
+
+  /**
+   * Removes entries of the location of {@code key} other than {@code key}, entries not read since {@code minLastModified}
+   * and entries of older formats.
+   */
+  private static void removeObsoleteEntries(@NotNull String key, long minLastModified) {
+    File[] files = getCacheDir().listFiles();
+    if (files == null) {
+      return;
+    }
+    String locationPrefix = key.substring(0, key.indexOf(KEY_SEPARATOR) + 1);
+    String currentName = key + EXTENSION;
+    for (File file : files) {
+      String name = file.getName();
+      if (name.equals(currentName) || name.endsWith(".tmp")) {
+        continue;
+      }
+      if (name.startsWith(locationPrefix) || name.indexOf(KEY_SEPARATOR) < 0 || file.lastModified() < minLastModified) {
+        FileUtil.delete(file);
+      }
+    }
+  }
+
+  static void clear() {
+    FileUtil.delete(getCacheDir());
+  }
+
+  private static @NotNull File getCacheDir() {
+    return new File(PathManager.getSystemPath(), CACHE_DIR);
+  }
+
+  static @NotNull File getCacheFile(@NotNull String key) {
+    return new File(getCacheDir(), key + EXTENSION);
+  }
+
+  private static @NotNull TreeSet<String> getDependencies(@NotNull File packageJsonFile) throws IOException {
+    TreeSet<String> result = new TreeSet<>();
+    JsonObject packageJson = readJsonObject(packageJsonFile);
+    if (packageJson != null) {
+      for (String prop : DEPENDENCIES_PROPS) {
+        JsonElement dependencies = packageJson.get(prop);
+        if (dependencies != null && dependencies.isJsonObject()) {
+          for (Map.Entry<String, JsonElement> entry : dependencies.getAsJsonObject().entrySet()) {
+            result.add(entry.getKey());
+          }
+        }
+      }
+    }
+    return result;
+  }
+
+  private static @Nullable JsonObject readJsonObject(@NotNull File file) throws IOException {
+    if (!file.isFile()) {
+      return null;
+    }
+    JsonElement element = new JsonParser().parse(FileUtil.loadFile(file, StandardCharsets.UTF_8));
+    return element.isJsonObject() ? element.getAsJsonObject() : null;
+  }
+
+  private static @Nullable String getString(@NotNull JsonObject object, @NotNull String prop) {
+    JsonElement element = object.get(prop);
+    return element != null && element.isJsonPrimitive() ? element.getAsString() : null;
+  }
+
+  private static @NotNull String sha1(byte @NotNull [] bytes) throws NoSuchAlgorithmException {
+    return StringUtil.toHexString(MessageDigest.getInstance("SHA-1").digest(bytes));
+  }
+}
@@ -53,6 +53,7 @@ public abstract class AngularCliSchematicsRegistryService {
   /**
    * Loads schematics available in a particular location. The results are cached
    * and recalculated on every change of package.json in any node_modules directory.
+   * Results are also stored on disk and reused until versions of installed packages change.
    */
   public abstract @NotNull Collection<Schematic> getSchematics(@NotNull Project project,
                                                                @NotNull VirtualFile cliFolder,
@@ -60,7 +61,7 @@ public abstract class AngularCliSchematicsRegistryService {
                                                                boolean logErrors);
 
   /**
-   * Clears cache for getSchematics method
+   * Clears cache for getSchematics method, including schematics stored on disk
    */
   public abstract void clearProjectSchematicsCache();
 
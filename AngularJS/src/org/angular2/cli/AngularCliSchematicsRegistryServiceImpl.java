@@ -36,6 +36,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.*;
 import java.util.function.Supplier;
 
@@ -62,6 +63,7 @@ public class AngularCliSchematicsRegistryServiceImpl extends AngularCliSchematic
     AngularCliSchematicsRegistryServiceImpl::fetchPackagesSupportingNgAdd);
   private final Map<String, Pair<Boolean, Long>> myLocalNgAddPackages = new ConcurrentHashMap<>();
   private final Map<String, CachedValue<Boolean>> myNgAddSupportedCache = new ConcurrentHashMap<>();
+  private final Set<String> myVerifiedSchematicsCacheKeys = ContainerUtil.newConcurrentSet();
 
 
   @Override
@@ -119,8 +121,7 @@ public class AngularCliSchematicsRegistryServiceImpl extends AngularCliSchematic
       .map(angularJson -> ReadAction.compute(() -> PsiManager.getInstance(project).findFile(angularJson)))
       .map(angularJson -> getCachedSchematics(angularJson, includeHidden ? SCHEMATICS_ALL : SCHEMATICS_PUBLIC).getUpToDateOrCompute(
         () -> CachedValueProvider.Result.create(
-          SchematicsLoaderKt.doLoad(angularJson.getProject(),
-                                    angularJson.getVirtualFile().getParent(), includeHidden, logErrors),
+          loadSchematics(angularJson.getProject(), angularJson.getVirtualFile().getParent(), includeHidden, logErrors),
           NodeModulesDirectoryManager.getInstance(angularJson.getProject()).getNodeModulesDirChangeTracker(),
           SCHEMATICS_CACHE_TRACKER,
           angularJson)))
@@ -129,9 +130,44 @@ public class AngularCliSchematicsRegistryServiceImpl extends AngularCliSchematic
 
   @Override
   public void clearProjectSchematicsCache() {
+    AngularCliSchematicsDiskCache.clear();
+    myVerifiedSchematicsCacheKeys.clear();
     SCHEMATICS_CACHE_TRACKER.incModificationCount();
   }
 
+  /**
+   * Returns schematics from the disk cache if possible. Cached schematics are reloaded in background once per session
+   * and, if they have changed, the in-memory cache is dropped. Only schematics actually reported by Angular CLI are stored,
+   * so that the fallback used when Node.js is not available or fails is not served from the disk cache later on.
+   */
+  private @NotNull List<Schematic> loadSchematics(@NotNull Project project,
+                                                  @NotNull VirtualFile cliFolder,
+                                                  boolean includeHidden,
+                                                  boolean logErrors) {
+    String cacheKey = AngularCliSchematicsDiskCache.computeKey(cliFolder, includeHidden);
+    if (cacheKey != null) {
+      List<Schematic> cachedSchematics = AngularCliSchematicsDiskCache.read(cacheKey);
+      if (cachedSchematics != null) {
+        if (myVerifiedSchematicsCacheKeys.add(cacheKey)) {
+          ourExecutorService.submit(() -> {
+            if (project.isDisposed()) return;
+            List<Schematic> schematics = SchematicsLoaderKt.loadFromNode(project, cliFolder, includeHidden, false);
+            if (schematics != null && !schematics.isEmpty() && AngularCliSchematicsDiskCache.write(cacheKey, schematics)) {
+              SCHEMATICS_CACHE_TRACKER.incModificationCount();
+            }
+          });
+        }
+        return cachedSchematics;
+      }
+    }
+    List<Schematic> schematics = SchematicsLoaderKt.loadFromNode(project, cliFolder, includeHidden, logErrors);
+    if (cacheKey != null && schematics != null && !schematics.isEmpty()) {
+      myVerifiedSchematicsCacheKeys.add(cacheKey);
+      AngularCliSchematicsDiskCache.write(cacheKey, schematics);
+    }
+    return SchematicsLoaderKt.withDefaultSchematics(schematics);
+  }
+
   private static @NotNull List<NodePackageBasicInfo> fetchPackagesSupportingNgAdd() {
     try {
       RequestBuilder builder = HttpRequests.request(NG_PACKAGES_URL);
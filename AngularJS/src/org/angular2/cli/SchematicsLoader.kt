@@ -21,15 +21,23 @@ private var myLogErrors: ThreadLocal<Boolean> = ThreadLocal.withInitial { true }
 private val LOG: Logger = Logger.getInstance("#org.angular2.cli.SchematicsLoader")
 
 fun doLoad(project: Project, cli: VirtualFile, includeHidden: Boolean, logErrors: Boolean): List<Schematic> {
+  return withDefaultSchematics(loadFromNode(project, cli, includeHidden, logErrors))
+}
+
+/**
+ * Returns schematics reported by Angular CLI, an empty list if Node.js has run but no schematics could be obtained from it,
+ * or `null` if Node.js could not be run at all.
+ */
+fun loadFromNode(project: Project, cli: VirtualFile, includeHidden: Boolean, logErrors: Boolean): List<Schematic>? {
   myLogErrors.set(logErrors)
-  val interpreter = NodeJsInterpreterManager.getInstance(project).interpreter ?: return emptyList()
+  val interpreter = NodeJsInterpreterManager.getInstance(project).interpreter ?: return null
   val configurator: NodeCommandLineConfigurator
   try {
     configurator = NodeCommandLineConfigurator.find(interpreter)
   }
   catch (e: Exception) {
     LOG.error("Cannot load schematics", e)
-    return emptyList()
+    return null
   }
 
   var parse: Collection<Schematic> = emptyList()
@@ -56,13 +64,20 @@ fun doLoad(project: Project, cli: VirtualFile, includeHidden: Boolean, logErrors
     }
   }
 
-  if (parse.isEmpty()) {
-    parse = BlueprintParser().parse(DEFAULT_OUTPUT)
-  }
-
   return parse.sortedBy { it.name }
 }
 
+/**
+ * Completes the result of [loadFromNode] the same way [doLoad] does.
+ */
+fun withDefaultSchematics(schematics: List<Schematic>?): List<Schematic> {
+  return when {
+    schematics == null -> emptyList()
+    schematics.isEmpty() -> BlueprintParser().parse(DEFAULT_OUTPUT).sortedBy { it.name }
+    else -> schematics
+  }
+}
+
 private fun loadSchematicsInfoJson(configurator: NodeCommandLineConfigurator,
                                    cli: VirtualFile,
                                    includeHidden: Boolean): String {
@@ -14,7 +14,6 @@ import com.intellij.psi.util.CachedValueProvider;
 import com.intellij.psi.util.CachedValuesManager;
 import com.intellij.psi.util.PsiModificationTracker;
 import com.intellij.util.containers.ContainerUtil;
-import com.intellij.util.containers.MultiMap;
 import one.util.streamex.StreamEx;
 import org.angular2.entities.*;
 import org.angular2.entities.metadata.psi.Angular2MetadataEntity;
@@ -35,7 +34,7 @@ import static com.intellij.util.containers.ContainerUtil.filter;
 public class Angular2DeclarationsScope {
 
   private final NotNullLazyValue<Trinity<Angular2Module, Set<Angular2Declaration>, Boolean>> myScope;
-  private final Map<Project, MultiMap<Angular2Declaration, Angular2Module>> myExport2NgModuleMap = new HashMap<>();
+  private final Map<Project, Angular2ModuleGraph.DeclarationToModuleMap> myExport2NgModuleMap = new HashMap<>();
   private final NotNullLazyValue<ProjectFileIndex> myFileIndex;
 
   public Angular2DeclarationsScope(@NotNull PsiElement element) {
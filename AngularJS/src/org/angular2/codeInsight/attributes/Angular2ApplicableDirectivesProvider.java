@@ -2,8 +2,11 @@
 package org.angular2.codeInsight.attributes;
 
 import com.intellij.openapi.project.Project;
-import com.intellij.openapi.util.NotNullLazyValue;
+import com.intellij.openapi.util.Pair;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiModificationTracker;
 import com.intellij.psi.xml.XmlTag;
+import com.intellij.util.ObjectUtils;
 import com.intellij.util.containers.ContainerUtil;
 import org.angular2.entities.Angular2Directive;
 import org.angular2.lang.expr.psi.Angular2TemplateBindings;
@@ -12,14 +15,16 @@ import org.angular2.lang.selector.Angular2SelectorMatcher;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
+import static com.intellij.psi.util.CachedValueProvider.Result.create;
 import static org.angular2.codeInsight.tags.Angular2TagDescriptorsProvider.NG_TEMPLATE;
 import static org.angular2.codeInsight.template.Angular2TemplateElementsScopeProvider.isTemplateTag;
 import static org.angular2.entities.Angular2EntitiesProvider.findElementDirectivesCandidates;
 
 public class Angular2ApplicableDirectivesProvider {
 
-  private final NotNullLazyValue<List<Angular2Directive>> myDirectiveCandidates;
+  private final List<Angular2Directive> myDirectiveCandidates;
   private final List<Angular2Directive> myMatchedDirectives;
 
   public Angular2ApplicableDirectivesProvider(@NotNull XmlTag xmlTag) {
@@ -40,19 +45,12 @@ public class Angular2ApplicableDirectivesProvider {
                                                @NotNull String tagName,
                                                boolean onlyMatchingTagName,
                                                @NotNull Angular2DirectiveSimpleSelector cssSelector) {
-    Set<Angular2Directive> directiveCandidates = new HashSet<>(
-      findElementDirectivesCandidates(project, tagName));
-    if (!onlyMatchingTagName) {
-      directiveCandidates.addAll(findElementDirectivesCandidates(project, ""));
-    }
-
-    Angular2SelectorMatcher<Angular2Directive> matcher = new Angular2SelectorMatcher<>();
-    directiveCandidates.forEach(d -> matcher.addSelectables(d.getSelector().getSimpleSelectors(), d));
-    myDirectiveCandidates = NotNullLazyValue.createValue(() -> new ArrayList<>(directiveCandidates));
+    DirectivesMatcher directivesMatcher = getDirectivesMatcher(project, tagName, onlyMatchingTagName);
+    myDirectiveCandidates = directivesMatcher.myCandidates;
 
     boolean isTemplateTag = isTemplateTag(tagName);
     Set<Angular2Directive> matchedDirectives = new HashSet<>();
-    matcher.match(cssSelector, (selector, directive) -> {
+    directivesMatcher.myMatcher.match(cssSelector, (selector, directive) -> {
       if (directive.getDirectiveKind().isRegular() || isTemplateTag) {
         matchedDirectives.add(directive);
       }
@@ -62,10 +60,42 @@ public class Angular2ApplicableDirectivesProvider {
   }
 
   public List<Angular2Directive> getCandidates() {
-    return myDirectiveCandidates.getValue();
+    return myDirectiveCandidates;
   }
 
   public List<Angular2Directive> getMatched() {
     return myMatchedDirectives;
   }
+
+  private static @NotNull DirectivesMatcher getDirectivesMatcher(@NotNull Project project,
+                                                                 @NotNull String tagName,
+                                                                 boolean onlyMatchingTagName) {
+    // depends on the same data as Angular2EntitiesProvider.getAllElementDirectives()
+    Map<Pair<String, Boolean>, DirectivesMatcher> matchers = CachedValuesManager.getManager(project).getCachedValue(
+      project, () -> create(new ConcurrentHashMap<>(), PsiModificationTracker.MODIFICATION_COUNT));
+
+    Pair<String, Boolean> key = Pair.create(tagName, onlyMatchingTagName);
+    DirectivesMatcher result = matchers.get(key);
+    if (result == null) {
+      DirectivesMatcher newMatcher = new DirectivesMatcher(project, tagName, onlyMatchingTagName);
+      result = ObjectUtils.notNull(matchers.putIfAbsent(key, newMatcher), newMatcher);
+    }
+    return result;
+  }
+
+  private static final class DirectivesMatcher {
+    final List<Angular2Directive> myCandidates;
+    final Angular2SelectorMatcher<Angular2Directive> myMatcher = new Angular2SelectorMatcher<>();
+
+    DirectivesMatcher(@NotNull Project project, @NotNull String tagName, boolean onlyMatchingTagName) {
+      Set<Angular2Directive> directiveCandidates = new HashSet<>(
+        findElementDirectivesCandidates(project, tagName));
+      if (!onlyMatchingTagName) {
+        directiveCandidates.addAll(findElementDirectivesCandidates(project, ""));
+      }
+
+      directiveCandidates.forEach(d -> myMatcher.addSelectables(d.getSelector().getSimpleSelectors(), d));
+      myCandidates = Collections.unmodifiableList(new ArrayList<>(directiveCandidates));
+    }
+  }
 }
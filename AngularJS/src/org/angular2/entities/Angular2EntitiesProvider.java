@@ -20,7 +20,6 @@ import com.intellij.psi.util.PsiModificationTracker;
 import com.intellij.util.ObjectUtils;
 import com.intellij.util.SmartList;
 import com.intellij.util.containers.ContainerUtil;
-import com.intellij.util.containers.MultiMap;
 import one.util.streamex.StreamEx;
 import org.angular2.entities.ivy.Angular2IvyUtil;
 import org.angular2.entities.metadata.Angular2MetadataUtil;
@@ -179,24 +178,12 @@ public final class Angular2EntitiesProvider {
            && getPipe(element) != null;
   }
 
-  public static MultiMap<Angular2Declaration, Angular2Module> getExportedDeclarationToModuleMap(@NotNull Project project) {
-    return CachedValuesManager.getManager(project).getCachedValue(project, () -> {
-      MultiMap<Angular2Declaration, Angular2Module> result = new MultiMap<>();
-      getAllModules(project).forEach(
-        module -> module.getAllExportedDeclarations().forEach(
-          decl -> result.putValue(decl, module)));
-      return create(result, PsiModificationTracker.MODIFICATION_COUNT);
-    });
+  public static Angular2ModuleGraph.DeclarationToModuleMap getExportedDeclarationToModuleMap(@NotNull Project project) {
+    return Angular2ModuleGraph.getInstance(project).getExportedDeclarationToModuleMap();
   }
 
-  public static MultiMap<Angular2Declaration, Angular2Module> getDeclarationToModuleMap(@NotNull Project project) {
-    return CachedValuesManager.getManager(project).getCachedValue(project, () -> {
-      MultiMap<Angular2Declaration, Angular2Module> result = new MultiMap<>();
-      getAllModules(project).forEach(
-        module -> module.getDeclarations().forEach(
-          decl -> result.putValue(decl, module)));
-      return create(result, PsiModificationTracker.MODIFICATION_COUNT);
-    });
+  public static Angular2ModuleGraph.DeclarationToModuleMap getDeclarationToModuleMap(@NotNull Project project) {
+    return Angular2ModuleGraph.getInstance(project).getDeclarationToModuleMap();
   }
 
   public static List<Angular2Module> getAllModules(@NotNull Project project) {
@@ -0,0 +1,209 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package org.angular2.entities;
+
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiModificationTracker;
+import com.intellij.util.containers.MultiMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Maintains declaration to module maps of a project incrementally. After a PSI change only modules, which declarations or exports
+ * have changed, and modules which (transitively) re-export them are recomputed. Declarations and exports of a module are
+ * cached by {@link Angular2ModuleResolver} with precise dependencies, so an unchanged module returns the very same sets.
+ */
+public final class Angular2ModuleGraph {
+
+  private final Project myProject;
+  // the last computed snapshot, which the next one is computed from
+  private volatile Snapshot myLastSnapshot;
+
+  public Angular2ModuleGraph(@NotNull Project project) {
+    myProject = project;
+  }
+
+  public static Angular2ModuleGraph getInstance(@NotNull Project project) {
+    return ServiceManager.getService(project, Angular2ModuleGraph.class);
+  }
+
+  @NotNull
+  DeclarationToModuleMap getDeclarationToModuleMap() {
+    return getSnapshot().declarationToModule;
+  }
+
+  @NotNull
+  DeclarationToModuleMap getExportedDeclarationToModuleMap() {
+    return getSnapshot().exportedDeclarationToModule;
+  }
+
+  private @NotNull Snapshot getSnapshot() {
+    return CachedValuesManager.getManager(myProject).getCachedValue(myProject, () -> {
+      // snapshots are immutable, so concurrent updates from the same previous snapshot give equal results
+      Snapshot snapshot = update(myLastSnapshot);
+      myLastSnapshot = snapshot;
+      return CachedValueProvider.Result.create(snapshot, PsiModificationTracker.MODIFICATION_COUNT);
+    });
+  }
+
+  private @NotNull Snapshot update(@Nullable Snapshot previous) {
+    Map<Angular2Module, ModuleNode> oldNodes = previous != null ? previous.nodes : Collections.emptyMap();
+    Map<Angular2Module, ModuleNode> nodes = new LinkedHashMap<>();
+    Set<Angular2Module> changed = new HashSet<>();
+    for (Angular2Module module : Angular2EntitiesProvider.getAllModules(myProject)) {
+      ProgressManager.checkCanceled();
+      ModuleNode oldNode = oldNodes.get(module);
+      if (oldNode != null && oldNode.hasSameEdges(module.getDeclarations(), module.getExports())) {
+        nodes.put(module, oldNode);
+      }
+      else {
+        nodes.put(module, new ModuleNode(module));
+        changed.add(module);
+      }
+    }
+    for (Angular2Module module : oldNodes.keySet()) {
+      if (!nodes.containsKey(module)) {
+        changed.add(module);
+      }
+    }
+    if (previous == null) {
+      return new Snapshot(nodes,
+                          DeclarationToModuleMap.create(nodes, node -> node.declarations),
+                          DeclarationToModuleMap.create(nodes, node -> node.exportedDeclarations));
+    }
+    if (changed.isEmpty()) {
+      return previous;
+    }
+
+    // Exported declarations of a module change if the module or any module it re-exports has changed,
+    // so propagate changes backwards through export edges using both old and new edges.
+    MultiMap<Angular2Module, Angular2Module> reExporters = new MultiMap<>();
+    collectReExporters(oldNodes, reExporters);
+    collectReExporters(nodes, reExporters);
+    Set<Angular2Module> affected = new HashSet<>();
+    Deque<Angular2Module> queue = new ArrayDeque<>(changed);
+    while (!queue.isEmpty()) {
+      Angular2Module module = queue.poll();
+      if (affected.add(module)) {
+        queue.addAll(reExporters.get(module));
+      }
+    }
+    for (Angular2Module module : affected) {
+      ModuleNode node = nodes.get(module);
+      if (node != null && node == oldNodes.get(module)) {
+        // edges are unchanged, but exports of re-exported modules are not
+        nodes.put(module, new ModuleNode(module));
+      }
+    }
+
+    return new Snapshot(nodes,
+                        previous.declarationToModule.update(changed, nodes, node -> node.declarations),
+                        previous.exportedDeclarationToModule.update(affected, nodes, node -> node.exportedDeclarations));
+  }
+
+  private static void collectReExporters(@NotNull Map<Angular2Module, ModuleNode> nodes,
+                                         @NotNull MultiMap<Angular2Module, Angular2Module> reExporters) {
+    nodes.forEach((module, node) -> {
+      for (Angular2Entity export : node.exports) {
+        if (export instanceof Angular2Module) {
+          reExporters.putValue((Angular2Module)export, module);
+        }
+      }
+    });
+  }
+
+  /**
+   * Modules of declarations, stored as a map built for all modules at some point plus the current entries of the modules changed since.
+   * The map is rebuilt once too many modules have changed, so that a change doesn't require copying the entries of all modules.
+   */
+  public static final class DeclarationToModuleMap {
+    private static final int MIN_CHANGED_MODULES_TO_REBUILD = 16;
+
+    // never modified after construction
+    private final MultiMap<Angular2Declaration, Angular2Module> myBase;
+    // current declarations of modules changed since myBase was built, empty for removed modules
+    private final Map<Angular2Module, Set<Angular2Declaration>> myChangedModules;
+    private final MultiMap<Angular2Declaration, Angular2Module> myChangedEntries;
+
+    private DeclarationToModuleMap(@NotNull MultiMap<Angular2Declaration, Angular2Module> base,
+                                   @NotNull Map<Angular2Module, Set<Angular2Declaration>> changedModules) {
+      myBase = base;
+      myChangedModules = changedModules;
+      myChangedEntries = new MultiMap<>();
+      changedModules.forEach((module, declarations) -> declarations.forEach(decl -> myChangedEntries.putValue(decl, module)));
+    }
+
+    private static @NotNull DeclarationToModuleMap create(@NotNull Map<Angular2Module, ModuleNode> nodes,
+                                                          @NotNull Function<ModuleNode, Set<Angular2Declaration>> declarations) {
+      MultiMap<Angular2Declaration, Angular2Module> base = new MultiMap<>();
+      nodes.forEach((module, node) -> declarations.apply(node).forEach(decl -> base.putValue(decl, module)));
+      return new DeclarationToModuleMap(base, Collections.emptyMap());
+    }
+
+    private @NotNull DeclarationToModuleMap update(@NotNull Set<Angular2Module> modules,
+                                                   @NotNull Map<Angular2Module, ModuleNode> nodes,
+                                                   @NotNull Function<ModuleNode, Set<Angular2Declaration>> declarations) {
+      Map<Angular2Module, Set<Angular2Declaration>> changedModules = new HashMap<>(myChangedModules);
+      for (Angular2Module module : modules) {
+        ModuleNode node = nodes.get(module);
+        changedModules.put(module, node != null ? declarations.apply(node) : Collections.emptySet());
+      }
+      if (changedModules.size() >= Math.max(MIN_CHANGED_MODULES_TO_REBUILD, nodes.size() / 4)) {
+        return create(nodes, declarations);
+      }
+      return new DeclarationToModuleMap(myBase, changedModules);
+    }
+
+    public @NotNull Collection<Angular2Module> get(@NotNull Angular2Declaration declaration) {
+      Collection<Angular2Module> base = myBase.get(declaration);
+      if (myChangedModules.isEmpty()) {
+        return base;
+      }
+      List<Angular2Module> result = new ArrayList<>(base.size());
+      for (Angular2Module module : base) {
+        if (!myChangedModules.containsKey(module)) {
+          result.add(module);
+        }
+      }
+      result.addAll(myChangedEntries.get(declaration));
+      return result;
+    }
+  }
+
+  private static final class ModuleNode {
+    final Set<Angular2Declaration> declarations;
+    final Set<Angular2Entity> exports;
+    final Set<Angular2Declaration> exportedDeclarations;
+
+    private ModuleNode(@NotNull Angular2Module module) {
+      declarations = module.getDeclarations();
+      exports = module.getExports();
+      exportedDeclarations = module.getAllExportedDeclarations();
+    }
+
+    boolean hasSameEdges(@NotNull Set<Angular2Declaration> declarations, @NotNull Set<Angular2Entity> exports) {
+      return (this.declarations == declarations || this.declarations.equals(declarations))
+             && (this.exports == exports || this.exports.equals(exports));
+    }
+  }
+
+  private static final class Snapshot {
+    final Map<Angular2Module, ModuleNode> nodes;
+    final DeclarationToModuleMap declarationToModule;
+    final DeclarationToModuleMap exportedDeclarationToModule;
+
+    private Snapshot(@NotNull Map<Angular2Module, ModuleNode> nodes,
+                     @NotNull DeclarationToModuleMap declarationToModule,
+                     @NotNull DeclarationToModuleMap exportedDeclarationToModule) {
+      this.nodes = nodes;
+      this.declarationToModule = declarationToModule;
+      this.exportedDeclarationToModule = exportedDeclarationToModule;
+    }
+  }
+}
@@ -11,6 +11,9 @@ import java.util.function.BiConsumer;
 
 import static com.intellij.util.containers.ContainerUtil.concat;
 
+/**
+ * Once all selectables are added, the matcher isn't modified by {@link #match}, so it can be shared between threads.
+ */
 public class Angular2SelectorMatcher<T> {
 
   public static <T> Angular2SelectorMatcher<T> createNotMatcher(List<Angular2DirectiveSimpleSelector> notSelectors) {
@@ -25,13 +28,11 @@ public class Angular2SelectorMatcher<T> {
   private final Map<String, Angular2SelectorMatcher<T>> _classPartialMap = new HashMap<>();
   private final Map<String, Map<String, List<SelectorContext<T>>>> _attrValueMap = new HashMap<>();
   private final Map<String, Map<String, Angular2SelectorMatcher<T>>> _attrValuePartialMap = new HashMap<>();
-  private final List<SelectorListContext> _listContexts = new ArrayList<>();
 
   public void addSelectables(@NotNull List<Angular2DirectiveSimpleSelector> cssSelectors, @Nullable T context) {
     SelectorListContext listContext = null;
     if (cssSelectors.size() > 1) {
       listContext = new SelectorListContext(cssSelectors);
-      this._listContexts.add(listContext);
     }
     for (Angular2DirectiveSimpleSelector selector : cssSelectors) {
       _addSelectable(selector, context, listContext);
@@ -113,18 +114,22 @@ public class Angular2SelectorMatcher<T> {
    */
   public boolean match(@NotNull Angular2DirectiveSimpleSelector cssSelector,
                        @Nullable BiConsumer<Angular2DirectiveSimpleSelector, T> matchedCallback) {
+    return match(cssSelector, matchedCallback, new HashSet<>());
+  }
+
+  private boolean match(@NotNull Angular2DirectiveSimpleSelector cssSelector,
+                        @Nullable BiConsumer<Angular2DirectiveSimpleSelector, T> matchedCallback,
+                        @NotNull Set<SelectorListContext> matchedListContexts) {
     final String element = cssSelector.element;
     final List<String> classNames = cssSelector.classNames;
     final List<String> attrs = cssSelector.attrs;
 
-    _listContexts.forEach(l -> l.alreadyMatched = false);
-
-    boolean result = this._matchTerminal(this._elementMap, element, cssSelector, matchedCallback);
-    result |= this._matchPartial(this._elementPartialMap, element, cssSelector, matchedCallback);
+    boolean result = this._matchTerminal(this._elementMap, element, cssSelector, matchedCallback, matchedListContexts);
+    result |= this._matchPartial(this._elementPartialMap, element, cssSelector, matchedCallback, matchedListContexts);
 
     for (String className : classNames) {
-      result |= this._matchTerminal(this._classMap, className, cssSelector, matchedCallback);
-      result |= this._matchPartial(this._classPartialMap, className, cssSelector, matchedCallback);
+      result |= this._matchTerminal(this._classMap, className, cssSelector, matchedCallback, matchedListContexts);
+      result |= this._matchPartial(this._classPartialMap, className, cssSelector, matchedCallback, matchedListContexts);
     }
 
     for (int i = 0; i < attrs.size(); i += 2) {
@@ -133,15 +138,15 @@ public class Angular2SelectorMatcher<T> {
 
       Map<String, List<SelectorContext<T>>> terminalValuesMap = this._attrValueMap.get(name);
       if (StringUtil.isNotEmpty(value)) {
-        result |= this._matchTerminal(terminalValuesMap, "", cssSelector, matchedCallback);
+        result |= this._matchTerminal(terminalValuesMap, "", cssSelector, matchedCallback, matchedListContexts);
       }
-      result |= this._matchTerminal(terminalValuesMap, value, cssSelector, matchedCallback);
+      result |= this._matchTerminal(terminalValuesMap, value, cssSelector, matchedCallback, matchedListContexts);
 
       Map<String, Angular2SelectorMatcher<T>> partialValuesMap = this._attrValuePartialMap.get(name);
       if (StringUtil.isNotEmpty(value)) {
-        result |= this._matchPartial(partialValuesMap, "", cssSelector, matchedCallback);
+        result |= this._matchPartial(partialValuesMap, "", cssSelector, matchedCallback, matchedListContexts);
       }
-      result |= this._matchPartial(partialValuesMap, value, cssSelector, matchedCallback);
+      result |= this._matchPartial(partialValuesMap, value, cssSelector, matchedCallback, matchedListContexts);
     }
     return result;
   }
@@ -152,7 +157,8 @@ public class Angular2SelectorMatcher<T> {
   private boolean _matchTerminal(@Nullable Map<String, List<SelectorContext<T>>> map,
                                  @Nullable String name,
                                  @NotNull Angular2DirectiveSimpleSelector cssSelector,
-                                 @Nullable BiConsumer<? super Angular2DirectiveSimpleSelector, ? super T> matchedCallback) {
+                                 @Nullable BiConsumer<? super Angular2DirectiveSimpleSelector, ? super T> matchedCallback,
+                                 @NotNull Set<SelectorListContext> matchedListContexts) {
     if (map == null || name == null) {
       return false;
     }
@@ -164,7 +170,7 @@ public class Angular2SelectorMatcher<T> {
     }
     boolean result = false;
     for (SelectorContext<T> selectable : concat(selectables, starSelectables)) {
-      result = selectable.finalize(cssSelector, matchedCallback) || result;
+      result = selectable.finalize(cssSelector, matchedCallback, matchedListContexts) || result;
     }
     return result;
   }
@@ -175,7 +181,8 @@ public class Angular2SelectorMatcher<T> {
   private boolean _matchPartial(@Nullable Map<String, Angular2SelectorMatcher<T>> map,
                                 @Nullable String name,
                                 @NotNull Angular2DirectiveSimpleSelector cssSelector,
-                                @Nullable BiConsumer<Angular2DirectiveSimpleSelector, T> matchedCallback) {
+                                @Nullable BiConsumer<Angular2DirectiveSimpleSelector, T> matchedCallback,
+                                @NotNull Set<SelectorListContext> matchedListContexts) {
     if (map == null || name == null) {
       return false;
     }
@@ -187,12 +194,11 @@ public class Angular2SelectorMatcher<T> {
     // TODO(perf): get rid of recursion and measure again
     // TODO(perf): don't pass the whole selector into the recursion,
     // but only the not processed parts
-    return nestedSelector.match(cssSelector, matchedCallback);
+    return nestedSelector.match(cssSelector, matchedCallback, matchedListContexts);
   }
 
 
   private static class SelectorListContext {
-    public boolean alreadyMatched = false;
     public final List<Angular2DirectiveSimpleSelector> selectors;
 
     SelectorListContext(@NotNull List<Angular2DirectiveSimpleSelector> selectors) {
@@ -202,28 +208,29 @@ public class Angular2SelectorMatcher<T> {
 
   // Store context to pass back selector and context when a selector is matched
   private static class SelectorContext<T> {
-    public final List<Angular2DirectiveSimpleSelector> notSelectors;
+    public final @Nullable Angular2SelectorMatcher<T> notMatcher;
     public final Angular2DirectiveSimpleSelector selector;
     public final T context;
     public final SelectorListContext listContext;
 
     SelectorContext(@NotNull Angular2DirectiveSimpleSelector selector, @Nullable T context, @Nullable SelectorListContext listContext) {
-      this.notSelectors = selector.notSelectors;
+      this.notMatcher = selector.notSelectors.isEmpty() ? null : createNotMatcher(selector.notSelectors);
       this.selector = selector;
       this.context = context;
       this.listContext = listContext;
     }
 
     boolean finalize(@NotNull Angular2DirectiveSimpleSelector cssSelector,
-                     @Nullable BiConsumer<? super Angular2DirectiveSimpleSelector, ? super T> callback) {
+                     @Nullable BiConsumer<? super Angular2DirectiveSimpleSelector, ? super T> callback,
+                     @NotNull Set<SelectorListContext> matchedListContexts) {
+      boolean alreadyMatched = listContext != null && matchedListContexts.contains(listContext);
       boolean result = true;
-      if (!notSelectors.isEmpty() && (listContext == null || !listContext.alreadyMatched)) {
-        Angular2SelectorMatcher<T> notMatcher = createNotMatcher(notSelectors);
+      if (notMatcher != null && !alreadyMatched) {
         result = !notMatcher.match(cssSelector, null);
       }
-      if (result && callback != null && (this.listContext == null || !listContext.alreadyMatched)) {
+      if (result && callback != null && !alreadyMatched) {
         if (listContext != null) {
-          listContext.alreadyMatched = true;
+          matchedListContexts.add(listContext);
         }
         callback.accept(selector, context);
       }
@@ -12,9 +12,11 @@ import com.intellij.lang.javascript.psi.util.JSStubBasedPsiTreeUtil;
 import com.intellij.openapi.fileTypes.LanguageFileType;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Comparing;
+import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
 import com.intellij.psi.*;
 import com.intellij.psi.impl.include.FileIncludeManager;
 import com.intellij.psi.search.GlobalSearchScope;
@@ -61,57 +63,144 @@ public class AngularUiRouterDiagramBuilder {
   }
 
   private void addStatesFromIndex() {
+    final Map<PsiFile, List<Pair<String, JSImplicitElement>>> file2Elements = new LinkedHashMap<>();
+    final List<Pair<PsiFile, Integer>> order = new ArrayList<>();
     final Collection<String> stateIds = AngularIndexUtil.getAllKeys(AngularUiRouterStatesIndex.KEY, myProject);
     for (String id : stateIds) {
       if (id.startsWith(".")) continue;
       final CommonProcessors.CollectProcessor<JSImplicitElement> processor = new CommonProcessors.CollectProcessor<>();
       AngularIndexUtil.multiResolve(myProject, AngularUiRouterStatesIndex.KEY, id, processor);
       for (JSImplicitElement element : processor.getResults()) {
-        final UiRouterState state = new UiRouterState(id, element.getContainingFile().getVirtualFile());
-        if (!element.getContainingFile().getLanguage().isKindOf(JavascriptLanguage.INSTANCE)
-            && PsiTreeUtil.getParentOfType(element, JSEmbeddedContent.class) != null) {
-          createRootTemplatesForEmbedded(element.getContainingFile());
-        }
+        final List<Pair<String, JSImplicitElement>> elements =
+          file2Elements.computeIfAbsent(element.getContainingFile(), f -> new ArrayList<>());
+        order.add(Pair.create(element.getContainingFile(), elements.size()));
+        elements.add(Pair.create(id, element));
+      }
+    }
 
-        final JSCallExpression call = findWrappingCallExpression(element);
-        if (call != null) {
-          final JSReferenceExpression methodExpression = ObjectUtils.tryCast(call.getMethodExpression(), JSReferenceExpression.class);
-          if (methodExpression != null &&
-              methodExpression.getQualifier() != null &&
-              "state".equals(methodExpression.getReferenceName())) {
-            final JSExpression[] arguments = call.getArguments();
-            if (arguments.length > 0 && PsiTreeUtil.isAncestor(arguments[0], element.getNavigationElement(), false)) {
-              state.setPointer(mySmartPointerManager.createSmartPsiElementPointer(arguments[0]));
-
-              if (arguments.length > 1 && arguments[1] instanceof JSObjectLiteralExpression) {
-                final JSObjectLiteralExpression object = (JSObjectLiteralExpression)arguments[1];
-                fillStateParameters(state, object);
-              }
-              else if (arguments[0] instanceof JSObjectLiteralExpression) {
-                final JSObjectLiteralExpression object = (JSObjectLiteralExpression)arguments[0];
-                final JSProperty name = object.findProperty("name");
-                if (name != null && PsiTreeUtil.isAncestor(name, element.getNavigationElement(), false)) {
-                  fillStateParameters(state, object);
-                }
+    final AngularUiRouterProviderContext context = AngularUiRouterProviderContext.getInstance(myProject);
+    final Map<PsiFile, FileStates> file2States = new HashMap<>();
+    for (Map.Entry<PsiFile, List<Pair<String, JSImplicitElement>>> entry : file2Elements.entrySet()) {
+      final PsiFile file = entry.getKey();
+      FileStates fileStates = context.getFileStates(file.getVirtualFile());
+      if (fileStates == null || !fileStates.isUpToDate(file, entry.getValue())) {
+        fileStates = collectFileStates(file, entry.getValue());
+        context.putFileStates(file.getVirtualFile(), fileStates);
+      }
+      if (fileStates.myHasEmbeddedStates) {
+        createRootTemplatesForEmbedded(file);
+      }
+      for (Map.Entry<VirtualFile, Template> templateEntry : fileStates.myTemplates.entrySet()) {
+        myTemplatesMap.putIfAbsent(templateEntry.getKey(), templateEntry.getValue());
+      }
+      file2States.put(file, fileStates);
+    }
+    context.retainFileStates(ContainerUtil.map2Set(file2Elements.keySet(), PsiFile::getVirtualFile));
+
+    // keep the order of index, states are copied since they are modified while grouping and building the graph
+    for (Pair<PsiFile, Integer> pair : order) {
+      myStates.add(file2States.get(pair.first).myStates.get(pair.second).copy());
+    }
+  }
+
+  private @NotNull FileStates collectFileStates(final @NotNull PsiFile file, final @NotNull List<Pair<String, JSImplicitElement>> elements) {
+    final List<UiRouterState> states = new ArrayList<>();
+    final Map<VirtualFile, Template> templatesMap = new HashMap<>();
+    boolean hasEmbeddedStates = false;
+    for (Pair<String, JSImplicitElement> pair : elements) {
+      final JSImplicitElement element = pair.second;
+      final UiRouterState state = new UiRouterState(pair.first, file.getVirtualFile());
+      if (!file.getLanguage().isKindOf(JavascriptLanguage.INSTANCE)
+          && PsiTreeUtil.getParentOfType(element, JSEmbeddedContent.class) != null) {
+        hasEmbeddedStates = true;
+      }
+
+      final JSCallExpression call = findWrappingCallExpression(element);
+      if (call != null) {
+        final JSReferenceExpression methodExpression = ObjectUtils.tryCast(call.getMethodExpression(), JSReferenceExpression.class);
+        if (methodExpression != null &&
+            methodExpression.getQualifier() != null &&
+            "state".equals(methodExpression.getReferenceName())) {
+          final JSExpression[] arguments = call.getArguments();
+          if (arguments.length > 0 && PsiTreeUtil.isAncestor(arguments[0], element.getNavigationElement(), false)) {
+            state.setPointer(mySmartPointerManager.createSmartPsiElementPointer(arguments[0]));
+
+            if (arguments.length > 1 && arguments[1] instanceof JSObjectLiteralExpression) {
+              final JSObjectLiteralExpression object = (JSObjectLiteralExpression)arguments[1];
+              fillStateParameters(state, object, templatesMap);
+            }
+            else if (arguments[0] instanceof JSObjectLiteralExpression) {
+              final JSObjectLiteralExpression object = (JSObjectLiteralExpression)arguments[0];
+              final JSProperty name = object.findProperty("name");
+              if (name != null && PsiTreeUtil.isAncestor(name, element.getNavigationElement(), false)) {
+                fillStateParameters(state, object, templatesMap);
               }
             }
           }
         }
-        myStates.add(state);
       }
+      states.add(state);
+    }
+    return new FileStates(file, ContainerUtil.map(elements, pair -> pair.first), states, templatesMap, hasEmbeddedStates);
+  }
+
+  /**
+   * States defined in a file together with templates they refer to. States are recollected only if the file,
+   * any of the templates or the VFS structure have changed since.
+   */
+  static final class FileStates {
+    private final List<String> myStateIds;
+    private final List<UiRouterState> myStates;
+    private final Map<VirtualFile, Template> myTemplates;
+    private final boolean myHasEmbeddedStates;
+    private final long myVfsStructureStamp;
+    // PSI modification stamps of the defining file and the templates; keyed by VirtualFile so that cached states don't retain PSI
+    private final Map<VirtualFile, Long> myFileStamps = new HashMap<>();
+
+    private FileStates(@NotNull PsiFile file,
+                       @NotNull List<String> stateIds,
+                       @NotNull List<UiRouterState> states,
+                       @NotNull Map<VirtualFile, Template> templates,
+                       boolean hasEmbeddedStates) {
+      myStateIds = stateIds;
+      myStates = states;
+      myTemplates = templates;
+      myHasEmbeddedStates = hasEmbeddedStates;
+      myVfsStructureStamp = VirtualFileManager.VFS_STRUCTURE_MODIFICATIONS.getModificationCount();
+      myFileStamps.put(file.getVirtualFile(), file.getModificationStamp());
+      final PsiManager psiManager = file.getManager();
+      for (VirtualFile templateFile : templates.keySet()) {
+        final PsiFile templatePsiFile = psiManager.findFile(templateFile);
+        if (templatePsiFile != null) {
+          myFileStamps.put(templateFile, templatePsiFile.getModificationStamp());
+        }
+      }
+    }
+
+    private boolean isUpToDate(@NotNull PsiFile file, @NotNull List<Pair<String, JSImplicitElement>> elements) {
+      final PsiManager psiManager = file.getManager();
+      return myFileStamps.containsKey(file.getVirtualFile())
+             && myVfsStructureStamp == VirtualFileManager.VFS_STRUCTURE_MODIFICATIONS.getModificationCount()
+             && myStateIds.equals(ContainerUtil.map(elements, pair -> pair.first))
+             && ContainerUtil.all(myFileStamps.entrySet(), entry -> {
+        final VirtualFile virtualFile = entry.getKey();
+        final PsiFile psiFile = virtualFile.isValid() ? psiManager.findFile(virtualFile) : null;
+        return psiFile != null && psiFile.getModificationStamp() == entry.getValue();
+      });
     }
   }
 
   private void addGenericStates() {
     final List<JSProperty> freeStates = new AngularRouterStateLoader(myProject).loadFreelyDefinedStates();
+    final Set<UiRouterState> existingStates = new HashSet<>(myStates);
     for (JSProperty property : freeStates) {
       if (property.getValue() == null || !(property.getParent() instanceof JSObjectLiteralExpression)) continue;
       final String name = StringUtil.unquoteString(property.getValue().getText());
       final UiRouterState uiState = new UiRouterState(name, property.getContainingFile().getViewProvider().getVirtualFile());
       uiState.setGeneric(true);
       uiState.setPointer(mySmartPointerManager.createSmartPsiElementPointer(property));
-      fillStateParameters(uiState, (JSObjectLiteralExpression)property.getParent());
-      if (!myStates.contains(uiState)) myStates.add(uiState);
+      fillStateParameters(uiState, (JSObjectLiteralExpression)property.getParent(), myTemplatesMap);
+      if (existingStates.add(uiState)) myStates.add(uiState);
     }
   }
 
@@ -128,10 +217,10 @@ public class AngularUiRouterDiagramBuilder {
     final Set<UiRouterState> statesUsedInRoots = new HashSet<>();
     for (Map.Entry<VirtualFile, RootTemplate> entry : myRootTemplates.entrySet()) {
       final Set<VirtualFile> modulesFiles = entry.getValue().getModulesFiles();
+      final PsiElement element = entry.getValue().getPointer().getElement();
+      final VirtualFile rootFile = element != null ? element.getContainingFile().getVirtualFile() : null;
       for (UiRouterState state : myStates) {
-        final PsiElement element = entry.getValue().getPointer().getElement();
-        if (modulesFiles.contains(state.getFile()) ||
-            element != null && element.getContainingFile().getVirtualFile().equals(state.getFile())) {
+        if (modulesFiles.contains(state.getFile()) || state.getFile().equals(rootFile)) {
           putState2map(entry.getKey(), state, myRootTemplates2States);
           statesUsedInRoots.add(state);
         }
@@ -337,7 +426,7 @@ public class AngularUiRouterDiagramBuilder {
     return relativePath == null ? null : AngularUiRouterGraphBuilder.normalizeTemplateUrl(relativePath);
   }
 
-  private void fillStateParameters(UiRouterState state, JSObjectLiteralExpression object) {
+  private void fillStateParameters(UiRouterState state, JSObjectLiteralExpression object, Map<VirtualFile, Template> templatesMap) {
     final String url = getPropertyValueIfExists(object, "url");
     if (url != null) {
       state.setUrl(StringUtil.unquoteString(url));
@@ -351,7 +440,7 @@ public class AngularUiRouterDiagramBuilder {
     if (templateUrl != null) {
       state.setTemplateUrl(templateUrl);
       final JSProperty urlProperty = object.findProperty("templateUrl");
-      state.setTemplateFile(parseTemplate(templateUrl, urlProperty));
+      state.setTemplateFile(parseTemplate(templateUrl, urlProperty, templatesMap));
     }
     final JSProperty template = object.findProperty("template");
     if (templateUrl == null && object.findProperty("templateUrl") != null ||
@@ -371,7 +460,7 @@ public class AngularUiRouterDiagramBuilder {
           final List<UiView> viewsList = new ArrayList<>();
           for (JSProperty property : viewsProperties) {
             if (property.getName() != null && property.getValue() != null) {
-              viewsList.add(processView(property));
+              viewsList.add(processView(property, templatesMap));
             }
           }
           state.setViews(viewsList);
@@ -398,7 +487,9 @@ public class AngularUiRouterDiagramBuilder {
     return null;
   }
 
-  private @Nullable VirtualFile parseTemplate(final @NotNull String url, @Nullable JSProperty urlProperty) {
+  private static @Nullable VirtualFile parseTemplate(final @NotNull String url,
+                                                    @Nullable JSProperty urlProperty,
+                                                    final @NotNull Map<VirtualFile, Template> templatesMap) {
     PsiFile templateFile = null;
     Template template = null;
     if (urlProperty != null && urlProperty.getValue() != null) {
@@ -408,9 +499,9 @@ public class AngularUiRouterDiagramBuilder {
         final PsiElement templateFileElement = reference.resolve();
         if (templateFileElement != null && templateFileElement.isValid()) {
           templateFile = templateFileElement.getContainingFile();
-          if (myTemplatesMap.containsKey(templateFile.getVirtualFile())) return templateFile.getVirtualFile();
+          if (templatesMap.containsKey(templateFile.getVirtualFile())) return templateFile.getVirtualFile();
           template = readTemplateFromFile(urlProperty.getProject(), url, templateFile);
-          myTemplatesMap.put(templateFile.getVirtualFile(), template);
+          templatesMap.put(templateFile.getVirtualFile(), template);
           return templateFile.getVirtualFile();
         }
       }
@@ -448,7 +539,7 @@ public class AngularUiRouterDiagramBuilder {
     return template;
   }
 
-  private UiView processView(final @NotNull JSProperty property) {
+  private UiView processView(final @NotNull JSProperty property, final @NotNull Map<VirtualFile, Template> templatesMap) {
     final String name = property.getName();
     final JSExpression value = property.getValue();
     final JSObjectLiteralExpression expression = ObjectUtils.tryCast(value, JSObjectLiteralExpression.class);
@@ -458,7 +549,7 @@ public class AngularUiRouterDiagramBuilder {
       templateUrl = getPropertyValueIfExists(expression, "templateUrl");
       if (templateUrl != null) {
         final JSProperty urlProperty = expression.findProperty("templateUrl");
-        templateFile = parseTemplate(templateUrl, urlProperty);
+        templateFile = parseTemplate(templateUrl, urlProperty, templatesMap);
       }
     }
     final UiView view = new UiView(name, templateUrl, templateFile,
@@ -8,6 +8,7 @@ import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.*;
+import com.intellij.util.containers.MultiMap;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -61,6 +62,9 @@ public final class AngularUiRouterGraphBuilder {
     private final List<AngularUiRouterEdge> edges = new ArrayList<>();
 
     private final List<AngularUiRouterNode> allNodes = new ArrayList<>();
+    private final MultiMap<String, AngularUiRouterNode> childStateNodes = new MultiMap<>();
+    private final List<AngularUiRouterNode> zeroLevelStateNodes = new ArrayList<>();
+    private final MultiMap<AngularUiRouterNode, AngularUiRouterNode> stateTemplateNodes = new MultiMap<>();
 
     public GraphNodesBuilder(@NotNull Map<String, UiRouterState> statesMap,
                              @NotNull Map<VirtualFile, Template> templatesMap, @Nullable RootTemplate rootTemplate, VirtualFile key) {
@@ -194,12 +198,31 @@ public final class AngularUiRouterGraphBuilder {
       }
       createStateParentEdges();
 
-      final List<AngularUiRouterNode> list = new ArrayList<>();
-      list.add(myRootNode);
-      list.addAll(stateNodes.values());
-      list.addAll(templateNodes.values());
-      for (AngularUiRouterNode node : list) {
-        if (!allNodes.contains(node)) allNodes.add(node);
+      final Set<AngularUiRouterNode> nodes = new LinkedHashSet<>();
+      nodes.add(myRootNode);
+      nodes.addAll(stateNodes.values());
+      nodes.addAll(templateNodes.values());
+      allNodes.addAll(nodes);
+      indexNodes();
+    }
+
+    private void indexNodes() {
+      for (AngularUiRouterNode node : allNodes) {
+        final DiagramObject object = node.getIdentifyingElement();
+        if (state.equals(object.getType())) {
+          if (object.getParent() == null) {
+            zeroLevelStateNodes.add(node);
+          }
+          else {
+            childStateNodes.putValue(object.getParent(), node);
+          }
+        }
+      }
+      for (AngularUiRouterEdge edge : edges) {
+        if (AngularUiRouterEdge.Type.providesTemplate.equals(edge.getType()) &&
+            template.equals(edge.getSource().getIdentifyingElement().getType())) {
+          stateTemplateNodes.putValue((AngularUiRouterNode)edge.getTarget(), (AngularUiRouterNode)edge.getSource());
+        }
       }
     }
 
@@ -286,40 +309,20 @@ public final class AngularUiRouterGraphBuilder {
     }
 
     public List<AngularUiRouterNode> getStateTemplates(final @NotNull AngularUiRouterNode state) {
-      final List<AngularUiRouterNode> list = new ArrayList<>();
       if (!Type.state.equals(state.getIdentifyingElement().getType())) return Collections.emptyList();
-      for (AngularUiRouterEdge edge : edges) {
-        if (AngularUiRouterEdge.Type.providesTemplate.equals(edge.getType()) && edge.getTarget().equals(state) &&
-            template.equals(edge.getSource().getIdentifyingElement().getType())) {
-          list.add((AngularUiRouterNode)edge.getSource());
-        }
-      }
-      return list;
+      return new ArrayList<>(stateTemplateNodes.get(state));
     }
 
     public List<AngularUiRouterNode> getZeroLevelStates() {
-      final List<AngularUiRouterNode> list = new ArrayList<>();
-      for (AngularUiRouterNode current : allNodes) {
-        if (state.equals(current.getIdentifyingElement().getType()) && current.getIdentifyingElement().getParent() == null) {
-          list.add(current);
-        }
-      }
-      return list;
+      return new ArrayList<>(zeroLevelStateNodes);
     }
 
     public List<AngularUiRouterNode> getImmediateChildrenStates(@NotNull AngularUiRouterNode node) {
       if (myRootNode.equals(node)) return getZeroLevelStates();
 
-      final String name = node.getIdentifyingElement().getName();
-      final List<AngularUiRouterNode> list = new ArrayList<>();
       final DiagramObject diagramObject = node.getIdentifyingElement();
       if (!state.equals(diagramObject.getType())) return Collections.emptyList();
-      for (AngularUiRouterNode current : allNodes) {
-        if (state.equals(current.getIdentifyingElement().getType()) && name.equals(current.getIdentifyingElement().getParent())) {
-          list.add(current);
-        }
-      }
-      return list;
+      return new ArrayList<>(childStateNodes.get(diagramObject.getName()));
     }
 
     public List<AngularUiRouterEdge> getEdges() {
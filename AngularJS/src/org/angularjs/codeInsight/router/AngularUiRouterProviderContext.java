@@ -8,6 +8,8 @@ import org.jetbrains.annotations.Nullable;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author Irina.Chernushina on 7/5/2016.
@@ -15,6 +17,7 @@ import java.util.Map;
 public class AngularUiRouterProviderContext {
   private final @NotNull Project myProject;
   private final Map<VirtualFile, AngularUiRouterGraphBuilder.GraphNodesBuilder> myData;
+  private final Map<VirtualFile, AngularUiRouterDiagramBuilder.FileStates> myFileStates = new ConcurrentHashMap<>();
 
   public static AngularUiRouterProviderContext getInstance(@NotNull Project project) {
     return ServiceManager.getService(project, AngularUiRouterProviderContext.class);
@@ -36,4 +39,16 @@ public class AngularUiRouterProviderContext {
   public @Nullable AngularUiRouterGraphBuilder.GraphNodesBuilder getBuilder(final @NotNull VirtualFile file) {
     return myData.get(file);
   }
+
+  @Nullable AngularUiRouterDiagramBuilder.FileStates getFileStates(final @NotNull VirtualFile file) {
+    return myFileStates.get(file);
+  }
+
+  void putFileStates(final @NotNull VirtualFile file, final @NotNull AngularUiRouterDiagramBuilder.FileStates states) {
+    myFileStates.put(file, states);
+  }
+
+  void retainFileStates(final @NotNull Set<VirtualFile> files) {
+    myFileStates.keySet().retainAll(files);
+  }
 }
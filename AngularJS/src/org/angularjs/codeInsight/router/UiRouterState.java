@@ -32,6 +32,24 @@ public class UiRouterState {
     myFile = file;
   }
 
+  /**
+   * @return copy of the state without duplicate definitions
+   */
+  public @NotNull UiRouterState copy() {
+    final UiRouterState copy = new UiRouterState(myName, myFile);
+    copy.myUrl = myUrl;
+    copy.myTemplateUrl = myTemplateUrl;
+    copy.myHasTemplateDefined = myHasTemplateDefined;
+    copy.myParentName = myParentName;
+    copy.myViews = myViews;
+    copy.myPointer = myPointer;
+    copy.myIsAbstract = myIsAbstract;
+    copy.myTemplateFile = myTemplateFile;
+    copy.myTemplatePointer = myTemplatePointer;
+    copy.myGeneric = myGeneric;
+    return copy;
+  }
+
   public @NotNull String getName() {
     return myName;
   }
@@ -1,6 +1,7 @@
 // Copyright 2000-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
 package org.angular2;
 
+import org.angular2.cli.AngularCliSchematicsDiskCacheTest;
 import org.angular2.cli.AngularConfigTest;
 import org.angular2.cli.BlueprintListTest;
 import org.angular2.codeInsight.*;
@@ -40,6 +41,7 @@ import org.junit.runners.Suite;
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
   BlueprintListTest.class,
+  AngularCliSchematicsDiskCacheTest.class,
   Angular2LexerSpecTest.class,
   Angular2LexerTest.class,
   Angular2ParserSpecTest.class,
@@ -0,0 +1,135 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package org.angular2.cli;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.testFramework.LightPlatformTestCase;
+import com.intellij.util.containers.ContainerUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class AngularCliSchematicsDiskCacheTest extends LightPlatformTestCase {
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    AngularCliSchematicsDiskCache.clear();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      AngularCliSchematicsDiskCache.clear();
+    }
+    catch (Throwable e) {
+      addSuppressedException(e);
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  public void testKey() throws IOException {
+    File dir = FileUtil.createTempDirectory("angular", null);
+    assertNull(AngularCliSchematicsDiskCache.computeKey(findFile(dir), false));
+
+    createProject(dir);
+    String key = AngularCliSchematicsDiskCache.computeKey(findFile(dir), false);
+    assertNotNull(key);
+    assertEquals(key, AngularCliSchematicsDiskCache.computeKey(findFile(dir), false));
+    assertFalse(key.equals(AngularCliSchematicsDiskCache.computeKey(findFile(dir), true)));
+
+    FileUtil.writeToFile(new File(dir, "yarn.lock"), "changed");
+    String changedKey = AngularCliSchematicsDiskCache.computeKey(findFile(dir), false);
+    assertNotNull(changedKey);
+    assertFalse(key.equals(changedKey));
+    assertEquals(getLocation(key), getLocation(changedKey));
+  }
+
+  public void testReadWrite() throws IOException {
+    String key = computeKey(false);
+    assertNull(AngularCliSchematicsDiskCache.read(key));
+
+    assertTrue(AngularCliSchematicsDiskCache.write(key, createSchematics("component")));
+    assertFalse(AngularCliSchematicsDiskCache.write(key, createSchematics("component")));
+    assertEquals(Collections.singletonList("component"), getNames(AngularCliSchematicsDiskCache.read(key)));
+
+    assertTrue(AngularCliSchematicsDiskCache.write(key, createSchematics("service")));
+    assertEquals(Collections.singletonList("service"), getNames(AngularCliSchematicsDiskCache.read(key)));
+  }
+
+  public void testOnlyLatestEntryOfLocationIsKept() throws IOException {
+    File dir = FileUtil.createTempDirectory("angular", null);
+    createProject(dir);
+    String key = AngularCliSchematicsDiskCache.computeKey(findFile(dir), false);
+    String otherLocationKey = computeKey(false);
+    assertNotNull(key);
+    assertTrue(AngularCliSchematicsDiskCache.write(key, createSchematics("component")));
+    assertTrue(AngularCliSchematicsDiskCache.write(otherLocationKey, createSchematics("component")));
+
+    FileUtil.writeToFile(new File(dir, "yarn.lock"), "changed");
+    String changedKey = AngularCliSchematicsDiskCache.computeKey(findFile(dir), false);
+    assertNotNull(changedKey);
+    assertTrue(AngularCliSchematicsDiskCache.write(changedKey, createSchematics("service")));
+
+    assertNull(AngularCliSchematicsDiskCache.read(key));
+    assertEquals(Collections.singletonList("service"), getNames(AngularCliSchematicsDiskCache.read(changedKey)));
+    assertEquals(Collections.singletonList("component"), getNames(AngularCliSchematicsDiskCache.read(otherLocationKey)));
+  }
+
+  public void testUnusedEntriesAreRemoved() throws IOException {
+    String unusedKey = computeKey(false);
+    String usedKey = computeKey(true);
+    assertTrue(AngularCliSchematicsDiskCache.write(unusedKey, createSchematics("component")));
+    assertTrue(AngularCliSchematicsDiskCache.write(usedKey, createSchematics("component")));
+    long unusedTime = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(AngularCliSchematicsDiskCache.MAX_UNUSED_DAYS + 1);
+    assertTrue(AngularCliSchematicsDiskCache.getCacheFile(unusedKey).setLastModified(unusedTime));
+    assertTrue(AngularCliSchematicsDiskCache.getCacheFile(usedKey).setLastModified(unusedTime));
+
+    // reading an entry marks it as used
+    assertNotNull(AngularCliSchematicsDiskCache.read(usedKey));
+    assertTrue(AngularCliSchematicsDiskCache.write(computeKey(false), createSchematics("service")));
+
+    assertFalse(AngularCliSchematicsDiskCache.getCacheFile(unusedKey).exists());
+    assertTrue(AngularCliSchematicsDiskCache.getCacheFile(usedKey).exists());
+  }
+
+  private static @NotNull String computeKey(boolean includeHidden) throws IOException {
+    File dir = FileUtil.createTempDirectory("angular", null);
+    createProject(dir);
+    String key = AngularCliSchematicsDiskCache.computeKey(findFile(dir), includeHidden);
+    assertNotNull(key);
+    return key;
+  }
+
+  private static void createProject(@NotNull File dir) throws IOException {
+    FileUtil.writeToFile(new File(dir, "package.json"), "{\"devDependencies\": {\"@angular/cli\": \"10.0.0\"}}");
+    FileUtil.writeToFile(new File(dir, "node_modules/@angular/cli/package.json"), "{\"version\": \"10.0.0\"}");
+    FileUtil.writeToFile(new File(dir, "yarn.lock"), "initial");
+  }
+
+  private static @NotNull VirtualFile findFile(@NotNull File dir) {
+    VirtualFile file = LocalFileSystem.getInstance().refreshAndFindFileByIoFile(dir);
+    assertNotNull(file);
+    return file;
+  }
+
+  private static @NotNull List<Schematic> createSchematics(@NotNull String name) {
+    return Collections.singletonList(new Schematic(name, null, Collections.emptyList(), Collections.emptyList()));
+  }
+
+  private static @NotNull List<String> getNames(List<Schematic> schematics) {
+    assertNotNull(schematics);
+    return ContainerUtil.map(schematics, Schematic::getName);
+  }
+
+  private static @NotNull String getLocation(@NotNull String key) {
+    return key.substring(0, key.indexOf('-'));
+  }
+}
@@ -2,8 +2,12 @@
 package org.angular2.codeInsight;
 
 import com.intellij.lang.javascript.psi.ecma6.TypeScriptClass;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiDocumentManager;
 import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
 import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.util.containers.ContainerUtil;
 import one.util.streamex.StreamEx;
@@ -16,10 +20,7 @@ import org.angular2.modules.Angular2TestModule;
 import org.angularjs.AngularTestUtil;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.Arrays;
-import java.util.Comparator;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.*;
 
 import static org.angular2.modules.Angular2TestModule.*;
 
@@ -196,6 +197,54 @@ public class ModulesTest extends Angular2CodeInsightFixtureTestCase {
                      NGXS_STORE_3_6_2_MIXED);
   }
 
+  public void testModuleGraphIncrementalUpdate() {
+    configureLink(myFixture, ANGULAR_CORE_8_2_14);
+    PsiFile componentFile = myFixture.addFileToProject("foo.component.ts",
+                                                       "import {Component} from '@angular/core';\n" +
+                                                       "@Component({selector: 'foo', template: ''})\n" +
+                                                       "export class FooComponent {}\n");
+    PsiFile fooModuleFile = myFixture.addFileToProject("foo.module.ts",
+                                                       "import {NgModule} from '@angular/core';\n" +
+                                                       "import {FooComponent} from './foo.component';\n" +
+                                                       "@NgModule({declarations: [FooComponent], exports: [FooComponent]})\n" +
+                                                       "export class FooModule {}\n");
+    PsiFile sharedModuleFile = myFixture.addFileToProject("shared.module.ts",
+                                                          "import {NgModule} from '@angular/core';\n" +
+                                                          "import {FooModule} from './foo.module';\n" +
+                                                          "@NgModule({exports: [FooModule]})\n" +
+                                                          "export class SharedModule {}\n");
+    Angular2Declaration declaration = (Angular2Declaration)Angular2EntitiesProvider.getEntity(
+      PsiTreeUtil.findChildOfType(componentFile, TypeScriptClass.class));
+    assert declaration != null;
+    assertEquals(Collections.singletonList("FooModule"), getModuleNames(
+      Angular2EntitiesProvider.getDeclarationToModuleMap(getProject()).get(declaration)));
+    assertEquals(Arrays.asList("FooModule", "SharedModule"), getModuleNames(
+      Angular2EntitiesProvider.getExportedDeclarationToModuleMap(getProject()).get(declaration)));
+
+    // re-exporting module changes
+    replaceText(sharedModuleFile, "import {NgModule} from '@angular/core';\n" +
+                                  "import {FooModule} from './foo.module';\n" +
+                                  "@NgModule({imports: [FooModule]})\n" +
+                                  "export class SharedModule {}\n");
+    assertEquals(Collections.singletonList("FooModule"), getModuleNames(
+      Angular2EntitiesProvider.getExportedDeclarationToModuleMap(getProject()).get(declaration)));
+
+    // re-exported module changes
+    replaceText(sharedModuleFile, "import {NgModule} from '@angular/core';\n" +
+                                  "import {FooModule} from './foo.module';\n" +
+                                  "@NgModule({exports: [FooModule]})\n" +
+                                  "export class SharedModule {}\n");
+    assertEquals(Arrays.asList("FooModule", "SharedModule"), getModuleNames(
+      Angular2EntitiesProvider.getExportedDeclarationToModuleMap(getProject()).get(declaration)));
+    replaceText(fooModuleFile, "import {NgModule} from '@angular/core';\n" +
+                               "import {FooComponent} from './foo.component';\n" +
+                               "@NgModule({declarations: [FooComponent]})\n" +
+                               "export class FooModule {}\n");
+    assertEquals(Collections.singletonList("FooModule"), getModuleNames(
+      Angular2EntitiesProvider.getDeclarationToModuleMap(getProject()).get(declaration)));
+    assertEmpty(Angular2EntitiesProvider.getExportedDeclarationToModuleMap(getProject()).get(declaration));
+  }
+
   private void doResolutionTest(@NotNull String directory,
                                 @NotNull String moduleFile,
                                 @NotNull String signature,
@@ -239,6 +288,23 @@ public class ModulesTest extends Angular2CodeInsightFixtureTestCase {
                    .toList());
   }
 
+  private static List<String> getModuleNames(@NotNull Collection<Angular2Module> modules) {
+    return StreamEx.of(modules)
+      .map(m -> m.getName())
+      .sorted(String::compareToIgnoreCase)
+      .toList();
+  }
+
+  private void replaceText(@NotNull PsiFile file, @NotNull String text) {
+    PsiDocumentManager documentManager = PsiDocumentManager.getInstance(getProject());
+    WriteCommandAction.runWriteCommandAction(getProject(), () -> {
+      Document document = documentManager.getDocument(file);
+      assert document != null;
+      document.setText(text);
+      documentManager.commitDocument(document);
+    });
+  }
+
   private static void printEntity(int level,
                                   @NotNull Angular2Entity entity,
                                   @NotNull StringBuilder result,
@@ -0,0 +1,39 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package org.angular2.performance;
+
+import com.intellij.codeInspection.htmlInspections.HtmlUnknownAttributeInspection;
+import com.intellij.codeInspection.htmlInspections.HtmlUnknownTagInspection;
+import com.intellij.testFramework.PlatformTestUtil;
+import org.angular2.Angular2CodeInsightFixtureTestCase;
+import org.angular2.inspections.AngularUndefinedBindingInspection;
+import org.angular2.modules.Angular2TestModule;
+
+import static org.angular2.modules.Angular2TestModule.*;
+
+public class Angular2PerformanceTest extends Angular2CodeInsightFixtureTestCase {
+
+  public void testTemplateWithManyTagsHighlighting() {
+    Angular2TestModule.configureLink(myFixture, ANGULAR_CORE_8_2_14, ANGULAR_COMMON_8_2_14, ANGULAR_FORMS_8_2_14,
+                                     ANGULAR_MATERIAL_7_2_1);
+    myFixture.enableInspections(HtmlUnknownTagInspection.class,
+                                HtmlUnknownAttributeInspection.class,
+                                AngularUndefinedBindingInspection.class);
+
+    StringBuilder template = new StringBuilder();
+    for (int i = 0; i < 200; i++) {
+      template.append("<mat-form-field appearance=\"outline\">\n")
+        .append("  <input matInput placeholder=\"Field ").append(i).append("\" [disabled]=\"false\">\n")
+        .append("</mat-form-field>\n")
+        .append("<button mat-raised-button color=\"primary\" *ngIf=\"true\">Button ").append(i).append("</button>\n")
+        .append("<mat-checkbox [checked]=\"true\">Check ").append(i).append("</mat-checkbox>\n")
+        .append("<div class=\"item\" [ngClass]=\"{'active': true}\"><span>").append(i).append("</span></div>\n");
+    }
+    myFixture.configureByText("many-tags.component.html", template.toString());
+
+    PlatformTestUtil.startPerformanceTest(getTestName(false), 30_000, () -> myFixture.doHighlighting())
+      .setup(() -> myFixture.getPsiManager().dropPsiCaches())
+      .attempts(3)
+      .usesAllCPUCores()
+      .assertTiming();
+  }
+}
@@ -133,6 +133,10 @@ public final class DartAnalysisServerService implements Disposable {
   private final Map<String, Long> myFilePathWithOverlaidContentToTimestamp = new HashMap<>();
   private final List<String> myVisibleFiles = new ArrayList<>();
   private final Set<Document> myChangedDocuments = new HashSet<>();
+  private final DartOverlayEditsCollector myOverlayEditsCollector = new DartOverlayEditsCollector();
+  // how many characters of overlaid content have been sent to the server, and how many would have been sent if full content were sent each time
+  private long myOverlayCharsSent;
+  private long myOverlayCharsIfFullContent;
   private final Alarm myUpdateFilesAlarm;
 
   @NotNull private final Queue<CompletionInfo> myCompletionInfos = new LinkedList<>();
@@ -330,6 +334,7 @@ public final class DartAnalysisServerService implements Disposable {
           debugLog.append(s).append('\n');
         }
       }
+      debugLog.append(getOverlayUpdateStatistics()).append('\n');
 
       myServerErrorHandler.handleError(message, stackTrace, isFatal, sdkVersion, debugLog.length() == 0 ? null : debugLog.toString());
     }
@@ -715,6 +720,19 @@ public final class DartAnalysisServerService implements Disposable {
         myUpdateFilesAlarm.cancelAllRequests();
         myUpdateFilesAlarm.addRequest(DartAnalysisServerService.this::updateFilesContent, UPDATE_FILES_TIMEOUT);
       }
+
+      @Override
+      public void documentChanged(@NotNull DocumentEvent e) {
+        if (myServer == null) return;
+
+        final VirtualFile file = FileDocumentManager.getInstance().getFile(e.getDocument());
+        if (file == null) return;
+
+        synchronized (myLock) {
+          myOverlayEditsCollector.documentChanged(file.getPath(), e.getOffset(), e.getOldLength(), e.getNewFragment(),
+                                                  e.getOldTimeStamp(), e.getDocument().getModificationStamp());
+        }
+      }
     };
 
     EditorFactory.getInstance().getEventMulticaster().addDocumentListener(documentListener, this);
@@ -730,6 +748,17 @@ public final class DartAnalysisServerService implements Disposable {
     return mySdkVersion;
   }
 
+  /**
+   * @return a short summary of how much overlaid content has been sent to the server during the current session,
+   * including how much would have been sent if the whole document text were sent on each change
+   */
+  @NotNull
+  public String getOverlayUpdateStatistics() {
+    synchronized (myLock) {
+      return "overlaid content: " + myOverlayCharsSent + " chars sent, " + myOverlayCharsIfFullContent + " chars as full content";
+    }
+  }
+
   @NotNull
   public Project getProject() {
     return myProject;
@@ -773,11 +802,35 @@ public final class DartAnalysisServerService implements Disposable {
     return myServerData.getHighlight(file);
   }
 
+  public boolean hasHighlight(@NotNull final VirtualFile file) {
+    return myServerData.hasHighlight(file);
+  }
+
+  /**
+   * @return highlight regions sorted by offset that intersect or touch the given range
+   */
+  @NotNull
+  public List<DartServerData.DartHighlightRegion> getHighlight(@NotNull final VirtualFile file, int startOffset, int endOffset) {
+    return myServerData.getHighlight(file, startOffset, endOffset);
+  }
+
   @NotNull
   public List<DartServerData.DartNavigationRegion> getNavigation(@NotNull final VirtualFile file) {
     return myServerData.getNavigation(file);
   }
 
+  public boolean hasNavigation(@NotNull final VirtualFile file) {
+    return myServerData.hasNavigation(file);
+  }
+
+  /**
+   * @return navigation regions sorted by offset that intersect or touch the given range
+   */
+  @NotNull
+  public List<DartServerData.DartNavigationRegion> getNavigation(@NotNull final VirtualFile file, int startOffset, int endOffset) {
+    return myServerData.getNavigation(file, startOffset, endOffset);
+  }
+
   @NotNull
   public List<DartServerData.DartOverrideMember> getOverrideMembers(@NotNull final VirtualFile file) {
     return myServerData.getOverrideMembers(file);
@@ -871,8 +924,6 @@ public final class DartAnalysisServerService implements Disposable {
   }
 
   private void doUpdateFilesContent() {
-    // may be use DocumentListener to collect deltas instead of sending the whole Document.getText() each time?
-
     AnalysisServer server = myServer;
     if (server == null) {
       return;
@@ -881,6 +932,8 @@ public final class DartAnalysisServerService implements Disposable {
     myUpdateFilesAlarm.cancelAllRequests();
 
     final Map<String, Object> filesToUpdate = new HashMap<>();
+    long charsSent = 0;
+    long charsIfFullContent = 0;
     ApplicationManager.getApplication().assertReadAccessAllowed();
     synchronized (myLock) {
       final Set<String> oldTrackedFiles = new HashSet<>(myFilePathWithOverlaidContentToTimestamp.keySet());
@@ -899,9 +952,26 @@ public final class DartAnalysisServerService implements Disposable {
           oldTrackedFiles.remove(file.getPath());
 
           final Long oldTimestamp = myFilePathWithOverlaidContentToTimestamp.get(file.getPath());
-          if (oldTimestamp == null || document.getModificationStamp() != oldTimestamp) {
-            filesToUpdate.put(FileUtil.toSystemDependentName(file.getPath()), new AddContentOverlay(document.getText()));
-            myFilePathWithOverlaidContentToTimestamp.put(file.getPath(), document.getModificationStamp());
+          final long timestamp = document.getModificationStamp();
+          if (oldTimestamp == null || timestamp != oldTimestamp) {
+            final List<SourceEdit> edits = oldTimestamp == null
+                                           ? null
+                                           : myOverlayEditsCollector.getEdits(file.getPath(), oldTimestamp, timestamp,
+                                                                              document.getTextLength());
+            if (edits != null) {
+              filesToUpdate.put(FileUtil.toSystemDependentName(file.getPath()), new ChangeContentOverlay(edits));
+              for (SourceEdit edit : edits) {
+                charsSent += edit.getReplacement().length();
+              }
+            }
+            else {
+              filesToUpdate.put(FileUtil.toSystemDependentName(file.getPath()), new AddContentOverlay(document.getText()));
+              charsSent += document.getTextLength();
+            }
+            charsIfFullContent += document.getTextLength();
+
+            myFilePathWithOverlaidContentToTimestamp.put(file.getPath(), timestamp);
+            myOverlayEditsCollector.reset(file.getPath(), timestamp);
           }
         }
       }
@@ -910,6 +980,7 @@ public final class DartAnalysisServerService implements Disposable {
       for (String oldPath : oldTrackedFiles) {
         final Long removed = myFilePathWithOverlaidContentToTimestamp.remove(oldPath);
         LOG.assertTrue(removed != null, oldPath);
+        myOverlayEditsCollector.remove(oldPath);
         filesToUpdate.put(FileUtil.toSystemDependentName(oldPath), new RemoveContentOverlay());
       }
 
@@ -926,6 +997,13 @@ public final class DartAnalysisServerService implements Disposable {
           LOG.debug("Removing overlaid content: " + StringUtil.join(oldTrackedFiles, ",\n"));
         }
       }
+
+      myOverlayCharsSent += charsSent;
+      myOverlayCharsIfFullContent += charsIfFullContent;
+    }
+
+    if (charsIfFullContent > 0 && LOG.isDebugEnabled()) {
+      LOG.debug("Overlaid content update: " + charsSent + " chars sent, " + charsIfFullContent + " chars as full content");
     }
 
     if (!filesToUpdate.isEmpty()) {
@@ -957,7 +1035,7 @@ public final class DartAnalysisServerService implements Disposable {
                                boolean hasSevereProblems,
                                int errorsHash) {
     updateFilesWithErrorsSet(filePath, hasSevereProblems, errorsHash);
-    DartProblemsView.getInstance(myProject).updateErrorsForFile(filePath, errors);
+    DartProblemsView.getInstance(myProject).updateErrorsForFile(filePath, errors, errorsHash);
   }
 
   private void updateFilesWithErrorsSet(@NotNull final String filePath, final boolean hasSevereProblems, final int errorsHash) {
@@ -2150,6 +2228,9 @@ public final class DartAnalysisServerService implements Disposable {
       myFilePathWithOverlaidContentToTimestamp.clear();
       myVisibleFiles.clear();
       myChangedDocuments.clear();
+      myOverlayEditsCollector.clear();
+      myOverlayCharsSent = 0;
+      myOverlayCharsIfFullContent = 0;
       myServerData.clearData();
       myRootsHandler.onServerStopped();
 
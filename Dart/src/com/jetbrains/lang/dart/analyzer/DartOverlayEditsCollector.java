@@ -0,0 +1,144 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.jetbrains.lang.dart.analyzer;
+
+import org.dartlang.analysis.server.protocol.SourceEdit;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects document changes of the files with overlaid content, so that the Analysis Server receives a {@code ChangeContentOverlay}
+ * with a short list of {@link SourceEdit}s instead of the whole document text on each update.
+ * <p>
+ * The edit log of a file is valid only if it forms an unbroken chain of modification stamps starting at the stamp of the content that
+ * has been sent to the server last time. Otherwise the caller must fall back to {@code AddContentOverlay}.
+ * <p>
+ * Not thread-safe, callers synchronize access.
+ */
+final class DartOverlayEditsCollector {
+  // more edits than this is not worth sending, full content is sent instead
+  static final int MAX_EDITS_PER_UPDATE = 100;
+
+  private static final class EditLog {
+    private final long myBaseStamp;
+    private long myLastStamp;
+    private boolean myBroken;
+    private final List<Edit> myEdits = new ArrayList<>();
+
+    private EditLog(long baseStamp) {
+      myBaseStamp = baseStamp;
+      myLastStamp = baseStamp;
+    }
+  }
+
+  private static final class Edit {
+    private final int myOffset;
+    private final int myLength;
+    private final StringBuilder myReplacement;
+
+    private Edit(int offset, int length, @NotNull CharSequence replacement) {
+      myOffset = offset;
+      myLength = length;
+      myReplacement = new StringBuilder(replacement);
+    }
+  }
+
+  private final Map<String, EditLog> myFilePathToEditLog = new HashMap<>();
+
+  /**
+   * Starts a new edit log for the file which content with the given modification stamp has just been sent to the server.
+   */
+  void reset(@NotNull String filePath, long sentStamp) {
+    myFilePathToEditLog.put(filePath, new EditLog(sentStamp));
+  }
+
+  void remove(@NotNull String filePath) {
+    myFilePathToEditLog.remove(filePath);
+  }
+
+  void clear() {
+    myFilePathToEditLog.clear();
+  }
+
+  /**
+   * Records a document change. Changes of files without an edit log are ignored: their content is not overlaid yet, so full content
+   * will be sent anyway.
+   */
+  void documentChanged(@NotNull String filePath,
+                       int offset,
+                       int oldLength,
+                       @NotNull CharSequence newFragment,
+                       long oldStamp,
+                       long newStamp) {
+    final EditLog log = myFilePathToEditLog.get(filePath);
+    if (log == null) return;
+
+    if (log.myBroken || log.myLastStamp != oldStamp || log.myEdits.size() > MAX_EDITS_PER_UPDATE) {
+      log.myBroken = true;
+      return;
+    }
+
+    log.myLastStamp = newStamp;
+
+    if (!log.myEdits.isEmpty() && coalesce(log.myEdits.get(log.myEdits.size() - 1), offset, oldLength, newFragment)) {
+      return;
+    }
+
+    log.myEdits.add(new Edit(offset, oldLength, newFragment));
+  }
+
+  /**
+   * Tries to merge the new change into the previous edit; handles typing and backspacing at the end of the previously inserted text.
+   */
+  private static boolean coalesce(@NotNull Edit prev, int offset, int oldLength, @NotNull CharSequence newFragment) {
+    final int prevEnd = prev.myOffset + prev.myReplacement.length();
+
+    // typing right after the previous edit
+    if (oldLength == 0 && offset == prevEnd) {
+      prev.myReplacement.append(newFragment);
+      return true;
+    }
+
+    // deleting the tail of the previously inserted text, possibly replacing it with new text
+    if (offset >= prev.myOffset && offset + oldLength == prevEnd) {
+      prev.myReplacement.setLength(offset - prev.myOffset);
+      prev.myReplacement.append(newFragment);
+      return true;
+    }
+
+    return false;
+  }
+
+  /**
+   * @return edits that transform the content sent to the server last time into the document content with the given stamp,
+   * or {@code null} if the log is lost, broken or too fragmented, in which case the whole content should be sent.
+   */
+  @Nullable
+  List<SourceEdit> getEdits(@NotNull String filePath, long sentStamp, long currentStamp, int documentLength) {
+    final EditLog log = myFilePathToEditLog.get(filePath);
+    if (log == null ||
+        log.myBroken ||
+        log.myBaseStamp != sentStamp ||
+        log.myLastStamp != currentStamp ||
+        log.myEdits.isEmpty() ||
+        log.myEdits.size() > MAX_EDITS_PER_UPDATE) {
+      return null;
+    }
+
+    int replacementLength = 0;
+    final List<SourceEdit> result = new ArrayList<>(log.myEdits.size());
+    for (Edit edit : log.myEdits) {
+      replacementLength += edit.myReplacement.length();
+      result.add(new SourceEdit(edit.myOffset, edit.myLength, edit.myReplacement.toString(), null));
+    }
+
+    // sending edits is pointless if they are about as big as the document itself
+    if (replacementLength > documentLength / 2) return null;
+
+    return result;
+  }
+}
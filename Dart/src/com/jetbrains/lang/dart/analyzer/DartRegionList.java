@@ -0,0 +1,262 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.jetbrains.lang.dart.analyzer;
+
+import com.jetbrains.lang.dart.analyzer.DartServerData.DartRegion;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Regions of a single file sorted by offset, kept in sync with document changes without walking all regions on each keystroke.
+ * <p>
+ * Offsets are stored the gap-buffer way: regions before {@code myGapIndex} keep their real offsets, regions starting from
+ * {@code myGapIndex} need {@code myGapDelta} to be added. A document change moves the gap to the changed place (which costs only
+ * as many steps as there are regions between the previous and the current editing place) and then shifts the whole tail at once by
+ * adjusting {@code myGapDelta}. Only regions that may be touched by the change are visited, their number is limited by the length of
+ * the longest region.
+ * <p>
+ * Document changes are also recorded in a compact log, so that {@link DartServerData.DartNavigationTarget}s pointing to the same file
+ * can lazily catch up with them when their offset is requested.
+ */
+final class DartRegionList<T extends DartRegion> {
+  private final List<T> myRegions;
+  private int myGapIndex;
+  private int myGapDelta;
+  private int myMaxLength;
+
+  private final boolean myTrackEdits;
+  private int[] myEditOffsets = new int[0];
+  private int[] myEditDeltas = new int[0];
+  private int myEditCount;
+
+  DartRegionList(@NotNull List<T> regions) {
+    this(regions, false);
+  }
+
+  /**
+   * @param trackEdits whether document changes should be recorded for {@link #applyEdits(int, int)}
+   */
+  DartRegionList(@NotNull List<T> regions, boolean trackEdits) {
+    myTrackEdits = trackEdits;
+    myRegions = new ArrayList<>(regions);
+    myRegions.sort(Comparator.comparingInt(DartRegion::getOffset));
+    myGapIndex = myRegions.size();
+    for (T region : myRegions) {
+      myMaxLength = Math.max(myMaxLength, region.myLength);
+    }
+  }
+
+  synchronized int size() {
+    return myRegions.size();
+  }
+
+  synchronized boolean isEmpty() {
+    return myRegions.isEmpty();
+  }
+
+  /**
+   * @return a snapshot of all regions sorted by offset
+   */
+  @NotNull
+  synchronized List<T> getAll() {
+    moveGap(myRegions.size());
+    return new ArrayList<>(myRegions);
+  }
+
+  /**
+   * @return a snapshot of the regions sorted by offset that intersect or touch the [startOffset, endOffset] range
+   */
+  @NotNull
+  synchronized List<T> getInRange(int startOffset, int endOffset) {
+    final int from = findFirstTouchedIndex(startOffset, firstIndexWithOffsetNotLessThan(startOffset));
+    final int to = firstIndexWithOffsetNotLessThan(endOffset + 1);
+    if (from >= to) return new ArrayList<>();
+
+    moveGap(to);
+
+    final List<T> result = new ArrayList<>(to - from);
+    for (int i = from; i < to; i++) {
+      final T region = myRegions.get(i);
+      if (region.myOffset + region.myLength >= startOffset) {
+        result.add(region);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Shifts untouched regions, deletes touched.
+   *
+   * @return {@code true} if at least one region has been updated or deleted, {@code false} if nothing done at all
+   */
+  synchronized boolean updateDeletingTouched(int eventOffset, int deltaLength) {
+    recordEdit(eventOffset, deltaLength);
+    if (deltaLength == 0 || myRegions.isEmpty()) return false;
+
+    // regions starting at or after this offset are shifted
+    final int shiftStart = deltaLength > 0 ? eventOffset : eventOffset - deltaLength;
+    final int sizeBefore = myRegions.size();
+    final int shiftIndex = prepareShift(shiftStart);
+
+    for (int i = shiftIndex - 1; i >= 0; i--) {
+      final T region = myRegions.get(i);
+      if (region.myOffset <= eventOffset - myMaxLength) break;
+      if (eventOffset < region.myOffset + region.myLength) {
+        removeBeforeGap(i);
+      }
+    }
+
+    final boolean shifted = myGapIndex < myRegions.size();
+    myGapDelta += deltaLength;
+    return shifted || myRegions.size() != sizeBefore;
+  }
+
+  /**
+   * Shifts untouched regions, updates the length of touched regions if possible, otherwise deletes them.
+   */
+  synchronized void updateUpdatingTouched(int eventOffset, int deltaLength) {
+    recordEdit(eventOffset, deltaLength);
+    if (deltaLength == 0 || myRegions.isEmpty()) return;
+
+    final int shiftStart = deltaLength > 0 ? eventOffset : eventOffset - deltaLength;
+    final int shiftIndex = prepareShift(shiftStart);
+
+    for (int i = shiftIndex - 1; i >= 0; i--) {
+      final T region = myRegions.get(i);
+      if (region.myOffset <= eventOffset - myMaxLength) break;
+
+      final int regionRightOffset = region.myOffset + region.myLength;
+      if (deltaLength > 0) {
+        // Something was typed. Update touched.
+        if (eventOffset < regionRightOffset) {
+          region.myLength += deltaLength;
+          myMaxLength = Math.max(myMaxLength, region.myLength);
+        }
+      }
+      else {
+        // Some text was deleted. Delete or update touched.
+        final int eventRightOffset = eventOffset - deltaLength;
+        if (region.myOffset <= eventOffset && eventRightOffset <= regionRightOffset && region.myLength != -deltaLength) {
+          region.myLength += deltaLength;
+        }
+        else if (eventOffset < regionRightOffset) {
+          removeBeforeGap(i);
+        }
+      }
+    }
+
+    myGapDelta += deltaLength;
+  }
+
+  /**
+   * @param offset         offset in the document as it was after {@code appliedEdits} document changes recorded in this list
+   * @param appliedEdits   number of recorded document changes that have been already taken into account in the {@code offset}
+   * @return offset that takes into account all recorded document changes
+   */
+  synchronized int applyEdits(int offset, int appliedEdits) {
+    for (int i = appliedEdits; i < myEditCount; i++) {
+      if (offset >= myEditOffsets[i]) {
+        offset += myEditDeltas[i];
+      }
+    }
+    return offset;
+  }
+
+  synchronized int getEditCount() {
+    return myEditCount;
+  }
+
+  private void recordEdit(int eventOffset, int deltaLength) {
+    if (!myTrackEdits || deltaLength == 0) return;
+
+    if (myEditCount == myEditOffsets.length) {
+      final int newLength = Math.max(8, myEditCount * 2);
+      final int[] offsets = new int[newLength];
+      final int[] deltas = new int[newLength];
+      System.arraycopy(myEditOffsets, 0, offsets, 0, myEditCount);
+      System.arraycopy(myEditDeltas, 0, deltas, 0, myEditCount);
+      myEditOffsets = offsets;
+      myEditDeltas = deltas;
+    }
+    myEditOffsets[myEditCount] = eventOffset;
+    myEditDeltas[myEditCount] = deltaLength;
+    myEditCount++;
+  }
+
+  /**
+   * Moves the gap to the first region that starts at or after {@code shiftStart}, so that all regions before the gap have real offsets.
+   *
+   * @return the gap index
+   */
+  private int prepareShift(int shiftStart) {
+    final int index = firstIndexWithOffsetNotLessThan(shiftStart);
+    moveGap(index);
+    return index;
+  }
+
+  private void removeBeforeGap(int index) {
+    myRegions.remove(index);
+    myGapIndex--;
+  }
+
+  private int getRealOffset(int index) {
+    final int offset = myRegions.get(index).myOffset;
+    return index < myGapIndex ? offset : offset + myGapDelta;
+  }
+
+  private int firstIndexWithOffsetNotLessThan(int offset) {
+    int low = 0;
+    int high = myRegions.size();
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (getRealOffset(mid) < offset) {
+        low = mid + 1;
+      }
+      else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Regions are sorted by start offset only, so a region that starts before {@code offset} may still end after it.
+   * Such regions can start not earlier than {@code offset - myMaxLength}.
+   */
+  private int findFirstTouchedIndex(int offset, int index) {
+    int result = index;
+    for (int i = index - 1; i >= 0; i--) {
+      final int regionOffset = getRealOffset(i);
+      if (regionOffset < offset - myMaxLength) break;
+      if (regionOffset + myRegions.get(i).myLength >= offset) {
+        result = i;
+      }
+    }
+    return result;
+  }
+
+  private void moveGap(int index) {
+    if (myGapDelta == 0) {
+      myGapIndex = index;
+      return;
+    }
+
+    if (index < myGapIndex) {
+      for (int i = index; i < myGapIndex; i++) {
+        myRegions.get(i).myOffset -= myGapDelta;
+      }
+    }
+    else {
+      for (int i = myGapIndex; i < index; i++) {
+        myRegions.get(i).myOffset += myGapDelta;
+      }
+    }
+
+    myGapIndex = index;
+    if (myGapIndex == myRegions.size()) {
+      myGapDelta = 0;
+    }
+  }
+}
@@ -31,11 +31,11 @@ public final class DartServerData {
   private final EventDispatcher<OutlineListener> myEventDispatcher = EventDispatcher.create(OutlineListener.class);
 
   private final Map<String, List<DartError>> myErrorData = Collections.synchronizedMap(new HashMap<>());
-  private final Map<String, List<DartHighlightRegion>> myHighlightData = Collections.synchronizedMap(new HashMap<>());
-  private final Map<String, List<DartNavigationRegion>> myNavigationData = Collections.synchronizedMap(new HashMap<>());
-  private final Map<String, List<DartOverrideMember>> myOverrideData = Collections.synchronizedMap(new HashMap<>());
-  private final Map<String, List<DartRegion>> myImplementedClassData = Collections.synchronizedMap(new HashMap<>());
-  private final Map<String, List<DartRegion>> myImplementedMemberData = Collections.synchronizedMap(new HashMap<>());
+  private final Map<String, DartRegionList<DartHighlightRegion>> myHighlightData = Collections.synchronizedMap(new HashMap<>());
+  private final Map<String, DartRegionList<DartNavigationRegion>> myNavigationData = Collections.synchronizedMap(new HashMap<>());
+  private final Map<String, DartRegionList<DartOverrideMember>> myOverrideData = Collections.synchronizedMap(new HashMap<>());
+  private final Map<String, DartRegionList<DartRegion>> myImplementedClassData = Collections.synchronizedMap(new HashMap<>());
+  private final Map<String, DartRegionList<DartRegion>> myImplementedMemberData = Collections.synchronizedMap(new HashMap<>());
   private final Map<String, Outline> myOutlineData = Collections.synchronizedMap(new HashMap<>());
   private final Map<Integer, AvailableSuggestionSet> myAvailableSuggestionSetMap = Collections.synchronizedMap(new HashMap<>());
   private final Map<String, Map<String, Map<String, Set<String>>>> myExistingImports = Collections.synchronizedMap(new HashMap<>());
@@ -99,7 +99,7 @@ public final class DartServerData {
       }
     }
 
-    myHighlightData.put(filePath, newRegions);
+    myHighlightData.put(filePath, new DartRegionList<>(newRegions));
     forceFileAnnotation(file, false);
   }
 
@@ -116,7 +116,15 @@ public final class DartServerData {
       }
     }
 
-    myNavigationData.put(filePath, newRegions);
+    final DartRegionList<DartNavigationRegion> regionList = new DartRegionList<>(newRegions, true);
+    for (DartNavigationRegion region : newRegions) {
+      for (DartNavigationTarget target : region.getTargets()) {
+        if (target.myFile.equals(filePath)) {
+          target.myFileRegions = regionList;
+        }
+      }
+    }
+    myNavigationData.put(filePath, regionList);
     forceFileAnnotation(file, true);
   }
 
@@ -174,7 +182,7 @@ public final class DartServerData {
       }
     }
 
-    myOverrideData.put(filePath, newOverrides);
+    myOverrideData.put(filePath, new DartRegionList<>(newOverrides));
     forceFileAnnotation(file, false);
   }
 
@@ -200,16 +208,16 @@ public final class DartServerData {
     }
 
     boolean hasChanges = false;
-    final List<DartRegion> oldClasses = myImplementedClassData.get(filePath);
-    if (oldClasses == null || !oldClasses.equals(newImplementedClasses)) {
+    final DartRegionList<DartRegion> oldClasses = myImplementedClassData.get(filePath);
+    if (oldClasses == null || !oldClasses.getAll().equals(newImplementedClasses)) {
       hasChanges = true;
-      myImplementedClassData.put(filePath, newImplementedClasses);
+      myImplementedClassData.put(filePath, new DartRegionList<>(newImplementedClasses));
     }
 
-    final List<DartRegion> oldMembers = myImplementedMemberData.get(filePath);
-    if (oldMembers == null || !oldMembers.equals(newImplementedMembers)) {
+    final DartRegionList<DartRegion> oldMembers = myImplementedMemberData.get(filePath);
+    if (oldMembers == null || !oldMembers.getAll().equals(newImplementedMembers)) {
       hasChanges = true;
-      myImplementedMemberData.put(filePath, newImplementedMembers);
+      myImplementedMemberData.put(filePath, new DartRegionList<>(newImplementedMembers));
     }
 
     if (hasChanges) {
@@ -239,34 +247,81 @@ public final class DartServerData {
     return errors != null ? errors : Collections.emptyList();
   }
 
+  /**
+   * @return all highlight regions of the file sorted by offset; prefer {@link #getHighlight(VirtualFile, int, int)} if only a part of the
+   * file is of interest
+   */
   @NotNull
   List<DartHighlightRegion> getHighlight(@NotNull final VirtualFile file) {
-    final List<DartHighlightRegion> regions = myHighlightData.get(file.getPath());
-    return regions != null ? regions : Collections.emptyList();
+    return getAll(myHighlightData, file);
   }
 
+  boolean hasHighlight(@NotNull final VirtualFile file) {
+    return hasRegions(myHighlightData, file);
+  }
+
+  /**
+   * @return highlight regions sorted by offset that intersect or touch the given range
+   */
+  @NotNull
+  List<DartHighlightRegion> getHighlight(@NotNull final VirtualFile file, int startOffset, int endOffset) {
+    return getInRange(myHighlightData, file, startOffset, endOffset);
+  }
+
+  /**
+   * @return all navigation regions of the file sorted by offset; prefer {@link #getNavigation(VirtualFile, int, int)} if only a part of the
+   * file is of interest
+   */
   @NotNull
   List<DartNavigationRegion> getNavigation(@NotNull final VirtualFile file) {
-    final List<DartNavigationRegion> regions = myNavigationData.get(file.getPath());
-    return regions != null ? regions : Collections.emptyList();
+    return getAll(myNavigationData, file);
+  }
+
+  boolean hasNavigation(@NotNull final VirtualFile file) {
+    return hasRegions(myNavigationData, file);
+  }
+
+  /**
+   * @return navigation regions sorted by offset that intersect or touch the given range
+   */
+  @NotNull
+  List<DartNavigationRegion> getNavigation(@NotNull final VirtualFile file, int startOffset, int endOffset) {
+    return getInRange(myNavigationData, file, startOffset, endOffset);
   }
 
   @NotNull
   List<DartOverrideMember> getOverrideMembers(@NotNull final VirtualFile file) {
-    final List<DartOverrideMember> regions = myOverrideData.get(file.getPath());
-    return regions != null ? regions : Collections.emptyList();
+    return getAll(myOverrideData, file);
   }
 
   @NotNull
   List<DartRegion> getImplementedClasses(@NotNull final VirtualFile file) {
-    final List<DartRegion> classes = myImplementedClassData.get(file.getPath());
-    return classes != null ? classes : Collections.emptyList();
+    return getAll(myImplementedClassData, file);
   }
 
   @NotNull
   List<DartRegion> getImplementedMembers(@NotNull final VirtualFile file) {
-    final List<DartRegion> classes = myImplementedMemberData.get(file.getPath());
-    return classes != null ? classes : Collections.emptyList();
+    return getAll(myImplementedMemberData, file);
+  }
+
+  @NotNull
+  private static <T extends DartRegion> List<T> getAll(@NotNull Map<String, DartRegionList<T>> map, @NotNull VirtualFile file) {
+    final DartRegionList<T> regions = map.get(file.getPath());
+    return regions != null ? regions.getAll() : Collections.emptyList();
+  }
+
+  private static <T extends DartRegion> boolean hasRegions(@NotNull Map<String, DartRegionList<T>> map, @NotNull VirtualFile file) {
+    final DartRegionList<T> regions = map.get(file.getPath());
+    return regions != null && !regions.isEmpty();
+  }
+
+  @NotNull
+  private static <T extends DartRegion> List<T> getInRange(@NotNull Map<String, DartRegionList<T>> map,
+                                                           @NotNull VirtualFile file,
+                                                           int startOffset,
+                                                           int endOffset) {
+    final DartRegionList<T> regions = map.get(file.getPath());
+    return regions != null ? regions.getInRange(startOffset, endOffset) : Collections.emptyList();
   }
 
   @Nullable
@@ -373,23 +428,35 @@ public final class DartServerData {
     final String filePath = file.getPath();
     myFilePathsWithUnsentChanges.add(filePath);
 
-    boolean regionsUpdated = updateRegionsDeletingTouched(filePath, myErrorData.get(filePath), e);
+    boolean regionsUpdated = updateRegionsDeletingTouched(myErrorData.get(filePath), e);
     if (regionsUpdated) {
       myFilePathsWithInaccurateErrorInfo.add(filePath);
     }
-    updateRegionsUpdatingTouched(myHighlightData.get(filePath), e);
-    updateRegionsDeletingTouched(filePath, myNavigationData.get(filePath), e);
-    updateRegionsDeletingTouched(filePath, myOverrideData.get(filePath), e);
-    updateRegionsDeletingTouched(filePath, myImplementedClassData.get(filePath), e);
-    updateRegionsDeletingTouched(filePath, myImplementedMemberData.get(filePath), e);
+
+    final int eventOffset = e.getOffset();
+    final int deltaLength = e.getNewLength() - e.getOldLength();
+    final DartRegionList<DartHighlightRegion> highlightRegions = myHighlightData.get(filePath);
+    if (highlightRegions != null) highlightRegions.updateUpdatingTouched(eventOffset, deltaLength);
+    // navigation targets in this file catch up with this change lazily, see DartNavigationTarget.getOffset()
+    updateRegionsDeletingTouched(myNavigationData.get(filePath), eventOffset, deltaLength);
+    updateRegionsDeletingTouched(myOverrideData.get(filePath), eventOffset, deltaLength);
+    updateRegionsDeletingTouched(myImplementedClassData.get(filePath), eventOffset, deltaLength);
+    updateRegionsDeletingTouched(myImplementedMemberData.get(filePath), eventOffset, deltaLength);
     // A bit outdated outline data is not a big problem, updated data will come shortly
   }
 
+  private static void updateRegionsDeletingTouched(@Nullable final DartRegionList<?> regions, int eventOffset, int deltaLength) {
+    if (regions != null) {
+      regions.updateDeletingTouched(eventOffset, deltaLength);
+    }
+  }
+
   /**
+   * Errors are kept in a plain list because they are updated for all files, not only for the ones open in editors.
+   *
    * @return {@code true} if at least one region has been updated or deleted, {@code false} if nothing done at all
    */
-  private static boolean updateRegionsDeletingTouched(@NotNull final String filePath,
-                                                      @Nullable final List<? extends DartRegion> regions,
+  private static boolean updateRegionsDeletingTouched(@Nullable final List<? extends DartRegion> regions,
                                                       @NotNull final DocumentEvent e) {
     if (regions == null) return false;
 
@@ -403,15 +470,6 @@ public final class DartServerData {
     while (iterator.hasNext()) {
       final DartRegion region = iterator.next();
 
-      if (region instanceof DartNavigationRegion) {
-        // may be we'd better delete target touched by editing?
-        for (DartNavigationTarget target : ((DartNavigationRegion)region).getTargets()) {
-          if (target.myFile.equals(filePath) && target.myConvertedOffset >= eventOffset) {
-            target.myConvertedOffset += deltaLength;
-          }
-        }
-      }
-
       if (deltaLength > 0) {
         // Something was typed. Shift untouched regions, delete touched.
         if (eventOffset <= region.myOffset) {
@@ -441,44 +499,6 @@ public final class DartServerData {
     return regionUpdated;
   }
 
-  private static void updateRegionsUpdatingTouched(@Nullable final List<? extends DartRegion> regions,
-                                                   @NotNull final DocumentEvent e) {
-    if (regions == null) return;
-
-    final int eventOffset = e.getOffset();
-    final int deltaLength = e.getNewLength() - e.getOldLength();
-
-    final Iterator<? extends DartRegion> iterator = regions.iterator();
-    while (iterator.hasNext()) {
-      final DartRegion region = iterator.next();
-
-      if (deltaLength > 0) {
-        // Something was typed. Shift untouched regions, update touched.
-        if (eventOffset <= region.myOffset) {
-          region.myOffset += deltaLength;
-        }
-        else if (eventOffset < region.myOffset + region.myLength) {
-          region.myLength += deltaLength;
-        }
-      }
-      else if (deltaLength < 0) {
-        // Some text was deleted. Shift untouched regions, delete or update touched.
-        final int eventRightOffset = eventOffset - deltaLength;
-        final int regionRightOffset = region.myOffset + region.myLength;
-
-        if (eventRightOffset <= region.myOffset) {
-          region.myOffset += deltaLength;
-        }
-        else if (region.myOffset <= eventOffset && eventRightOffset <= regionRightOffset && region.myLength != -deltaLength) {
-          region.myLength += deltaLength;
-        }
-        else if (eventOffset < regionRightOffset) {
-          iterator.remove();
-        }
-      }
-    }
-  }
-
   public static class DartRegion {
     protected int myOffset;
     protected int myLength;
@@ -605,7 +625,12 @@ public final class DartServerData {
     private final int myOriginalOffset;
     private final String myKind;
 
-    private int myConvertedOffset = -1;
+    // offset converted for the document together with the number of document edits already applied to it; published as a whole,
+    // so that concurrent callers never see an offset paired with the wrong edit count
+    @Nullable private volatile ConvertedOffset myConvertedOffset;
+
+    // set for targets in the file which navigation regions belong to, used to shift the offset according to document changes
+    @Nullable private DartRegionList<DartNavigationRegion> myFileRegions;
 
     private DartNavigationTarget(@NotNull final NavigationTarget target) {
       myFile = FileUtil.toSystemIndependentName(target.getFile().trim()).intern();
@@ -618,10 +643,24 @@ public final class DartServerData {
     }
 
     public int getOffset(@NotNull final Project project, @Nullable final VirtualFile file) {
-      if (myConvertedOffset == -1) {
-        myConvertedOffset = DartAnalysisServerService.getInstance(project).getConvertedOffset(file, myOriginalOffset);
+      final DartRegionList<DartNavigationRegion> fileRegions = myFileRegions;
+      ConvertedOffset converted = myConvertedOffset;
+      if (converted == null) {
+        final int offset = DartAnalysisServerService.getInstance(project).getConvertedOffset(file, myOriginalOffset);
+        converted = new ConvertedOffset(offset, fileRegions != null ? fileRegions.getEditCount() : 0);
+        myConvertedOffset = converted;
       }
-      return myConvertedOffset;
+      else if (fileRegions != null) {
+        // may be we'd better ignore target touched by editing?
+        synchronized (fileRegions) {
+          final int editCount = fileRegions.getEditCount();
+          if (editCount != converted.myAppliedEdits) {
+            converted = new ConvertedOffset(fileRegions.applyEdits(converted.myOffset, converted.myAppliedEdits), editCount);
+            myConvertedOffset = converted;
+          }
+        }
+      }
+      return converted.myOffset;
     }
 
     public String getKind() {
@@ -629,6 +668,16 @@ public final class DartServerData {
     }
   }
 
+  private static final class ConvertedOffset {
+    private final int myOffset;
+    private final int myAppliedEdits;
+
+    private ConvertedOffset(final int offset, final int appliedEdits) {
+      myOffset = offset;
+      myAppliedEdits = appliedEdits;
+    }
+  }
+
   public static final class DartOverrideMember extends DartRegion {
     @Nullable private final OverriddenMember mySuperclassMember;
     @Nullable private final List<OverriddenMember> myInterfaceMembers;
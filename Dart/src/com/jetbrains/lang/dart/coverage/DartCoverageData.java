@@ -1,78 +1,165 @@
 // Copyright 2000-2019 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
 package com.jetbrains.lang.dart.coverage;
 
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.intellij.concurrency.JobLauncher;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
+/**
+ * Line hits merged by source URI. The coverage JSON produced by {@code coverage:collect_coverage} may take hundreds of megabytes,
+ * so it is read in a streaming way, and the hits of each file are kept in a primitive array.
+ * <pre>
+ * {"type": "CodeCoverage", "coverage": [{"source": "package:foo/foo.dart", "hits": [line, hitCount, line, hitCount, ...]}, ...]}
+ * </pre>
+ * A line may also be given as a {@code "firstLine-lastLine"} range.
+ */
 public class DartCoverageData {
-  @Nullable private List<DartFileCoverageData> coverage;
+  private final Map<String, DartLineHits> mySourceToLineHits = new HashMap<>();
 
-  @Nullable
-  public List<DartFileCoverageData> getCoverage() {
-    return coverage;
+  @NotNull
+  public static DartCoverageData read(@NotNull Reader reader) throws IOException {
+    final DartCoverageData data = new DartCoverageData();
+    try (JsonReader jsonReader = new JsonReader(reader)) {
+      data.readCoverage(jsonReader);
+    }
+    catch (IllegalStateException | NumberFormatException e) {
+      throw new JsonParseException(e);
+    }
+    return data;
   }
 
-  public void setCoverage(@Nullable List<DartFileCoverageData> coverage) {
-    this.coverage = coverage;
+  @NotNull
+  public static DartCoverageData read(@NotNull File file) throws IOException {
+    return read(new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)));
   }
 
+  /**
+   * Reads several coverage files concurrently and merges them. Files that can't be read are reported to {@code errorHandler}
+   * and skipped.
+   */
   @NotNull
-  public Map<String, SortedMap<Integer, Integer>> getMergedDartFileCoverageData() {
-    Map<String, SortedMap<Integer, Integer>> mergedCoverageData = new HashMap<>();
-    List<DartFileCoverageData> coverageData = getCoverage();
-    if (coverageData != null) {
-      for (DartFileCoverageData item : coverageData) {
-        String source = item.getSource();
-        if (source == null) {
-          continue;
-        }
-        if (!mergedCoverageData.containsKey(source)) {
-          mergedCoverageData.put(source, new TreeMap<>());
-        }
+  public static DartCoverageData readAndMerge(@NotNull List<File> files,
+                                              @Nullable ProgressIndicator indicator,
+                                              @NotNull java.util.function.BiConsumer<? super File, ? super Exception> errorHandler) {
+    final Queue<DartCoverageData> results = new ConcurrentLinkedQueue<>();
+    JobLauncher.getInstance().invokeConcurrentlyUnderProgress(files, indicator, file -> {
+      try {
+        results.add(read(file));
+      }
+      catch (IOException | JsonParseException e) {
+        errorHandler.accept(file, e);
+      }
+      return true;
+    });
 
-        SortedMap<Integer, Integer> fileData = mergedCoverageData.get(source);
-        List<Integer> hits = item.getHits();
-        if (hits == null) {
-          continue;
-        }
-        for (int i = 0; i < hits.size(); i += 2) {
-          Integer lineNumber = hits.get(i);
-          Integer hitCount = hits.get(i + 1);
-          if (!fileData.containsKey(lineNumber)) {
-            fileData.put(lineNumber, 0);
-          }
-
-          fileData.put(lineNumber, fileData.get(lineNumber) + hitCount);
+    final DartCoverageData merged = new DartCoverageData();
+    for (DartCoverageData data : results) {
+      merged.mergeWith(data);
+    }
+    return merged;
+  }
+
+  private void readCoverage(@NotNull JsonReader reader) throws IOException {
+    reader.beginObject();
+    while (reader.hasNext()) {
+      if ("coverage".equals(reader.nextName()) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+        reader.beginArray();
+        while (reader.hasNext()) {
+          ProgressManager.checkCanceled();
+          readFileCoverage(reader);
         }
+        reader.endArray();
+      }
+      else {
+        reader.skipValue();
       }
     }
-
-    return mergedCoverageData;
+    reader.endObject();
   }
-}
 
+  private void readFileCoverage(@NotNull JsonReader reader) throws IOException {
+    if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+      reader.skipValue();
+      return;
+    }
+
+    String source = null;
+    DartLineHits lineHits = null;
 
-class DartFileCoverageData {
-  @Nullable private String source;
-  @Nullable private List<Integer> hits;
+    reader.beginObject();
+    while (reader.hasNext()) {
+      final String name = reader.nextName();
+      if ("source".equals(name) && reader.peek() == JsonToken.STRING) {
+        source = reader.nextString();
+      }
+      else if ("hits".equals(name) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+        // hits usually follow the source, so they can be added directly to the merged data
+        if (lineHits == null) {
+          lineHits = source != null ? getOrCreateLineHits(source) : new DartLineHits();
+        }
+        readHits(reader, lineHits);
+      }
+      else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
 
-  @Nullable
-  public String getSource() {
-    return source;
+    if (source == null) return;
+
+    final DartLineHits merged = getOrCreateLineHits(source);
+    if (lineHits != null && lineHits != merged) {
+      merged.addAll(lineHits);
+    }
   }
 
-  public void setSource(@Nullable String source) {
-    this.source = source;
+  private static void readHits(@NotNull JsonReader reader, @NotNull DartLineHits lineHits) throws IOException {
+    reader.beginArray();
+    while (reader.hasNext()) {
+      if (reader.peek() == JsonToken.STRING) {
+        final String range = reader.nextString();
+        final int dashIndex = range.indexOf('-');
+        final int firstLine = Integer.parseInt(dashIndex < 0 ? range : range.substring(0, dashIndex));
+        final int lastLine = dashIndex < 0 ? firstLine : Integer.parseInt(range.substring(dashIndex + 1));
+        final int hits = reader.nextInt();
+        for (int line = firstLine; line <= lastLine; line++) {
+          lineHits.add(line, hits);
+        }
+      }
+      else {
+        final int line = reader.nextInt();
+        lineHits.add(line, reader.nextInt());
+      }
+    }
+    reader.endArray();
+  }
+
+  @NotNull
+  private DartLineHits getOrCreateLineHits(@NotNull String source) {
+    return mySourceToLineHits.computeIfAbsent(source, s -> new DartLineHits());
   }
 
-  @Nullable
-  public List<Integer> getHits() {
-    return hits;
+  public void mergeWith(@NotNull DartCoverageData other) {
+    for (Map.Entry<String, DartLineHits> entry : other.mySourceToLineHits.entrySet()) {
+      getOrCreateLineHits(entry.getKey()).addAll(entry.getValue());
+    }
   }
 
-  public void setHits(@Nullable List<Integer> hits) {
-    this.hits = hits;
+  /**
+   * @return line hits by source URI
+   */
+  @NotNull
+  Map<String, DartLineHits> getMergedDartFileCoverageData() {
+    return mySourceToLineHits;
   }
-}
\ No newline at end of file
+}
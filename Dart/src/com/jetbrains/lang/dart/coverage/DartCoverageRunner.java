@@ -1,8 +1,7 @@
 // Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
 package com.jetbrains.lang.dart.coverage;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonSyntaxException;
+import com.google.gson.JsonParseException;
 import com.intellij.coverage.CoverageEngine;
 import com.intellij.coverage.CoverageRunner;
 import com.intellij.coverage.CoverageSuite;
@@ -20,13 +19,10 @@ import com.jetbrains.lang.dart.analyzer.DartAnalysisServerService;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Map;
-import java.util.SortedMap;
 
 public class DartCoverageRunner extends CoverageRunner {
   private static final String ID = "DartCoverageRunner";
@@ -86,14 +82,9 @@ public class DartCoverageRunner extends CoverageRunner {
     final ProjectData projectData = new ProjectData();
 
     try {
-      DartCoverageData data =
-        new Gson().fromJson(new BufferedReader(new FileReader(sessionDataFile, StandardCharsets.UTF_8)), DartCoverageData.class);
-      if (data == null) {
-        LOG.warn("Coverage file does not contain valid data.");
-        return null;
-      }
+      final DartCoverageData data = readCoverageData(sessionDataFile);
 
-      for (Map.Entry<String, SortedMap<Integer, Integer>> entry : data.getMergedDartFileCoverageData().entrySet()) {
+      for (Map.Entry<String, DartLineHits> entry : data.getMergedDartFileCoverageData().entrySet()) {
         ProgressManager.checkCanceled();
 
         String filePath = getFileForUri(project, contextId, entry.getKey());
@@ -101,22 +92,25 @@ public class DartCoverageRunner extends CoverageRunner {
           // File is not found.
           continue;
         }
-        SortedMap<Integer, Integer> lineHits = entry.getValue();
+        DartLineHits lineHits = entry.getValue();
         ClassData classData = projectData.getOrCreateClassData(filePath);
-        if (lineHits.size() == 0) {
+        if (lineHits.getMaxLine() < 0) {
           classData.setLines(new LineData[1]);
           continue;
         }
-        LineData[] lines = new LineData[lineHits.lastKey() + 1];
-        for (Map.Entry<Integer, Integer> hit : lineHits.entrySet()) {
-          LineData lineData = new LineData(hit.getKey(), null);
-          lineData.setHits(hit.getValue());
-          lines[hit.getKey()] = lineData;
+        LineData[] lines = new LineData[lineHits.getMaxLine() + 1];
+        for (int line = 0; line < lines.length; line++) {
+          final int hits = lineHits.getHits(line);
+          if (hits < 0) continue;
+
+          LineData lineData = new LineData(line, null);
+          lineData.setHits(hits);
+          lines[line] = lineData;
         }
         classData.setLines(lines);
       }
     }
-    catch (JsonSyntaxException | IOException e) {
+    catch (JsonParseException | IOException e) {
       LOG.warn(e);
     }
     finally {
@@ -126,6 +120,24 @@ public class DartCoverageRunner extends CoverageRunner {
     return projectData;
   }
 
+  /**
+   * @param sessionDataFile either a coverage JSON file or a folder with several coverage files to be merged, for example, one per test
+   */
+  @NotNull
+  private static DartCoverageData readCoverageData(@NotNull File sessionDataFile) throws IOException {
+    if (!sessionDataFile.isDirectory()) {
+      return DartCoverageData.read(sessionDataFile);
+    }
+
+    final File[] files = sessionDataFile.listFiles((dir, name) -> name.endsWith(".json"));
+    if (files == null) {
+      throw new IOException("Failed to list coverage files in " + sessionDataFile.getPath());
+    }
+
+    return DartCoverageData.readAndMerge(Arrays.asList(files), ProgressManager.getInstance().getProgressIndicator(),
+                                         (file, e) -> LOG.warn("Failed to read coverage file " + file.getPath(), e));
+  }
+
   @Nullable
   private static String getFileForUri(@NotNull final Project project, @NotNull final String contextId, @NotNull final String uri) {
     if (uri.startsWith("dart:_") || uri.startsWith("dart:") && uri.contains("-patch/")) {
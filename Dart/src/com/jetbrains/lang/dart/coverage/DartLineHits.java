@@ -0,0 +1,53 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.jetbrains.lang.dart.coverage;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Hit counts of the lines of a single file, indexed by line number. Lines that are not mentioned in the coverage data
+ * (i.e. not executable) are distinguished from the lines that are executable but have not been hit.
+ */
+final class DartLineHits {
+  private static final int[] EMPTY = new int[0];
+
+  // hit count + 1; 0 means that the line is not executable
+  private int[] myHits = EMPTY;
+  private int myMaxLine = -1;
+
+  void add(int line, int hits) {
+    if (line < 0) return;
+
+    if (line >= myHits.length) {
+      myHits = Arrays.copyOf(myHits, Math.max(line + 1, myHits.length + (myHits.length >> 1) + 16));
+    }
+
+    final long sum = (long)Math.max(myHits[line], 1) + Math.max(hits, 0);
+    myHits[line] = (int)Math.min(sum, Integer.MAX_VALUE);
+    myMaxLine = Math.max(myMaxLine, line);
+  }
+
+  void addAll(@NotNull DartLineHits other) {
+    for (int line = 0; line <= other.myMaxLine; line++) {
+      final int hits = other.myHits[line];
+      if (hits > 0) {
+        add(line, hits - 1);
+      }
+    }
+  }
+
+  /**
+   * @return the greatest executable line number, or -1 if there are no executable lines
+   */
+  int getMaxLine() {
+    return myMaxLine;
+  }
+
+  /**
+   * @return hit count of the line, or -1 if the line is not executable
+   */
+  int getHits(int line) {
+    return line >= 0 && line <= myMaxLine ? myHits[line] - 1 : -1;
+  }
+}
@@ -15,18 +15,17 @@ import org.jetbrains.annotations.Nls;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import javax.swing.*;
-
 public class DartProblemsPresentationHelper {
 
   private final @NotNull Project myProject;
   private @NotNull DartProblemsViewSettings mySettings;
 
-  private @Nullable VirtualFile myCurrentFile;
+  // current file and roots are updated in EDT but read by the DartProblemsSnapshotBuilder in background
+  private volatile @Nullable VirtualFile myCurrentFile;
   private boolean myDartPackageRootUpToDate;
-  private @Nullable VirtualFile myCurrentDartPackageRoot;
+  private volatile @Nullable VirtualFile myCurrentDartPackageRoot;
   private boolean myContentRootUpToDate;
-  private @Nullable VirtualFile myCurrentContentRoot;
+  private volatile @Nullable VirtualFile myCurrentContentRoot;
 
   DartProblemsPresentationHelper(@NotNull Project project) {
     myProject = project;
@@ -41,15 +40,6 @@ public class DartProblemsPresentationHelper {
     return mySettings;
   }
 
-  RowFilter<DartProblemsTableModel, Integer> getRowFilter() {
-    return new RowFilter<>() {
-      @Override
-      public boolean include(final @NotNull Entry<? extends DartProblemsTableModel, ? extends Integer> entry) {
-        return shouldShowProblem(entry.getModel().getItem(entry.getIdentifier()));
-      }
-    };
-  }
-
   void resetAllFilters() {
     mySettings.showErrors = DartProblemsViewSettings.SHOW_ERRORS_DEFAULT;
     mySettings.showWarnings = DartProblemsViewSettings.SHOW_WARNINGS_DEFAULT;
@@ -79,7 +69,7 @@ public class DartProblemsPresentationHelper {
     return false;
   }
 
-  boolean setCurrentFile(@Nullable VirtualFile file) {
+  synchronized boolean setCurrentFile(@Nullable VirtualFile file) {
     if (Comparing.equal(myCurrentFile, file)) {
       return false;
     }
@@ -168,7 +158,7 @@ public class DartProblemsPresentationHelper {
     return true;
   }
 
-  private void ensurePackageRootUpToDate() {
+  private synchronized void ensurePackageRootUpToDate() {
     if (myDartPackageRootUpToDate) return;
 
     // temp var to make sure that value is initialized
@@ -193,7 +183,7 @@ public class DartProblemsPresentationHelper {
     myDartPackageRootUpToDate = true;
   }
 
-  private void ensureContentRootUpToDate() {
+  private synchronized void ensureContentRootUpToDate() {
     if (myContentRootUpToDate) return;
 
     myCurrentContentRoot = myCurrentFile == null
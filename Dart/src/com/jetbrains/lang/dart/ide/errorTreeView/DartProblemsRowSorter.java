@@ -0,0 +1,87 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.jetbrains.lang.dart.ide.errorTreeView;
+
+import org.jetbrains.annotations.NotNull;
+
+import javax.swing.*;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Rows of the {@link DartProblemsTableModel} are already filtered and sorted in background, so this sorter maps view rows to model rows
+ * one-to-one. It only keeps the sort key that the user selects by clicking the table header and notifies listeners about its changes.
+ */
+final class DartProblemsRowSorter extends RowSorter<DartProblemsTableModel> {
+  private final @NotNull DartProblemsTableModel myModel;
+  private @NotNull List<? extends SortKey> mySortKeys;
+
+  DartProblemsRowSorter(@NotNull DartProblemsTableModel model) {
+    myModel = model;
+    mySortKeys = Collections.singletonList(model.getDefaultSortKey());
+  }
+
+  @Override
+  public DartProblemsTableModel getModel() {
+    return myModel;
+  }
+
+  @Override
+  public void toggleSortOrder(int column) {
+    SortKey sortKey = mySortKeys.get(0);
+    SortOrder sortOrder = sortKey.getColumn() == column && sortKey.getSortOrder() == SortOrder.ASCENDING
+                          ? SortOrder.DESCENDING
+                          : SortOrder.ASCENDING;
+    setSortKeys(Collections.singletonList(new SortKey(column, sortOrder)));
+  }
+
+  @Override
+  public void setSortKeys(List<? extends SortKey> keys) {
+    if (keys == null || keys.isEmpty() || keys.equals(mySortKeys)) return;
+
+    mySortKeys = Collections.singletonList(keys.get(0));
+    fireSortOrderChanged();
+  }
+
+  @Override
+  public List<? extends SortKey> getSortKeys() {
+    return mySortKeys;
+  }
+
+  @Override
+  public int convertRowIndexToModel(int index) {
+    return index;
+  }
+
+  @Override
+  public int convertRowIndexToView(int index) {
+    return index;
+  }
+
+  @Override
+  public int getViewRowCount() {
+    return myModel.getRowCount();
+  }
+
+  @Override
+  public int getModelRowCount() {
+    return myModel.getRowCount();
+  }
+
+  @Override
+  public void modelStructureChanged() {}
+
+  @Override
+  public void allRowsChanged() {}
+
+  @Override
+  public void rowsInserted(int firstRow, int endRow) {}
+
+  @Override
+  public void rowsDeleted(int firstRow, int endRow) {}
+
+  @Override
+  public void rowsUpdated(int firstRow, int endRow) {}
+
+  @Override
+  public void rowsUpdated(int firstRow, int endRow, int column) {}
+}
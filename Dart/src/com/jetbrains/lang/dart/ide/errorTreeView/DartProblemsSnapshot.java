@@ -0,0 +1,45 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.jetbrains.lang.dart.ide.errorTreeView;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable content of the Dart Problems View: filtered and sorted rows, as well as the problem counts before and after filtering.
+ * Built in background by {@link DartProblemsSnapshotBuilder}, published to the {@link DartProblemsTableModel} in EDT.
+ */
+final class DartProblemsSnapshot {
+  static final DartProblemsSnapshot EMPTY = new DartProblemsSnapshot(Collections.emptyList(), 0, 0, 0, 0, 0, 0);
+
+  private final @NotNull List<DartProblem> myRows;
+
+  final int errorCount;
+  final int warningCount;
+  final int hintCount;
+
+  final int errorCountAfterFilter;
+  final int warningCountAfterFilter;
+  final int hintCountAfterFilter;
+
+  DartProblemsSnapshot(@NotNull List<DartProblem> rows,
+                       int errorCount,
+                       int warningCount,
+                       int hintCount,
+                       int errorCountAfterFilter,
+                       int warningCountAfterFilter,
+                       int hintCountAfterFilter) {
+    myRows = Collections.unmodifiableList(rows);
+    this.errorCount = errorCount;
+    this.warningCount = warningCount;
+    this.hintCount = hintCount;
+    this.errorCountAfterFilter = errorCountAfterFilter;
+    this.warningCountAfterFilter = warningCountAfterFilter;
+    this.hintCountAfterFilter = hintCountAfterFilter;
+  }
+
+  @NotNull List<DartProblem> getRows() {
+    return myRows;
+  }
+}
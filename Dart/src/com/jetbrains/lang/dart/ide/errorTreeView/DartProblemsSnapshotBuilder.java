@@ -0,0 +1,213 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.jetbrains.lang.dart.ide.errorTreeView;
+
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.dartlang.analysis.server.protocol.AnalysisError;
+import org.dartlang.analysis.server.protocol.AnalysisErrorSeverity;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
+import java.util.*;
+
+/**
+ * Keeps problems of all files and builds {@link DartProblemsSnapshot}s for the Dart Problems View. Building a snapshot includes
+ * filtering and sorting of all problems, that's why it is done in background under a read action, see
+ * {@link DartProblemsTableModel#scheduleRebuild()}.
+ * <p>
+ * Updates are applied per file: if the errors hash of the file hasn't changed then already created {@link DartProblem}s are reused, so
+ * their rows in the table are not touched.
+ */
+final class DartProblemsSnapshotBuilder {
+
+  static final class FileErrors {
+    private final @NotNull List<? extends AnalysisError> myErrors;
+    private final int myErrorsHash;
+
+    /**
+     * @param errorsHash hash of the {@code errors} list, 0 means no errors
+     */
+    FileErrors(@NotNull List<? extends AnalysisError> errors, int errorsHash) {
+      myErrors = errors;
+      myErrorsHash = errorsHash;
+    }
+  }
+
+  private static final class FileProblems {
+    private final @NotNull String myFilePath;
+    private final @NotNull FileErrors myErrors;
+    // created lazily in background, accessed only by the snapshot building task
+    private @Nullable List<DartProblem> myProblems;
+
+    private FileProblems(@NotNull String filePath, @NotNull FileErrors errors) {
+      myFilePath = filePath;
+      myErrors = errors;
+    }
+  }
+
+  private final @NotNull Project myProject;
+  private final @NotNull DartProblemsPresentationHelper myPresentationHelper;
+
+  private final Map<String, FileProblems> myFilePathToProblems = new HashMap<>(); // guarded by this
+
+  DartProblemsSnapshotBuilder(@NotNull Project project, @NotNull DartProblemsPresentationHelper presentationHelper) {
+    myProject = project;
+    myPresentationHelper = presentationHelper;
+  }
+
+  synchronized void updateErrors(@NotNull Map<String, FileErrors> filePathToErrors) {
+    for (Map.Entry<String, FileErrors> entry : filePathToErrors.entrySet()) {
+      final String filePath = entry.getKey();
+      final FileErrors errors = entry.getValue();
+
+      if (errors.myErrors.isEmpty()) {
+        myFilePathToProblems.remove(filePath);
+        continue;
+      }
+
+      final FileProblems oldProblems = myFilePathToProblems.get(filePath);
+      if (oldProblems == null || oldProblems.myErrors.myErrorsHash != errors.myErrorsHash) {
+        myFilePathToProblems.put(filePath, new FileProblems(filePath, errors));
+      }
+    }
+  }
+
+  synchronized void clear() {
+    myFilePathToProblems.clear();
+  }
+
+  /**
+   * Must be called in a background thread under read action, one call at a time.
+   */
+  @NotNull
+  DartProblemsSnapshot build(@NotNull RowSorter.SortKey sortKey) {
+    final List<FileProblems> allFileProblems;
+    synchronized (this) {
+      allFileProblems = new ArrayList<>(myFilePathToProblems.values());
+    }
+
+    final DartProblemsViewSettings.ScopedAnalysisMode scopedAnalysisMode = myPresentationHelper.getScopedAnalysisMode();
+    final ProjectFileIndex fileIndex = ProjectFileIndex.getInstance(myProject);
+
+    int errorCount = 0;
+    int warningCount = 0;
+    int hintCount = 0;
+    int errorCountAfterFilter = 0;
+    int warningCountAfterFilter = 0;
+    int hintCountAfterFilter = 0;
+
+    final List<DartProblem> rows = new ArrayList<>();
+
+    for (FileProblems fileProblems : allFileProblems) {
+      ProgressManager.checkCanceled();
+
+      List<DartProblem> problems = fileProblems.myProblems;
+      if (problems == null) {
+        final VirtualFile vFile = LocalFileSystem.getInstance().findFileByPath(fileProblems.myFilePath);
+        final boolean fileOk = vFile != null && (scopedAnalysisMode != DartProblemsViewSettings.ScopedAnalysisMode.All ||
+                                                 fileIndex.isInContent(vFile));
+        final List<? extends AnalysisError> errors = fileOk ? fileProblems.myErrors.myErrors : AnalysisError.EMPTY_LIST;
+        problems = new ArrayList<>(errors.size());
+        for (AnalysisError error : errors) {
+          problems.add(new DartProblem(myProject, error));
+        }
+        fileProblems.myProblems = problems;
+      }
+
+      for (DartProblem problem : problems) {
+        final String severity = problem.getSeverity();
+        final boolean show = myPresentationHelper.shouldShowProblem(problem);
+        if (show) {
+          rows.add(problem);
+        }
+
+        if (AnalysisErrorSeverity.ERROR.equals(severity)) {
+          errorCount++;
+          if (show) errorCountAfterFilter++;
+        }
+        else if (AnalysisErrorSeverity.WARNING.equals(severity)) {
+          warningCount++;
+          if (show) warningCountAfterFilter++;
+        }
+        else if (AnalysisErrorSeverity.INFO.equals(severity)) {
+          hintCount++;
+          if (show) hintCountAfterFilter++;
+        }
+      }
+    }
+
+    final boolean ascending = sortKey.getSortOrder() != SortOrder.DESCENDING;
+    final Comparator<DartProblem> comparator =
+      new DartProblemsComparator(sortKey.getColumn(), ascending, myPresentationHelper.isGroupBySeverity());
+    rows.sort(ascending ? comparator : comparator.reversed());
+
+    return new DartProblemsSnapshot(rows, errorCount, warningCount, hintCount,
+                                    errorCountAfterFilter, warningCountAfterFilter, hintCountAfterFilter);
+  }
+
+  /**
+   * Results are reversed by the caller for the descending sort order, exactly as a table row sorter would do it.
+   */
+  private static final class DartProblemsComparator implements Comparator<DartProblem> {
+    private static final int MESSAGE_COLUMN_ID = 0;
+    private static final int LOCATION_COLUMN_ID = 1;
+
+    private final int myColumn;
+    private final boolean myAscending;
+    private final boolean myGroupBySeverity;
+
+    DartProblemsComparator(int column, boolean ascending, boolean groupBySeverity) {
+      myColumn = column;
+      myAscending = ascending;
+      myGroupBySeverity = groupBySeverity;
+    }
+
+    @Override
+    public int compare(@NotNull DartProblem problem1, @NotNull DartProblem problem2) {
+      if (myGroupBySeverity) {
+        int s1 = getSeverityIndex(problem1);
+        int s2 = getSeverityIndex(problem2);
+        if (s1 != s2) {
+          // Regardless of sorting direction, if 'Group by severity' is selected then we should keep errors on top
+          return myAscending ? s1 - s2 : s2 - s1;
+        }
+      }
+
+      if (myColumn == MESSAGE_COLUMN_ID) {
+        return StringUtil.compare(problem1.getErrorMessage(), problem2.getErrorMessage(), false);
+      }
+
+      if (myColumn == LOCATION_COLUMN_ID) {
+        int result = StringUtil.compare(problem1.getPresentableLocationWithoutLineNumber(),
+                                        problem2.getPresentableLocationWithoutLineNumber(), false);
+        if (result != 0) {
+          return result;
+        }
+        else {
+          // Regardless of sorting direction, line numbers within the same file should be sorted in ascending order
+          return myAscending
+                 ? problem1.getLineNumber() - problem2.getLineNumber()
+                 : problem2.getLineNumber() - problem1.getLineNumber();
+        }
+      }
+
+      return 0;
+    }
+
+    private static int getSeverityIndex(@NotNull DartProblem problem) {
+      String severity = problem.getSeverity();
+      if (AnalysisErrorSeverity.ERROR.equals(severity)) {
+        return 0;
+      }
+      if (AnalysisErrorSeverity.WARNING.equals(severity)) {
+        return 1;
+      }
+      return 2;
+    }
+  }
+}
@@ -4,15 +4,13 @@ package com.jetbrains.lang.dart.ide.errorTreeView;
 import com.intellij.analysis.AnalysisBundle;
 import com.intellij.icons.AllIcons;
 import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.project.Project;
-import com.intellij.openapi.roots.ProjectFileIndex;
-import com.intellij.openapi.util.text.StringUtil;
-import com.intellij.openapi.vfs.LocalFileSystem;
-import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import com.intellij.util.ui.ColumnInfo;
 import com.intellij.util.ui.ListTableModel;
 import com.jetbrains.lang.dart.DartBundle;
-import org.dartlang.analysis.server.protocol.AnalysisError;
 import org.dartlang.analysis.server.protocol.AnalysisErrorSeverity;
 import org.jetbrains.annotations.Nls;
 import org.jetbrains.annotations.NotNull;
@@ -22,8 +20,11 @@ import javax.swing.*;
 import javax.swing.table.DefaultTableCellRenderer;
 import javax.swing.table.TableCellRenderer;
 import java.awt.*;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.*;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 
 class DartProblemsTableModel extends ListTableModel<DartProblem> {
 
@@ -60,39 +61,33 @@ class DartProblemsTableModel extends ListTableModel<DartProblem> {
 
   private final @NotNull Project myProject;
   private final @NotNull DartProblemsPresentationHelper myPresentationHelper;
+  private final @NotNull DartProblemsSnapshotBuilder mySnapshotBuilder;
+  private final @NotNull Executor mySnapshotExecutor =
+    AppExecutorUtil.createBoundedApplicationPoolExecutor("Dart Problems View Snapshot Builder", 1);
 
   // Kind of hack to keep a reference to the live collection used in a super class, but it allows improving performance greatly.
-  // Having it in hand we can do bulk rows removal with a single fireTableRowsDeleted() call afterwards
+  // Having it in hand we can replace a changed range of rows with a single fireTableRowsDeleted()/fireTableRowsInserted() call afterwards
   private final List<DartProblem> myItems = new ArrayList<>();
 
-  private RowSorter.SortKey mySortKey = new RowSorter.SortKey(1, SortOrder.ASCENDING);
+  private volatile RowSorter.SortKey mySortKey = new RowSorter.SortKey(1, SortOrder.ASCENDING);
 
-  private int myErrorCount;
-  private int myWarningCount;
-  private int myHintCount;
-
-  private int myErrorCountAfterFilter;
-  private int myWarningCountAfterFilter;
-  private int myHintCountAfterFilter;
-
-  private final Comparator<DartProblem> myDescriptionComparator = new DartProblemsComparator(DartProblemsComparator.MESSAGE_COLUMN_ID);
-  private final Comparator<DartProblem> myLocationComparator = new DartProblemsComparator(DartProblemsComparator.LOCATION_COLUMN_ID);
+  private @NotNull DartProblemsSnapshot mySnapshot = DartProblemsSnapshot.EMPTY;
+  // incremented by removeAll(), snapshots built before that are not published
+  private int mySnapshotGeneration;
+  private @Nullable Consumer<? super DartProblemsSnapshot> mySnapshotConsumer;
 
   DartProblemsTableModel(@NotNull Project project, @NotNull DartProblemsPresentationHelper presentationHelper) {
     myProject = project;
     myPresentationHelper = presentationHelper;
+    mySnapshotBuilder = new DartProblemsSnapshotBuilder(project, presentationHelper);
     setColumnInfos(new ColumnInfo[]{createDescriptionColumn(), createLocationColumn()});
     setItems(myItems);
-    setSortable(true);
+    // rows are sorted in background, see DartProblemsRowSorter
+    setSortable(false);
   }
 
-  private @NotNull ColumnInfo<DartProblem, DartProblem> createDescriptionColumn() {
+  private static @NotNull ColumnInfo<DartProblem, DartProblem> createDescriptionColumn() {
     return new ColumnInfo<>(DartBundle.message("dart.problems.view.column.name.description")) {
-      @Override
-      public @Nullable Comparator<DartProblem> getComparator() {
-        return myDescriptionComparator;
-      }
-
       @Override
       public @Nullable TableCellRenderer getRenderer(@NotNull DartProblem problem) {
         return MESSAGE_RENDERER;
@@ -105,13 +100,8 @@ class DartProblemsTableModel extends ListTableModel<DartProblem> {
     };
   }
 
-  private @NotNull ColumnInfo<DartProblem, String> createLocationColumn() {
+  private static @NotNull ColumnInfo<DartProblem, String> createLocationColumn() {
     return new ColumnInfo<>(DartBundle.message("dart.problems.view.column.name.location")) {
-      @Override
-      public @Nullable Comparator<DartProblem> getComparator() {
-        return myLocationComparator;
-      }
-
       @Override
       public @Nullable TableCellRenderer getRenderer(DartProblem problem) {
         return LOCATION_RENDERER;
@@ -144,151 +134,113 @@ class DartProblemsTableModel extends ListTableModel<DartProblem> {
     return false;
   }
 
-  private void removeRows(int firstRow, int lastRow) {
-    assert lastRow >= firstRow;
-
-    for (int i = lastRow; i >= firstRow; i--) {
-      DartProblem removed = myItems.remove(i);
+  /**
+   * {@code snapshotConsumer} is called in EDT when a snapshot requested by {@link #scheduleRebuild()} is ready. It is expected to call
+   * {@link #setSnapshotAndReturnReplacementForSelection(DartProblemsSnapshot, DartProblem)}.
+   */
+  void setSnapshotConsumer(@NotNull Consumer<? super DartProblemsSnapshot> snapshotConsumer) {
+    mySnapshotConsumer = snapshotConsumer;
+  }
 
-      if (AnalysisErrorSeverity.ERROR.equals(removed.getSeverity())) myErrorCount--;
-      if (AnalysisErrorSeverity.WARNING.equals(removed.getSeverity())) myWarningCount--;
-      if (AnalysisErrorSeverity.INFO.equals(removed.getSeverity())) myHintCount--;
-      updateProblemsCountAfterFilter(removed, -1);
-    }
+  /**
+   * May be called in any thread.
+   */
+  void updateErrors(@NotNull Map<String, DartProblemsSnapshotBuilder.FileErrors> filePathToErrors) {
+    mySnapshotBuilder.updateErrors(filePathToErrors);
+    scheduleRebuild();
+  }
 
-    fireTableRowsDeleted(firstRow, lastRow);
+  /**
+   * Rebuilds the snapshot in background. Requests scheduled while the previous one is still being computed are coalesced.
+   */
+  void scheduleRebuild() {
+    ApplicationManager.getApplication().invokeLater(() -> {
+      int generation = mySnapshotGeneration;
+      RowSorter.SortKey sortKey = mySortKey;
+      ReadAction.nonBlocking(() -> mySnapshotBuilder.build(sortKey))
+        .coalesceBy(this)
+        .expireWith(DartProblemsView.getInstance(myProject))
+        .finishOnUiThread(ModalityState.NON_MODAL, snapshot -> {
+          if (generation == mySnapshotGeneration && mySnapshotConsumer != null) {
+            mySnapshotConsumer.accept(snapshot);
+          }
+        })
+        .submit(mySnapshotExecutor);
+    }, ModalityState.NON_MODAL, myProject.getDisposed());
   }
 
   void removeAll() {
+    ApplicationManager.getApplication().assertIsDispatchThread();
+    mySnapshotGeneration++;
+    mySnapshotBuilder.clear();
+    mySnapshot = DartProblemsSnapshot.EMPTY;
+
     int rowCount = getRowCount();
     if (rowCount > 0) {
       myItems.clear();
       fireTableRowsDeleted(0, rowCount - 1);
     }
-
-    myErrorCount = 0;
-    myWarningCount = 0;
-    myHintCount = 0;
-    myErrorCountAfterFilter = 0;
-    myWarningCountAfterFilter = 0;
-    myHintCountAfterFilter = 0;
   }
 
   /**
+   * Replaces table rows with the rows of the {@code snapshot}. {@link DartProblem}s of the files that haven't changed are the same objects
+   * in both old and new rows, so only the range between the common head and the common tail is actually replaced.
+   * <p>
    * If {@code selectedProblem} was removed and similar one added again then this method returns the added one,
    * so that the caller could update selected row in the table
    */
   @Nullable
-  DartProblem setProblemsAndReturnReplacementForSelection(@NotNull Map<String, List<? extends AnalysisError>> filePathToErrors,
+  DartProblem setSnapshotAndReturnReplacementForSelection(@NotNull DartProblemsSnapshot snapshot,
                                                           @Nullable DartProblem selectedProblem) {
-    boolean selectedProblemRemoved = removeRowsForFilesInSet(filePathToErrors.keySet(), selectedProblem);
-    return addErrorsAndReturnReplacementForSelection(filePathToErrors, selectedProblemRemoved ? selectedProblem : null);
-  }
-
-  private boolean removeRowsForFilesInSet(@NotNull Set<String> filePaths, @Nullable DartProblem selectedProblem) {
-    // Looks for regions in table items that should be removed and removes them.
-    // For performance reasons we try to call removeRows() as rare as possible, that means with regions as big as possible.
-    // Logic is based on the fact that all errors for each particular file are stored continuously in the myItems model
-
-    boolean selectedProblemRemoved = false;
-
-    int matchedFilesCount = 0;
-
-    for (int i = getRowCount() - 1; i >= 0; i--) {
-      final DartProblem problem = getItem(i);
-      if (filePaths.contains(problem.getSystemIndependentPath())) {
-        matchedFilesCount++;
-        final int lastRowToDelete = i;
-
-        if (problem == selectedProblem) {
-          selectedProblemRemoved = true;
-        }
-
-        DartProblem lastProblemForCurrentFile = problem;
-
-        int j = i - 1;
-        while (j >= 0) {
-          final DartProblem previousProblem = getItem(j);
-
-          if (previousProblem.getSystemIndependentPath().equals(lastProblemForCurrentFile.getSystemIndependentPath())) {
-            // previousProblem should be removed from the table as well
-            j--;
-
-            if (previousProblem == selectedProblem) {
-              selectedProblemRemoved = true;
-            }
-
-            continue;
-          }
-
-          if (filePaths.contains(previousProblem.getSystemIndependentPath())) {
-            matchedFilesCount++;
-            // continue iterating the table because we met a range of problems for another file that also should be removed
-            lastProblemForCurrentFile = previousProblem;
-            j--;
+    ApplicationManager.getApplication().assertIsDispatchThread();
+    mySnapshot = snapshot;
 
-            if (previousProblem == selectedProblem) {
-              selectedProblemRemoved = true;
-            }
+    List<DartProblem> newRows = snapshot.getRows();
+    int oldSize = myItems.size();
+    int newSize = newRows.size();
 
-            continue;
-          }
+    int head = 0;
+    while (head < oldSize && head < newSize && myItems.get(head) == newRows.get(head)) {
+      head++;
+    }
 
-          break;
-        }
+    int tail = 0;
+    while (tail < oldSize - head && tail < newSize - head && myItems.get(oldSize - 1 - tail) == newRows.get(newSize - 1 - tail)) {
+      tail++;
+    }
 
-        final int firstRowToDelete = j + 1;
-        removeRows(firstRowToDelete, lastRowToDelete);
+    if (head + tail == oldSize && head + tail == newSize) return null;
 
-        if (matchedFilesCount == filePaths.size()) {
-          break;
-        }
+    List<DartProblem> oldRange = myItems.subList(head, oldSize - tail);
+    boolean selectedProblemRemoved = selectedProblem != null && oldRange.contains(selectedProblem);
+    if (!oldRange.isEmpty()) {
+      int removedCount = oldRange.size();
+      oldRange.clear();
+      fireTableRowsDeleted(head, head + removedCount - 1);
+    }
 
-        //noinspection AssignmentToForLoopParameter
-        i = j + 1; // rewind according to the amount of removed rows
-      }
+    List<DartProblem> newRange = newRows.subList(head, newSize - tail);
+    if (!newRange.isEmpty()) {
+      myItems.addAll(head, newRange);
+      fireTableRowsInserted(head, head + newRange.size() - 1);
     }
 
-    return selectedProblemRemoved;
+    return selectedProblemRemoved ? findReplacement(newRange, selectedProblem) : null;
   }
 
-  private @Nullable DartProblem addErrorsAndReturnReplacementForSelection(@NotNull Map<String, List<? extends AnalysisError>> filePathToErrors,
-                                                                          @Nullable DartProblem oldSelectedProblem) {
+  private static @Nullable DartProblem findReplacement(@NotNull List<DartProblem> problems, @NotNull DartProblem oldSelectedProblem) {
     DartProblem newSelectedProblem = null;
-    DartProblemsViewSettings.ScopedAnalysisMode scopedAnalysisMode = myPresentationHelper.getScopedAnalysisMode();
-
-    List<DartProblem> problemsToAdd = new ArrayList<>();
-    for (Map.Entry<String, List<? extends AnalysisError>> entry : filePathToErrors.entrySet()) {
-      String filePath = entry.getKey();
-      VirtualFile vFile = LocalFileSystem.getInstance().findFileByPath(filePath);
-      boolean fileOk = vFile != null && (scopedAnalysisMode != DartProblemsViewSettings.ScopedAnalysisMode.All ||
-                                         ProjectFileIndex.getInstance(myProject).isInContent(vFile));
-      List<? extends AnalysisError> errors = fileOk ? entry.getValue() : AnalysisError.EMPTY_LIST;
-
-      for (AnalysisError analysisError : errors) {
-        DartProblem problem = new DartProblem(myProject, analysisError);
-        problemsToAdd.add(problem);
-
-        if (oldSelectedProblem != null &&
-            lookSimilar(problem, oldSelectedProblem) &&
-            (newSelectedProblem == null ||
-             // check if current problem is closer to oldSelectedProblem
-             (Math.abs(oldSelectedProblem.getLineNumber() - newSelectedProblem.getLineNumber()) >=
-              Math.abs(oldSelectedProblem.getLineNumber() - problem.getLineNumber())))) {
-          newSelectedProblem = problem;
-        }
-
-        if (AnalysisErrorSeverity.ERROR.equals(problem.getSeverity())) myErrorCount++;
-        if (AnalysisErrorSeverity.WARNING.equals(problem.getSeverity())) myWarningCount++;
-        if (AnalysisErrorSeverity.INFO.equals(problem.getSeverity())) myHintCount++;
-        updateProblemsCountAfterFilter(problem, +1);
+    for (DartProblem problem : problems) {
+      if (problem == oldSelectedProblem) return problem;
+
+      if (lookSimilar(problem, oldSelectedProblem) &&
+          (newSelectedProblem == null ||
+           // check if current problem is closer to oldSelectedProblem
+           (Math.abs(oldSelectedProblem.getLineNumber() - newSelectedProblem.getLineNumber()) >=
+            Math.abs(oldSelectedProblem.getLineNumber() - problem.getLineNumber())))) {
+        newSelectedProblem = problem;
       }
     }
-
-    if (!problemsToAdd.isEmpty()) {
-      addRows(problemsToAdd);
-    }
-
     return newSelectedProblem;
   }
 
@@ -298,55 +250,32 @@ class DartProblemsTableModel extends ListTableModel<DartProblem> {
            problem1.getSystemIndependentPath().equals(problem2.getSystemIndependentPath());
   }
 
-  private void updateProblemsCountAfterFilter(@NotNull DartProblem problem, int delta) {
-    if (myPresentationHelper.shouldShowProblem(problem)) {
-      if (AnalysisErrorSeverity.ERROR.equals(problem.getSeverity())) myErrorCountAfterFilter += delta;
-      if (AnalysisErrorSeverity.WARNING.equals(problem.getSeverity())) myWarningCountAfterFilter += delta;
-      if (AnalysisErrorSeverity.INFO.equals(problem.getSeverity())) myHintCountAfterFilter += delta;
-    }
-  }
-
   void setSortKey(@NotNull RowSorter.SortKey sortKey) {
+    if (sortKey.equals(mySortKey)) return;
     mySortKey = sortKey;
-  }
-
-  void onFilterChanged() {
-    ApplicationManager.getApplication().assertIsDispatchThread();
-    if (myPresentationHelper.areFiltersApplied()) {
-      myErrorCountAfterFilter = 0;
-      myWarningCountAfterFilter = 0;
-      myHintCountAfterFilter = 0;
-      for (DartProblem problem : myItems) {
-        updateProblemsCountAfterFilter(problem, +1);
-      }
-    }
-    else {
-      myErrorCountAfterFilter = myErrorCount;
-      myWarningCountAfterFilter = myWarningCount;
-      myHintCountAfterFilter = myHintCount;
-    }
+    scheduleRebuild();
   }
 
   boolean hasErrors() {
-    return myErrorCount > 0;
+    return mySnapshot.errorCount > 0;
   }
 
   boolean hasWarnings() {
-    return myWarningCount > 0;
+    return mySnapshot.warningCount > 0;
   }
 
   @NotNull @Nls
   String getTabTitleText() {
     List<String> statusParts = new ArrayList<>();
 
-    if (myPresentationHelper.isShowErrors() && myErrorCountAfterFilter > 0) {
-      statusParts.add(DartBundle.message("dart.problems.view.0.errors", myErrorCountAfterFilter));
+    if (myPresentationHelper.isShowErrors() && mySnapshot.errorCountAfterFilter > 0) {
+      statusParts.add(DartBundle.message("dart.problems.view.0.errors", mySnapshot.errorCountAfterFilter));
     }
-    if (myPresentationHelper.isShowWarnings() && myWarningCountAfterFilter > 0) {
-      statusParts.add(DartBundle.message("dart.problems.view.0.warnings", myWarningCountAfterFilter));
+    if (myPresentationHelper.isShowWarnings() && mySnapshot.warningCountAfterFilter > 0) {
+      statusParts.add(DartBundle.message("dart.problems.view.0.warnings", mySnapshot.warningCountAfterFilter));
     }
-    if (myPresentationHelper.isShowHints() && myHintCountAfterFilter > 0) {
-      statusParts.add(DartBundle.message("dart.problems.view.0.hints", myHintCountAfterFilter));
+    if (myPresentationHelper.isShowHints() && mySnapshot.hintCountAfterFilter > 0) {
+      statusParts.add(DartBundle.message("dart.problems.view.0.hints", mySnapshot.hintCountAfterFilter));
     }
 
     if (statusParts.isEmpty()) {
@@ -371,58 +300,4 @@ class DartProblemsTableModel extends ListTableModel<DartProblem> {
 
     return statusText;
   }
-
-  private class DartProblemsComparator implements Comparator<DartProblem> {
-    private static final int MESSAGE_COLUMN_ID = 0;
-    private static final int LOCATION_COLUMN_ID = 1;
-
-    private final int myColumn;
-
-    DartProblemsComparator(final int column) {
-      myColumn = column;
-    }
-
-    @Override
-    public int compare(@NotNull DartProblem problem1, @NotNull DartProblem problem2) {
-      if (myPresentationHelper.isGroupBySeverity()) {
-        int s1 = getSeverityIndex(problem1);
-        int s2 = getSeverityIndex(problem2);
-        if (s1 != s2) {
-          // Regardless of sorting direction, if 'Group by severity' is selected then we should keep errors on top
-          return mySortKey.getSortOrder() == SortOrder.ASCENDING ? s1 - s2 : s2 - s1;
-        }
-      }
-
-      if (myColumn == MESSAGE_COLUMN_ID) {
-        return StringUtil.compare(problem1.getErrorMessage(), problem2.getErrorMessage(), false);
-      }
-
-      if (myColumn == LOCATION_COLUMN_ID) {
-        int result = StringUtil.compare(problem1.getPresentableLocationWithoutLineNumber(),
-                                        problem2.getPresentableLocationWithoutLineNumber(), false);
-        if (result != 0) {
-          return result;
-        }
-        else {
-          // Regardless of sorting direction, line numbers within the same file should be sorted in ascending order
-          return mySortKey.getSortOrder() == SortOrder.ASCENDING
-                 ? problem1.getLineNumber() - problem2.getLineNumber()
-                 : problem2.getLineNumber() - problem1.getLineNumber();
-        }
-      }
-
-      return 0;
-    }
-
-    private int getSeverityIndex(@NotNull DartProblem problem) {
-      String severity = problem.getSeverity();
-      if (AnalysisErrorSeverity.ERROR.equals(severity)) {
-        return 0;
-      }
-      if (AnalysisErrorSeverity.WARNING.equals(severity)) {
-        return 1;
-      }
-      return 2;
-    }
-  }
 }
@@ -54,7 +54,7 @@ public final class DartProblemsView implements PersistentStateComponent<DartProb
   private final DartProblemsPresentationHelper myPresentationHelper;
 
   private final Object myLock = new Object(); // use this lock to access myScheduledFilePathToErrors and myAlarm
-  private final Map<String, List<? extends AnalysisError>> myScheduledFilePathToErrors = new HashMap<>();
+  private final Map<String, DartProblemsSnapshotBuilder.FileErrors> myScheduledFilePathToErrors = new HashMap<>();
   private final Alarm myAlarm;
 
   @NotNull
@@ -77,7 +77,7 @@ public final class DartProblemsView implements PersistentStateComponent<DartProb
         }
       }
 
-      final Map<String, List<? extends AnalysisError>> filePathToErrors;
+      final Map<String, DartProblemsSnapshotBuilder.FileErrors> filePathToErrors;
       synchronized (myLock) {
         filePathToErrors = new HashMap<>(myScheduledFilePathToErrors);
         myScheduledFilePathToErrors.clear();
@@ -288,13 +288,17 @@ public final class DartProblemsView implements PersistentStateComponent<DartProb
     }
   }
 
-  public void updateErrorsForFile(@NotNull final String filePath, @NotNull List<? extends AnalysisError> errors) {
+  /**
+   * @param errorsHash hash of the {@code errors} list, 0 if the list is empty; problems of the file are not recreated if the hash is
+   *                   the same as last time
+   */
+  public void updateErrorsForFile(@NotNull final String filePath, @NotNull List<? extends AnalysisError> errors, int errorsHash) {
     synchronized (myLock) {
       if (myScheduledFilePathToErrors.isEmpty()) {
         myAlarm.addRequest(myUpdateRunnable, TABLE_REFRESH_PERIOD, ModalityState.NON_MODAL);
       }
 
-      myScheduledFilePathToErrors.put(filePath, errors);
+      myScheduledFilePathToErrors.put(filePath, new DartProblemsSnapshotBuilder.FileErrors(errors, errorsHash));
     }
   }
 
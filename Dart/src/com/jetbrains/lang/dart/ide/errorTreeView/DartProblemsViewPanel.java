@@ -79,7 +79,9 @@ public class DartProblemsViewPanel extends SimpleToolWindowPanel implements Data
   }
 
   private @NotNull TableView<DartProblem> createTable() {
-    TableView<DartProblem> table = new TableView<>(new DartProblemsTableModel(myProject, myPresentationHelper));
+    DartProblemsTableModel model = new DartProblemsTableModel(myProject, myPresentationHelper);
+    TableView<DartProblem> table = new TableView<>(model);
+    model.setSnapshotConsumer(this::setSnapshot);
 
     EditSourceOnDoubleClickHandler.install(table);
     EditSourceOnEnterKeyHandler.install(table);
@@ -91,14 +93,14 @@ public class DartProblemsViewPanel extends SimpleToolWindowPanel implements Data
       }
     });
 
-    //noinspection unchecked
-    ((DefaultRowSorter<DartProblemsTableModel, Integer>)table.getRowSorter()).setRowFilter(myPresentationHelper.getRowFilter());
-
-    table.getRowSorter().addRowSorterListener(e -> {
-      List<? extends RowSorter.SortKey> sortKeys = myTable.getRowSorter().getSortKeys();
+    // filtering and sorting are done in background by DartProblemsSnapshotBuilder
+    DartProblemsRowSorter rowSorter = new DartProblemsRowSorter(model);
+    rowSorter.addRowSorterListener(e -> {
+      List<? extends RowSorter.SortKey> sortKeys = rowSorter.getSortKeys();
       assert sortKeys.size() == 1 : sortKeys;
-      ((DartProblemsTableModel)myTable.getModel()).setSortKey(sortKeys.get(0));
+      model.setSortKey(sortKeys.get(0));
     });
+    table.setRowSorter(rowSorter);
 
     new TableSpeedSearch(table, object -> object instanceof DartProblem
                                           ? ((DartProblem)object).getErrorMessage() + " " + ((DartProblem)object).getPresentableLocation()
@@ -283,9 +285,8 @@ public class DartProblemsViewPanel extends SimpleToolWindowPanel implements Data
   }
 
   void fireGroupingOrFilterChanged() {
-    myTable.getRowSorter().allRowsChanged();
-    ((DartProblemsTableModel)myTable.getModel()).onFilterChanged();
-    updateStatusDescription();
+    // status description is updated when the new snapshot is ready
+    ((DartProblemsTableModel)myTable.getModel()).scheduleRebuild();
   }
 
   private void showFiltersPopup() {
@@ -385,11 +386,15 @@ public class DartProblemsViewPanel extends SimpleToolWindowPanel implements Data
     return null;
   }
 
-  public void setErrors(@NotNull Map<String, List<? extends AnalysisError>> filePathToErrors) {
+  void setErrors(@NotNull Map<String, DartProblemsSnapshotBuilder.FileErrors> filePathToErrors) {
+    ((DartProblemsTableModel)myTable.getModel()).updateErrors(filePathToErrors);
+  }
+
+  private void setSnapshot(@NotNull DartProblemsSnapshot snapshot) {
     DartProblemsTableModel model = (DartProblemsTableModel)myTable.getModel();
     DartProblem oldSelectedProblem = myTable.getSelectedObject();
 
-    DartProblem updatedSelectedProblem = model.setProblemsAndReturnReplacementForSelection(filePathToErrors, oldSelectedProblem);
+    DartProblem updatedSelectedProblem = model.setSnapshotAndReturnReplacementForSelection(snapshot, oldSelectedProblem);
 
     if (updatedSelectedProblem != null) {
       myTable.setSelection(Collections.singletonList(updatedSelectedProblem));
@@ -23,6 +23,9 @@ public final class DartIndexUtil {
 
   private static final Key<DartFileIndexData> ourDartCachesData = Key.create("dart.caches.index.data");
 
+  /**
+   * All Dart indices share the same {@link DartFileIndexData}, it is computed once per {@link FileContent} and cached in its user data.
+   */
   public static DartFileIndexData indexFile(FileContent content) {
     DartFileIndexData indexData = content.getUserData(ourDartCachesData);
     if (indexData != null) return indexData;
@@ -31,6 +34,7 @@ public final class DartIndexUtil {
       indexData = content.getUserData(ourDartCachesData);
       if (indexData != null) return indexData;
       indexData = indexFileRoots(content.getPsiFile());
+      content.putUserData(ourDartCachesData, indexData);
     }
 
     return indexData;
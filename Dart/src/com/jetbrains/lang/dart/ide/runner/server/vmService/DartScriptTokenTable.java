@@ -0,0 +1,149 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.jetbrains.lang.dart.ide.runner.server.vmService;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Token position table of a VM service {@code Script} packed into primitive arrays: token positions are sorted, lines and columns
+ * are stored in the parallel arrays. Lines and columns are 0-based.
+ */
+public final class DartScriptTokenTable {
+  private final int[] myTokenPositions;
+  private final int[] myLines;
+  private final int[] myColumns;
+
+  private DartScriptTokenTable(int @NotNull [] tokenPositions, int @NotNull [] lines, int @NotNull [] columns) {
+    myTokenPositions = tokenPositions;
+    myLines = lines;
+    myColumns = columns;
+  }
+
+  /**
+   * @param tokenPosTable as returned by {@code Script.getTokenPosTable()}: each subarray consists of a 1-based line number followed by
+   *                      (tokenPos, 1-based column number) pairs,
+   *                      see https://github.com/dart-lang/vm_service_drivers/blob/master/dart/tool/service.md#script
+   */
+  public static @NotNull DartScriptTokenTable create(@NotNull List<List<Integer>> tokenPosTable) {
+    int size = 0;
+    for (List<Integer> lineAndPairs : tokenPosTable) {
+      size += Math.max(0, lineAndPairs.size() - 1) / 2;
+    }
+
+    int[] tokenPositions = new int[size];
+    int[] lines = new int[size];
+    int[] columns = new int[size];
+    int count = 0;
+    boolean sorted = true;
+
+    for (List<Integer> lineAndPairs : tokenPosTable) {
+      final Iterator<Integer> iterator = lineAndPairs.iterator();
+      if (!iterator.hasNext()) continue;
+
+      final int line = Math.max(0, iterator.next() - 1);
+      while (iterator.hasNext()) {
+        final int tokenPos = iterator.next();
+        if (!iterator.hasNext()) break;
+
+        if (count > 0 && tokenPos <= tokenPositions[count - 1]) {
+          sorted = false;
+        }
+        tokenPositions[count] = tokenPos;
+        lines[count] = line;
+        columns[count] = Math.max(0, iterator.next() - 1);
+        count++;
+      }
+    }
+
+    if (count < size) {
+      tokenPositions = Arrays.copyOf(tokenPositions, count);
+      lines = Arrays.copyOf(lines, count);
+      columns = Arrays.copyOf(columns, count);
+    }
+
+    return sorted ? new DartScriptTokenTable(tokenPositions, lines, columns) : sort(tokenPositions, lines, columns);
+  }
+
+  /**
+   * The VM lists tokens line by line, so normally the table is already sorted. Otherwise, sorts it keeping the last entry for
+   * duplicated token positions, the same way as a map would do.
+   */
+  private static @NotNull DartScriptTokenTable sort(int @NotNull [] tokenPositions, int @NotNull [] lines, int @NotNull [] columns) {
+    final int size = tokenPositions.length;
+    final long[] order = new long[size];
+    for (int i = 0; i < size; i++) {
+      order[i] = (long)tokenPositions[i] << 32 | i;
+    }
+    Arrays.sort(order);
+
+    final int[] sortedTokenPositions = new int[size];
+    final int[] sortedLines = new int[size];
+    final int[] sortedColumns = new int[size];
+    int count = 0;
+    for (long entry : order) {
+      final int index = (int)entry;
+      if (count > 0 && sortedTokenPositions[count - 1] == tokenPositions[index]) {
+        count--;
+      }
+      sortedTokenPositions[count] = tokenPositions[index];
+      sortedLines[count] = lines[index];
+      sortedColumns[count] = columns[index];
+      count++;
+    }
+
+    return new DartScriptTokenTable(Arrays.copyOf(sortedTokenPositions, count),
+                                    Arrays.copyOf(sortedLines, count),
+                                    Arrays.copyOf(sortedColumns, count));
+  }
+
+  /**
+   * @return index to be passed to {@link #getLine(int)} and {@link #getColumn(int)}, or -1 if there's no such token position
+   */
+  public int indexOf(int tokenPos) {
+    final int index = Arrays.binarySearch(myTokenPositions, tokenPos);
+    return index >= 0 ? index : -1;
+  }
+
+  public int getLine(int index) {
+    return myLines[index];
+  }
+
+  public int getColumn(int index) {
+    return myColumns[index];
+  }
+
+  public int size() {
+    return myTokenPositions.length;
+  }
+
+  void write(@NotNull DataOutput out) throws IOException {
+    out.writeInt(myTokenPositions.length);
+    for (int i = 0; i < myTokenPositions.length; i++) {
+      out.writeInt(myTokenPositions[i]);
+      out.writeInt(myLines[i]);
+      out.writeInt(myColumns[i]);
+    }
+  }
+
+  static @NotNull DartScriptTokenTable read(@NotNull DataInput in) throws IOException {
+    final int size = in.readInt();
+    if (size < 0) throw new IOException("Corrupted token table, size: " + size);
+
+    final int[] tokenPositions = new int[size];
+    final int[] lines = new int[size];
+    final int[] columns = new int[size];
+    for (int i = 0; i < size; i++) {
+      tokenPositions[i] = in.readInt();
+      lines[i] = in.readInt();
+      columns[i] = in.readInt();
+      if (i > 0 && tokenPositions[i] <= tokenPositions[i - 1]) throw new IOException("Corrupted token table, unsorted");
+    }
+    return new DartScriptTokenTable(tokenPositions, lines, columns);
+  }
+}
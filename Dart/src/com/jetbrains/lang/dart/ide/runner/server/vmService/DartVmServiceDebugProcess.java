@@ -13,11 +13,12 @@ import com.intellij.openapi.actionSystem.DefaultActionGroup;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectFileIndex;
 import com.intellij.openapi.ui.InputValidator;
 import com.intellij.openapi.ui.Messages;
 import com.intellij.openapi.util.Disposer;
 import com.intellij.openapi.util.Key;
-import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.util.registry.Registry;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.LocalFileSystem;
@@ -49,8 +50,6 @@ import com.jetbrains.lang.dart.ide.runner.server.webdev.DartDaemonParserUtil;
 import com.jetbrains.lang.dart.util.DartBazelFileUtil;
 import com.jetbrains.lang.dart.util.DartResolveUtil;
 import com.jetbrains.lang.dart.util.DartUrlResolver;
-import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
-import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import org.dartlang.vm.service.VmService;
 import org.dartlang.vm.service.element.*;
 import org.dartlang.vm.service.logging.Logging;
@@ -60,6 +59,7 @@ import org.jetbrains.annotations.Nullable;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public final class DartVmServiceDebugProcess extends XDebugProcess {
   private static final Logger LOG = Logger.getInstance(DartVmServiceDebugProcess.class.getName());
@@ -78,8 +78,9 @@ public final class DartVmServiceDebugProcess extends XDebugProcess {
   private final @NotNull Set<String> mySuspendedIsolateIds = Collections.synchronizedSet(new HashSet<>());
   private String myLatestCurrentIsolateId;
 
-  private final Map<String, LightVirtualFile> myScriptIdToContentMap = new HashMap<>();
-  private final Map<String, Int2ObjectMap<Pair<Integer, Integer>>> myScriptIdToLinesAndColumnsMap = new HashMap<>();
+  // filled both by getSourcePosition() and by scripts prefetching
+  private final Map<String, LightVirtualFile> myScriptIdToContentMap = new ConcurrentHashMap<>();
+  private final Map<String, DartScriptTokenTable> myScriptIdToTokenTableMap = new ConcurrentHashMap<>();
 
   private final @Nullable String myDASExecutionContextId;
   private final @NotNull DebugType myDebugType;
@@ -449,6 +450,9 @@ public final class DartVmServiceDebugProcess extends XDebugProcess {
         DartAnalysisServerService.getInstance(getSession().getProject()).execution_deleteContext(myDASExecutionContextId);
       }
 
+      if (Registry.is("dart.debugger.print.request.statistics", false)) {
+        getSession().getConsoleView().print(myVmServiceWrapper.getRequestStatistics() + "\n", ConsoleViewContentType.SYSTEM_OUTPUT);
+      }
       Disposer.dispose(myVmServiceWrapper);
     }
   }
@@ -497,11 +501,13 @@ public final class DartVmServiceDebugProcess extends XDebugProcess {
 
   public void isolateResumed(@NotNull IsolateRef isolateRef) {
     mySuspendedIsolateIds.remove(isolateRef.getId());
+    myVmServiceWrapper.isolateResumed(isolateRef.getId());
   }
 
   public void isolateExit(@NotNull IsolateRef isolateRef) {
     myIsolatesInfo.deleteIsolate(isolateRef);
     mySuspendedIsolateIds.remove(isolateRef.getId());
+    myVmServiceWrapper.isolateResumed(isolateRef.getId());
 
     if (isolateRef.getId().equals(myLatestCurrentIsolateId)) {
       resume(getSession().getSuspendContext()); // otherwise no way no resume them from UI
@@ -601,8 +607,29 @@ public final class DartVmServiceDebugProcess extends XDebugProcess {
   }
 
   public @Nullable XSourcePosition getSourcePosition(@NotNull String isolateId, @NotNull ScriptRef scriptRef, int tokenPos) {
-    VirtualFile file = ReadAction.compute(() -> {
-      String uri = scriptRef.getUri();
+    final String scriptId = scriptRef.getId();
+    final VirtualFile localFile = findLocalFile(scriptRef.getUri());
+
+    if (!myScriptIdToTokenTableMap.containsKey(scriptId) || localFile == null && !myScriptIdToContentMap.containsKey(scriptId)) {
+      if (!loadScriptFromPersistentCache(scriptRef, localFile)) {
+        final Script script = myVmServiceWrapper.getScriptSync(isolateId, scriptId);
+        if (script == null || !scriptReceived(script, localFile)) return null;
+      }
+    }
+
+    final VirtualFile file = localFile != null ? localFile : myScriptIdToContentMap.get(scriptId);
+    if (file == null) return null;
+
+    final DartScriptTokenTable tokenTable = myScriptIdToTokenTableMap.get(scriptId);
+    final int index = tokenTable != null ? tokenTable.indexOf(tokenPos) : -1;
+    if (index < 0) return XDebuggerUtil.getInstance().createPositionByOffset(file, 0);
+
+    return XDebuggerUtil.getInstance().createPosition(file, tokenTable.getLine(index), tokenTable.getColumn(index));
+  }
+
+  private @Nullable VirtualFile findLocalFile(@NotNull String scriptUri) {
+    return ReadAction.compute(() -> {
+      String uri = scriptUri;
 
       if (myDASExecutionContextId != null && !isDartPatchUri(uri)) {
         final String path =
@@ -637,66 +664,119 @@ public final class DartVmServiceDebugProcess extends XDebugProcess {
       }
       return myDartUrlResolver.findFileByDartUrl(uri);
     });
+  }
 
-    if (file == null) {
-      file = myScriptIdToContentMap.get(scriptRef.getId());
-    }
+  /**
+   * Bulk-loads SDK and package scripts of the isolate that has become runnable, so that the first pause doesn't wait for
+   * synchronous {@code getObject} requests, one per each script on the stack.
+   */
+  public void prefetchScripts(@NotNull IsolateRef isolateRef) {
+    final String isolateId = isolateRef.getId();
+    myVmServiceWrapper.getScripts(isolateId, scriptRefs -> ApplicationManager.getApplication().executeOnPooledThread(() -> {
+      final List<String> scriptIdsToFetch = new ArrayList<>();
+      final Map<String, VirtualFile> scriptIdToLocalFile = new HashMap<>();
+
+      for (ScriptRef scriptRef : scriptRefs) {
+        final String scriptId = scriptRef.getId();
+        final String uri = scriptRef.getUri();
+        if (!uri.startsWith("dart:") && !uri.startsWith(DartUrlResolver.PACKAGE_PREFIX)) continue;
+        if (myScriptIdToTokenTableMap.containsKey(scriptId)) continue;
+
+        final VirtualFile localFile = findLocalFile(uri);
+        if (loadScriptFromPersistentCache(scriptRef, localFile)) continue;
+
+        scriptIdsToFetch.add(scriptId);
+        if (localFile != null) {
+          scriptIdToLocalFile.put(scriptId, localFile);
+        }
+      }
 
-    Int2ObjectMap<Pair<Integer, Integer>> tokenPosToLineAndColumn = myScriptIdToLinesAndColumnsMap.get(scriptRef.getId());
+      LOG.debug("Prefetching " + scriptIdsToFetch.size() + " scripts of " + scriptRefs.size() + " for isolate " + isolateId);
 
-    if (file != null && tokenPosToLineAndColumn != null) {
-      final Pair<Integer, Integer> lineAndColumn = tokenPosToLineAndColumn.get(tokenPos);
-      if (lineAndColumn == null) return XDebuggerUtil.getInstance().createPositionByOffset(file, 0);
-      return XDebuggerUtil.getInstance().createPosition(file, lineAndColumn.first, lineAndColumn.second);
-    }
+      // Callbacks come in the Web Socket listening thread, which is not a place for reading and writing files.
+      myVmServiceWrapper.prefetchScripts(isolateId, scriptIdsToFetch, script -> ApplicationManager.getApplication()
+        .executeOnPooledThread(() -> scriptReceived(script, scriptIdToLocalFile.get(script.getId()))));
+    }));
+  }
+
+  /**
+   * @return {@code true} if the script content (unless it has a local copy) and its token table have been loaded from the cache
+   */
+  private boolean loadScriptFromPersistentCache(@NotNull ScriptRef scriptRef, @Nullable VirtualFile localFile) {
+    final String vmVersion = myVmServiceWrapper.getVmVersion();
+    final String uri = scriptRef.getUri();
+    if (vmVersion == null || !isPersistentlyCacheable(uri, localFile)) return false;
+
+    final byte[] localFileContent = localFile != null ? loadContent(localFile) : null;
+    if (localFile != null && localFileContent == null) return false;
 
-    final Script script = myVmServiceWrapper.getScriptSync(isolateId, scriptRef.getId());
-    if (script == null) return null;
+    final DartVmServiceScriptCache.Entry entry = DartVmServiceScriptCache.getInstance().get(vmVersion, uri, localFileContent);
+    if (entry == null) return false;
 
-    String scriptSource = script.getSource();
-    if (scriptSource == null) return null;
+    if (entry.source != null) {
+      myScriptIdToContentMap.computeIfAbsent(scriptRef.getId(), id -> createScriptContentFile(uri, entry.source));
+    }
+    myScriptIdToTokenTableMap.put(scriptRef.getId(), entry.tokenTable);
+    return true;
+  }
+
+  /**
+   * @return {@code false} if the script has no source
+   */
+  private boolean scriptReceived(@NotNull Script script, @Nullable VirtualFile localFile) {
+    final String scriptSource = script.getSource();
+    if (scriptSource == null) return false;
 
-    if (file == null) {
-      file = new LightVirtualFile(PathUtil.getFileName(script.getUri()), DartFileType.INSTANCE, scriptSource);
-      ((LightVirtualFile)file).setWritable(false);
-      myScriptIdToContentMap.put(scriptRef.getId(), (LightVirtualFile)file);
+    if (localFile == null) {
+      myScriptIdToContentMap.computeIfAbsent(script.getId(), id -> createScriptContentFile(script.getUri(), scriptSource));
     }
 
-    if (tokenPosToLineAndColumn == null) {
-      List<List<Integer>> table = script.getTokenPosTable();
-      if (table != null) {
-        tokenPosToLineAndColumn = createTokenPosToLineAndColumnMap(table);
-        myScriptIdToLinesAndColumnsMap.put(scriptRef.getId(), tokenPosToLineAndColumn);
+    final List<List<Integer>> table = script.getTokenPosTable();
+    if (table == null) return true;
+
+    final DartScriptTokenTable tokenTable = DartScriptTokenTable.create(table);
+    myScriptIdToTokenTableMap.put(script.getId(), tokenTable);
+
+    final String vmVersion = myVmServiceWrapper.getVmVersion();
+    if (vmVersion != null && isPersistentlyCacheable(script.getUri(), localFile)) {
+      final byte[] localFileContent = localFile != null ? loadContent(localFile) : null;
+      if (localFile == null || localFileContent != null) {
+        DartVmServiceScriptCache.getInstance().put(vmVersion, script.getUri(), localFileContent, scriptSource, tokenTable);
       }
     }
+    return true;
+  }
 
-    final Pair<Integer, Integer> lineAndColumn = tokenPosToLineAndColumn != null ? tokenPosToLineAndColumn.get(tokenPos) : null;
-    if (lineAndColumn == null) return XDebuggerUtil.getInstance().createPositionByOffset(file, 0);
+  /**
+   * {@code package:} URIs also refer to the libraries of the project itself and of its path dependencies, which are edited all the time,
+   * so only scripts outside the project content go to the persistent cache.
+   */
+  private boolean isPersistentlyCacheable(@NotNull String uri, @Nullable VirtualFile localFile) {
+    if (!DartVmServiceScriptCache.isCacheable(uri, localFile != null)) return false;
+    if (localFile == null) return true;
 
-    return XDebuggerUtil.getInstance().createPosition(file, lineAndColumn.first, lineAndColumn.second);
+    final Project project = getSession().getProject();
+    return ReadAction.compute(() -> !project.isDisposed() && !ProjectFileIndex.getInstance(project).isInContent(localFile));
   }
 
-  private static boolean isDartPatchUri(@NotNull String uri) {
-    // dart:_builtin or dart:core-patch/core_patch.dart
-    return uri.startsWith("dart:_") || uri.startsWith("dart:") && uri.contains("-patch/");
+  private static @NotNull LightVirtualFile createScriptContentFile(@NotNull String uri, @NotNull String source) {
+    final LightVirtualFile file = new LightVirtualFile(PathUtil.getFileName(uri), DartFileType.INSTANCE, source);
+    file.setWritable(false);
+    return file;
   }
 
-  private static Int2ObjectMap<Pair<Integer, Integer>> createTokenPosToLineAndColumnMap(@NotNull List<List<Integer>> tokenPosTable) {
-    // Each subarray consists of a line number followed by (tokenPos, columnNumber) pairs
-    // see https://github.com/dart-lang/vm_service_drivers/blob/master/dart/tool/service.md#script
-    final Int2ObjectMap<Pair<Integer, Integer>> result = new Int2ObjectOpenHashMap<>();
-
-    for (List<Integer> lineAndPairs : tokenPosTable) {
-      final Iterator<Integer> iterator = lineAndPairs.iterator();
-      int line = Math.max(0, iterator.next() - 1);
-      while (iterator.hasNext()) {
-        final int tokenPos = iterator.next();
-        final int column = Math.max(0, iterator.next() - 1);
-        result.put(tokenPos, Pair.create(line, column));
-      }
+  private static byte @Nullable [] loadContent(@NotNull VirtualFile file) {
+    try {
+      return file.contentsToByteArray();
     }
+    catch (IOException e) {
+      return null;
+    }
+  }
 
-    return result;
+  private static boolean isDartPatchUri(@NotNull String uri) {
+    // dart:_builtin or dart:core-patch/core_patch.dart
+    return uri.startsWith("dart:_") || uri.startsWith("dart:") && uri.contains("-patch/");
   }
 
   public @Nullable String getCurrentIsolateId() {
@@ -67,6 +67,7 @@ public class DartVmServiceListener implements VmServiceListener {
       case IsolateReload:
         break;
       case IsolateRunnable:
+        myDebugProcess.prefetchScripts(Objects.requireNonNull(event.getIsolate()));
         break;
       case IsolateStart:
         break;
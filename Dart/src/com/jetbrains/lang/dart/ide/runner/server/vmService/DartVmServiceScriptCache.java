@@ -0,0 +1,214 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.jetbrains.lang.dart.ide.runner.server.vmService;
+
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * On-disk cache of SDK and package scripts received from the VM service, shared by all debug sessions. It saves the synchronous
+ * {@code getObject} round trips for the scripts that do not change between runs, which matters for hot-restart-heavy Flutter sessions.
+ * <p>
+ * Entries are keyed by the VM version and the script URI. If the script has a local copy then the entry keeps only the hash of its
+ * content, and the entry is valid as long as the local file content is the same. Otherwise the script source is stored as well; this is
+ * allowed only for {@code dart:} scripts, which can't change while the VM version is the same.
+ */
+final class DartVmServiceScriptCache {
+  private static final Logger LOG = Logger.getInstance(DartVmServiceScriptCache.class.getName());
+
+  private static final int FORMAT_VERSION = 1;
+  private static final int MAX_ENTRIES = 5000;
+
+  private static final class Holder {
+    private static final DartVmServiceScriptCache INSTANCE =
+      new DartVmServiceScriptCache(Paths.get(PathManager.getSystemPath(), "dart-vm-scripts"));
+  }
+
+  static final class Entry {
+    /**
+     * {@code null} if the script has a local copy
+     */
+    final @Nullable String source;
+    final @NotNull DartScriptTokenTable tokenTable;
+
+    private Entry(@Nullable String source, @NotNull DartScriptTokenTable tokenTable) {
+      this.source = source;
+      this.tokenTable = tokenTable;
+    }
+  }
+
+  private final @NotNull Path myCacheDir;
+  private final AtomicBoolean myPruned = new AtomicBoolean();
+
+  DartVmServiceScriptCache(@NotNull Path cacheDir) {
+    myCacheDir = cacheDir;
+  }
+
+  static @NotNull DartVmServiceScriptCache getInstance() {
+    return Holder.INSTANCE;
+  }
+
+  /**
+   * Project scripts change all the time, so only library scripts are worth caching. Package scripts may be cached only if they have
+   * a local copy to check the content hash against.
+   */
+  static boolean isCacheable(@NotNull String uri, boolean hasLocalFile) {
+    return uri.startsWith("dart:") || hasLocalFile && uri.startsWith("package:");
+  }
+
+  /**
+   * @param localFileContent content of the local copy of the script, {@code null} if there's no local copy
+   */
+  @Nullable Entry get(@NotNull String vmVersion, @NotNull String uri, byte @Nullable [] localFileContent) {
+    if (!isCacheable(uri, localFileContent != null)) return null;
+
+    final Path file = getEntryFile(vmVersion, uri);
+    if (!Files.isRegularFile(file)) return null;
+
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+      if (in.readInt() != FORMAT_VERSION || !vmVersion.equals(in.readUTF()) || !uri.equals(in.readUTF())) return null;
+
+      final byte[] contentHash = readBytes(in);
+      final String source = in.readBoolean() ? new String(readBytes(in), StandardCharsets.UTF_8) : null;
+
+      if (localFileContent != null) {
+        if (!Arrays.equals(contentHash, hash(localFileContent))) return null;
+      }
+      else if (source == null) {
+        return null;
+      }
+
+      return new Entry(localFileContent != null ? null : source, DartScriptTokenTable.read(in));
+    }
+    catch (IOException e) {
+      LOG.debug("Failed to read cached script " + uri + " from " + file, e);
+      deleteQuietly(file);
+      return null;
+    }
+  }
+
+  /**
+   * @param localFileContent content of the local copy of the script, {@code null} if there's no local copy
+   */
+  void put(@NotNull String vmVersion,
+           @NotNull String uri,
+           byte @Nullable [] localFileContent,
+           @NotNull String source,
+           @NotNull DartScriptTokenTable tokenTable) {
+    if (!isCacheable(uri, localFileContent != null)) return;
+
+    Path tempFile = null;
+    try {
+      Files.createDirectories(myCacheDir);
+      pruneOnce();
+
+      final byte[] sourceBytes = source.getBytes(StandardCharsets.UTF_8);
+
+      tempFile = Files.createTempFile(myCacheDir, "script", ".tmp");
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+        out.writeInt(FORMAT_VERSION);
+        out.writeUTF(vmVersion);
+        out.writeUTF(uri);
+        writeBytes(out, hash(localFileContent != null ? localFileContent : sourceBytes));
+        out.writeBoolean(localFileContent == null);
+        if (localFileContent == null) {
+          writeBytes(out, sourceBytes);
+        }
+        tokenTable.write(out);
+      }
+
+      final Path file = getEntryFile(vmVersion, uri);
+      try {
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      }
+      catch (AtomicMoveNotSupportedException e) {
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+      }
+    }
+    catch (IOException e) {
+      LOG.debug("Failed to cache script " + uri, e);
+      if (tempFile != null) {
+        deleteQuietly(tempFile);
+      }
+    }
+  }
+
+  /**
+   * Keeps the cache size bounded: once per IDE session removes the least recently written entries above the limit.
+   */
+  private void pruneOnce() throws IOException {
+    if (!myPruned.compareAndSet(false, true)) return;
+
+    final List<Path> files = new ArrayList<>();
+    try (Stream<Path> stream = Files.list(myCacheDir)) {
+      stream.forEach(files::add);
+    }
+    if (files.size() <= MAX_ENTRIES) return;
+
+    files.sort(Comparator.comparingLong(DartVmServiceScriptCache::getLastModified));
+    for (Path file : files.subList(0, files.size() - MAX_ENTRIES)) {
+      deleteQuietly(file);
+    }
+  }
+
+  private @NotNull Path getEntryFile(@NotNull String vmVersion, @NotNull String uri) {
+    final byte[] keyHash = hash((vmVersion + '\n' + uri).getBytes(StandardCharsets.UTF_8));
+    final StringBuilder name = new StringBuilder(keyHash.length * 2);
+    for (byte b : keyHash) {
+      name.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+    }
+    return myCacheDir.resolve(name.toString());
+  }
+
+  private static byte @NotNull [] hash(byte @NotNull [] bytes) {
+    try {
+      return MessageDigest.getInstance("SHA-256").digest(bytes);
+    }
+    catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static void writeBytes(@NotNull DataOutput out, byte @NotNull [] bytes) throws IOException {
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static byte @NotNull [] readBytes(@NotNull DataInput in) throws IOException {
+    final int length = in.readInt();
+    if (length < 0) throw new IOException("Corrupted entry, length: " + length);
+    final byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return bytes;
+  }
+
+  private static long getLastModified(@NotNull Path file) {
+    try {
+      return Files.getLastModifiedTime(file).toMillis();
+    }
+    catch (IOException e) {
+      return 0;
+    }
+  }
+
+  private static void deleteQuietly(@NotNull Path file) {
+    try {
+      Files.deleteIfExists(file);
+    }
+    catch (IOException ignore) {
+    }
+  }
+}
@@ -0,0 +1,127 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.jetbrains.lang.dart.ide.runner.server.vmService;
+
+import org.dartlang.vm.service.consumer.GetObjectConsumer;
+import org.dartlang.vm.service.element.Instance;
+import org.dartlang.vm.service.element.Obj;
+import org.dartlang.vm.service.element.RPCError;
+import org.dartlang.vm.service.element.Sentinel;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Coalesces identical {@code getObject} requests and remembers received {@link Instance}s while the isolate is paused.
+ * <p>
+ * Expanding a node in the Variables view and, for example, rendering of the same object in the Watches view, or repeated expanding
+ * of the same collection range, ask for the same objects. While a request is in flight, identical requests just wait for its answer.
+ * Received instances are served from the cache until the isolate is resumed or runs code for an evaluated expression or an invoked
+ * method, which may change any object, see {@link #invalidate(String)}.
+ */
+final class VmServiceObjectCache {
+  private static final class IsolateObjects {
+    private final Map<String, Instance> myInstances = new HashMap<>();
+    private final Map<String, List<GetObjectConsumer>> myPendingConsumers = new HashMap<>();
+  }
+
+  private final Map<String, IsolateObjects> myIsolateIdToObjects = new HashMap<>();
+
+  private int myCacheHits;
+  private int myCoalescedRequests;
+
+  /**
+   * Calls {@code consumer} with the cached instance, or waits for the pending identical request, or calls {@code sender} to send
+   * a new request with a consumer that will notify all consumers waiting for this object.
+   */
+  void getObject(@NotNull String isolateId,
+                 @NotNull String objectId,
+                 @Nullable Integer offset,
+                 @Nullable Integer count,
+                 @NotNull GetObjectConsumer consumer,
+                 @NotNull Consumer<? super GetObjectConsumer> sender) {
+    final String key = objectId + '\n' + offset + '\n' + count;
+    final IsolateObjects objects;
+    final Instance cached;
+
+    synchronized (this) {
+      objects = myIsolateIdToObjects.computeIfAbsent(isolateId, id -> new IsolateObjects());
+      cached = objects.myInstances.get(key);
+
+      if (cached == null) {
+        final List<GetObjectConsumer> pending = objects.myPendingConsumers.get(key);
+        if (pending != null) {
+          myCoalescedRequests++;
+          pending.add(consumer);
+          return;
+        }
+
+        final List<GetObjectConsumer> consumers = new ArrayList<>(1);
+        consumers.add(consumer);
+        objects.myPendingConsumers.put(key, consumers);
+      }
+      else {
+        myCacheHits++;
+      }
+    }
+
+    if (cached != null) {
+      consumer.received(cached);
+      return;
+    }
+
+    sender.accept(new GetObjectConsumer() {
+      @Override
+      public void received(Obj response) {
+        for (GetObjectConsumer pendingConsumer : takePendingConsumers(objects, key, response)) {
+          pendingConsumer.received(response);
+        }
+      }
+
+      @Override
+      public void received(Sentinel response) {
+        for (GetObjectConsumer pendingConsumer : takePendingConsumers(objects, key, null)) {
+          pendingConsumer.received(response);
+        }
+      }
+
+      @Override
+      public void onError(RPCError error) {
+        for (GetObjectConsumer pendingConsumer : takePendingConsumers(objects, key, null)) {
+          pendingConsumer.onError(error);
+        }
+      }
+    });
+  }
+
+  private synchronized @NotNull List<GetObjectConsumer> takePendingConsumers(@NotNull IsolateObjects objects,
+                                                                             @NotNull String key,
+                                                                             @Nullable Obj response) {
+    // If the isolate has been resumed meanwhile then objects is not in the myIsolateIdToObjects map anymore and the response
+    // is not cached.
+    if (response instanceof Instance) {
+      objects.myInstances.put(key, (Instance)response);
+    }
+    final List<GetObjectConsumer> consumers = objects.myPendingConsumers.remove(key);
+    return consumers != null ? consumers : new ArrayList<>();
+  }
+
+  /**
+   * Must be called when the isolate is resumed, exited or its stack is rewound, and when an evaluation or invocation in it completes.
+   */
+  synchronized void invalidate(@NotNull String isolateId) {
+    myIsolateIdToObjects.remove(isolateId);
+  }
+
+  synchronized void clear() {
+    myIsolateIdToObjects.clear();
+  }
+
+  synchronized @NotNull String getStatistics() {
+    return "getObject cache hits: " + myCacheHits + ", coalesced requests: " + myCoalescedRequests;
+  }
+}
@@ -0,0 +1,53 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.jetbrains.lang.dart.ide.runner.server.vmService;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of the VM service requests per RPC method, measured from the moment the request is scheduled till the answer is received,
+ * i.e. the time the debugger UI waits for it.
+ */
+final class VmServiceRequestStatistics {
+  private static final class MethodStatistics {
+    private int myCount;
+    private long myTotalNanos;
+    private long myMaxNanos;
+  }
+
+  private final Map<String, MethodStatistics> myMethodToStatistics = new TreeMap<>();
+
+  /**
+   * @param startNanos {@link System#nanoTime()} at the moment the request has been scheduled
+   * @return request latency in milliseconds
+   */
+  synchronized long requestCompleted(@NotNull String method, long startNanos) {
+    final long nanos = System.nanoTime() - startNanos;
+    final MethodStatistics statistics = myMethodToStatistics.computeIfAbsent(method, m -> new MethodStatistics());
+    statistics.myCount++;
+    statistics.myTotalNanos += nanos;
+    statistics.myMaxNanos = Math.max(statistics.myMaxNanos, nanos);
+    return TimeUnit.NANOSECONDS.toMillis(nanos);
+  }
+
+  synchronized void clear() {
+    myMethodToStatistics.clear();
+  }
+
+  @Override
+  public synchronized String toString() {
+    final StringBuilder result = new StringBuilder();
+    for (Map.Entry<String, MethodStatistics> entry : myMethodToStatistics.entrySet()) {
+      final MethodStatistics statistics = entry.getValue();
+      if (result.length() > 0) result.append(", ");
+      result.append(entry.getKey())
+        .append(": ").append(statistics.myCount).append(" requests")
+        .append(", avg ").append(TimeUnit.NANOSECONDS.toMillis(statistics.myTotalNanos / statistics.myCount)).append(" ms")
+        .append(", max ").append(TimeUnit.NANOSECONDS.toMillis(statistics.myMaxNanos)).append(" ms");
+    }
+    return result.toString();
+  }
+}
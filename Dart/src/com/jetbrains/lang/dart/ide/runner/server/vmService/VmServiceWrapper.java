@@ -30,12 +30,17 @@ import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class VmServiceWrapper implements Disposable {
 
   public static final Logger LOG = Logger.getInstance(VmServiceWrapper.class.getName());
   private static final long RESPONSE_WAIT_TIMEOUT = 3000; // millis
+  // number of getObject requests for prefetched scripts that may be waiting for the answer at the same time
+  private static final int SCRIPT_PREFETCH_WINDOW = 8;
+  private static final long SLOW_REQUEST_THRESHOLD = 1000; // millis
 
   private final DartVmServiceDebugProcess myDebugProcess;
   private final VmService myVmService;
@@ -43,8 +48,13 @@ public class VmServiceWrapper implements Disposable {
   private final IsolatesInfo myIsolatesInfo;
   private final DartVmServiceBreakpointHandler myBreakpointHandler;
   private final Alarm myRequestsScheduler;
+  private final Queue<Runnable> myPendingRequests = new ConcurrentLinkedQueue<>();
+  private final AtomicBoolean myPendingRequestsScheduled = new AtomicBoolean();
+  private final VmServiceObjectCache myObjectCache = new VmServiceObjectCache();
+  private final VmServiceRequestStatistics myRequestStatistics = new VmServiceRequestStatistics();
 
   private long myVmServiceReceiverThreadId;
+  private volatile @Nullable String myVmVersion;
 
   private @Nullable StepOption myLatestStep;
 
@@ -63,18 +73,72 @@ public class VmServiceWrapper implements Disposable {
 
   @Override
   public void dispose() {
+    LOG.debug(getRequestStatistics());
+    myPendingRequests.clear();
+    myObjectCache.clear();
   }
 
+  /**
+   * Per-method latency of the requests sent so far and the effect of the object cache, for diagnostics of slow debugger UI
+   */
+  public @NotNull String getRequestStatistics() {
+    return "VM service requests latency: " + myRequestStatistics + "; " + myObjectCache.getStatistics();
+  }
+
+  /**
+   * Requests are sent in batches: a burst of requests (like getObject calls for all children of the expanded node) is sent
+   * by a single pooled thread task without waiting for the answers, so many requests may be in flight at the same time.
+   */
   private void addRequest(@NotNull Runnable runnable) {
-    if (!myRequestsScheduler.isDisposed()) {
-      myRequestsScheduler.addRequest(runnable, 0);
+    if (myRequestsScheduler.isDisposed()) return;
+
+    myPendingRequests.add(runnable);
+    if (myPendingRequestsScheduled.compareAndSet(false, true)) {
+      myRequestsScheduler.addRequest(this::sendPendingRequests, 0);
     }
   }
 
+  private void sendPendingRequests() {
+    myPendingRequestsScheduled.set(false);
+
+    Runnable request;
+    while ((request = myPendingRequests.poll()) != null) {
+      try {
+        request.run();
+      }
+      catch (Exception e) {
+        LOG.error(e);
+      }
+    }
+  }
+
+  private void requestCompleted(@NotNull String method, long startNanos) {
+    final long millis = myRequestStatistics.requestCompleted(method, startNanos);
+    if (millis > SLOW_REQUEST_THRESHOLD) {
+      LOG.debug("Slow VM service request: " + method + " took " + millis + " ms");
+    }
+  }
+
+  /**
+   * Evaluated expressions and invoked methods run code in the paused isolate and may change any object, so instances received before
+   * must not be reused.
+   */
+  private void evaluationCompleted(@NotNull String isolateId, @NotNull String method, long startNanos) {
+    myObjectCache.invalidate(isolateId);
+    requestCompleted(method, startNanos);
+  }
+
   public @Nullable StepOption getLatestStep() {
     return myLatestStep;
   }
 
+  /**
+   * @return version of the VM the debugger is connected to, {@code null} if not known yet
+   */
+  public @Nullable String getVmVersion() {
+    return myVmVersion;
+  }
+
   private void assertSyncRequestAllowed() {
     if (ApplicationManager.getApplication().isDispatchThread()) {
       LOG.error("EDT should not be blocked by waiting for for the answer from the Dart debugger");
@@ -98,6 +162,7 @@ public class VmServiceWrapper implements Disposable {
             getVm(new VmServiceConsumers.VmConsumerWrapper() {
               @Override
               public void received(final VM vm) {
+                myVmVersion = vm.getVersion();
                 for (final IsolateRef isolateRef : vm.getIsolates()) {
                   getIsolate(isolateRef.getId(), new VmServiceConsumers.GetIsolateConsumerWrapper() {
                     @Override
@@ -114,6 +179,11 @@ public class VmServiceWrapper implements Disposable {
                       // if event is not PauseStart it means that PauseStart event will follow later and will be handled by listener
                       handleIsolate(isolateRef, eventKind == EventKind.PauseStart);
 
+                      // IsolateRunnable event has been missed
+                      if (isolate.getRunnable()) {
+                        myDebugProcess.prefetchScripts(isolateRef);
+                      }
+
                       // Handle the case of isolates paused when we connect (this can come up in remote debugging).
                       if (eventKind == EventKind.PauseBreakpoint ||
                           eventKind == EventKind.PauseException ||
@@ -351,6 +421,7 @@ public class VmServiceWrapper implements Disposable {
   }
 
   public void resumeIsolate(@NotNull String isolateId, @Nullable StepOption stepOption) {
+    myObjectCache.invalidate(isolateId);
     addRequest(() -> {
       myLatestStep = stepOption;
       myVmService.resume(isolateId, stepOption, null, VmServiceConsumers.EMPTY_SUCCESS_CONSUMER);
@@ -370,6 +441,7 @@ public class VmServiceWrapper implements Disposable {
    * function, so frameIndex must be at least 1.
    */
   public void dropFrame(@NotNull String isolateId, int frameIndex) {
+    myObjectCache.invalidate(isolateId);
     addRequest(() -> {
       myLatestStep = StepOption.Rewind;
       myVmService.resume(isolateId, StepOption.Rewind, frameIndex, new SuccessConsumer() {
@@ -386,6 +458,13 @@ public class VmServiceWrapper implements Disposable {
     });
   }
 
+  /**
+   * Called when the isolate is resumed or has exited, no matter by whom, so that objects received while it was paused are not reused.
+   */
+  public void isolateResumed(@NotNull String isolateId) {
+    myObjectCache.invalidate(isolateId);
+  }
+
   public void pauseIsolate(@NotNull String isolateId) {
     addRequest(() -> myVmService.pause(isolateId, VmServiceConsumers.EMPTY_SUCCESS_CONSUMER));
   }
@@ -394,9 +473,11 @@ public class VmServiceWrapper implements Disposable {
                                  int firstFrameIndex,
                                  @NotNull XExecutionStack.XStackFrameContainer container,
                                  @Nullable InstanceRef exception) {
+    final long startNanos = System.nanoTime();
     addRequest(() -> myVmService.getStack(isolateId, new StackConsumer() {
       @Override
       public void received(final Stack vmStack) {
+        requestCompleted("getStack", startNanos);
         ApplicationManager.getApplication().executeOnPooledThread(() -> {
           InstanceRef exceptionToAddToFrame = exception;
 
@@ -433,6 +514,7 @@ public class VmServiceWrapper implements Disposable {
 
       @Override
       public void onError(final RPCError error) {
+        requestCompleted("getStack", startNanos);
         @NlsSafe String message = error.getMessage();
         container.errorOccurred(message);
       }
@@ -447,7 +529,8 @@ public class VmServiceWrapper implements Disposable {
 
     final Ref<Script> resultRef = Ref.create();
 
-    addRequest(() -> myVmService.getObject(isolateId, scriptId, new GetObjectConsumer() {
+    final long startNanos = System.nanoTime();
+    addRequest(() -> myVmService.getObject(isolateId, scriptId, timed("getObject(Script)", startNanos, new GetObjectConsumer() {
       @Override
       public void received(Obj script) {
         resultRef.set((Script)script);
@@ -463,14 +546,71 @@ public class VmServiceWrapper implements Disposable {
       public void onError(RPCError error) {
         semaphore.up();
       }
-    }));
+    })));
 
     semaphore.waitFor(RESPONSE_WAIT_TIMEOUT);
     return resultRef.get();
   }
 
+  public void getScripts(@NotNull String isolateId, @NotNull java.util.function.Consumer<? super List<ScriptRef>> consumer) {
+    addRequest(() -> myVmService.getScripts(isolateId, new ScriptListConsumer() {
+      @Override
+      public void received(ScriptList response) {
+        consumer.accept(response.getScripts());
+      }
+
+      @Override
+      public void onError(RPCError error) {
+      }
+    }));
+  }
+
+  /**
+   * Asynchronously requests the given scripts keeping at most {@link #SCRIPT_PREFETCH_WINDOW} requests in flight, so that the bulk
+   * prefetch doesn't delay other requests too much. {@code consumer} is called in the Web Socket listening thread.
+   */
+  public void prefetchScripts(@NotNull String isolateId,
+                              @NotNull List<String> scriptIds,
+                              @NotNull java.util.function.Consumer<? super Script> consumer) {
+    final AtomicInteger nextIndex = new AtomicInteger();
+
+    final Runnable requestNext = new Runnable() {
+      @Override
+      public void run() {
+        final int index = nextIndex.getAndIncrement();
+        if (index >= scriptIds.size()) return;
+
+        final Runnable thisRunnable = this;
+        final long startNanos = System.nanoTime();
+        addRequest(() -> myVmService.getObject(isolateId, scriptIds.get(index), timed("getObject(Script)", startNanos, new GetObjectConsumer() {
+          @Override
+          public void received(Obj script) {
+            if (script instanceof Script) {
+              consumer.accept((Script)script);
+            }
+            thisRunnable.run();
+          }
+
+          @Override
+          public void received(Sentinel response) {
+            thisRunnable.run();
+          }
+
+          @Override
+          public void onError(RPCError error) {
+            thisRunnable.run();
+          }
+        })));
+      }
+    };
+
+    for (int i = 0; i < Math.min(SCRIPT_PREFETCH_WINDOW, scriptIds.size()); i++) {
+      requestNext.run();
+    }
+  }
+
   public void getObject(@NotNull String isolateId, @NotNull String objectId, @NotNull GetObjectConsumer consumer) {
-    addRequest(() -> myVmService.getObject(isolateId, objectId, consumer));
+    getObject(isolateId, objectId, null, null, consumer);
   }
 
   public void getCollectionObject(@NotNull String isolateId,
@@ -478,32 +618,47 @@ public class VmServiceWrapper implements Disposable {
                                   int offset,
                                   int count,
                                   @NotNull GetObjectConsumer consumer) {
-    addRequest(() -> myVmService.getObject(isolateId, objectId, offset, count, consumer));
+    getObject(isolateId, objectId, offset, count, consumer);
+  }
+
+  private void getObject(@NotNull String isolateId,
+                         @NotNull String objectId,
+                         @Nullable Integer offset,
+                         @Nullable Integer count,
+                         @NotNull GetObjectConsumer consumer) {
+    final long startNanos = System.nanoTime();
+    addRequest(() -> myObjectCache.getObject(isolateId, objectId, offset, count, consumer, responseConsumer ->
+      myVmService.getObject(isolateId, objectId, offset, count, timed("getObject", startNanos, responseConsumer))));
   }
 
   public void evaluateInFrame(@NotNull String isolateId,
                               @NotNull Frame vmFrame,
                               @NotNull String expression,
                               @NotNull XDebuggerEvaluator.XEvaluationCallback callback) {
+    final long startNanos = System.nanoTime();
     addRequest(() -> myVmService.evaluateInFrame(isolateId, vmFrame.getIndex(), expression, new EvaluateInFrameConsumer() {
       @Override
       public void received(InstanceRef instanceRef) {
+        evaluationCompleted(isolateId, "evaluateInFrame", startNanos);
         callback.evaluated(new DartVmServiceValue(myDebugProcess, isolateId, "result", instanceRef, null, null, false));
       }
 
       @Override
       public void received(Sentinel sentinel) {
+        evaluationCompleted(isolateId, "evaluateInFrame", startNanos);
         @NlsSafe String message = sentinel.getValueAsString();
         callback.errorOccurred(message);
       }
 
       @Override
       public void received(ErrorRef errorRef) {
+        evaluationCompleted(isolateId, "evaluateInFrame", startNanos);
         callback.errorOccurred(DartVmServiceEvaluator.getPresentableError(errorRef.getMessage()));
       }
 
       @Override
       public void onError(RPCError error) {
+        evaluationCompleted(isolateId, "evaluateInFrame", startNanos);
         @NlsSafe String message = error.getMessage();
         callback.errorOccurred(message);
       }
@@ -515,7 +670,8 @@ public class VmServiceWrapper implements Disposable {
                                       @NotNull String targetId,
                                       @NotNull String expression,
                                       @NotNull EvaluateConsumer consumer) {
-    addRequest(() -> myVmService.evaluate(isolateId, targetId, expression, consumer));
+    final long startNanos = System.nanoTime();
+    addRequest(() -> myVmService.evaluate(isolateId, targetId, expression, timedEvaluation(isolateId, "evaluate", startNanos, consumer)));
   }
 
   public void evaluateInTargetContext(@NotNull String isolateId,
@@ -561,7 +717,9 @@ public class VmServiceWrapper implements Disposable {
                                   @NotNull InvokeConsumer callback) {
     // For 3.11 and after we use "invoke"; before that, we use "eval";
     if (supportsInvoke()) {
-      addRequest(() -> myVmService.invoke(isolateId, targetId, methodName, Collections.emptyList(), true, callback));
+      final long startNanos = System.nanoTime();
+      addRequest(() -> myVmService.invoke(isolateId, targetId, methodName, Collections.emptyList(), true,
+                                          timedEvaluation(isolateId, "invoke", startNanos, callback)));
     }
     else {
       myDebugProcess.getVmServiceWrapper()
@@ -589,6 +747,90 @@ public class VmServiceWrapper implements Disposable {
     }
   }
 
+  private @NotNull GetObjectConsumer timed(@NotNull String method, long startNanos, @NotNull GetObjectConsumer consumer) {
+    return new GetObjectConsumer() {
+      @Override
+      public void received(Obj response) {
+        requestCompleted(method, startNanos);
+        consumer.received(response);
+      }
+
+      @Override
+      public void received(Sentinel response) {
+        requestCompleted(method, startNanos);
+        consumer.received(response);
+      }
+
+      @Override
+      public void onError(RPCError error) {
+        requestCompleted(method, startNanos);
+        consumer.onError(error);
+      }
+    };
+  }
+
+  private @NotNull EvaluateConsumer timedEvaluation(@NotNull String isolateId,
+                                                    @NotNull String method,
+                                                    long startNanos,
+                                                    @NotNull EvaluateConsumer consumer) {
+    return new EvaluateConsumer() {
+      @Override
+      public void received(ErrorRef response) {
+        evaluationCompleted(isolateId, method, startNanos);
+        consumer.received(response);
+      }
+
+      @Override
+      public void received(InstanceRef response) {
+        evaluationCompleted(isolateId, method, startNanos);
+        consumer.received(response);
+      }
+
+      @Override
+      public void received(Sentinel response) {
+        evaluationCompleted(isolateId, method, startNanos);
+        consumer.received(response);
+      }
+
+      @Override
+      public void onError(RPCError error) {
+        evaluationCompleted(isolateId, method, startNanos);
+        consumer.onError(error);
+      }
+    };
+  }
+
+  private @NotNull InvokeConsumer timedEvaluation(@NotNull String isolateId,
+                                                  @NotNull String method,
+                                                  long startNanos,
+                                                  @NotNull InvokeConsumer consumer) {
+    return new InvokeConsumer() {
+      @Override
+      public void received(ErrorRef response) {
+        evaluationCompleted(isolateId, method, startNanos);
+        consumer.received(response);
+      }
+
+      @Override
+      public void received(InstanceRef response) {
+        evaluationCompleted(isolateId, method, startNanos);
+        consumer.received(response);
+      }
+
+      @Override
+      public void received(Sentinel response) {
+        evaluationCompleted(isolateId, method, startNanos);
+        consumer.received(response);
+      }
+
+      @Override
+      public void onError(RPCError error) {
+        evaluationCompleted(isolateId, method, startNanos);
+        consumer.onError(error);
+      }
+    };
+  }
+
   /**
    * Return whether the "invoke" call is supported by this connection.
    */
@@ -71,7 +71,8 @@ public class DartReferenceContributor extends PsiReferenceContributor {
       };
 
       DartAnalysisServerService das = DartAnalysisServerService.getInstance(project);
-      DartResolver.processRegionsInRange(das.getNavigation(file), elementRangeInHost, processor);
+      DartResolver.processRegionsInRange(das.getNavigation(file, elementRangeInHost.getStartOffset(), elementRangeInHost.getEndOffset()),
+                                         elementRangeInHost, processor);
 
       return result.toArray(PsiReference.EMPTY_ARRAY);
     }
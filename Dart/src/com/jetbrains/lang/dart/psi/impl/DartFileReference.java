@@ -145,8 +145,8 @@ public class DartFileReference implements PsiPolyVariantReference {
         final VirtualFile virtualFile = DartResolveUtil.getRealVirtualFile(refPsiFile);
         final DartAnalysisServerService das = DartAnalysisServerService.getInstance(refPsiFile.getProject());
         if (virtualFile != null &&
-            das.getNavigation(virtualFile).isEmpty() &&
-            das.getHighlight(virtualFile).isEmpty()) {
+            !das.hasNavigation(virtualFile) &&
+            !das.hasHighlight(virtualFile)) {
           final PsiElement parent = reference.getElement().getParent();
           final int parentOffset = parent.getTextRange().getStartOffset();
           final int parentLength = parent.getTextRange().getLength();
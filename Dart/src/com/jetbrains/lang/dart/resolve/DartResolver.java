@@ -95,7 +95,7 @@ public class DartResolver implements ResolveCache.AbstractResolver<DartReference
     final VirtualFile refVirtualFile = DartResolveUtil.getRealVirtualFile(refPsiFile);
     if (refVirtualFile != null) {
       final List<DartServerData.DartNavigationRegion> regions =
-        DartAnalysisServerService.getInstance(refPsiFile.getProject()).getNavigation(refVirtualFile);
+        DartAnalysisServerService.getInstance(refPsiFile.getProject()).getNavigation(refVirtualFile, refOffset, refOffset + refLength);
       return findRegion(regions, refOffset, refLength);
     }
     return null;
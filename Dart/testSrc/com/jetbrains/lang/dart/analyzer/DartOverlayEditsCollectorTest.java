@@ -0,0 +1,80 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.jetbrains.lang.dart.analyzer;
+
+import junit.framework.TestCase;
+import org.dartlang.analysis.server.protocol.SourceEdit;
+
+import java.util.List;
+
+public class DartOverlayEditsCollectorTest extends TestCase {
+  private static final String PATH = "/project/lib/foo.dart";
+
+  public void testNoLogForNotOverlaidFile() {
+    final DartOverlayEditsCollector collector = new DartOverlayEditsCollector();
+    collector.documentChanged(PATH, 0, 0, "a", 1, 2);
+    assertNull(collector.getEdits(PATH, 1, 2, 1000));
+  }
+
+  public void testTypingIsCoalesced() {
+    final DartOverlayEditsCollector collector = new DartOverlayEditsCollector();
+    collector.reset(PATH, 1);
+    collector.documentChanged(PATH, 10, 0, "f", 1, 2);
+    collector.documentChanged(PATH, 11, 0, "o", 2, 3);
+    collector.documentChanged(PATH, 12, 0, "x", 3, 4);
+    collector.documentChanged(PATH, 12, 1, "", 4, 5);
+    collector.documentChanged(PATH, 12, 0, "o", 5, 6);
+
+    final List<SourceEdit> edits = collector.getEdits(PATH, 1, 6, 1000);
+    assertNotNull(edits);
+    assertEquals(1, edits.size());
+    assertEquals(10, edits.get(0).getOffset());
+    assertEquals(0, edits.get(0).getLength());
+    assertEquals("foo", edits.get(0).getReplacement());
+  }
+
+  public void testSeparateEdits() {
+    final DartOverlayEditsCollector collector = new DartOverlayEditsCollector();
+    collector.reset(PATH, 1);
+    collector.documentChanged(PATH, 10, 3, "bar", 1, 2);
+    collector.documentChanged(PATH, 100, 0, "baz", 2, 3);
+
+    final List<SourceEdit> edits = collector.getEdits(PATH, 1, 3, 1000);
+    assertNotNull(edits);
+    assertEquals(2, edits.size());
+    assertEquals(10, edits.get(0).getOffset());
+    assertEquals(3, edits.get(0).getLength());
+    assertEquals(100, edits.get(1).getOffset());
+  }
+
+  public void testBrokenStampChain() {
+    final DartOverlayEditsCollector collector = new DartOverlayEditsCollector();
+    collector.reset(PATH, 1);
+    collector.documentChanged(PATH, 10, 0, "a", 1, 2);
+    collector.documentChanged(PATH, 20, 0, "b", 5, 6);
+    assertNull(collector.getEdits(PATH, 1, 6, 1000));
+  }
+
+  public void testStaleBase() {
+    final DartOverlayEditsCollector collector = new DartOverlayEditsCollector();
+    collector.reset(PATH, 1);
+    collector.documentChanged(PATH, 10, 0, "a", 1, 2);
+    assertNull(collector.getEdits(PATH, 0, 2, 1000));
+    assertNull(collector.getEdits(PATH, 1, 3, 1000));
+  }
+
+  public void testTooFragmented() {
+    final DartOverlayEditsCollector collector = new DartOverlayEditsCollector();
+    collector.reset(PATH, 0);
+    for (int i = 0; i <= DartOverlayEditsCollector.MAX_EDITS_PER_UPDATE; i++) {
+      collector.documentChanged(PATH, i * 2, 0, "a", i, i + 1);
+    }
+    assertNull(collector.getEdits(PATH, 0, DartOverlayEditsCollector.MAX_EDITS_PER_UPDATE + 1, 100000));
+  }
+
+  public void testTooBigReplacement() {
+    final DartOverlayEditsCollector collector = new DartOverlayEditsCollector();
+    collector.reset(PATH, 1);
+    collector.documentChanged(PATH, 0, 2, "0123456789", 1, 2);
+    assertNull(collector.getEdits(PATH, 1, 2, 12));
+  }
+}
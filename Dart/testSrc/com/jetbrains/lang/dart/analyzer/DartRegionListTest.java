@@ -0,0 +1,172 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.jetbrains.lang.dart.analyzer;
+
+import com.jetbrains.lang.dart.analyzer.DartServerData.DartRegion;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+public class DartRegionListTest extends TestCase {
+
+  private static List<DartRegion> createRegions(Random random, int count) {
+    final List<DartRegion> regions = new ArrayList<>();
+    int offset = 0;
+    for (int i = 0; i < count; i++) {
+      offset += random.nextInt(5);
+      regions.add(new DartRegion(offset, 1 + random.nextInt(random.nextInt(10) == 0 ? 40 : 6)));
+    }
+    return regions;
+  }
+
+  private static List<DartRegion> copy(List<DartRegion> regions) {
+    final List<DartRegion> result = new ArrayList<>();
+    for (DartRegion region : regions) {
+      result.add(new DartRegion(region.getOffset(), region.getLength()));
+    }
+    return result;
+  }
+
+  // straightforward implementation that walks all regions, DartRegionList must behave the same way
+  private static void naiveDeletingTouched(List<DartRegion> regions, int eventOffset, int deltaLength) {
+    final Iterator<DartRegion> iterator = regions.iterator();
+    while (iterator.hasNext()) {
+      final DartRegion region = iterator.next();
+      final int shiftStart = deltaLength > 0 ? eventOffset : eventOffset - deltaLength;
+      if (deltaLength == 0) continue;
+      if (shiftStart <= region.myOffset) {
+        region.myOffset += deltaLength;
+      }
+      else if (eventOffset < region.myOffset + region.myLength) {
+        iterator.remove();
+      }
+    }
+  }
+
+  private static void naiveUpdatingTouched(List<DartRegion> regions, int eventOffset, int deltaLength) {
+    final Iterator<DartRegion> iterator = regions.iterator();
+    while (iterator.hasNext()) {
+      final DartRegion region = iterator.next();
+      if (deltaLength > 0) {
+        if (eventOffset <= region.myOffset) {
+          region.myOffset += deltaLength;
+        }
+        else if (eventOffset < region.myOffset + region.myLength) {
+          region.myLength += deltaLength;
+        }
+      }
+      else if (deltaLength < 0) {
+        final int eventRightOffset = eventOffset - deltaLength;
+        final int regionRightOffset = region.myOffset + region.myLength;
+        if (eventRightOffset <= region.myOffset) {
+          region.myOffset += deltaLength;
+        }
+        else if (region.myOffset <= eventOffset && eventRightOffset <= regionRightOffset && region.myLength != -deltaLength) {
+          region.myLength += deltaLength;
+        }
+        else if (eventOffset < regionRightOffset) {
+          iterator.remove();
+        }
+      }
+    }
+  }
+
+  private static void assertSameRegions(List<DartRegion> expected, List<DartRegion> actual) {
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals("offset of region #" + i, expected.get(i).getOffset(), actual.get(i).getOffset());
+      assertEquals("length of region #" + i, expected.get(i).getLength(), actual.get(i).getLength());
+    }
+  }
+
+  private static int randomDelta(Random random) {
+    return random.nextBoolean() ? 1 + random.nextInt(3) : -1 - random.nextInt(3);
+  }
+
+  public void testDeletingTouchedRandomEdits() {
+    final Random random = new Random(42);
+    final List<DartRegion> initial = createRegions(random, 500);
+    final List<DartRegion> expected = copy(initial);
+    final DartRegionList<DartRegion> regionList = new DartRegionList<>(copy(initial));
+
+    int editingOffset = 500;
+    for (int i = 0; i < 2000; i++) {
+      // mostly local editing with occasional jumps, like a user does
+      editingOffset = random.nextInt(20) == 0 ? random.nextInt(1000) : Math.max(0, editingOffset + random.nextInt(7) - 3);
+      final int delta = randomDelta(random);
+      naiveDeletingTouched(expected, editingOffset, delta);
+      regionList.updateDeletingTouched(editingOffset, delta);
+
+      if (i % 100 == 0) {
+        assertSameRegions(expected, regionList.getAll());
+      }
+    }
+
+    assertSameRegions(expected, regionList.getAll());
+  }
+
+  public void testUpdatingTouchedRandomEdits() {
+    final Random random = new Random(24);
+    final List<DartRegion> initial = createRegions(random, 500);
+    final List<DartRegion> expected = copy(initial);
+    final DartRegionList<DartRegion> regionList = new DartRegionList<>(copy(initial));
+
+    int editingOffset = 300;
+    for (int i = 0; i < 2000; i++) {
+      editingOffset = random.nextInt(20) == 0 ? random.nextInt(1000) : Math.max(0, editingOffset + random.nextInt(7) - 3);
+      final int delta = randomDelta(random);
+      naiveUpdatingTouched(expected, editingOffset, delta);
+      regionList.updateUpdatingTouched(editingOffset, delta);
+    }
+
+    assertSameRegions(expected, regionList.getAll());
+  }
+
+  public void testGetInRange() {
+    final List<DartRegion> regions = new ArrayList<>();
+    regions.add(new DartRegion(0, 100));
+    regions.add(new DartRegion(10, 5));
+    regions.add(new DartRegion(20, 5));
+    regions.add(new DartRegion(30, 5));
+    regions.add(new DartRegion(40, 5));
+    final DartRegionList<DartRegion> regionList = new DartRegionList<>(regions);
+
+    // typing at offset 12 grows the 2 touched regions and shifts the rest
+    regionList.updateUpdatingTouched(12, 2);
+
+    final List<DartRegion> inRange = regionList.getInRange(23, 32);
+    assertEquals(3, inRange.size());
+    assertEquals(0, inRange.get(0).getOffset());
+    assertEquals(102, inRange.get(0).getLength());
+    assertEquals(22, inRange.get(1).getOffset());
+    assertEquals(32, inRange.get(2).getOffset());
+
+    assertSameRegions(List.of(new DartRegion(0, 102), new DartRegion(10, 7), new DartRegion(22, 5), new DartRegion(32, 5),
+                              new DartRegion(42, 5)),
+                      regionList.getAll());
+  }
+
+  public void testApplyEdits() {
+    final DartRegionList<DartRegion> regionList = new DartRegionList<>(new ArrayList<>(), true);
+    regionList.updateDeletingTouched(10, 3);
+    final int appliedEdits = regionList.getEditCount();
+    regionList.updateDeletingTouched(50, -2);
+    regionList.updateDeletingTouched(100, 5);
+
+    assertEquals(5, regionList.applyEdits(5, 0));
+    assertEquals(58, regionList.applyEdits(60, appliedEdits));
+    assertEquals(61, regionList.applyEdits(60, 0));
+  }
+
+  public void testIsEmpty() {
+    final DartRegionList<DartRegion> regionList = new DartRegionList<>(List.of(new DartRegion(10, 5)));
+    assertFalse(regionList.isEmpty());
+
+    // deleting the text of the only region deletes the region
+    regionList.updateDeletingTouched(10, -5);
+    assertTrue(regionList.isEmpty());
+    assertTrue(new DartRegionList<>(new ArrayList<>()).isEmpty());
+  }
+}
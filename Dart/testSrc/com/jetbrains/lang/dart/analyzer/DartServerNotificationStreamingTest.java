@@ -0,0 +1,142 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.jetbrains.lang.dart.analyzer;
+
+import com.google.dart.server.AnalysisServerListenerAdapter;
+import com.google.dart.server.internal.remote.ByteResponseStream;
+import com.google.dart.server.internal.remote.processor.NotificationAnalysisHighlightsProcessor;
+import com.google.dart.server.internal.remote.processor.NotificationAnalysisNavigationProcessor;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import com.intellij.testFramework.PlatformTestUtil;
+import junit.framework.TestCase;
+import org.dartlang.analysis.server.protocol.HighlightRegion;
+import org.dartlang.analysis.server.protocol.NavigationRegion;
+import org.dartlang.analysis.server.protocol.NavigationTarget;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks that notifications read by the streaming processors are the same as the ones read via the JsonObject tree,
+ * and measures the decoding time on notifications of the size the server sends for big files.
+ */
+public class DartServerNotificationStreamingTest extends TestCase {
+  private static class RecordingListener extends AnalysisServerListenerAdapter {
+    private String myFile;
+    private List<HighlightRegion> myHighlights;
+    private List<NavigationRegion> myNavigation;
+
+    @Override
+    public void computedHighlights(String file, List<HighlightRegion> highlights) {
+      myFile = file;
+      myHighlights = highlights;
+    }
+
+    @Override
+    public void computedNavigation(String file, List<NavigationRegion> targets) {
+      myFile = file;
+      myNavigation = targets;
+    }
+  }
+
+  private static String createHighlightsNotification(int regionCount) {
+    final StringBuilder builder = new StringBuilder("{\"event\":\"analysis.highlights\",\"params\":{\"file\":\"/project/lib/big.dart\",\"regions\":[");
+    for (int i = 0; i < regionCount; i++) {
+      if (i > 0) builder.append(',');
+      builder.append("{\"type\":\"").append(i % 3 == 0 ? "KEYWORD" : "LOCAL_VARIABLE_REFERENCE").append("\",\"offset\":").append(i * 7)
+        .append(",\"length\":").append(1 + i % 5).append('}');
+    }
+    return builder.append("]}}").toString();
+  }
+
+  private static String createNavigationNotification(int regionCount, boolean filesLast) {
+    final StringBuilder files = new StringBuilder("\"files\":[\"/project/lib/big.dart\",\"/sdk/lib/core/core.dart\"]");
+    final StringBuilder builder = new StringBuilder("{\"event\":\"analysis.navigation\",\"params\":{\"file\":\"/project/lib/big.dart\",");
+    if (!filesLast) builder.append(files).append(',');
+    builder.append("\"regions\":[");
+    for (int i = 0; i < regionCount; i++) {
+      if (i > 0) builder.append(',');
+      builder.append("{\"offset\":").append(i * 7).append(",\"length\":").append(1 + i % 5).append(",\"targets\":[").append(i % 100)
+        .append("]}");
+    }
+    builder.append("],\"targets\":[");
+    for (int i = 0; i < 100; i++) {
+      if (i > 0) builder.append(',');
+      builder.append("{\"kind\":\"CLASS\",\"fileIndex\":").append(i % 2).append(",\"offset\":").append(i * 11)
+        .append(",\"length\":5,\"startLine\":").append(i).append(",\"startColumn\":3");
+      if (i % 2 == 0) builder.append(",\"codeOffset\":").append(i * 11).append(",\"codeLength\":40");
+      builder.append('}');
+    }
+    builder.append(']');
+    if (filesLast) builder.append(',').append(files);
+    return builder.append("}}").toString();
+  }
+
+  private static RecordingListener processAsTree(String line) throws Exception {
+    final RecordingListener listener = new RecordingListener();
+    final JsonObject response = ByteResponseStream.parseResponse(line);
+    final String event = response.get("event").getAsString();
+    if (event.equals("analysis.highlights")) {
+      new NotificationAnalysisHighlightsProcessor(listener).process(response);
+    }
+    else {
+      new NotificationAnalysisNavigationProcessor(listener).process(response);
+    }
+    return listener;
+  }
+
+  private static RecordingListener processStreaming(String line) throws Exception {
+    final RecordingListener listener = new RecordingListener();
+    final JsonReader reader = new JsonReader(new StringReader(line));
+    reader.beginObject();
+    assertEquals("event", reader.nextName());
+    final String event = reader.nextString();
+    assertEquals("params", reader.nextName());
+    if (event.equals("analysis.highlights")) {
+      new NotificationAnalysisHighlightsProcessor(listener).process(reader);
+    }
+    else {
+      new NotificationAnalysisNavigationProcessor(listener).process(reader);
+    }
+    return listener;
+  }
+
+  public void testHighlights() throws Exception {
+    final String line = createHighlightsNotification(1000);
+    final RecordingListener expected = processAsTree(line);
+    final RecordingListener actual = processStreaming(line);
+    assertEquals(expected.myFile, actual.myFile);
+    assertEquals(expected.myHighlights, actual.myHighlights);
+  }
+
+  public void testNavigation() throws Exception {
+    for (boolean filesLast : new boolean[]{false, true}) {
+      final String line = createNavigationNotification(1000, filesLast);
+      final RecordingListener expected = processAsTree(line);
+      final RecordingListener actual = processStreaming(line);
+      assertEquals(expected.myFile, actual.myFile);
+      assertEquals(expected.myNavigation, actual.myNavigation);
+      for (int i = 0; i < expected.myNavigation.size(); i++) {
+        final List<NavigationTarget> expectedTargets = expected.myNavigation.get(i).getTargetObjects();
+        final List<NavigationTarget> actualTargets = actual.myNavigation.get(i).getTargetObjects();
+        assertEquals(expectedTargets, actualTargets);
+        assertEquals(expectedTargets.get(0).getFile(), actualTargets.get(0).getFile());
+      }
+    }
+  }
+
+  public void testDecodingPerformance() {
+    final List<String> transcript = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      transcript.add(createHighlightsNotification(50_000));
+      transcript.add(createNavigationNotification(20_000, i % 2 == 0));
+    }
+
+    PlatformTestUtil.startPerformanceTest("Streaming decoding of big highlights and navigation notifications", 5_000, () -> {
+      for (String line : transcript) {
+        processStreaming(line);
+      }
+    }).assertTiming();
+  }
+}
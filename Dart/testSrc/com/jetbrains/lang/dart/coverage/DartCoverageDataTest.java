@@ -0,0 +1,58 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.jetbrains.lang.dart.coverage;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+public class DartCoverageDataTest extends TestCase {
+
+  private static DartCoverageData read(String json) throws IOException {
+    return DartCoverageData.read(new StringReader(json));
+  }
+
+  private static void assertHits(DartLineHits lineHits, int... expected) {
+    assertEquals(expected.length - 1, lineHits.getMaxLine());
+    for (int line = 0; line < expected.length; line++) {
+      assertEquals("line " + line, expected[line], lineHits.getHits(line));
+    }
+  }
+
+  public void testMergeEntriesOfTheSameSource() throws IOException {
+    final DartCoverageData data = read("{\"type\": \"CodeCoverage\", \"coverage\": [" +
+                                       "{\"source\": \"package:foo/foo.dart\", \"script\": {\"type\": \"@Script\"}, \"hits\": [1, 2, 3, 0]}," +
+                                       "{\"hits\": [3, 5, 4, 0], \"source\": \"package:foo/foo.dart\"}," +
+                                       "{\"source\": \"package:foo/bar.dart\", \"hits\": []}," +
+                                       "{\"hits\": [1, 1]}" +
+                                       "]}");
+
+    assertEquals(2, data.getMergedDartFileCoverageData().size());
+    assertHits(data.getMergedDartFileCoverageData().get("package:foo/foo.dart"), -1, 2, -1, 5, 0);
+    assertEquals(-1, data.getMergedDartFileCoverageData().get("package:foo/bar.dart").getMaxLine());
+  }
+
+  public void testLineRanges() throws IOException {
+    final DartCoverageData data = read("{\"coverage\": [{\"source\": \"dart:core\", \"hits\": [\"1-3\", 4, 2, 1]}]}");
+    assertHits(data.getMergedDartFileCoverageData().get("dart:core"), -1, 4, 5, 4);
+  }
+
+  public void testMergeWith() throws IOException {
+    final DartCoverageData data = read("{\"coverage\": [{\"source\": \"a.dart\", \"hits\": [0, 1, 2, 0]}]}");
+    data.mergeWith(read("{\"coverage\": [{\"source\": \"a.dart\", \"hits\": [2, 3, 100, 0]}, {\"source\": \"b.dart\", \"hits\": [1, 7]}]}"));
+
+    final DartLineHits a = data.getMergedDartFileCoverageData().get("a.dart");
+    assertEquals(100, a.getMaxLine());
+    assertEquals(1, a.getHits(0));
+    assertEquals(-1, a.getHits(1));
+    assertEquals(3, a.getHits(2));
+    assertEquals(-1, a.getHits(99));
+    assertEquals(0, a.getHits(100));
+    assertHits(data.getMergedDartFileCoverageData().get("b.dart"), -1, 7);
+  }
+
+  public void testHitCountSaturates() throws IOException {
+    final DartCoverageData data = read("{\"coverage\": [{\"source\": \"a.dart\", \"hits\": [0, 2147483647, 0, 2147483647]}]}");
+    assertHits(data.getMergedDartFileCoverageData().get("a.dart"), Integer.MAX_VALUE - 1);
+  }
+}
@@ -0,0 +1,75 @@
+// Copyright 2000-2021 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.jetbrains.lang.dart.ide.index;
+
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.testFramework.PlatformTestUtil;
+import com.intellij.util.indexing.FileContent;
+import com.intellij.util.indexing.FileContentImpl;
+import com.jetbrains.lang.dart.DartCodeInsightFixtureTestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class DartIndexingPerformanceTest extends DartCodeInsightFixtureTestCase {
+  private static final int PACKAGES = 50;
+  private static final int FILES_PER_PACKAGE = 20;
+
+  private static String createLibraryText(int packageIndex, int fileIndex) {
+    final StringBuilder builder = new StringBuilder();
+    builder.append("library pkg").append(packageIndex).append(".file").append(fileIndex).append(";\n\n");
+    builder.append("import 'dart:async';\n");
+    builder.append("import 'package:pkg").append(packageIndex).append("/file").append((fileIndex + 1) % FILES_PER_PACKAGE)
+      .append(".dart' as p show Foo, Bar hide Baz;\n");
+    builder.append("export 'src/impl").append(fileIndex).append(".dart';\n");
+    builder.append("part 'part").append(fileIndex).append(".dart';\n\n");
+    for (int i = 0; i < 20; i++) {
+      builder.append("class Class").append(i).append(" extends Object {\n");
+      builder.append("  final int field").append(i).append(" = 0;\n");
+      builder.append("  Class").append(i).append("();\n");
+      builder.append("  Class").append(i).append(".named();\n");
+      builder.append("  int get getter").append(i).append(" => field").append(i).append(";\n");
+      builder.append("  void method").append(i).append("(int a, [String b]) {\n    var local = a + 1;\n    print(local);\n  }\n");
+      builder.append("}\n\n");
+      builder.append("enum Enum").append(i).append(" { a, b, c }\n");
+      builder.append("typedef void Callback").append(i).append("(int x);\n");
+      builder.append("var topLevel").append(i).append(" = 1, other").append(i).append(" = 2;\n");
+      builder.append("Future<void> function").append(i).append("() async {}\n\n");
+    }
+    return builder.toString();
+  }
+
+  public void testIndexDataComputedOncePerFileContent() throws Exception {
+    final VirtualFile file = myFixture.addFileToProject("lib/foo.dart", createLibraryText(0, 0)).getVirtualFile();
+    final FileContent content = FileContentImpl.createByFile(file, getProject());
+
+    final DartFileIndexData data = DartIndexUtil.indexFile(content);
+    assertSame(data, DartIndexUtil.indexFile(content));
+    assertEquals("pkg0.file0", data.getLibraryName());
+    assertEquals(40, data.getClassNames().size()); // 20 classes and 20 enums
+    assertEquals(3, data.getImportAndExportInfos().size());
+    assertEquals(1, data.getPartUris().size());
+  }
+
+  public void testIndexingThroughput() throws Exception {
+    final List<VirtualFile> files = new ArrayList<>();
+    for (int p = 0; p < PACKAGES; p++) {
+      for (int f = 0; f < FILES_PER_PACKAGE; f++) {
+        final String path = ".pub-cache/hosted/pub.dartlang.org/pkg" + p + "-1.0.0/lib/file" + f + ".dart";
+        files.add(myFixture.addFileToProject(path, createLibraryText(p, f)).getVirtualFile());
+      }
+    }
+
+    PlatformTestUtil.startPerformanceTest("Dart indexing of a synthetic pub cache", 20_000, () -> {
+      for (VirtualFile file : files) {
+        // the same FileContent is passed to all Dart indices, as the indexing infrastructure does
+        final FileContent content = FileContentImpl.createByFile(file, getProject());
+        new DartComponentIndex().getIndexer().map(content);
+        new DartClassIndex().getIndexer().map(content);
+        new DartSymbolIndex().getIndexer().map(content);
+        new DartImportAndExportIndex().getIndexer().map(content);
+        new DartLibraryIndex().getIndexer().map(content);
+        new DartPartUriIndex().getIndexer().map(content);
+      }
+    }).attempts(1).assertTiming();
+  }
+}
@@ -0,0 +1,116 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.jetbrains.lang.dart.ide.runner.server.vmService;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+public class DartVmServiceScriptCacheTest extends TestCase {
+  private Path myCacheDir;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myCacheDir = Files.createTempDirectory("dart-vm-scripts");
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try (Stream<Path> files = Files.walk(myCacheDir)) {
+      files.sorted(Collections.reverseOrder()).forEach(path -> path.toFile().delete());
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  private static DartScriptTokenTable createTable() {
+    // line 1: tokens 0 and 5 at columns 1 and 6; line 3: token 20 at column 3
+    return DartScriptTokenTable.create(Arrays.asList(Arrays.asList(1, 0, 1, 5, 6),
+                                                     Arrays.asList(3, 20, 3)));
+  }
+
+  private static void assertPosition(DartScriptTokenTable table, int tokenPos, int line, int column) {
+    final int index = table.indexOf(tokenPos);
+    assertTrue("token " + tokenPos + " not found", index >= 0);
+    assertEquals(line, table.getLine(index));
+    assertEquals(column, table.getColumn(index));
+  }
+
+  public void testTokenTable() {
+    final DartScriptTokenTable table = createTable();
+    assertEquals(3, table.size());
+    assertPosition(table, 0, 0, 0);
+    assertPosition(table, 5, 0, 5);
+    assertPosition(table, 20, 2, 2);
+    assertEquals(-1, table.indexOf(1));
+    assertEquals(-1, table.indexOf(21));
+  }
+
+  public void testUnsortedTokenTable() {
+    final List<List<Integer>> rawTable = Arrays.asList(Arrays.asList(2, 30, 1, 10, 4),
+                                                       Arrays.asList(1, 5, 2, 10, 7));
+    final DartScriptTokenTable table = DartScriptTokenTable.create(rawTable);
+    assertEquals(3, table.size());
+    assertPosition(table, 5, 0, 1);
+    assertPosition(table, 10, 0, 6); // the last one wins
+    assertPosition(table, 30, 1, 0);
+  }
+
+  public void testSdkScript() {
+    final DartVmServiceScriptCache cache = new DartVmServiceScriptCache(myCacheDir);
+    cache.put("2.10.0", "dart:core/string.dart", null, "class String {}", createTable());
+
+    final DartVmServiceScriptCache.Entry entry = cache.get("2.10.0", "dart:core/string.dart", null);
+    assertNotNull(entry);
+    assertEquals("class String {}", entry.source);
+    assertPosition(entry.tokenTable, 20, 2, 2);
+
+    assertNull(cache.get("2.11.0", "dart:core/string.dart", null));
+    assertNull(cache.get("2.10.0", "dart:core/list.dart", null));
+  }
+
+  public void testPackageScript() {
+    final DartVmServiceScriptCache cache = new DartVmServiceScriptCache(myCacheDir);
+    final byte[] content = "class Foo {}".getBytes(StandardCharsets.UTF_8);
+
+    cache.put("2.10.0", "package:foo/foo.dart", null, "class Foo {}", createTable());
+    assertNull("package scripts without local copy must not be cached", cache.get("2.10.0", "package:foo/foo.dart", null));
+
+    cache.put("2.10.0", "package:foo/foo.dart", content, "class Foo {}", createTable());
+    final DartVmServiceScriptCache.Entry entry = cache.get("2.10.0", "package:foo/foo.dart", content);
+    assertNotNull(entry);
+    assertNull(entry.source);
+    assertPosition(entry.tokenTable, 5, 0, 5);
+
+    assertNull(cache.get("2.10.0", "package:foo/foo.dart", "class Bar {}".getBytes(StandardCharsets.UTF_8)));
+  }
+
+  public void testProjectScriptNotCached() {
+    final DartVmServiceScriptCache cache = new DartVmServiceScriptCache(myCacheDir);
+    final byte[] content = "main() {}".getBytes(StandardCharsets.UTF_8);
+    cache.put("2.10.0", "file:///project/bin/main.dart", content, "main() {}", createTable());
+    assertNull(cache.get("2.10.0", "file:///project/bin/main.dart", content));
+  }
+
+  public void testCorruptedEntry() throws IOException {
+    final DartVmServiceScriptCache cache = new DartVmServiceScriptCache(myCacheDir);
+    cache.put("2.10.0", "dart:core/string.dart", null, "class String {}", createTable());
+
+    try (Stream<Path> files = Files.list(myCacheDir)) {
+      for (Path file : (Iterable<Path>)files::iterator) {
+        final byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 5));
+      }
+    }
+
+    assertNull(cache.get("2.10.0", "dart:core/string.dart", null));
+  }
+}
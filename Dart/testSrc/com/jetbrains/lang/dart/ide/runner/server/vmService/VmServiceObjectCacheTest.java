@@ -0,0 +1,114 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.jetbrains.lang.dart.ide.runner.server.vmService;
+
+import com.google.gson.JsonObject;
+import junit.framework.TestCase;
+import org.dartlang.vm.service.consumer.GetObjectConsumer;
+import org.dartlang.vm.service.element.Instance;
+import org.dartlang.vm.service.element.Obj;
+import org.dartlang.vm.service.element.RPCError;
+import org.dartlang.vm.service.element.Sentinel;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class VmServiceObjectCacheTest extends TestCase {
+
+  private static final class RecordingConsumer implements GetObjectConsumer {
+    private final List<Object> myReceived = new ArrayList<>();
+
+    @Override
+    public void received(Obj response) {
+      myReceived.add(response);
+    }
+
+    @Override
+    public void received(Sentinel response) {
+      myReceived.add(response);
+    }
+
+    @Override
+    public void onError(RPCError error) {
+      myReceived.add(error);
+    }
+  }
+
+  private static Instance createInstance(String id) {
+    final JsonObject json = new JsonObject();
+    json.addProperty("type", "Instance");
+    json.addProperty("id", id);
+    return new Instance(json);
+  }
+
+  public void testIdenticalRequestsCoalesced() {
+    final VmServiceObjectCache cache = new VmServiceObjectCache();
+    final List<GetObjectConsumer> sent = new ArrayList<>();
+    final RecordingConsumer consumer1 = new RecordingConsumer();
+    final RecordingConsumer consumer2 = new RecordingConsumer();
+    final RecordingConsumer consumer3 = new RecordingConsumer();
+
+    cache.getObject("isolates/1", "objects/1", null, null, consumer1, sent::add);
+    cache.getObject("isolates/1", "objects/1", null, null, consumer2, sent::add);
+    cache.getObject("isolates/1", "objects/1", 0, 100, consumer3, sent::add);
+    assertEquals(2, sent.size());
+
+    final Instance instance = createInstance("objects/1");
+    sent.get(0).received(instance);
+    assertEquals(1, consumer1.myReceived.size());
+    assertEquals(1, consumer2.myReceived.size());
+    assertEquals(0, consumer3.myReceived.size());
+    assertTrue(consumer1.myReceived.get(0) == instance);
+    assertTrue(consumer2.myReceived.get(0) == instance);
+  }
+
+  public void testInstanceCachedUntilResumed() {
+    final VmServiceObjectCache cache = new VmServiceObjectCache();
+    final List<GetObjectConsumer> sent = new ArrayList<>();
+
+    cache.getObject("isolates/1", "objects/1", null, null, new RecordingConsumer(), sent::add);
+    sent.get(0).received(createInstance("objects/1"));
+
+    final RecordingConsumer consumer = new RecordingConsumer();
+    cache.getObject("isolates/1", "objects/1", null, null, consumer, sent::add);
+    assertEquals(1, sent.size());
+    assertEquals(1, consumer.myReceived.size());
+
+    // other isolate is not affected
+    cache.invalidate("isolates/2");
+    cache.getObject("isolates/1", "objects/1", null, null, new RecordingConsumer(), sent::add);
+    assertEquals(1, sent.size());
+
+    cache.invalidate("isolates/1");
+    cache.getObject("isolates/1", "objects/1", null, null, new RecordingConsumer(), sent::add);
+    assertEquals(2, sent.size());
+  }
+
+  public void testResponseAfterResumeNotCached() {
+    final VmServiceObjectCache cache = new VmServiceObjectCache();
+    final List<GetObjectConsumer> sent = new ArrayList<>();
+    final RecordingConsumer consumer = new RecordingConsumer();
+
+    cache.getObject("isolates/1", "objects/1", null, null, consumer, sent::add);
+    cache.invalidate("isolates/1");
+    sent.get(0).received(createInstance("objects/1"));
+    assertEquals(1, consumer.myReceived.size());
+
+    cache.getObject("isolates/1", "objects/1", null, null, new RecordingConsumer(), sent::add);
+    assertEquals(2, sent.size());
+  }
+
+  public void testSentinelNotCached() {
+    final VmServiceObjectCache cache = new VmServiceObjectCache();
+    final List<GetObjectConsumer> sent = new ArrayList<>();
+    final RecordingConsumer consumer = new RecordingConsumer();
+
+    cache.getObject("isolates/1", "objects/1", null, null, consumer, sent::add);
+    final JsonObject json = new JsonObject();
+    json.addProperty("type", "Sentinel");
+    sent.get(0).received(new Sentinel(json));
+    assertEquals(1, consumer.myReceived.size());
+
+    cache.getObject("isolates/1", "objects/1", null, null, new RecordingConsumer(), sent::add);
+    assertEquals(2, sent.size());
+  }
+}
@@ -105,11 +105,27 @@ public class ByteResponseStream implements ResponseStream {
 
   @Override
   public JsonObject take() throws Exception {
+    String line = takeLine();
+    if (line == null) {
+      return null;
+    }
+    return parseResponse(line);
+  }
+
+  @Override
+  public String takeLine() throws Exception {
     String line = lineQueue.take();
     if (line == EOF_LINE) {
       lineQueue.add(line);
       return null;
     }
+    return line;
+  }
+
+  /**
+   * Parses a single line of the server output into a {@link JsonObject}.
+   */
+  public static JsonObject parseResponse(String line) {
     try {
       return (JsonObject) new JsonParser().parse(line);
     } catch (JsonSyntaxException e) {
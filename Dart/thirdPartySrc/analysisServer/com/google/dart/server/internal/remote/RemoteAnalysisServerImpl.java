@@ -29,10 +29,13 @@ import com.google.dart.server.utilities.logging.Logging;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import org.dartlang.analysis.server.protocol.*;
 import org.osgi.framework.Version;
 
 import java.io.IOException;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -715,6 +718,53 @@ public class RemoteAnalysisServerImpl implements AnalysisServer {
     return true;
   }
 
+  /**
+   * Returns the processor that can read the given notification without building the whole
+   * {@link JsonObject} tree, or {@code null} if the notification is processed the usual way.
+   */
+  private StreamingNotificationProcessor getStreamingProcessor(String event) {
+    if (event.equals(ANALYSIS_NOTIFICATION_HIGHTLIGHTS)) {
+      return new NotificationAnalysisHighlightsProcessor(listener);
+    }
+    if (event.equals(ANALYSIS_NOTIFICATION_NAVIGATION)) {
+      return new NotificationAnalysisNavigationProcessor(listener);
+    }
+    return null;
+  }
+
+  /**
+   * Processes a single line of the server output. Large notifications that are sent often are read
+   * with a pull parser and routed by their "event" name, everything else is parsed into a
+   * {@link JsonObject} and handled by {@link #processResponse(JsonObject)}.
+   */
+  private void processResponseLine(String line) throws Exception {
+    // The server writes "event" before "params", so in most cases the first two names are enough
+    // to pick a streaming processor. Otherwise fall back to the JsonObject tree.
+    JsonReader reader = new JsonReader(new StringReader(line));
+    StreamingNotificationProcessor processor = null;
+    try {
+      reader.beginObject();
+      if (reader.hasNext() && reader.nextName().equals("event") && reader.peek() == JsonToken.STRING) {
+        processor = getStreamingProcessor(reader.nextString());
+        if (processor != null && !(reader.hasNext() && reader.nextName().equals("params"))) {
+          processor = null;
+        }
+      }
+    }
+    catch (IOException | IllegalStateException e) {
+      // malformed or unexpected JSON, report it the usual way below
+      processor = null;
+    }
+
+    if (processor == null) {
+      processResponse(ByteResponseStream.parseResponse(line));
+      return;
+    }
+
+    notifyResponseListeners(line);
+    processor.process(reader);
+  }
+
   private void processResponse(JsonObject response) throws Exception {
     notifyResponseListeners(response);
     // handle notification
@@ -879,10 +929,19 @@ public class RemoteAnalysisServerImpl implements AnalysisServer {
   }
 
   private void notifyResponseListeners(JsonObject response) {
+    synchronized (responseListenerList) {
+      if (responseListenerList.isEmpty()) {
+        return;
+      }
+    }
+    notifyResponseListeners(response.toString());
+  }
+
+  private void notifyResponseListeners(String response) {
     synchronized (responseListenerList) {
       List<ResponseListener> listeners = ImmutableList.copyOf(responseListenerList);
       for (ResponseListener listener : listeners) {
-        listener.onResponse(response.toString());
+        listener.onResponse(response);
       }
     }
   }
@@ -1135,13 +1194,13 @@ public class RemoteAnalysisServerImpl implements AnalysisServer {
     public void run() {
       while (true) {
         try {
-          JsonObject response = stream.take();
-          if (response == null) {
+          String line = stream.takeLine();
+          if (line == null) {
             return;
           }
           lastResponseTime.set(System.currentTimeMillis());
           try {
-            processResponse(response);
+            processResponseLine(line);
           }
           finally {
             stream.lastRequestProcessed();
@@ -30,4 +30,10 @@ public interface ResponseStream {
    * Takes the the next response from the stream. Blocks if no response available.
    */
   JsonObject take() throws Exception;
+
+  /**
+   * Takes the next response from the stream as a JSON string, without parsing it. Blocks if no
+   * response available. Returns {@code null} at the end of the stream.
+   */
+  String takeLine() throws Exception;
 }
@@ -17,8 +17,11 @@ import com.google.dart.server.utilities.general.StringUtilities;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 
@@ -68,6 +71,42 @@ public abstract class JsonProcessor {
     return strings.toArray(new String[strings.size()]);
   }
 
+  /**
+   * Read a JSON array of {@code int}s from the given {@link JsonReader}.
+   *
+   * @param reader the {@link JsonReader} positioned at the beginning of the array
+   * @return the {@code int[]}
+   */
+  protected static int[] readIntArray(JsonReader reader) throws IOException {
+    int[] ints = new int[4];
+    int size = 0;
+    reader.beginArray();
+    while (reader.hasNext()) {
+      if (size == ints.length) {
+        ints = Arrays.copyOf(ints, size * 2);
+      }
+      ints[size++] = reader.nextInt();
+    }
+    reader.endArray();
+    return size == ints.length ? ints : Arrays.copyOf(ints, size);
+  }
+
+  /**
+   * Read a JSON array of strings from the given {@link JsonReader}.
+   *
+   * @param reader the {@link JsonReader} positioned at the beginning of the array
+   * @return the {@link String} array
+   */
+  protected static String[] readStringArray(JsonReader reader) throws IOException {
+    List<String> strings = new ArrayList<>();
+    reader.beginArray();
+    while (reader.hasNext()) {
+      strings.add(reader.nextString());
+    }
+    reader.endArray();
+    return strings.toArray(StringUtilities.EMPTY_ARRAY);
+  }
+
   /**
    * Safely get some member off of the passed {@link JsonObject} and return the {@code int}. Instead
    * of calling {@link JsonObject#has(String)} before {@link JsonObject#get(String)}, only one call
@@ -16,10 +16,13 @@ package com.google.dart.server.internal.remote.processor;
 import com.google.dart.server.AnalysisServerListener;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
 
 import org.dartlang.analysis.server.protocol.NavigationRegion;
 import org.dartlang.analysis.server.protocol.NavigationTarget;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -27,7 +30,7 @@ import java.util.List;
  * 
  * @coverage dart.server.remote
  */
-public class NotificationAnalysisNavigationProcessor extends NotificationProcessor {
+public class NotificationAnalysisNavigationProcessor extends NotificationProcessor implements StreamingNotificationProcessor {
   public NotificationAnalysisNavigationProcessor(AnalysisServerListener listener) {
     super(listener);
   }
@@ -54,4 +57,116 @@ public class NotificationAnalysisNavigationProcessor extends NotificationProcess
     // notify listener
     getListener().computedNavigation(file, regions);
   }
+
+  @Override
+  public void process(JsonReader paramsReader) throws Exception {
+    String file = null;
+    String[] targetFiles = null;
+    List<NavigationTarget> targets = NavigationTarget.EMPTY_LIST;
+    List<NavigationRegion> regions = NavigationRegion.EMPTY_LIST;
+    paramsReader.beginObject();
+    while (paramsReader.hasNext()) {
+      String name = paramsReader.nextName();
+      if (name.equals("file")) {
+        file = paramsReader.nextString();
+      } else if (name.equals("files")) {
+        targetFiles = readStringArray(paramsReader);
+      } else if (name.equals("targets")) {
+        targets = readTargets(paramsReader);
+      } else if (name.equals("regions")) {
+        regions = readRegions(paramsReader);
+      } else {
+        paramsReader.skipValue();
+      }
+    }
+    paramsReader.endObject();
+    // the order of "files", "targets" and "regions" is not specified, so link them at the end
+    if (targetFiles != null) {
+      for (NavigationTarget target : targets) {
+        target.lookupFile(targetFiles);
+      }
+    }
+    for (NavigationRegion region : regions) {
+      region.lookupTargets(targets);
+    }
+    // notify listener
+    getListener().computedNavigation(file, regions);
+  }
+
+  private static List<NavigationTarget> readTargets(JsonReader reader) throws IOException {
+    List<NavigationTarget> targets = new ArrayList<>();
+    reader.beginArray();
+    while (reader.hasNext()) {
+      String kind = null;
+      int fileIndex = 0;
+      int offset = 0;
+      int length = 0;
+      int startLine = 0;
+      int startColumn = 0;
+      Integer codeOffset = null;
+      Integer codeLength = null;
+      reader.beginObject();
+      while (reader.hasNext()) {
+        switch (reader.nextName()) {
+          case "kind":
+            kind = reader.nextString();
+            break;
+          case "fileIndex":
+            fileIndex = reader.nextInt();
+            break;
+          case "offset":
+            offset = reader.nextInt();
+            break;
+          case "length":
+            length = reader.nextInt();
+            break;
+          case "startLine":
+            startLine = reader.nextInt();
+            break;
+          case "startColumn":
+            startColumn = reader.nextInt();
+            break;
+          case "codeOffset":
+            codeOffset = reader.nextInt();
+            break;
+          case "codeLength":
+            codeLength = reader.nextInt();
+            break;
+          default:
+            reader.skipValue();
+        }
+      }
+      reader.endObject();
+      targets.add(new NavigationTarget(kind, fileIndex, offset, length, startLine, startColumn, codeOffset, codeLength));
+    }
+    reader.endArray();
+    return targets;
+  }
+
+  private static List<NavigationRegion> readRegions(JsonReader reader) throws IOException {
+    List<NavigationRegion> regions = new ArrayList<>();
+    reader.beginArray();
+    while (reader.hasNext()) {
+      int offset = 0;
+      int length = 0;
+      int[] targets = new int[0];
+      reader.beginObject();
+      while (reader.hasNext()) {
+        String name = reader.nextName();
+        if (name.equals("offset")) {
+          offset = reader.nextInt();
+        } else if (name.equals("length")) {
+          length = reader.nextInt();
+        } else if (name.equals("targets")) {
+          targets = readIntArray(reader);
+        } else {
+          reader.skipValue();
+        }
+      }
+      reader.endObject();
+      regions.add(new NavigationRegion(offset, length, targets));
+    }
+    reader.endArray();
+    return regions;
+  }
 }
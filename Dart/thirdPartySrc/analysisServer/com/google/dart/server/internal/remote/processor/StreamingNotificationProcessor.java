@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) 2020, the Dart project authors.
+ * 
+ * Licensed under the Eclipse Public License v1.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.dart.server.internal.remote.processor;
+
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+
+/**
+ * A processor that reads notification parameters directly from a {@link JsonReader}, without
+ * building a {@link JsonObject} tree first. Used for large notifications that are sent often.
+ *
+ * @coverage dart.server.remote
+ */
+public interface StreamingNotificationProcessor {
+  /**
+   * Process the "params" object of the notification and notify the listener. The given
+   * {@link JsonReader} is positioned at the beginning of the "params" value.
+   */
+  void process(JsonReader paramsReader) throws Exception;
+}
@@ -110,7 +110,7 @@ public class ShowAllSubmittedFilesAction extends AnAction implements DumbAware {
     data.DATE  = ChangeListData.DATE_FORMAT.format(date);
     data.DESCRIPTION = submitMessage;
 
-    final PerforceChangeList changeList = new PerforceChangeList(data, project, connection, new PerforceChangeCache(project));
+    final PerforceChangeList changeList = new PerforceChangeList(data, project, connection, new PerforceChangeCache(project, true));
 
     boolean result = VcsUtil.runVcsProcessWithProgress(new VcsRunnable() {
       @Override
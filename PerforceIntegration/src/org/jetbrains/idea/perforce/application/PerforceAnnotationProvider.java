@@ -16,6 +16,7 @@
 package org.jetbrains.idea.perforce.application;
 
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.ThrowableComputable;
 import com.intellij.openapi.vcs.FilePath;
 import com.intellij.openapi.vcs.VcsException;
 import com.intellij.openapi.vcs.actions.VcsContextFactory;
@@ -33,6 +34,7 @@ import org.jetbrains.annotations.Nullable;
 import org.jetbrains.idea.perforce.PerforceBundle;
 import org.jetbrains.idea.perforce.application.annotation.AnnotationInfo;
 import org.jetbrains.idea.perforce.application.annotation.PerforceFileAnnotation;
+import org.jetbrains.idea.perforce.changesBrowser.FileChange;
 import org.jetbrains.idea.perforce.perforce.P4File;
 import org.jetbrains.idea.perforce.perforce.P4Revision;
 import org.jetbrains.idea.perforce.perforce.PerforceRunner;
@@ -67,32 +69,60 @@ public class PerforceAnnotationProvider implements AnnotationProviderEx {
 
   @NotNull
   private AnnotationPrecursor doAnnotate(final long changeNumber, P4Connection connection, @NotNull final String path) throws VcsException {
+    if (changeNumber == -1) {
+      // the full filelog is only needed for the authors and dates, so it's loaded after the annotation is shown
+      final P4Revision[] head = myRunner.filelog(connection, path, false, 1);
+      final AnnotationInfo annotationInfo;
+      if (head.length > 0 && !isDeleted(head[0])) {
+        // annotate the head by its revision number, so that the runner can reuse the result until the file is submitted again
+        annotationInfo = myRunner.annotate(connection, head[0].getDepotPath(), head[0].getRevisionNumber());
+      }
+      else {
+        annotationInfo = myRunner.annotate(connection, path, -1);
+      }
+      return new AnnotationPrecursor(annotationInfo, null, () -> myRunner.filelog(connection, path, true), -1, null, connection);
+    }
+
     final P4Revision[] fileLog = myRunner.filelog(connection, path, true);
     P4Revision p4Revision = ContainerUtil.find(fileLog, p4Revision1 -> p4Revision1.getChangeNumber() == changeNumber);
     String pathAtRevision = p4Revision == null ? path : p4Revision.getDepotPath();
     long revision = p4Revision == null ? -1 : p4Revision.getRevisionNumber();
 
     final AnnotationInfo annotationInfo = myRunner.annotate(connection, pathAtRevision, revision);
-    return new AnnotationPrecursor(annotationInfo, fileLog, revision, p4Revision, connection);
+    return new AnnotationPrecursor(annotationInfo, fileLog, () -> fileLog, revision, p4Revision, connection);
+  }
+
+  private static boolean isDeleted(@NotNull P4Revision revision) {
+    return FileChange.DELETE_ACTION.equals(revision.getAction()) || FileChange.MOVE_DELETE_ACTION.equals(revision.getAction());
   }
 
   private class AnnotationPrecursor {
     final AnnotationInfo info;
-    final P4Revision[] fileLog;
+    final P4Revision @Nullable [] fileLog;
+    final ThrowableComputable<P4Revision[], VcsException> fileLogLoader;
     final long changeNumber;
     @Nullable final P4Revision p4Revision;
     final P4Connection connection;
 
-    AnnotationPrecursor(AnnotationInfo info, P4Revision[] fileLog, long changeNumber, @Nullable P4Revision p4Revision, P4Connection connection) {
+    AnnotationPrecursor(AnnotationInfo info,
+                        P4Revision @Nullable [] fileLog,
+                        ThrowableComputable<P4Revision[], VcsException> fileLogLoader,
+                        long changeNumber,
+                        @Nullable P4Revision p4Revision,
+                        P4Connection connection) {
       this.info = info;
       this.fileLog = fileLog;
+      this.fileLogLoader = fileLogLoader;
       this.changeNumber = changeNumber;
       this.p4Revision = p4Revision;
       this.connection = connection;
     }
     
     FileAnnotation createAnnotation(@NotNull VirtualFile file) {
-      return new PerforceFileAnnotation(info, file, fileLog, myProject, connection, changeNumber);
+      if (fileLog != null) {
+        return new PerforceFileAnnotation(info, file, fileLog, myProject, connection, changeNumber);
+      }
+      return new PerforceFileAnnotation(info, file, fileLogLoader, myProject, connection, changeNumber);
     }
   }
 
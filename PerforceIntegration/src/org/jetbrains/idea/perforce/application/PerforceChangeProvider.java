@@ -4,21 +4,27 @@ import com.intellij.openapi.Disposable;
 import com.intellij.openapi.application.AccessToken;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.util.Ref;
+import com.intellij.openapi.util.ThrowableComputable;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vcs.FilePath;
 import com.intellij.openapi.vcs.VcsException;
-import com.intellij.openapi.vcs.actions.VcsContextFactory;
 import com.intellij.openapi.vcs.changes.*;
 import com.intellij.openapi.vfs.VFileProperty;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.ExceptionUtil;
 import com.intellij.util.SystemProperties;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import com.intellij.util.containers.ContainerUtil;
 import com.intellij.util.containers.MultiMap;
 import com.intellij.vcsUtil.VcsUtil;
+import it.unimi.dsi.fastutil.objects.Object2LongMap;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.TestOnly;
 import org.jetbrains.idea.perforce.perforce.*;
@@ -28,10 +34,12 @@ import org.jetbrains.idea.perforce.perforce.connections.PerforceConnectionManage
 
 import java.io.File;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.*;
 
 public class PerforceChangeProvider implements ChangeProvider {
   private static final Logger LOG = Logger.getInstance(PerforceChangeProvider.class);
+  private static final ExecutorService ourRefreshExecutor = AppExecutorUtil.createBoundedApplicationPoolExecutor(
+    "Perforce Changes Refresh", Math.max(1, SystemProperties.getIntProperty("perforce.refresh.parallelism", 4)));
 
   private final Project myProject;
   private final PerforceRunner myRunner;
@@ -79,29 +87,39 @@ public class PerforceChangeProvider implements ChangeProvider {
     PerforceManager.getInstance(myProject).clearInfoClientCache();
 
     PerforceChangeCache changeCache = new PerforceChangeCache(myProject);
-    MultiMap<ConnectionKey, PerforceChangeList> allLists = calcChangeListMap(changeCache);
+    MultiMap<ConnectionKey, PerforceChangeList> allLists = calcChangeListMap(changeCache, progress);
     refreshSynchronizer(addGate, allLists);
 
     ChangeCreator creator = new ChangeCreator(myProject);
 
     final Map<ConnectionKey, P4Connection> key2connection = PerforceSettings.getSettings(myProject).getConnectionsByKeys();
     MultiMap<ConnectionKey, VirtualFile> roots = getAffectedRoots(dirtyScope);
+    List<ConnectionState> states = new ArrayList<>();
+    List<ThrowableComputable<Void, VcsException>> queries = new ArrayList<>();
     for (ConnectionKey key : roots.keySet()) {
       P4Connection connection = key2connection.get(key);
       if (connection != null) {
-        processConnection(connection, builder, roots.get(key), progress, addGate, allLists.get(key), dirtyScope, changeCache, creator);
+        ConnectionState state = new ConnectionState(connection, roots.get(key));
+        states.add(state);
+        queries.addAll(state.createQueries(dirtyScope, allLists.get(key), changeCache));
       }
     }
+    computeConcurrently(queries, progress);
+    // the builder and the gate are not thread-safe, so results are reported sequentially in the order of connections
+    for (ConnectionState state : states) {
+      processConnection(state, builder, progress, addGate, creator);
+    }
 
     myPerforceReadOnlyFileStateManager.getChanges(dirtyScope, builder, progress, addGate);
     final Set<VirtualFile> writableFiles = collectWritableFiles(dirtyScope, false);
 
+    List<VirtualFile> asyncEdited = new ArrayList<>();
     for (VirtualFile file : PerforceVcs.getInstance(myProject).getAsyncEditedFiles()) {
-      if (writableFiles.contains(file)) {
-        processAsyncEdit(file, builder, creator);
-        writableFiles.remove(file);
+      if (writableFiles.remove(file)) {
+        asyncEdited.add(file);
       }
     }
+    processAsyncEdits(asyncEdited, builder, creator);
     reportModifiedWithoutCheckout(builder, creator, writableFiles);
     myLastSuccessfulUpdateTracker.updateSuccessful();
   }
@@ -198,12 +216,19 @@ public class PerforceChangeProvider implements ChangeProvider {
     return ContainerUtil.or(allRoots, root -> !pcl.getChangesUnder(root).isEmpty());
   }
 
-  private MultiMap<ConnectionKey, PerforceChangeList> calcChangeListMap(PerforceChangeCache changeCache) throws VcsException {
+  private MultiMap<ConnectionKey, PerforceChangeList> calcChangeListMap(PerforceChangeCache changeCache, ProgressIndicator progress)
+    throws VcsException {
+    List<Pair<P4Connection, Collection<VirtualFile>>> rootsByConnections =
+      new ArrayList<>(PerforceVcs.getInstance(myProject).getRootsByConnections());
+    List<ThrowableComputable<List<PerforceChangeList>, VcsException>> queries = ContainerUtil.map(rootsByConnections, pair -> () -> {
+      PerforceManager.ensureValidClient(myProject, pair.first);
+      return getPendingChangeListsUnderRoots(changeCache, pair.first, pair.second);
+    });
+    List<List<PerforceChangeList>> lists = computeConcurrently(queries, progress);
+
     final MultiMap<ConnectionKey, PerforceChangeList> allLists = MultiMap.create();
-    for (Pair<P4Connection, Collection<VirtualFile>> pair : PerforceVcs.getInstance(myProject).getRootsByConnections()) {
-      final P4Connection connection = pair.first;
-      PerforceManager.ensureValidClient(myProject, connection);
-      allLists.putValues(connection.getConnectionKey(), getPendingChangeListsUnderRoots(changeCache, connection, pair.second));
+    for (int i = 0; i < rootsByConnections.size(); i++) {
+      allLists.putValues(rootsByConnections.get(i).first.getConnectionKey(), lists.get(i));
     }
     return allLists;
   }
@@ -240,13 +265,21 @@ public class PerforceChangeProvider implements ChangeProvider {
     return writableFiles;
   }
 
-  private void processAsyncEdit(VirtualFile file, ChangelistBuilder builder, ChangeCreator changeCreator)
+  private void processAsyncEdits(List<VirtualFile> files, ChangelistBuilder builder, ChangeCreator changeCreator)
     throws VcsException {
-    long revision = myRunner.haveRevision(P4File.create(file));
-    if (revision > 0) {
-      // todo: future optimization point
-      final FilePath filePath = VcsContextFactory.SERVICE.getInstance().createFilePathOn(file);
-      builder.processChange(changeCreator.createEditedFileChange(filePath, revision, false), PerforceVcs.getKey());
+    if (files.isEmpty()) return;
+
+    // one 'have' per connection instead of a p4 process per file
+    MultiMap<P4Connection, VirtualFile> map = FileGrouper.distributeFilesByConnection(files, myProject);
+    for (P4Connection connection : map.keySet()) {
+      List<FilePath> paths = ContainerUtil.map(map.get(connection), VcsUtil::getFilePath);
+      Object2LongMap<String> haveRevisions = myRunner.getHaveRevisions(connection, paths);
+      for (FilePath filePath : paths) {
+        long revision = haveRevisions.getLong(FileUtil.toSystemDependentName(filePath.getPath()));
+        if (revision > 0) {
+          builder.processChange(changeCreator.createEditedFileChange(filePath, revision, false), PerforceVcs.getKey());
+        }
+      }
     }
   }
 
@@ -257,30 +290,124 @@ public class PerforceChangeProvider implements ChangeProvider {
     mySynchronizer.removeNonexistentKeys(allLists.keySet());
   }
 
-  private void processConnection(@NotNull final P4Connection connection,
+  private void processConnection(@NotNull ConnectionState state,
                                  final ChangelistBuilder builder,
-                                 final Collection<VirtualFile> roots,
                                  final ProgressIndicator progress,
                                  final ChangeListManagerGate addGate,
-                                 final Collection<PerforceChangeList> allLists,
-                                 final VcsDirtyScope dirtyScope,
-                                 PerforceChangeCache changeCache, ChangeCreator changeCreator) throws VcsException {
+                                 ChangeCreator changeCreator) {
     progress.checkCanceled();
 
-    final LocalPathsSet resolvedWithConflictsMap = myRunner.getResolvedWithConflictsMap(connection, roots);
-    final ResolvedFilesWrapper resolvedFilesWrapper = new ResolvedFilesWrapper(myRunner.getResolvedFiles(connection, roots));
+    final PerforceChangeListCalculator changeListCalculator = new PerforceChangeListCalculator(myProject, state.connection, addGate);
+
+    final OpenedResultProcessor processor =
+      new OpenedResultProcessor(state.connection, changeCreator, builder, state.resolvedWithConflictsMap,
+                                new ResolvedFilesWrapper(state.resolvedFiles), changeListCalculator);
+    processor.process(state.changes);
+    PerforceHaveSet.getInstance(myProject).checkOpened(state.connection.getConnectionKey(), state.changes);
+  }
+
+  /**
+   * Runs independent p4 queries on a bounded pool, so that the refresh waits for the slowest server rather than for all of them in turn.
+   * @return results in the order of tasks; the first failed task in that order determines the thrown exception
+   */
+  private static <T> List<T> computeConcurrently(List<? extends ThrowableComputable<T, VcsException>> tasks, ProgressIndicator progress)
+    throws VcsException {
+    if (tasks.size() <= 1) {
+      List<T> results = new ArrayList<>();
+      for (ThrowableComputable<T, VcsException> task : tasks) {
+        results.add(task.compute());
+      }
+      return results;
+    }
+
+    List<Future<T>> futures = ContainerUtil.map(tasks, task -> ourRefreshExecutor.submit(() -> {
+      Ref<T> result = new Ref<>();
+      Ref<VcsException> error = new Ref<>();
+      ProgressManager.getInstance().executeProcessUnderProgress(() -> {
+        try {
+          result.set(task.compute());
+        }
+        catch (VcsException e) {
+          error.set(e);
+        }
+      }, progress);
+      if (!error.isNull()) {
+        throw error.get();
+      }
+      return result.get();
+    }));
+    try {
+      List<T> results = new ArrayList<>(futures.size());
+      for (Future<T> future : futures) {
+        results.add(awaitResult(future, progress));
+      }
+      return results;
+    }
+    finally {
+      for (Future<T> future : futures) {
+        future.cancel(false);
+      }
+    }
+  }
 
-    final List<PerforceChange> changes = new ArrayList<>();
-    for (VirtualFile root : roots) {
-      changes.addAll(getChangesUnder(connection, root, dirtyScope, allLists, changeCache));
+  private static <T> T awaitResult(Future<T> future, ProgressIndicator progress) throws VcsException {
+    while (true) {
+      progress.checkCanceled();
+      try {
+        return future.get(50, TimeUnit.MILLISECONDS);
+      }
+      catch (TimeoutException ignored) {
+      }
+      catch (InterruptedException e) {
+        throw new ProcessCanceledException(e);
+      }
+      catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof VcsException) {
+          throw (VcsException)cause;
+        }
+        ExceptionUtil.rethrowUnchecked(cause);
+        throw new VcsException(cause);
+      }
     }
+  }
 
-    final PerforceChangeListCalculator changeListCalculator = new PerforceChangeListCalculator(myProject, connection, addGate);
+  /**
+   * Results of the p4 queries for one connection, filled concurrently by {@link #createQueries}.
+   */
+  private final class ConnectionState {
+    final P4Connection connection;
+    final Collection<VirtualFile> roots;
+    volatile LocalPathsSet resolvedWithConflictsMap;
+    volatile List<ResolvedFile> resolvedFiles;
+    volatile List<PerforceChange> changes;
+
+    ConnectionState(@NotNull P4Connection connection, @NotNull Collection<VirtualFile> roots) {
+      this.connection = connection;
+      this.roots = roots;
+    }
 
-    final OpenedResultProcessor processor =
-      new OpenedResultProcessor(connection, changeCreator, builder, resolvedWithConflictsMap, resolvedFilesWrapper,
-                                changeListCalculator);
-    processor.process(changes);
+    List<ThrowableComputable<Void, VcsException>> createQueries(VcsDirtyScope dirtyScope,
+                                                                Collection<PerforceChangeList> allLists,
+                                                                PerforceChangeCache changeCache) {
+      return Arrays.asList(
+        () -> {
+          resolvedWithConflictsMap = myRunner.getResolvedWithConflictsMap(connection, roots);
+          return null;
+        },
+        () -> {
+          resolvedFiles = myRunner.getResolvedFiles(connection, roots);
+          return null;
+        },
+        () -> {
+          List<PerforceChange> result = new ArrayList<>();
+          for (VirtualFile root : roots) {
+            result.addAll(getChangesUnder(connection, root, dirtyScope, allLists, changeCache));
+          }
+          changes = result;
+          return null;
+        });
+    }
   }
 
   @Override
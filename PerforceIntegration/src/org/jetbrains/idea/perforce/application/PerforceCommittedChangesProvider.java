@@ -280,7 +280,7 @@ public class PerforceCommittedChangesProvider implements CachingCommittedChanges
     catch (VcsException e) {
       throw new IOException(e);
     }
-    return new PerforceChangeList(myProject, stream, connection, perforceClient, new PerforceChangeCache(myProject));
+    return new PerforceChangeList(myProject, stream, connection, perforceClient, new PerforceChangeCache(myProject, true));
   }
 
   @NotNull
@@ -0,0 +1,437 @@
+package org.jetbrains.idea.perforce.application;
+
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.SystemInfo;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vcs.FilePath;
+import com.intellij.util.ArrayUtilRt;
+import com.intellij.util.io.DataInputOutputUtil;
+import com.intellij.util.io.IOUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.TestOnly;
+import org.jetbrains.idea.perforce.perforce.P4HaveParser;
+import org.jetbrains.idea.perforce.perforce.PerforceAbstractChange;
+import org.jetbrains.idea.perforce.perforce.PerforceChange;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Local copy of 'p4 have' output for the workspace roots of each client, so that rescans of a dirty scope don't have to ask the server
+ * for every file under it. The have-set is rebuilt by total rescans and kept up to date from the results of 'sync' and 'submit' run
+ * from the IDE. Results of 'opened' which contradict it (a file opened for edit that isn't there, or one opened for add that is)
+ * mean the client was changed outside the IDE, and the have-set is dropped until the next total rescan.
+ * The time of the last rebuild or sync is kept with the have-set: files modified after it and missing from it were created locally.
+ * It is kept on disk between sessions with sorted paths front-coded against the previous one.
+ */
+@Service
+public final class PerforceHaveSet {
+  private static final Logger LOG = Logger.getInstance(PerforceHaveSet.class);
+
+  private static final int FORMAT_VERSION = 3;
+  private static final String STORE_DIR = "perforce-have";
+  private static final Comparator<String> PATH_ORDER = SystemInfo.isFileSystemCaseSensitive ? Comparator.naturalOrder()
+                                                                                            : String.CASE_INSENSITIVE_ORDER;
+  private static final String[] SYNC_UPDATE_ACTIONS = {"added as ", "updating ", "refreshing ", "replacing "};
+  private static final String SYNC_DELETE_ACTION = "deleted as ";
+
+  private final File myDir;
+  private final Map<ConnectionKey, ClientHaveSet> mySets = new ConcurrentHashMap<>();
+  private final Set<ConnectionKey> myLoaded = ConcurrentHashMap.newKeySet();
+  // saves of a client are serialized, as they write the same temp file
+  private final Map<ConnectionKey, Object> mySaveLocks = new ConcurrentHashMap<>();
+
+  public PerforceHaveSet() {
+    this(new File(PathManager.getSystemPath(), STORE_DIR));
+  }
+
+  @TestOnly
+  public PerforceHaveSet(@NotNull File dir) {
+    myDir = dir;
+  }
+
+  public static PerforceHaveSet getInstance(@NotNull Project project) {
+    return ServiceManager.getService(project, PerforceHaveSet.class);
+  }
+
+  /**
+   * Replaces the have-set of the client with the result of 'p4 have' over all its roots.
+   * @param haveRevisions have revisions by local path
+   */
+  public void rebuild(@NotNull ConnectionKey key, @NotNull Collection<FilePath> roots, @NotNull Map<String, Long> haveRevisions) {
+    TreeMap<String, Long> sorted = new TreeMap<>(PATH_ORDER);
+    haveRevisions.forEach((path, revision) -> sorted.put(FileUtil.toSystemIndependentName(path), revision));
+    List<String> rootPaths = new ArrayList<>();
+    for (FilePath root : roots) {
+      rootPaths.add(root.getPath());
+    }
+    String[] paths = ArrayUtilRt.toStringArray(sorted.keySet());
+    long[] revisions = new long[paths.length];
+    int i = 0;
+    for (Long revision : sorted.values()) {
+      revisions[i++] = revision;
+    }
+    mySets.put(key, new ClientHaveSet(rootPaths, paths, revisions, System.currentTimeMillis()));
+    myLoaded.add(key);
+    save(key);
+  }
+
+  /**
+   * Reports have revisions of files under the given paths from the local have-set.
+   * @return {@code false} if there's no have-set for the client or it doesn't cover the paths, so 'p4 have' should be run instead
+   */
+  public boolean processHaveRevisions(@NotNull ConnectionKey key, @NotNull Collection<FilePath> files, @NotNull P4HaveParser consumer) {
+    ClientHaveSet set = getSet(key);
+    if (set == null || !set.covers(files)) {
+      return false;
+    }
+    for (FilePath file : files) {
+      set.processUnder(file, consumer);
+    }
+    return true;
+  }
+
+  public boolean isTracked(@NotNull ConnectionKey key) {
+    return getSet(key) != null;
+  }
+
+  /**
+   * @return the time of the last rebuild or sync of the client's have-set, or -1 if there's no have-set
+   */
+  public long getTimestamp(@NotNull ConnectionKey key) {
+    ClientHaveSet set = getSet(key);
+    return set != null ? set.timestamp : -1;
+  }
+
+  /**
+   * Applies have revisions known from the server to the have-set of the client, if there is one.
+   * @param haveRevisions have revisions by local path
+   * @param removedPaths local paths which are no longer on the client
+   */
+  public void update(@NotNull ConnectionKey key, @NotNull Map<String, Long> haveRevisions, @NotNull Collection<String> removedPaths) {
+    update(key, haveRevisions, removedPaths, false);
+  }
+
+  /**
+   * @param synced whether the changes are the complete result of a sync, which then becomes the timestamp of the have-set
+   */
+  private void update(@NotNull ConnectionKey key,
+                      @NotNull Map<String, Long> haveRevisions,
+                      @NotNull Collection<String> removedPaths,
+                      boolean synced) {
+    if (haveRevisions.isEmpty() && removedPaths.isEmpty() && !synced) return;
+
+    TreeMap<String, Long> changes = new TreeMap<>(PATH_ORDER);
+    for (String path : removedPaths) {
+      changes.put(FileUtil.toSystemIndependentName(path), null);
+    }
+    haveRevisions.forEach((path, revision) -> changes.put(FileUtil.toSystemIndependentName(path), revision));
+
+    long now = System.currentTimeMillis();
+    ClientHaveSet updated = getSet(key) == null
+                            ? null
+                            : mySets.computeIfPresent(key, (k, set) -> set.withChanges(changes, synced ? now : set.timestamp));
+    if (updated != null) {
+      save(key);
+    }
+  }
+
+  /**
+   * Updates the have-set of the client from the output of 'p4 sync'. Output lines whose effect on the have table isn't known
+   * (e.g. files scheduled for resolve) drop the have-set.
+   * @param toLocalPath converts local paths as printed by p4
+   */
+  public void applySyncOutput(@NotNull ConnectionKey key, @NotNull String output, @NotNull Function<String, String> toLocalPath) {
+    if (!isTracked(key)) return;
+
+    Map<String, Long> updated = new HashMap<>();
+    List<String> removed = new ArrayList<>();
+    for (String line : StringUtil.splitByLines(output)) {
+      if (!parseSyncLine(line, updated, removed, toLocalPath)) {
+        LOG.debug("have-set of " + key + " dropped after sync output: " + line);
+        invalidate(key);
+        return;
+      }
+    }
+    update(key, updated, removed, true);
+  }
+
+  private static boolean parseSyncLine(@NotNull String line,
+                                       @NotNull Map<String, Long> updated,
+                                       @NotNull List<String> removed,
+                                       @NotNull Function<String, String> toLocalPath) {
+    int hashIndex = line.indexOf('#');
+    int delimiterIndex = hashIndex < 0 ? -1 : line.indexOf(" - ", hashIndex);
+    if (delimiterIndex < 0 || line.startsWith("... ")) return false;
+
+    long revision;
+    try {
+      revision = Long.parseLong(line.substring(hashIndex + 1, delimiterIndex));
+    }
+    catch (NumberFormatException e) {
+      return false;
+    }
+    String action = line.substring(delimiterIndex + 3);
+    if (action.startsWith(SYNC_DELETE_ACTION)) {
+      removed.add(toLocalPath.apply(action.substring(SYNC_DELETE_ACTION.length())));
+      return true;
+    }
+    for (String updateAction : SYNC_UPDATE_ACTIONS) {
+      if (action.startsWith(updateAction)) {
+        updated.put(toLocalPath.apply(action.substring(updateAction.length())), revision);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Drops the have-set of the client if it contradicts the files reported by 'p4 opened'. Files opened for edit, delete or integrate
+   * are always on the client, and files opened for add never are.
+   */
+  public void checkOpened(@NotNull ConnectionKey key, @NotNull Collection<PerforceChange> openedFiles) {
+    ClientHaveSet set = getSet(key);
+    if (set == null) return;
+
+    for (PerforceChange change : openedFiles) {
+      File file = change.getFile();
+      if (file == null || !set.covers(file.getPath())) continue;
+
+      boolean expected;
+      switch (change.getType()) {
+        case PerforceAbstractChange.EDIT:
+        case PerforceAbstractChange.DELETE:
+        case PerforceAbstractChange.INTEGRATE:
+          expected = true;
+          break;
+        case PerforceAbstractChange.ADD:
+        case PerforceAbstractChange.BRANCH:
+          expected = false;
+          break;
+        default:
+          continue;
+      }
+      if (set.contains(file.getPath()) != expected) {
+        LOG.debug("have-set of " + key + " contradicts opened " + change);
+        invalidate(key);
+        return;
+      }
+    }
+  }
+
+  public void invalidate(@NotNull ConnectionKey key) {
+    myLoaded.add(key);
+    synchronized (getSaveLock(key)) {
+      mySets.remove(key);
+      FileUtil.delete(getFile(key));
+    }
+  }
+
+  @Nullable
+  private ClientHaveSet getSet(@NotNull ConnectionKey key) {
+    if (myLoaded.add(key)) {
+      ClientHaveSet loaded = load(key);
+      if (loaded != null) {
+        mySets.putIfAbsent(key, loaded);
+      }
+    }
+    return mySets.get(key);
+  }
+
+  @NotNull
+  private Object getSaveLock(@NotNull ConnectionKey key) {
+    return mySaveLocks.computeIfAbsent(key, k -> new Object());
+  }
+
+  /**
+   * Writes the current have-set of the client, so that a save that waited for a concurrent one never writes an outdated set
+   */
+  private void save(@NotNull ConnectionKey key) {
+    synchronized (getSaveLock(key)) {
+      ClientHaveSet set = mySets.get(key);
+      if (set != null) {
+        save(key, set);
+      }
+    }
+  }
+
+  private void save(@NotNull ConnectionKey key, @NotNull ClientHaveSet set) {
+    File file = getFile(key);
+    File tempFile = new File(file.getPath() + ".tmp");
+    try {
+      FileUtil.createParentDirs(tempFile);
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+        out.writeInt(FORMAT_VERSION);
+        out.writeLong(set.timestamp);
+        DataInputOutputUtil.writeINT(out, set.roots.size());
+        for (String root : set.roots) {
+          IOUtil.writeUTF(out, root);
+        }
+        DataInputOutputUtil.writeINT(out, set.paths.length);
+        String previous = "";
+        for (int i = 0; i < set.paths.length; i++) {
+          String path = set.paths[i];
+          int common = StringUtil.commonPrefixLength(previous, path);
+          DataInputOutputUtil.writeINT(out, common);
+          IOUtil.writeUTF(out, path.substring(common));
+          DataInputOutputUtil.writeLONG(out, set.revisions[i]);
+          previous = path;
+        }
+      }
+      FileUtil.rename(tempFile, file);
+    }
+    catch (IOException e) {
+      LOG.info("Failed to save have-set to " + file, e);
+      FileUtil.delete(tempFile);
+    }
+  }
+
+  @Nullable
+  private ClientHaveSet load(@NotNull ConnectionKey key) {
+    File file = getFile(key);
+    if (!file.isFile()) {
+      return null;
+    }
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      if (in.readInt() != FORMAT_VERSION) {
+        throw new IOException("Unsupported format");
+      }
+      long timestamp = in.readLong();
+      int rootCount = DataInputOutputUtil.readINT(in);
+      List<String> roots = new ArrayList<>(rootCount);
+      for (int i = 0; i < rootCount; i++) {
+        roots.add(IOUtil.readUTF(in));
+      }
+      int count = DataInputOutputUtil.readINT(in);
+      String[] paths = new String[count];
+      long[] revisions = new long[count];
+      String previous = "";
+      for (int i = 0; i < count; i++) {
+        int common = DataInputOutputUtil.readINT(in);
+        paths[i] = previous.substring(0, common) + IOUtil.readUTF(in);
+        revisions[i] = DataInputOutputUtil.readLONG(in);
+        previous = paths[i];
+      }
+      return new ClientHaveSet(roots, paths, revisions, timestamp);
+    }
+    catch (IOException | RuntimeException e) {
+      LOG.info("Failed to load have-set from " + file, e);
+      FileUtil.delete(file);
+      return null;
+    }
+  }
+
+  @NotNull
+  private File getFile(@NotNull ConnectionKey key) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.toString().getBytes(StandardCharsets.UTF_8));
+      return new File(myDir, StringUtil.toHexString(digest) + ".dat");
+    }
+    catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static final class ClientHaveSet {
+    final List<String> roots;
+    final String[] paths;
+    final long[] revisions;
+    final long timestamp;
+
+    private ClientHaveSet(@NotNull List<String> roots, String @NotNull [] paths, long @NotNull [] revisions, long timestamp) {
+      this.roots = roots;
+      this.paths = paths;
+      this.revisions = revisions;
+      this.timestamp = timestamp;
+    }
+
+    boolean covers(@NotNull Collection<FilePath> files) {
+      for (FilePath file : files) {
+        if (!covers(file.getPath())) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    boolean covers(@NotNull String path) {
+      for (String root : roots) {
+        if (FileUtil.isAncestor(root, path, false)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    boolean contains(@NotNull String path) {
+      return Arrays.binarySearch(paths, FileUtil.toSystemIndependentName(path), PATH_ORDER) >= 0;
+    }
+
+    void processUnder(@NotNull FilePath file, @NotNull P4HaveParser consumer) {
+      String path = file.getPath();
+      int exact = Arrays.binarySearch(paths, path, PATH_ORDER);
+      if (exact >= 0) {
+        consumer.consumeRevision(FileUtil.toSystemDependentName(paths[exact]), revisions[exact]);
+      }
+      if (!file.isDirectory()) {
+        return;
+      }
+      // all paths starting with "dir/" lie between "dir/" and "dir0", as '0' follows '/'
+      String prefix = StringUtil.trimEnd(path, "/") + "/";
+      int from = insertionPoint(Arrays.binarySearch(paths, prefix, PATH_ORDER));
+      int to = insertionPoint(Arrays.binarySearch(paths, StringUtil.trimEnd(prefix, "/") + "0", PATH_ORDER));
+      for (int i = from; i < to; i++) {
+        consumer.consumeRevision(FileUtil.toSystemDependentName(paths[i]), revisions[i]);
+      }
+    }
+
+    /**
+     * @param changes new revisions by system-independent path, {@code null} for removed paths
+     */
+    @NotNull
+    ClientHaveSet withChanges(@NotNull SortedMap<String, Long> changes, long newTimestamp) {
+      List<String> newPaths = new ArrayList<>(paths.length + changes.size());
+      List<Long> newRevisions = new ArrayList<>(paths.length + changes.size());
+      Iterator<Map.Entry<String, Long>> iterator = changes.entrySet().iterator();
+      Map.Entry<String, Long> change = iterator.hasNext() ? iterator.next() : null;
+      int i = 0;
+      while (i < paths.length || change != null) {
+        int order = change == null ? -1 : i == paths.length ? 1 : PATH_ORDER.compare(paths[i], change.getKey());
+        if (order < 0) {
+          newPaths.add(paths[i]);
+          newRevisions.add(revisions[i]);
+          i++;
+          continue;
+        }
+        if (change.getValue() != null) {
+          newPaths.add(change.getKey());
+          newRevisions.add(change.getValue());
+        }
+        if (order == 0) {
+          i++;
+        }
+        change = iterator.hasNext() ? iterator.next() : null;
+      }
+      long[] revisionArray = new long[newRevisions.size()];
+      for (int j = 0; j < revisionArray.length; j++) {
+        revisionArray[j] = newRevisions.get(j);
+      }
+      return new ClientHaveSet(roots, ArrayUtilRt.toStringArray(newPaths), revisionArray, newTimestamp);
+    }
+
+    private static int insertionPoint(int searchResult) {
+      return searchResult >= 0 ? searchResult : -searchResult - 1;
+    }
+  }
+}
@@ -14,6 +14,7 @@ import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.util.containers.MultiMap;
 import com.intellij.vcsUtil.VcsUtil;
+import it.unimi.dsi.fastutil.objects.Object2LongMap;
 import org.jetbrains.idea.perforce.perforce.P4HaveParser;
 import org.jetbrains.idea.perforce.perforce.PathsHelper;
 import org.jetbrains.idea.perforce.perforce.PerforceRunner;
@@ -55,7 +56,8 @@ public abstract class UnversionedScopeScanner {
       checkCanceled();
 
       final LocalFileSystem fs = LocalFileSystem.getInstance();
-      myRunner.haveMultiple(collectPaths(files), connection, new P4HaveParser(PerforceManager.getInstance(myProject)) {
+      final Set<String> missingFiles = new HashSet<>();
+      P4HaveParser haveParser = new P4HaveParser(PerforceManager.getInstance(myProject)) {
         @Override
         public void consumeRevision(String path, long revision) {
           checkCanceled();
@@ -68,7 +70,7 @@ public abstract class UnversionedScopeScanner {
             if (LOG.isDebugEnabled()) {
               LOG.debug("locally missing file reported: " + path);
             }
-            result.missingFiles.add(path);
+            missingFiles.add(path);
           }
         }
 
@@ -83,7 +85,11 @@ public abstract class UnversionedScopeScanner {
           String appleForkPath = FileUtil.toSystemIndependentName(ioFile.getParent()) + "/%" + ioFile.getName();
           return fs.findFileByPathIfCached(FileUtil.toSystemIndependentName(appleForkPath));
         }
-      });
+      };
+      if (runHave(connection, files, force, haveParser)) {
+        verifyHaveSetAnswer(connection, localFiles, missingFiles, haveParser);
+      }
+      result.missingFiles.addAll(missingFiles);
       checkCanceled();
 
       if (force) {
@@ -105,6 +111,74 @@ public abstract class UnversionedScopeScanner {
     return result;
   }
 
+  /**
+   * A total rescan asks the server and rebuilds the local {@link PerforceHaveSet}, partial rescans are answered by it when there is one.
+   * @return whether the revisions were taken from the have-set
+   */
+  private boolean runHave(P4Connection connection, Collection<FilePath> files, boolean force, P4HaveParser haveParser) throws VcsException {
+    PerforceHaveSet haveSet = PerforceHaveSet.getInstance(myProject);
+    if (!force) {
+      if (haveSet.processHaveRevisions(connection.getConnectionKey(), files, haveParser)) {
+        return true;
+      }
+      myRunner.haveMultiple(collectPaths(files), connection, haveParser);
+      return false;
+    }
+
+    Map<String, Long> haveRevisions = new HashMap<>();
+    myRunner.haveMultiple(collectPaths(files), connection, new P4HaveParser(PerforceManager.getInstance(myProject)) {
+      @Override
+      public void consumeRevision(String path, long revision) {
+        haveRevisions.put(path, revision);
+        haveParser.consumeRevision(path, revision);
+      }
+    });
+    haveSet.rebuild(connection.getConnectionKey(), files, haveRevisions);
+    return false;
+  }
+
+  /**
+   * Files that the have-set reports as unversioned or locally missing may have been synced or removed outside the IDE,
+   * so only these are asked with 'p4 have', and the have-set is corrected with the answer. Unversioned files modified after
+   * the last rebuild or sync of the have-set were created locally since, so they aren't asked.
+   */
+  private void verifyHaveSetAnswer(P4Connection connection,
+                                   Set<VirtualFile> localFiles,
+                                   Set<String> missingFiles,
+                                   P4HaveParser haveParser) throws VcsException {
+    ChangeListManager clm = ChangeListManager.getInstance(myProject);
+    long haveSetTimestamp = PerforceHaveSet.getInstance(myProject).getTimestamp(connection.getConnectionKey());
+    List<FilePath> candidates = new ArrayList<>();
+    for (VirtualFile file : localFiles) {
+      if (file.getTimeStamp() <= haveSetTimestamp && !clm.isIgnoredFile(file)) {
+        candidates.add(VcsUtil.getFilePath(file));
+      }
+    }
+    for (String path : missingFiles) {
+      candidates.add(VcsUtil.getFilePath(path, false));
+    }
+    if (candidates.isEmpty()) return;
+
+    Object2LongMap<String> haveRevisions = myRunner.getHaveRevisions(connection, candidates);
+    checkCanceled();
+
+    List<String> removed = new ArrayList<>();
+    for (Iterator<String> iterator = missingFiles.iterator(); iterator.hasNext(); ) {
+      String path = iterator.next();
+      if (!haveRevisions.containsKey(path)) {
+        LOG.debug("file removed from the client outside the IDE: " + path);
+        removed.add(path);
+        iterator.remove();
+      }
+    }
+    Map<String, Long> updated = new HashMap<>();
+    for (Object2LongMap.Entry<String> entry : haveRevisions.object2LongEntrySet()) {
+      haveParser.consumeRevision(entry.getKey(), entry.getLongValue());
+      updated.put(entry.getKey(), entry.getLongValue());
+    }
+    PerforceHaveSet.getInstance(myProject).update(connection.getConnectionKey(), updated, removed);
+  }
+
   private PathsHelper collectPaths(Collection<FilePath> value) {
     final PathsHelper helper = new PathsHelper(PerforceManager.getInstance(myProject));
     for (final FilePath dir : value) {
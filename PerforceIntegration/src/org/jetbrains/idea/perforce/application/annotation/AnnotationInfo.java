@@ -17,53 +17,96 @@ package org.jetbrains.idea.perforce.application.annotation;
 
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.vcs.VcsException;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
 import it.unimi.dsi.fastutil.longs.LongArrayList;
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.idea.perforce.PerforceBundle;
 
+import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.LineNumberReader;
 import java.io.StringReader;
 
+/**
+ * Parsed 'p4 annotate -q' output. Lines refer to the distinct revisions by index, as large files usually have far fewer revisions than lines.
+ */
 public final class AnnotationInfo {
   private final String myContent;
+  private final int[] myLineRevisions;
   private final long[] myRevisions;
   private final boolean myUseChangelistNumbers;
   private static final Logger LOG = Logger.getInstance(AnnotationInfo.class);
 
   public AnnotationInfo(String output, boolean useChangelistNumbers) throws IOException, VcsException {
+    this(new BufferedReader(new StringReader(output)), useChangelistNumbers);
+  }
+
+  public AnnotationInfo(@NotNull BufferedReader reader, boolean useChangelistNumbers) throws IOException, VcsException {
     myUseChangelistNumbers = useChangelistNumbers;
-    //noinspection IOResourceOpenedButNotSafelyClosed
-    final LineNumberReader reader = new LineNumberReader(new StringReader(output));
     String line;
     final StringBuilder content = new StringBuilder();
+    final IntArrayList lineRevisions = new IntArrayList();
     final LongArrayList revisions = new LongArrayList();
-    try {
-      while ((line = reader.readLine()) != null) {
-        final int endOfRevisionIndex = line.indexOf(":");
-        if (endOfRevisionIndex > 0) {
-          String revision = line.substring(0, endOfRevisionIndex);
-          String contentLine = line.substring(endOfRevisionIndex + 2);
-          content.append(contentLine);
-          content.append("\n");
-          revisions.add(Long.parseLong(revision));
+    final Long2IntOpenHashMap revisionIndices = new Long2IntOpenHashMap();
+    revisionIndices.defaultReturnValue(-1);
+    while ((line = reader.readLine()) != null) {
+      final int endOfRevisionIndex = line.indexOf(':');
+      if (endOfRevisionIndex > 0) {
+        long revision = parseRevision(line, endOfRevisionIndex);
+        int index = revisionIndices.get(revision);
+        if (index < 0) {
+          index = revisions.size();
+          revisions.add(revision);
+          revisionIndices.put(revision, index);
         }
+        lineRevisions.add(index);
+        if (endOfRevisionIndex + 2 < line.length()) {
+          content.append(line, endOfRevisionIndex + 2, line.length());
+        }
+        content.append('\n');
       }
-    } catch (NumberFormatException e) {
-      LOG.info("Can not parse annotation output: \n'" + output + "'", e);
-      throw new VcsException(PerforceBundle.message("error.can.not.parse.annotation.output"), e);
     }
 
     myContent = content.toString();
+    myLineRevisions = lineRevisions.toIntArray();
     myRevisions = revisions.toLongArray();
   }
 
+  private static long parseRevision(@NotNull String line, int end) throws VcsException {
+    long revision = 0;
+    for (int i = 0; i < end; i++) {
+      char c = line.charAt(i);
+      if (c < '0' || c > '9' || revision > (Long.MAX_VALUE - 9) / 10) {
+        LOG.info("Can not parse annotation output line: \n'" + line + "'");
+        throw new VcsException(PerforceBundle.message("error.can.not.parse.annotation.output"));
+      }
+      revision = revision * 10 + (c - '0');
+    }
+    return revision;
+  }
+
   public String getContent() {
     return myContent;
   }
 
   public long getRevision(int lineNumber) {
-    if (lineNumber < 0 || lineNumber >= myRevisions.length) return -1;
-    return myRevisions[lineNumber];
+    if (lineNumber < 0 || lineNumber >= myLineRevisions.length) return -1;
+    return myRevisions[myLineRevisions[lineNumber]];
+  }
+
+  /**
+   * @return the index of the line's revision in {@link #getRevisions()}, or -1 for lines out of range
+   */
+  public int getRevisionIndex(int lineNumber) {
+    if (lineNumber < 0 || lineNumber >= myLineRevisions.length) return -1;
+    return myLineRevisions[lineNumber];
+  }
+
+  /**
+   * @return distinct revisions (or changelist numbers) mentioned in the annotation, in the order of their first lines
+   */
+  public long @NotNull [] getRevisions() {
+    return myRevisions.clone();
   }
 
   public boolean isUseChangelistNumbers() {
@@ -71,6 +114,6 @@ public final class AnnotationInfo {
   }
 
   public int getLineCount() {
-    return myRevisions.length;
+    return myLineRevisions.length;
   }
 }
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2000-2020 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.idea.perforce.application.annotation;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Recently used annotations of fixed depot revisions, which don't change once submitted.
+ * The cache is bounded by the total number of annotated lines rather than by the number of files.
+ */
+public final class AnnotationInfoCache {
+  private final int myMaxLines;
+  private final LinkedHashMap<String, AnnotationInfo> myInfos = new LinkedHashMap<>(16, 0.75f, true);
+  private int myLines;
+
+  public AnnotationInfoCache(int maxLines) {
+    myMaxLines = maxLines;
+  }
+
+  @Nullable
+  public synchronized AnnotationInfo get(@NotNull String key) {
+    return myInfos.get(key);
+  }
+
+  public synchronized void put(@NotNull String key, @NotNull AnnotationInfo info) {
+    if (info.getLineCount() > myMaxLines) return;
+
+    AnnotationInfo previous = myInfos.put(key, info);
+    if (previous != null) {
+      myLines -= previous.getLineCount();
+    }
+    myLines += info.getLineCount();
+    Iterator<AnnotationInfo> iterator = myInfos.values().iterator();
+    while (myLines > myMaxLines) {
+      myLines -= iterator.next().getLineCount();
+      iterator.remove();
+    }
+  }
+
+  public synchronized void clear() {
+    myInfos.clear();
+    myLines = 0;
+  }
+}
@@ -16,9 +16,13 @@
 package org.jetbrains.idea.perforce.application.annotation;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.NlsContexts;
+import com.intellij.openapi.util.ThrowableComputable;
 import com.intellij.openapi.vcs.VcsBundle;
+import com.intellij.openapi.vcs.VcsException;
 import com.intellij.openapi.vcs.VcsKey;
 import com.intellij.openapi.vcs.annotate.FileAnnotation;
 import com.intellij.openapi.vcs.annotate.LineAnnotationAspect;
@@ -30,6 +34,7 @@ import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.vfs.VirtualFileListener;
 import com.intellij.openapi.vfs.VirtualFileManager;
 import git4idea.annotate.AnnotationTooltipBuilder;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.idea.perforce.PerforceBundle;
@@ -45,37 +50,123 @@ import org.jetbrains.idea.perforce.perforce.connections.PerforceConnectionManage
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class PerforceFileAnnotation extends FileAnnotation {
+  private static final Logger LOG = Logger.getInstance(PerforceFileAnnotation.class);
+
   private final AnnotationInfo myAnnotationInfo;
-  private final P4Revision[] myRevisions;
+  private final ThrowableComputable<P4Revision[], VcsException> myFileLogLoader;
+  private final AtomicBoolean myLoadingScheduled = new AtomicBoolean();
+  private final Object myFileLogLock = new Object();
   private final VirtualFile myFile;
   private final long myRevision;
 
   private final VirtualFileListener myListener;
   private final Project myProject;
-  private final List<VcsFileRevision> myPerforceRevisions;
+  private final P4Connection myConnection;
+  private volatile FileLog myFileLog;
+  private volatile List<VcsFileRevision> myPerforceRevisions;
 
+  private static final class FileLog {
+    final P4Revision[] revisions;
+    // filelog entries of the annotation's distinct revisions, by AnnotationInfo#getRevisionIndex
+    final P4Revision[] lineRevisions;
+
+    FileLog(P4Revision @NotNull [] revisions, P4Revision @NotNull [] lineRevisions) {
+      this.revisions = revisions;
+      this.lineRevisions = lineRevisions;
+    }
+  }
 
   public PerforceFileAnnotation(final AnnotationInfo annotationInfo,
                                 final VirtualFile file,
                                 P4Revision[] revisions,
                                 final Project project, @NotNull final P4Connection connection, long revision) {
+    this(annotationInfo, file, () -> revisions, project, connection, revision);
+    myFileLog = new FileLog(revisions, matchRevisions(annotationInfo, revisions));
+  }
+
+  /**
+   * @param fileLogLoader runs 'p4 filelog' for the authors and dates of the lines. It's called in background when they're first shown,
+   *                      so that the annotation itself isn't delayed by the history of files with many revisions.
+   */
+  public PerforceFileAnnotation(final AnnotationInfo annotationInfo,
+                                final VirtualFile file,
+                                @NotNull ThrowableComputable<P4Revision[], VcsException> fileLogLoader,
+                                final Project project, @NotNull final P4Connection connection, long revision) {
     super(project);
     myAnnotationInfo = annotationInfo;
-    myRevisions = revisions;
+    myFileLogLoader = fileLogLoader;
     myProject = project;
+    myConnection = connection;
     myFile = file;
     myRevision = revision;
 
     myListener = new VFSForAnnotationListener(file, this);
     VirtualFileManager.getInstance().addVirtualFileListener(myListener);
+  }
+
+  /**
+   * Loads the filelog in background threads. In EDT, returns it only if it's loaded, otherwise starts loading it and reloads the annotation
+   * when it's ready.
+   */
+  @Nullable
+  private FileLog getFileLog() {
+    if (!ApplicationManager.getApplication().isDispatchThread()) {
+      try {
+        return loadFileLog();
+      }
+      catch (VcsException e) {
+        LOG.info(e);
+        return null;
+      }
+    }
+
+    FileLog fileLog = myFileLog;
+    if (fileLog == null && myLoadingScheduled.compareAndSet(false, true)) {
+      ApplicationManager.getApplication().executeOnPooledThread(() -> {
+        try {
+          loadFileLog();
+          ApplicationManager.getApplication().invokeLater(() -> reload(this), myProject.getDisposed());
+        }
+        catch (VcsException e) {
+          LOG.info(e);
+        }
+        finally {
+          // let the next request retry a failed load
+          if (myFileLog == null) {
+            myLoadingScheduled.set(false);
+          }
+        }
+      });
+    }
+    return fileLog;
+  }
 
-    myPerforceRevisions = new ArrayList<>();
-    for (P4Revision p4Revision : myRevisions) {
-      myPerforceRevisions.add(new PerforceFileRevision(p4Revision, connection, project));
+  @NotNull
+  private FileLog loadFileLog() throws VcsException {
+    synchronized (myFileLogLock) {
+      if (myFileLog == null) {
+        P4Revision[] revisions = myFileLogLoader.compute();
+        myFileLog = new FileLog(revisions, matchRevisions(myAnnotationInfo, revisions));
+      }
+      return myFileLog;
+    }
+  }
+
+  private static P4Revision @NotNull [] matchRevisions(@NotNull AnnotationInfo annotationInfo, P4Revision @NotNull [] revisions) {
+    Long2ObjectOpenHashMap<P4Revision> byNumber = new Long2ObjectOpenHashMap<>(revisions.length);
+    for (P4Revision p4Revision : revisions) {
+      long number = annotationInfo.isUseChangelistNumbers() ? p4Revision.getChangeNumber() : p4Revision.getRevisionNumber();
+      byNumber.putIfAbsent(number, p4Revision);
+    }
+    long[] annotated = annotationInfo.getRevisions();
+    P4Revision[] result = new P4Revision[annotated.length];
+    for (int i = 0; i < annotated.length; i++) {
+      result[i] = byNumber.get(annotated[i]);
     }
-    myPerforceRevisions.sort((o1, o2) -> -1 * o1.getRevisionNumber().compareTo(o2.getRevisionNumber()));
+    return result;
   }
 
   private final LineAnnotationAspect REVISION =
@@ -86,6 +177,11 @@ public class PerforceFileAnnotation extends FileAnnotation {
         if (p4Revision != null) {
           return String.valueOf(p4Revision.getChangeNumber());
         }
+        else if (myFileLog == null && myAnnotationInfo.getRevisionIndex(lineNumber) != -1) {
+          // until the filelog is loaded, show what annotate has printed: a changelist or a file revision number
+          long revision = myAnnotationInfo.getRevision(lineNumber);
+          return myAnnotationInfo.isUseChangelistNumbers() ? String.valueOf(revision) : "#" + revision;
+        }
         else {
           return "";
         }
@@ -157,20 +253,16 @@ public class PerforceFileAnnotation extends FileAnnotation {
     return myAnnotationInfo.getContent();
   }
 
+  /**
+   * @return the line's filelog entry, or {@code null} in EDT while the filelog is being loaded
+   */
   @Nullable
   @VisibleForTesting
   public P4Revision findRevisionForLine(final int lineNumber) {
-    final long revision = myAnnotationInfo.getRevision(lineNumber);
-    if (revision == -1) return null;
-    for (P4Revision p4Revision : myRevisions) {
-      if (myAnnotationInfo.isUseChangelistNumbers()) {
-        if (p4Revision.getChangeNumber() == revision) return p4Revision;
-      }
-      else {
-        if (p4Revision.getRevisionNumber() == revision) return p4Revision;
-      }
-    }
-    return null;
+    final int index = myAnnotationInfo.getRevisionIndex(lineNumber);
+    if (index == -1) return null;
+    FileLog fileLog = getFileLog();
+    return fileLog == null ? null : fileLog.lineRevisions[index];
   }
 
   @Override
@@ -196,7 +288,19 @@ public class PerforceFileAnnotation extends FileAnnotation {
   }
 
   @Override
+  @Nullable
   public List<VcsFileRevision> getRevisions() {
+    if (myPerforceRevisions == null) {
+      FileLog fileLog = getFileLog();
+      if (fileLog == null) return null;
+
+      List<VcsFileRevision> revisions = new ArrayList<>(fileLog.revisions.length);
+      for (P4Revision p4Revision : fileLog.revisions) {
+        revisions.add(new PerforceFileRevision(p4Revision, myConnection, myProject));
+      }
+      revisions.sort((o1, o2) -> -1 * o1.getRevisionNumber().compareTo(o2.getRevisionNumber()));
+      myPerforceRevisions = revisions;
+    }
     return myPerforceRevisions;
   }
 
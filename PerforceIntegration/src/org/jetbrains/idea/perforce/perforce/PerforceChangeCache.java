@@ -25,17 +25,28 @@ public class PerforceChangeCache {
   private final PerforceRunner myRunner;
   private final PerforceManager myPerforceManager;
   private final Map<Pair<Long, ConnectionKey>, List<PerforceChange>> myCache = new ConcurrentHashMap<>();
+  private final boolean mySubmitted;
+  private volatile List<Long> mySubmittedChangeListNumbers = Collections.emptyList();
 
   public PerforceChangeCache(Project project) {
+    this(project, false);
+  }
+
+  /**
+   * @param submitted whether the cache is used for submitted changelists only, which contents can then be taken from {@link SubmittedChangeListsStore}
+   */
+  public PerforceChangeCache(Project project, boolean submitted) {
     myRunner = PerforceRunner.getInstance(project);
     myPerforceManager = PerforceManager.getInstance(project);
+    mySubmitted = submitted;
   }
 
   public List<PerforceChange> getChanges(P4Connection connection, final long changeListNumber, @Nullable final VirtualFile vcsRoot) {
     List<PerforceChange> all = myCache.get(createKey(connection, changeListNumber));
     if (all == null) {
       try {
-        all = myRunner.getChanges(connection, changeListNumber);
+        all = mySubmitted ? myRunner.getSubmittedChanges(connection, changeListNumber, mySubmittedChangeListNumbers)
+                          : myRunner.getChanges(connection, changeListNumber);
       }
       catch (VcsException e) {
         all = Collections.emptyList();
@@ -53,6 +64,13 @@ public class PerforceChangeCache {
     });
   }
 
+  /**
+   * @param numbers submitted changelists this cache is used for, which are described together when the first of them is opened
+   */
+  public void setSubmittedChangeListNumbers(@NotNull List<Long> numbers) {
+    mySubmittedChangeListNumbers = numbers;
+  }
+
   public void setChanges(P4Connection connection, final long changeListNumber, @NotNull List<PerforceChange> changes) {
     myCache.put(createKey(connection, changeListNumber), changes);
   }
@@ -62,6 +62,7 @@ import org.jetbrains.idea.perforce.PerforceBundle;
 import org.jetbrains.idea.perforce.ServerVersion;
 import org.jetbrains.idea.perforce.application.*;
 import org.jetbrains.idea.perforce.application.annotation.AnnotationInfo;
+import org.jetbrains.idea.perforce.application.annotation.AnnotationInfoCache;
 import org.jetbrains.idea.perforce.changesBrowser.FileChange;
 import org.jetbrains.idea.perforce.merge.BaseRevision;
 import org.jetbrains.idea.perforce.perforce.connections.P4Connection;
@@ -187,6 +188,8 @@ public final class PerforceRunner implements PerforceRunnerI {
 
   private final PerforceManager myPerforceManager;
   private final LoginSupport myLoginManager;
+  private final AnnotationInfoCache myAnnotationCache =
+    new AnnotationInfoCache(SystemProperties.getIntProperty("perforce.annotate.cache.lines", 50000));
 
   public static PerforceRunner getInstance(Project project) {
     return ServiceManager.getService(project, PerforceRunner.class);
@@ -453,14 +456,33 @@ public final class PerforceRunner implements PerforceRunnerI {
     }
     arguments.append(p4File.getRecursivePath());
 
-    return executeP4Command(arguments.getArguments(), Collections.emptyList(), null, new PerforceContext(connection, true, false));
+    ExecResult result = executeP4Command(arguments.getArguments(), Collections.emptyList(), null, new PerforceContext(connection, true, false));
+    if (!"-n".equals(arg)) {
+      updateHaveSetFromSync(connection, result);
+    }
+    return result;
   }
 
   public ExecResult sync(P4File p4File, String revision) throws VcsException {
     p4File.invalidateFstat();
     P4Connection connection = getNotNullConnection(p4File);
     CommandArguments arguments = CommandArguments.createOn(P4Command.sync).append(p4File.getRecursivePath() + "@" + revision);
-    return executeP4Command(arguments.getArguments(), Collections.emptyList(), null, new PerforceContext(connection, true, false));
+    ExecResult result = executeP4Command(arguments.getArguments(), Collections.emptyList(), null, new PerforceContext(connection, true, false));
+    updateHaveSetFromSync(connection, result);
+    return result;
+  }
+
+  /**
+   * Reads the sync output once to update {@link PerforceHaveSet}, and keeps it in the result for the callers.
+   */
+  private void updateHaveSetFromSync(@NotNull P4Connection connection, @NotNull ExecResult result) {
+    PerforceHaveSet haveSet = PerforceHaveSet.getInstance(myProject);
+    if (!haveSet.isTracked(connection.getConnectionKey())) return;
+
+    String stdout = result.getStdout();
+    result.setOutputGobbler(null);
+    result.setStdout(stdout);
+    haveSet.applySyncOutput(connection.getConnectionKey(), stdout, path -> myPerforceManager.convertP4ParsedPath(null, path));
   }
 
   // todo ? not sure for move+add/delete cases
@@ -633,6 +655,19 @@ public final class PerforceRunner implements PerforceRunnerI {
     return result;
   }
 
+  /**
+   * Same as {@link #getChanges} for a submitted changelist, but takes 'p4 describe' output from {@link SubmittedChangeListsStore} when possible.
+   * If it's not stored, changelists from {@code batchCandidates} that aren't stored either are described by the same command.
+   */
+  public List<PerforceChange> getSubmittedChanges(P4Connection connection, final long changeListNumber, Collection<Long> batchCandidates)
+    throws VcsException {
+    final PerforceClient client = myPerforceManager.getClient(connection);
+    Pair<ChangeListData, List<FileChange>> pair = SubmittedChangeListsStore.getInstance()
+      .getOrDescribe(connection.getConnectionKey().getServer(), changeListNumber, batchCandidates,
+                     numbers -> describeAll(connection, numbers, false));
+    return createPerforceChanges(client, pair.first, pair.second);
+  }
+
   private Map<Long, Pair<ChangeListData, List<FileChange>>> describeAll(P4Connection connection, List<Long> lists, boolean shelved) throws VcsException {
     CommandArguments args = CommandArguments.createOn(P4Command.describe);
     args.append("-s");
@@ -710,12 +745,7 @@ public final class PerforceRunner implements PerforceRunnerI {
       }
     }
 
-    Object2LongMap<String> haveRevisions=new Object2LongOpenCustomHashMap<>(SystemInfoRt.isFileSystemCaseSensitive ? FastUtilHashingStrategies
-      .getCaseInsensitiveStringStrategy() : FastUtilHashingStrategies.getCanonicalStrategy());
-
-    final PathsHelper pathsHelper = new PathsHelper(myPerforceManager);
-    pathsHelper.addAllPaths(files);
-    haveMultiple(pathsHelper, connection, new P4HaveParser.RevisionCollector(myPerforceManager, haveRevisions));
+    Object2LongMap<String> haveRevisions = getHaveRevisions(connection, files);
 
     for (PerforceChange change : result) {
       File file = change.getFile();
@@ -729,6 +759,24 @@ public final class PerforceRunner implements PerforceRunnerI {
     }
   }
 
+  /**
+   * Asks 'have' revisions of all the given files with as few p4 invocations as possible.
+   * @return map from system-dependent local path to the have revision; files not on the client are absent
+   */
+  @NotNull
+  public Object2LongMap<String> getHaveRevisions(@NotNull P4Connection connection, @NotNull Collection<? extends FilePath> files)
+    throws VcsException {
+    Object2LongMap<String> haveRevisions=new Object2LongOpenCustomHashMap<>(SystemInfoRt.isFileSystemCaseSensitive ? FastUtilHashingStrategies
+      .getCaseInsensitiveStringStrategy() : FastUtilHashingStrategies.getCanonicalStrategy());
+
+    final PathsHelper pathsHelper = new PathsHelper(myPerforceManager);
+    for (FilePath file : files) {
+      pathsHelper.add(file);
+    }
+    haveMultiple(pathsHelper, connection, new P4HaveParser.RevisionCollector(myPerforceManager, haveRevisions));
+    return haveRevisions;
+  }
+
   public List<PerforceChangeList> getPendingChangeLists(final P4Connection connection,
                                                         PerforceChangeCache changeCache) throws VcsException {
     final PerforceClient client = myPerforceManager.getClient(connection);
@@ -869,9 +917,45 @@ public final class PerforceRunner implements PerforceRunnerI {
       }
     }
     PerforceNumberNameSynchronizer.getInstance(myProject).handleChangeListSubmitted(connection, changeListNumber, newNumber);
+    updateHaveSetAfterSubmit(connection, changesForConnection);
     return submittedRevision;
   }
 
+  /**
+   * Submitted files get new have revisions, added ones appear on the client and deleted ones disappear, so their have revisions are
+   * asked again for {@link PerforceHaveSet}.
+   */
+  private void updateHaveSetAfterSubmit(@NotNull P4Connection connection, @NotNull List<PerforceChange> submitted) {
+    PerforceHaveSet haveSet = PerforceHaveSet.getInstance(myProject);
+    if (!haveSet.isTracked(connection.getConnectionKey())) return;
+
+    List<FilePath> files = new ArrayList<>();
+    for (PerforceChange change : submitted) {
+      if (change.getFile() != null) {
+        files.add(VcsUtil.getFilePath(change.getFile(), false));
+      }
+    }
+    Object2LongMap<String> haveRevisions;
+    try {
+      haveRevisions = getHaveRevisions(connection, files);
+    }
+    catch (VcsException e) {
+      // the submit itself succeeded, the have-set is rebuilt by the next total rescan
+      LOG.info(e);
+      haveSet.invalidate(connection.getConnectionKey());
+      return;
+    }
+    Map<String, Long> updated = new HashMap<>(haveRevisions);
+    List<String> removed = new ArrayList<>();
+    for (FilePath file : files) {
+      String path = FileUtil.toSystemDependentName(file.getPath());
+      if (!haveRevisions.containsKey(path)) {
+        removed.add(path);
+      }
+    }
+    haveSet.update(connection.getConnectionKey(), updated, removed);
+  }
+
   private static long getSubmittedRevisionNumber(ExecResult execResult, final String regex, final int groupNumber) {
     Matcher matcher = Pattern.compile(regex).matcher(execResult.getStdout());
     if (matcher.find()) {
@@ -997,7 +1081,10 @@ public final class PerforceRunner implements PerforceRunnerI {
 
     final ExecResult execResult = executeP4Command(arguments.getArguments(), connection);
     checkError(execResult, connection);
-    return parsePerforceChangeLists(execResult.getStdout(), connection, new PerforceChangeCache(myProject));
+    PerforceChangeCache changeCache = new PerforceChangeCache(myProject, true);
+    List<PerforceChangeList> lists = parsePerforceChangeLists(execResult.getStdout(), connection, changeCache);
+    changeCache.setSubmittedChangeListNumbers(ContainerUtil.map(lists, PerforceChangeList::getNumber));
+    return lists;
   }
 
   private static String dateSpec(final Date after, final Date before, final Long afterChange, final Long beforeChange, boolean strictlyAfter) {
@@ -1486,7 +1573,16 @@ public final class PerforceRunner implements PerforceRunnerI {
   }
 
   public P4Revision[] filelog(@NotNull P4Connection connection, @NotNull String path, boolean showBranches) throws VcsException {
-    CommandArguments arguments = createFilelogArgs(showBranches, connection).append(path);
+    int limit = VcsConfiguration.getInstance(myProject).LIMIT_HISTORY ? VcsConfiguration.getInstance(myProject).MAXIMUM_HISTORY_ROWS : -1;
+    return filelog(connection, path, showBranches, limit);
+  }
+
+  /**
+   * @param maxRevisions the number of the latest revisions to list, or -1 for all of them
+   */
+  public P4Revision[] filelog(@NotNull P4Connection connection, @NotNull String path, boolean showBranches, int maxRevisions)
+    throws VcsException {
+    CommandArguments arguments = createFilelogArgs(showBranches, maxRevisions, connection).append(path);
     final ExecResult execResult = executeP4Command(arguments.getArguments(), connection);
     checkError(execResult, connection);
 
@@ -1503,7 +1599,7 @@ public final class PerforceRunner implements PerforceRunnerI {
     return new OutputMessageParser(execResult.getStdout()).myLines;
   }
 
-  private CommandArguments createFilelogArgs(boolean showBranches, @Nullable final P4Connection connection) throws VcsException {
+  private CommandArguments createFilelogArgs(boolean showBranches, int limit, @Nullable final P4Connection connection) throws VcsException {
     final CommandArguments arguments = CommandArguments.createOn(P4Command.filelog);
     if (showBranches) {
       arguments.append("-i");
@@ -1512,7 +1608,6 @@ public final class PerforceRunner implements PerforceRunnerI {
     if (isFilelogNewDateVersion(connection)) {
       arguments.append("-t");
     }
-    int limit = VcsConfiguration.getInstance(myProject).LIMIT_HISTORY ? VcsConfiguration.getInstance(myProject).MAXIMUM_HISTORY_ROWS : -1;
     if (limit > 0) {
       arguments.append("-m");
       arguments.append(limit);
@@ -1536,6 +1631,9 @@ public final class PerforceRunner implements PerforceRunnerI {
     }
   }
 
+  /**
+   * Annotations of a fixed revision (not -1, which means head) are cached per server, as they never change.
+   */
   public AnnotationInfo annotate(P4Connection connection, String filePath, long revision) throws VcsException {
     if (revision != -1) {
       filePath += "#" + revision;
@@ -1554,14 +1652,38 @@ public final class PerforceRunner implements PerforceRunnerI {
       commands.add("-dl");
     }
     commands.add(filePath);
+    String cacheKey = revision > 0 ? connection.getConnectionKey().getServer() + " " + StringUtil.join(commands, " ") : null;
+    AnnotationInfo cached = cacheKey == null ? null : myAnnotationCache.get(cacheKey);
+    if (cached != null) {
+      return cached;
+    }
+
     final ExecResult execResult = executeP4Command(ArrayUtilRt.toStringArray(commands), connection);
     checkError(execResult, connection);
+    final boolean finalUseChangelistNumbers = useChangelistNumbers;
+    final Ref<AnnotationInfo> result = new Ref<>();
+    final Ref<VcsException> vcsExceptionRef = new Ref<>();
     try {
-      return new AnnotationInfo(execResult.getStdout(), useChangelistNumbers);
+      execResult.allowSafeStdoutUsage(stream -> {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8));
+        try {
+          result.set(new AnnotationInfo(reader, finalUseChangelistNumbers));
+        }
+        catch (VcsException e) {
+          vcsExceptionRef.set(e);
+        }
+      });
     }
     catch (IOException e) {
       throw new VcsException(e);
     }
+    if (!vcsExceptionRef.isNull()) {
+      throw vcsExceptionRef.get();
+    }
+    if (cacheKey != null) {
+      myAnnotationCache.put(cacheKey, result.get());
+    }
+    return result.get();
   }
 
   private boolean isAnnotateBranchSupported(@Nullable final P4Connection connection) throws VcsException {
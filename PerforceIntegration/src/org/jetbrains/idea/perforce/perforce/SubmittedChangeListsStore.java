@@ -0,0 +1,413 @@
+/*
+ * Copyright 2000-2020 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.idea.perforce.perforce;
+
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vcs.VcsException;
+import com.intellij.util.SystemProperties;
+import com.intellij.util.io.IOUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.TestOnly;
+import org.jetbrains.idea.perforce.ChangeListData;
+import org.jetbrains.idea.perforce.PerforceBundle;
+import org.jetbrains.idea.perforce.changesBrowser.FileChange;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * On-disk store of 'p4 describe' results for submitted changelists, which never change once submitted.
+ * Entries are kept per server in an append-only file, which is rewritten without the oldest changelists when it grows over the limits.
+ * Only the offsets of the entries are kept in memory, the entries themselves are read on demand.
+ */
+@Service
+public final class SubmittedChangeListsStore {
+  public static final int DESCRIBE_BATCH_SIZE = 100;
+
+  private static final Logger LOG = Logger.getInstance(SubmittedChangeListsStore.class);
+
+  private static final int FORMAT_VERSION = 2;
+  private static final int HEADER_SIZE = 4;
+  // changelist number, number of file changes and length of the entry
+  private static final int ENTRY_HEADER_SIZE = 8 + 4 + 4;
+  private static final String STORE_DIR = "perforce-submitted";
+
+  /**
+   * Runs 'p4 describe' for the given changelists
+   */
+  public interface Describer {
+    @NotNull
+    Map<Long, Pair<ChangeListData, List<FileChange>>> describe(@NotNull List<Long> numbers) throws VcsException;
+  }
+
+  private final File myDir;
+  private final int myMaxEntries;
+  private final int myMaxFileChanges;
+  private final Map<String, ServerEntries> myServers = new HashMap<>();
+
+  public SubmittedChangeListsStore() {
+    this(new File(PathManager.getSystemPath(), STORE_DIR),
+         SystemProperties.getIntProperty("perforce.submitted.cache.changelists", 20000),
+         SystemProperties.getIntProperty("perforce.submitted.cache.files", 1000000));
+  }
+
+  @TestOnly
+  public SubmittedChangeListsStore(@NotNull File dir, int maxEntries, int maxFileChanges) {
+    myDir = dir;
+    myMaxEntries = maxEntries;
+    myMaxFileChanges = maxFileChanges;
+  }
+
+  public static SubmittedChangeListsStore getInstance() {
+    return ServiceManager.getService(SubmittedChangeListsStore.class);
+  }
+
+  @Nullable
+  public synchronized Pair<ChangeListData, List<FileChange>> get(@NotNull String server, long number) {
+    ServerEntries entries = getEntries(server);
+    Entry entry = entries.index.get(number);
+    if (entry == null) return null;
+
+    try (RandomAccessFile file = new RandomAccessFile(entries.file, "r")) {
+      file.seek(entry.offset);
+      byte[] bytes = new byte[entry.length];
+      file.readFully(bytes);
+      return readEntry(new DataInputStream(new ByteArrayInputStream(bytes)));
+    }
+    catch (IOException e) {
+      LOG.info("Failed to read submitted changelist " + number + " from " + entries.file, e);
+      entries.remove(number);
+      return null;
+    }
+  }
+
+  /**
+   * Returns the stored changelist, or describes it together with up to {@link #DESCRIBE_BATCH_SIZE} other changelists from
+   * {@code batchCandidates} that aren't stored yet, since they are likely to be opened next (e.g. the rest of a history page).
+   */
+  @NotNull
+  public Pair<ChangeListData, List<FileChange>> getOrDescribe(@NotNull String server,
+                                                              long number,
+                                                              @NotNull Collection<Long> batchCandidates,
+                                                              @NotNull Describer describer) throws VcsException {
+    List<Long> batch = new ArrayList<>();
+    synchronized (this) {
+      Pair<ChangeListData, List<FileChange>> stored = get(server, number);
+      if (stored != null) return stored;
+
+      ServerEntries entries = getEntries(server);
+      batch.add(number);
+      for (Long candidate : batchCandidates) {
+        if (batch.size() >= DESCRIBE_BATCH_SIZE) break;
+        if (candidate != number && !entries.index.containsKey(candidate) && !entries.tooLarge.contains(candidate)) {
+          batch.add(candidate);
+        }
+      }
+    }
+
+    Map<Long, Pair<ChangeListData, List<FileChange>>> described = describer.describe(batch);
+    putAll(server, described.values());
+    Pair<ChangeListData, List<FileChange>> result = described.get(number);
+    if (result == null) {
+      throw new VcsException(PerforceBundle.message("exception.text.changelist.not.described", String.valueOf(number)));
+    }
+    return result;
+  }
+
+  public void put(@NotNull String server, @NotNull ChangeListData data, @NotNull List<FileChange> changes) {
+    putAll(server, Collections.singletonList(Pair.create(data, changes)));
+  }
+
+  /**
+   * Appends the changelists that aren't stored yet to the server file in one go
+   */
+  public synchronized void putAll(@NotNull String server, @NotNull Collection<Pair<ChangeListData, List<FileChange>>> changeLists) {
+    ServerEntries entries = getEntries(server);
+    List<Pair<ChangeListData, List<FileChange>>> toWrite = new ArrayList<>();
+    Set<Long> numbers = new HashSet<>();
+    for (Pair<ChangeListData, List<FileChange>> pair : changeLists) {
+      long number = pair.first.NUMBER;
+      if (pair.second.size() > myMaxFileChanges / 2) {
+        entries.tooLarge.add(number);
+      }
+      else if (!entries.index.containsKey(number) && numbers.add(number)) {
+        toWrite.add(pair);
+      }
+    }
+    if (toWrite.isEmpty()) return;
+
+    try {
+      long offset = Math.max(entries.file.length(), HEADER_SIZE);
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(entries.file, true)))) {
+        if (entries.file.length() == 0) {
+          out.writeInt(FORMAT_VERSION);
+        }
+        for (Pair<ChangeListData, List<FileChange>> pair : toWrite) {
+          byte[] bytes = toBytes(pair.first, pair.second);
+          out.writeLong(pair.first.NUMBER);
+          out.writeInt(pair.second.size());
+          out.writeInt(bytes.length);
+          out.write(bytes);
+          entries.add(pair.first.NUMBER, new Entry(offset + ENTRY_HEADER_SIZE, bytes.length, pair.second.size()));
+          offset += ENTRY_HEADER_SIZE + bytes.length;
+        }
+      }
+    }
+    catch (IOException e) {
+      LOG.info("Failed to store submitted changelists to " + entries.file, e);
+      entries.clear();
+      FileUtil.delete(entries.file);
+      return;
+    }
+
+    if (entries.index.size() > myMaxEntries || entries.fileChanges > myMaxFileChanges) {
+      compact(entries);
+    }
+  }
+
+  public synchronized void clear() {
+    myServers.clear();
+    FileUtil.delete(myDir);
+  }
+
+  /**
+   * Keeps the newest changelists that fit into three quarters of the limits, so that the file isn't rewritten on every following put.
+   */
+  private void compact(@NotNull ServerEntries entries) {
+    while (entries.index.size() > myMaxEntries * 3 / 4 || entries.fileChanges > myMaxFileChanges * 3 / 4) {
+      entries.fileChanges -= entries.index.pollFirstEntry().getValue().fileChanges;
+    }
+
+    File tempFile = new File(entries.file.getPath() + ".tmp");
+    TreeMap<Long, Entry> newIndex = new TreeMap<>();
+    try {
+      try (RandomAccessFile in = new RandomAccessFile(entries.file, "r");
+           DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+        out.writeInt(FORMAT_VERSION);
+        long offset = HEADER_SIZE;
+        for (Map.Entry<Long, Entry> mapEntry : entries.index.entrySet()) {
+          Entry entry = mapEntry.getValue();
+          byte[] bytes = new byte[entry.length];
+          in.seek(entry.offset);
+          in.readFully(bytes);
+          out.writeLong(mapEntry.getKey());
+          out.writeInt(entry.fileChanges);
+          out.writeInt(bytes.length);
+          out.write(bytes);
+          newIndex.put(mapEntry.getKey(), new Entry(offset + ENTRY_HEADER_SIZE, bytes.length, entry.fileChanges));
+          offset += ENTRY_HEADER_SIZE + bytes.length;
+        }
+      }
+      FileUtil.rename(tempFile, entries.file);
+      entries.index.clear();
+      entries.index.putAll(newIndex);
+    }
+    catch (IOException e) {
+      LOG.info("Failed to rewrite " + entries.file, e);
+      entries.clear();
+      FileUtil.delete(tempFile);
+      FileUtil.delete(entries.file);
+    }
+  }
+
+  @NotNull
+  private ServerEntries getEntries(@NotNull String server) {
+    ServerEntries entries = myServers.get(server);
+    if (entries == null) {
+      entries = new ServerEntries(new File(myDir, sha1(server) + ".dat"));
+      load(entries);
+      myServers.put(server, entries);
+    }
+    return entries;
+  }
+
+  /**
+   * Reads only the entry headers to build the index
+   */
+  private static void load(@NotNull ServerEntries entries) {
+    File file = entries.file;
+    if (!file.isFile()) {
+      FileUtil.createParentDirs(file);
+      return;
+    }
+    long validLength = 0;
+    try (RandomAccessFile in = new RandomAccessFile(file, "rw")) {
+      try {
+        if (in.readInt() != FORMAT_VERSION) {
+          throw new IOException("Unsupported format");
+        }
+        validLength = HEADER_SIZE;
+        long fileLength = in.length();
+        while (validLength < fileLength) {
+          in.seek(validLength);
+          long number = in.readLong();
+          int fileChanges = in.readInt();
+          int length = in.readInt();
+          if (length < 0 || validLength + ENTRY_HEADER_SIZE + length > fileLength) {
+            throw new EOFException();
+          }
+          entries.add(number, new Entry(validLength + ENTRY_HEADER_SIZE, length, fileChanges));
+          validLength += ENTRY_HEADER_SIZE + length;
+        }
+      }
+      catch (IOException e) {
+        // a truncated tail after a crash loses only the last entry, everything read before it is kept
+        LOG.info("Failed to read " + file + ", " + entries.index.size() + " changelists loaded", e);
+        if (validLength > 0) {
+          in.setLength(validLength);
+        }
+      }
+    }
+    catch (IOException e) {
+      LOG.info("Failed to read " + file, e);
+      entries.clear();
+      validLength = 0;
+    }
+    if (validLength == 0) {
+      FileUtil.delete(file);
+    }
+  }
+
+  @NotNull
+  private static byte[] toBytes(@NotNull ChangeListData data, @NotNull List<FileChange> changes) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      writeEntry(out, data, changes);
+    }
+    return bytes.toByteArray();
+  }
+
+  @NotNull
+  private static Pair<ChangeListData, List<FileChange>> readEntry(@NotNull DataInput in) throws IOException {
+    ChangeListData data = new ChangeListData();
+    data.NUMBER = in.readLong();
+    data.DESCRIPTION = readNullableUTF(in);
+    data.USER = readNullableUTF(in);
+    data.CLIENT = readNullableUTF(in);
+    data.DATE = readNullableUTF(in);
+    int count = in.readInt();
+    List<FileChange> changes = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      String depotPath = IOUtil.readUTF(in);
+      long revision = in.readLong();
+      String type = IOUtil.readUTF(in);
+      changes.add(new FileChange(depotPath, new File(depotPath), revision, type));
+    }
+    return Pair.create(data, changes);
+  }
+
+  private static void writeEntry(@NotNull DataOutput out, @NotNull ChangeListData data, @NotNull List<FileChange> changes)
+    throws IOException {
+    out.writeLong(data.NUMBER);
+    writeNullableUTF(out, data.DESCRIPTION);
+    writeNullableUTF(out, data.USER);
+    writeNullableUTF(out, data.CLIENT);
+    writeNullableUTF(out, data.DATE);
+    out.writeInt(changes.size());
+    for (FileChange change : changes) {
+      IOUtil.writeUTF(out, change.getDepotPath());
+      out.writeLong(change.getRevisionAfter());
+      IOUtil.writeUTF(out, getActionName(change.getType()));
+    }
+  }
+
+  @NotNull
+  private static String getActionName(int type) {
+    switch (type) {
+      case PerforceAbstractChange.ADD: return FileChange.ADD_ACTION;
+      case PerforceAbstractChange.DELETE: return FileChange.DELETE_ACTION;
+      case PerforceAbstractChange.EDIT: return FileChange.EDIT_ACTION;
+      case PerforceAbstractChange.BRANCH: return FileChange.BRANCH_ACTION;
+      case PerforceAbstractChange.INTEGRATE: return FileChange.INTEGRATE_ACTION;
+      case PerforceAbstractChange.MOVE_ADD: return FileChange.MOVE_ADD_ACTION;
+      case PerforceAbstractChange.MOVE_DELETE: return FileChange.MOVE_DELETE_ACTION;
+      default: return "";
+    }
+  }
+
+  private static void writeNullableUTF(@NotNull DataOutput out, @Nullable String s) throws IOException {
+    out.writeBoolean(s != null);
+    if (s != null) {
+      IOUtil.writeUTF(out, s);
+    }
+  }
+
+  @Nullable
+  private static String readNullableUTF(@NotNull DataInput in) throws IOException {
+    return in.readBoolean() ? IOUtil.readUTF(in) : null;
+  }
+
+  @NotNull
+  private static String sha1(@NotNull String s) {
+    try {
+      return StringUtil.toHexString(MessageDigest.getInstance("SHA-1").digest(s.getBytes(StandardCharsets.UTF_8)));
+    }
+    catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static final class Entry {
+    final long offset;
+    final int length;
+    final int fileChanges;
+
+    private Entry(long offset, int length, int fileChanges) {
+      this.offset = offset;
+      this.length = length;
+      this.fileChanges = fileChanges;
+    }
+  }
+
+  private static final class ServerEntries {
+    final File file;
+    final TreeMap<Long, Entry> index = new TreeMap<>();
+    // changelists that are described only on demand, since they're too large to be stored
+    final Set<Long> tooLarge = new HashSet<>();
+    int fileChanges;
+
+    private ServerEntries(@NotNull File file) {
+      this.file = file;
+    }
+
+    void add(long number, @NotNull Entry entry) {
+      Entry previous = index.put(number, entry);
+      fileChanges += entry.fileChanges - (previous != null ? previous.fileChanges : 0);
+    }
+
+    void remove(long number) {
+      Entry previous = index.remove(number);
+      if (previous != null) {
+        fileChanges -= previous.fileChanges;
+      }
+    }
+
+    void clear() {
+      index.clear();
+      fileChanges = 0;
+    }
+  }
+}
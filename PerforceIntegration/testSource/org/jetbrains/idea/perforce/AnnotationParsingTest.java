@@ -31,8 +31,16 @@
  */
 package org.jetbrains.idea.perforce;
 
+import com.intellij.openapi.util.Ref;
+import com.intellij.testFramework.PlatformTestUtil;
 import junit.framework.TestCase;
 import org.jetbrains.idea.perforce.application.annotation.AnnotationInfo;
+import org.jetbrains.idea.perforce.application.annotation.AnnotationInfoCache;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 
 public class AnnotationParsingTest extends TestCase{
   public void test() throws Exception {
@@ -42,4 +50,58 @@ public class AnnotationParsingTest extends TestCase{
     assertEquals(2, annotationInfo.getRevision(1));
     assertEquals(300300300300300L, annotationInfo.getRevision(2));
   }
+
+  public void testLineWithoutContent() throws Exception {
+    final AnnotationInfo annotationInfo = new AnnotationInfo("5:\n7: x\n5: y\n", true);
+    assertEquals("\nx\ny\n", annotationInfo.getContent());
+    assertEquals(3, annotationInfo.getLineCount());
+    assertEquals(2, annotationInfo.getRevisions().length);
+    assertEquals(annotationInfo.getRevisionIndex(0), annotationInfo.getRevisionIndex(2));
+    assertEquals(-1, annotationInfo.getRevision(3));
+  }
+
+  public void testLargeFile() throws Exception {
+    final int lineCount = 100000;
+    final StringBuilder output = new StringBuilder();
+    for (int i = 0; i < lineCount; i++) {
+      output.append(1000000 + i % 500).append(": generated line ").append(i).append(" of some large source file\n");
+    }
+    final byte[] bytes = output.toString().getBytes(StandardCharsets.UTF_8);
+    final Ref<AnnotationInfo> result = new Ref<>();
+    PlatformTestUtil.startPerformanceTest("Parsing 'p4 annotate' output of a large file", 1_000, () -> {
+      // the way PerforceRunner#annotate reads the process output
+      BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8));
+      result.set(new AnnotationInfo(reader, true));
+    }).assertTiming();
+
+    final AnnotationInfo annotationInfo = result.get();
+    assertEquals(lineCount, annotationInfo.getLineCount());
+    assertEquals(500, annotationInfo.getRevisions().length);
+    assertEquals(1000000 + 99999 % 500, annotationInfo.getRevision(99999));
+    assertTrue(annotationInfo.getContent().endsWith("generated line 99999 of some large source file\n"));
+  }
+
+  public void testCacheEvictsLeastRecentlyUsedByLineCount() throws Exception {
+    final AnnotationInfoCache cache = new AnnotationInfoCache(6);
+    final AnnotationInfo twoLines = new AnnotationInfo("1: a\n1: b\n", true);
+    final AnnotationInfo threeLines = new AnnotationInfo("1: a\n2: b\n3: c\n", true);
+    cache.put("a", twoLines);
+    cache.put("b", threeLines);
+    assertSame(twoLines, cache.get("a"));
+
+    // "b" is the least recently used now, and 2 + 3 + 2 lines don't fit
+    cache.put("c", twoLines);
+    assertNull(cache.get("b"));
+    assertSame(twoLines, cache.get("a"));
+    assertSame(twoLines, cache.get("c"));
+
+    cache.put("d", new AnnotationInfo("1: a\n1: b\n1: c\n1: d\n1: e\n1: f\n1: g\n", true));
+    assertNull(cache.get("d"));
+    assertSame(twoLines, cache.get("a"));
+
+    cache.put("e", threeLines);
+    assertNull(cache.get("c"));
+    assertSame(twoLines, cache.get("a"));
+    assertSame(threeLines, cache.get("e"));
+  }
 }
@@ -15,6 +15,7 @@ import com.intellij.testFramework.EdtTestUtil;
 import com.intellij.testFramework.vcs.DuringChangeListManagerUpdateTestScheme;
 import com.intellij.util.CollectConsumer;
 import com.intellij.util.ExceptionUtil;
+import com.intellij.util.containers.ContainerUtil;
 import org.jetbrains.idea.perforce.application.PerforceCommittedChangesProvider;
 import org.jetbrains.idea.perforce.application.PerforceRepositoryLocation;
 import org.jetbrains.idea.perforce.application.PerforceVcs;
@@ -1069,6 +1070,60 @@ public class PerforceChangeProviderTest extends PerforceTestCase {
     cmds.forEach(cmd -> assertFalse(cmd, cmd.contains("inFoo.txt") || cmd.contains("inBar.txt")));
   }
 
+  @Test
+  public void testAsyncEditedFilesAskedWithSingleHave() {
+    createFileInCommand("a.txt", "a");
+    createFileInCommand("b.txt", "b");
+    addFile("a.txt");
+    addFile("b.txt");
+    submitDefaultList("initial");
+    refreshVfs();
+    // a total rescan records the have-set, so the unversioned scan of the edited files doesn't run its own 'have'
+    discardUnversionedCache();
+    refreshChanges();
+
+    VirtualFile a = myWorkingCopyDir.findChild("a.txt");
+    VirtualFile b = myWorkingCopyDir.findChild("b.txt");
+    editExternally(a, "a1");
+    editExternally(b, "b1");
+    refreshVfs();
+    PerforceVcs.getInstance(myProject).startAsyncEdit(a, b);
+
+    List<String> cmds = AbstractP4Connection.dumpCommands(myTestRootDisposable);
+    refreshChanges();
+
+    assertEquals(2, getChangeListManager().getDefaultChangeList().getChanges().size());
+    String have = assertOneElement(ContainerUtil.filter(cmds, cmd -> cmd.startsWith("have")));
+    assertTrue(have, have.contains("a.txt") && have.contains("b.txt"));
+  }
+
+  @Test
+  public void testPartialRescanChecksHaveSetAgainstExternalSync() {
+    VirtualFile a = createFileInCommand("a.txt", "a");
+    createFileInCommand("b.txt", "b");
+    addFile("a.txt");
+    addFile("b.txt");
+    submitDefaultList("initial");
+    refreshVfs();
+    discardUnversionedCache();
+    refreshChanges();
+
+    String aPath = new File(a.getPath()).getAbsolutePath();
+    verify(runP4WithClient("sync", aPath + "#none"));
+    refreshVfs();
+    refreshChanges();
+    assertEmpty(getChangeListManager().getDeletedFiles());
+    assertEmpty(getChangeListManager().getUnversionedFiles());
+
+    verify(runP4WithClient("sync", aPath));
+    refreshVfs();
+    List<String> cmds = AbstractP4Connection.dumpCommands(myTestRootDisposable);
+    refreshChanges();
+    assertEmpty(getChangeListManager().getDeletedFiles());
+    assertEmpty(getChangeListManager().getUnversionedFiles());
+    cmds.forEach(cmd -> assertFalse(cmd, cmd.startsWith("have") && cmd.contains("b.txt")));
+  }
+
   @Test
   public void testRevertFileWithSpecialCharactersInPath() {
     setStandardConfirmation("Perforce", VcsConfiguration.StandardConfirmation.ADD, VcsShowConfirmationOption.Value.DO_ACTION_SILENTLY);
@@ -0,0 +1,183 @@
+package org.jetbrains.idea.perforce;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vcs.FilePath;
+import com.intellij.openapi.vcs.LocalFilePath;
+import org.jetbrains.idea.perforce.application.ConnectionKey;
+import org.jetbrains.idea.perforce.application.PerforceHaveSet;
+import org.jetbrains.idea.perforce.perforce.P4HaveParser;
+import org.jetbrains.idea.perforce.perforce.PerforceAbstractChange;
+import org.jetbrains.idea.perforce.perforce.PerforceChange;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.function.Function;
+
+import static org.junit.Assert.*;
+
+public class PerforceHaveSetTest {
+  private static final ConnectionKey KEY = new ConnectionKey("perforce:1666", "client", "user");
+  private static final String ROOT = "/ws";
+
+  private File myDir;
+  private PerforceHaveSet myHaveSet;
+
+  @Before
+  public void setUp() throws IOException {
+    myDir = FileUtil.createTempDirectory("p4have", null);
+    myHaveSet = new PerforceHaveSet(myDir);
+    Map<String, Long> revisions = new HashMap<>();
+    revisions.put("/ws/a.txt", 1L);
+    revisions.put("/ws/a/x.txt", 2L);
+    revisions.put("/ws/a/y/z.txt", 3L);
+    revisions.put("/ws/a0.txt", 4L);
+    revisions.put("/ws/ab/c.txt", 5L);
+    revisions.put("/ws/b/long/common/prefix/one.txt", 6L);
+    revisions.put("/ws/b/long/common/prefix/two.txt", 7L);
+    myHaveSet.rebuild(KEY, Collections.singletonList(dir(ROOT)), revisions);
+  }
+
+  @After
+  public void tearDown() {
+    FileUtil.delete(myDir);
+  }
+
+  @Test
+  public void testSubtreeLookup() {
+    assertEquals(Arrays.asList("/ws/a/x.txt:2", "/ws/a/y/z.txt:3"), collect(myHaveSet, dir("/ws/a")));
+    assertEquals(Collections.singletonList("/ws/a.txt:1"), collect(myHaveSet, file("/ws/a.txt")));
+    assertEquals(Collections.singletonList("/ws/ab/c.txt:5"), collect(myHaveSet, dir("/ws/ab")));
+    assertEquals(Collections.emptyList(), collect(myHaveSet, dir("/ws/none")));
+    assertEquals(7, collect(myHaveSet, dir(ROOT)).size());
+  }
+
+  @Test
+  public void testPathsOutsideRootsNotAnswered() {
+    assertFalse(myHaveSet.processHaveRevisions(KEY, Collections.singletonList(dir("/other")), collector(new ArrayList<>())));
+    assertFalse(myHaveSet.processHaveRevisions(new ConnectionKey("perforce:1666", "other", "user"),
+                                               Collections.singletonList(dir(ROOT)), collector(new ArrayList<>())));
+  }
+
+  @Test
+  public void testSaveLoadRoundTrip() {
+    PerforceHaveSet reloaded = new PerforceHaveSet(myDir);
+    assertEquals(collect(myHaveSet, dir(ROOT)), collect(reloaded, dir(ROOT)));
+    assertEquals(Arrays.asList("/ws/b/long/common/prefix/one.txt:6", "/ws/b/long/common/prefix/two.txt:7"),
+                 collect(reloaded, dir("/ws/b")));
+  }
+
+  @Test
+  public void testSyncOutputUpdatesHaveSet() {
+    myHaveSet.applySyncOutput(KEY, "//depot/a.txt#5 - updating /ws/a.txt\n" +
+                                   "//depot/new.txt#1 - added as /ws/new.txt\n" +
+                                   "//depot/a/x.txt#2 - deleted as /ws/a/x.txt\n" +
+                                   "//depot/ab/c.txt#5 - refreshing /ws/ab/c.txt\n", Function.identity());
+
+    List<String> expected = Arrays.asList("/ws/a.txt:5", "/ws/a/y/z.txt:3", "/ws/a0.txt:4", "/ws/ab/c.txt:5",
+                                          "/ws/b/long/common/prefix/one.txt:6", "/ws/b/long/common/prefix/two.txt:7", "/ws/new.txt:1");
+    assertEquals(expected, sorted(collect(myHaveSet, dir(ROOT))));
+    assertEquals(expected, sorted(collect(new PerforceHaveSet(myDir), dir(ROOT))));
+  }
+
+  @Test
+  public void testUnknownSyncOutputDropsHaveSet() {
+    myHaveSet.applySyncOutput(KEY, "//depot/a.txt#5 - updating /ws/a.txt\n" +
+                                   "//depot/a0.txt#6 - is opened and not being changed\n" +
+                                   "... //depot/a0.txt - must resolve #6 before submitting\n", Function.identity());
+    assertFalse(myHaveSet.isTracked(KEY));
+    assertFalse(myHaveSet.processHaveRevisions(KEY, Collections.singletonList(dir(ROOT)), collector(new ArrayList<>())));
+    assertFalse(new PerforceHaveSet(myDir).isTracked(KEY));
+  }
+
+  @Test
+  public void testTimestampIsMovedBySyncOnly() throws InterruptedException {
+    long rebuilt = myHaveSet.getTimestamp(KEY);
+    assertTrue(rebuilt > 0);
+    assertEquals(rebuilt, new PerforceHaveSet(myDir).getTimestamp(KEY));
+    assertEquals(-1, myHaveSet.getTimestamp(new ConnectionKey("perforce:1666", "other", "user")));
+
+    Thread.sleep(10);
+    myHaveSet.update(KEY, Collections.singletonMap("/ws/added.txt", 1L), Collections.emptyList());
+    assertEquals(rebuilt, myHaveSet.getTimestamp(KEY));
+
+    myHaveSet.applySyncOutput(KEY, "//depot/a.txt#5 - updating /ws/a.txt\n", Function.identity());
+    assertTrue(myHaveSet.getTimestamp(KEY) > rebuilt);
+    assertEquals(myHaveSet.getTimestamp(KEY), new PerforceHaveSet(myDir).getTimestamp(KEY));
+  }
+
+  @Test
+  public void testConcurrentUpdatesAreAllSaved() throws InterruptedException {
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      String path = "/ws/concurrent" + i + ".txt";
+      Thread thread = new Thread(() -> myHaveSet.update(KEY, Collections.singletonMap(path, 1L), Collections.emptyList()));
+      threads.add(thread);
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(15, collect(new PerforceHaveSet(myDir), dir(ROOT)).size());
+  }
+
+  @Test
+  public void testSubmitUpdatesHaveSet() {
+    myHaveSet.update(KEY, Collections.singletonMap("/ws/added.txt", 1L), Collections.singletonList("/ws/a0.txt"));
+    assertEquals(Arrays.asList("/ws/a.txt:1", "/ws/added.txt:1"), sorted(collect(myHaveSet, file("/ws/a.txt"), file("/ws/added.txt"),
+                                                                                 file("/ws/a0.txt"))));
+  }
+
+  @Test
+  public void testOpenedContradictionDropsHaveSet() {
+    myHaveSet.checkOpened(KEY, Arrays.asList(opened(PerforceAbstractChange.EDIT, "/ws/a.txt"),
+                                             opened(PerforceAbstractChange.ADD, "/ws/new.txt"),
+                                             opened(PerforceAbstractChange.EDIT, "/elsewhere/x.txt")));
+    assertTrue(myHaveSet.isTracked(KEY));
+
+    myHaveSet.checkOpened(KEY, Collections.singletonList(opened(PerforceAbstractChange.ADD, "/ws/a0.txt")));
+    assertFalse(myHaveSet.isTracked(KEY));
+  }
+
+  @Test
+  public void testOpenedForEditMissingFromHaveSetDropsIt() {
+    myHaveSet.checkOpened(KEY, Collections.singletonList(opened(PerforceAbstractChange.EDIT, "/ws/synced/outside.txt")));
+    assertFalse(myHaveSet.isTracked(KEY));
+  }
+
+  private static PerforceChange opened(int type, String path) {
+    return new PerforceChange(type, new File(path), "//depot" + path, 1, -1, null);
+  }
+
+  private static List<String> collect(PerforceHaveSet haveSet, FilePath... paths) {
+    List<String> result = new ArrayList<>();
+    assertTrue(haveSet.processHaveRevisions(KEY, Arrays.asList(paths), collector(result)));
+    return result;
+  }
+
+  private static P4HaveParser collector(List<String> result) {
+    return new P4HaveParser(null) {
+      @Override
+      public void consumeRevision(String path, long revision) {
+        result.add(FileUtil.toSystemIndependentName(path) + ":" + revision);
+      }
+    };
+  }
+
+  private static List<String> sorted(List<String> list) {
+    List<String> result = new ArrayList<>(list);
+    Collections.sort(result);
+    return result;
+  }
+
+  private static FilePath dir(String path) {
+    return new LocalFilePath(path, true);
+  }
+
+  private static FilePath file(String path) {
+    return new LocalFilePath(path, false);
+  }
+}
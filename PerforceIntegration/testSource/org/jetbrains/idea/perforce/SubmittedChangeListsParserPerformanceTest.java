@@ -1,16 +1,25 @@
 package org.jetbrains.idea.perforce;
 
 import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vcs.VcsException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.idea.perforce.changesBrowser.FileChange;
 import org.jetbrains.idea.perforce.perforce.OutputMessageParser;
+import org.jetbrains.idea.perforce.perforce.SubmittedChangeListsStore;
 import org.junit.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.*;
 
-import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.*;
 
 public class SubmittedChangeListsParserPerformanceTest {
+  private static final String SERVER = "perforce:1666";
+
   @Test
   public void test() throws IOException {
     File testData = new File(PathManager.getHomePath() + "/plugins/PerforceIntegration/testData/changes.txt");
@@ -20,4 +29,170 @@ public class SubmittedChangeListsParserPerformanceTest {
     final long executionTime = System.currentTimeMillis() - start;
     assertTrue("Execution time: " + executionTime, executionTime < 30000);
   }
+
+  @Test
+  public void testCachedDescribe() throws IOException, VcsException {
+    final Map<ChangeListData, List<FileChange>> described =
+      OutputMessageParser.processMultiDescriptionOutput(generateDescribeOutput(1, 2000, 20), false);
+    assertEquals(2000, described.size());
+
+    File dir = FileUtil.createTempDirectory("p4submitted", null);
+    try {
+      SubmittedChangeListsStore store = new SubmittedChangeListsStore(dir, 10000, 1000000);
+      described.forEach((data, changes) -> store.put(SERVER, data, changes));
+
+      SubmittedChangeListsStore reloaded = new SubmittedChangeListsStore(dir, 10000, 1000000);
+      CountingDescriber describer = new CountingDescriber(20);
+      List<Long> numbers = new ArrayList<>();
+      for (ChangeListData data : described.keySet()) {
+        numbers.add(data.NUMBER);
+      }
+      for (ChangeListData data : described.keySet()) {
+        Pair<ChangeListData, List<FileChange>> cached = reloaded.getOrDescribe(SERVER, data.NUMBER, numbers, describer);
+        assertEquals(data, cached.first);
+        assertFileChangesEqual(described.get(data), cached.second);
+      }
+      assertEquals(0, describer.myCalls);
+      assertNull(reloaded.get("other:1666", 1));
+    }
+    finally {
+      FileUtil.delete(dir);
+    }
+  }
+
+  @Test
+  public void testDescribeInBatches() throws IOException, VcsException {
+    File dir = FileUtil.createTempDirectory("p4submitted", null);
+    try {
+      SubmittedChangeListsStore store = new SubmittedChangeListsStore(dir, 10000, 1000000);
+      CountingDescriber describer = new CountingDescriber(2);
+      List<Long> numbers = new ArrayList<>();
+      for (long number = 250; number >= 1; number--) {
+        numbers.add(number);
+      }
+
+      Pair<ChangeListData, List<FileChange>> first = store.getOrDescribe(SERVER, 250, numbers, describer);
+      assertEquals(250, first.first.NUMBER);
+      assertEquals(1, describer.myCalls);
+      assertEquals(SubmittedChangeListsStore.DESCRIBE_BATCH_SIZE, describer.myDescribed.size());
+
+      for (long number = 250; number > 250 - SubmittedChangeListsStore.DESCRIBE_BATCH_SIZE; number--) {
+        store.getOrDescribe(SERVER, number, numbers, describer);
+      }
+      assertEquals(1, describer.myCalls);
+
+      store.getOrDescribe(SERVER, 1, numbers, describer);
+      assertEquals(2, describer.myCalls);
+      assertEquals(2 * SubmittedChangeListsStore.DESCRIBE_BATCH_SIZE, new HashSet<>(describer.myDescribed).size());
+    }
+    finally {
+      FileUtil.delete(dir);
+    }
+  }
+
+  @Test
+  public void testCompaction() throws IOException {
+    File dir = FileUtil.createTempDirectory("p4submitted", null);
+    try {
+      SubmittedChangeListsStore store = new SubmittedChangeListsStore(dir, 100, 1000000);
+      OutputMessageParser.processMultiDescriptionOutput(generateDescribeOutput(1, 150, 2), false)
+        .forEach((data, changes) -> store.put(SERVER, data, changes));
+
+      SubmittedChangeListsStore reloaded = new SubmittedChangeListsStore(dir, 100, 1000000);
+      assertNull(reloaded.get(SERVER, 1));
+      assertNull(reloaded.get(SERVER, 52));
+      assertNotNull(reloaded.get(SERVER, 53));
+      assertNotNull(reloaded.get(SERVER, 150));
+      assertEquals(2, reloaded.get(SERVER, 150).second.size());
+    }
+    finally {
+      FileUtil.delete(dir);
+    }
+  }
+
+  @Test
+  public void testTruncatedTailIsDropped() throws IOException {
+    File dir = FileUtil.createTempDirectory("p4submitted", null);
+    try {
+      Map<ChangeListData, List<FileChange>> described =
+        OutputMessageParser.processMultiDescriptionOutput(generateDescribeOutput(1, 10, 2), false);
+      List<Pair<ChangeListData, List<FileChange>>> changeLists = new ArrayList<>();
+      described.forEach((data, changes) -> changeLists.add(Pair.create(data, changes)));
+      changeLists.sort(Comparator.comparingLong(pair -> pair.first.NUMBER));
+      new SubmittedChangeListsStore(dir, 100, 1000000).putAll(SERVER, changeLists);
+
+      File[] files = dir.listFiles();
+      assertNotNull(files);
+      assertEquals(1, files.length);
+      try (RandomAccessFile file = new RandomAccessFile(files[0], "rw")) {
+        file.setLength(file.length() - 3);
+      }
+
+      SubmittedChangeListsStore reloaded = new SubmittedChangeListsStore(dir, 100, 1000000);
+      for (long number = 1; number < 10; number++) {
+        assertNotNull(reloaded.get(SERVER, number));
+      }
+      assertNull(reloaded.get(SERVER, 10));
+
+      for (Pair<ChangeListData, List<FileChange>> pair : changeLists) {
+        if (pair.first.NUMBER == 10) {
+          reloaded.put(SERVER, pair.first, pair.second);
+        }
+      }
+      assertNotNull(new SubmittedChangeListsStore(dir, 100, 1000000).get(SERVER, 10));
+    }
+    finally {
+      FileUtil.delete(dir);
+    }
+  }
+
+  private static class CountingDescriber implements SubmittedChangeListsStore.Describer {
+    private final int myFilesPerChange;
+    private final List<Long> myDescribed = new ArrayList<>();
+    private int myCalls;
+
+    CountingDescriber(int filesPerChange) {
+      myFilesPerChange = filesPerChange;
+    }
+
+    @NotNull
+    @Override
+    public Map<Long, Pair<ChangeListData, List<FileChange>>> describe(@NotNull List<Long> numbers) {
+      myCalls++;
+      myDescribed.addAll(numbers);
+      StringBuilder output = new StringBuilder();
+      for (Long number : numbers) {
+        output.append(generateDescribeOutput(number.intValue(), number.intValue(), myFilesPerChange));
+      }
+      Map<Long, Pair<ChangeListData, List<FileChange>>> result = new HashMap<>();
+      OutputMessageParser.processMultiDescriptionOutput(output.toString(), false)
+        .forEach((data, changes) -> result.put(data.NUMBER, Pair.create(data, changes)));
+      return result;
+    }
+  }
+
+  private static void assertFileChangesEqual(List<FileChange> expected, List<FileChange> actual) {
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.get(i).getDepotPath(), actual.get(i).getDepotPath());
+      assertEquals(expected.get(i).getRevisionAfter(), actual.get(i).getRevisionAfter());
+      assertEquals(expected.get(i).getType(), actual.get(i).getType());
+    }
+  }
+
+  private static String generateDescribeOutput(int from, int to, int filesPerChange) {
+    String[] actions = {FileChange.EDIT_ACTION, FileChange.ADD_ACTION, FileChange.DELETE_ACTION, FileChange.INTEGRATE_ACTION};
+    StringBuilder result = new StringBuilder();
+    for (int number = from; number <= to; number++) {
+      result.append("Change ").append(number).append(" by user").append(number % 7).append("@client on 2020/03/04 10:20:30\n\n");
+      result.append("\tChange description ").append(number).append("\n\tsecond line\n\n");
+      result.append("Affected files ...\n\n");
+      for (int i = 0; i < filesPerChange; i++) {
+        result.append("... //depot/module").append(number % 13).append("/File").append(i).append(".java#").append(number)
+          .append(' ').append(actions[(number + i) % actions.length]).append('\n');
+      }
+      result.append('\n');
+    }
+    return result.toString();
+  }
 }
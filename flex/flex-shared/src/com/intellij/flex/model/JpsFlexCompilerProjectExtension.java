@@ -23,6 +23,7 @@ public class JpsFlexCompilerProjectExtension extends JpsElementBase<JpsFlexCompi
   public int MAX_PARALLEL_COMPILATIONS = 4;
   public int HEAP_SIZE_MB = 512;
   public String VM_OPTIONS = "";
+  public boolean CONTENT_DIGEST_UP_TO_DATE_CHECK = false;
 
   public JpsFlexCompilerProjectExtension() {
   }
@@ -37,6 +38,7 @@ public class JpsFlexCompilerProjectExtension extends JpsElementBase<JpsFlexCompi
     MAX_PARALLEL_COMPILATIONS = original.MAX_PARALLEL_COMPILATIONS;
     HEAP_SIZE_MB = original.HEAP_SIZE_MB;
     VM_OPTIONS = original.VM_OPTIONS;
+    CONTENT_DIGEST_UP_TO_DATE_CHECK = original.CONTENT_DIGEST_UP_TO_DATE_CHECK;
   }
 
   @Override
@@ -56,6 +58,7 @@ public class JpsFlexCompilerProjectExtension extends JpsElementBase<JpsFlexCompi
     MAX_PARALLEL_COMPILATIONS = modified.MAX_PARALLEL_COMPILATIONS;
     HEAP_SIZE_MB = modified.HEAP_SIZE_MB;
     VM_OPTIONS = modified.VM_OPTIONS;
+    CONTENT_DIGEST_UP_TO_DATE_CHECK = modified.CONTENT_DIGEST_UP_TO_DATE_CHECK;
   }
 
   @NotNull
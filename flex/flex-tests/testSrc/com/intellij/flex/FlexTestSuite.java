@@ -19,12 +19,17 @@ import com.intellij.flex.imports.FlexAutoImportsTest;
 import com.intellij.flex.imports.FlexOptimizeImportsTest;
 import com.intellij.flex.intentions.*;
 import com.intellij.flex.parser.ActionScriptParsingTest;
+import com.intellij.flex.parser.FlexImporterPerformanceTest;
 import com.intellij.flex.parser.FlexImporterTest;
 import com.intellij.flex.projectView.FlexProjectViewTest;
 import com.intellij.flex.refactoring.*;
 import com.intellij.flex.resolver.ActionScriptResolveTest;
 import com.intellij.flex.resolver.FlexCssNavigationTest;
 import com.intellij.flex.uml.FlashUmlTest;
+import com.intellij.javascript.flex.compiled.SwfDecompilationCacheTest;
+import com.intellij.javascript.flex.compiled.SwfStubCacheTest;
+import com.intellij.lang.javascript.flex.flexunit.FlexUnitTestClassesCacheTest;
+import com.intellij.lang.javascript.flex.debug.FdbOutputReaderTest;
 import junit.framework.Test;
 import junit.framework.TestSuite;
 
@@ -107,6 +112,7 @@ public final class FlexTestSuite {
 
     //com.intellij.flex.parser.*
     testSuite.addTestSuite(ActionScriptParsingTest.class);
+    testSuite.addTestSuite(FlexImporterPerformanceTest.class);
     testSuite.addTestSuite(FlexImporterTest.class);
 
     //com.intellij.flex.projectView.*
@@ -136,6 +142,14 @@ public final class FlexTestSuite {
     //com.intellij.flex.uml.*
     testSuite.addTestSuite(FlashUmlTest.class);
 
+    //com.intellij.javascript.flex.compiled.*
+    testSuite.addTestSuite(SwfDecompilationCacheTest.class);
+    testSuite.addTestSuite(SwfStubCacheTest.class);
+    testSuite.addTestSuite(FlexUnitTestClassesCacheTest.class);
+
+    //com.intellij.lang.javascript.flex.debug.*
+    testSuite.addTestSuite(FdbOutputReaderTest.class);
+
     return testSuite;
   }
 }
@@ -0,0 +1,44 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.intellij.flex.parser;
+
+import com.intellij.flex.util.FlexTestUtils;
+import com.intellij.lang.javascript.flex.importer.FlexImporter;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.testFramework.PlatformTestUtil;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+public class FlexImporterPerformanceTest extends TestCase {
+
+  public void testFrameworkLibs() throws IOException {
+    final List<byte[]> swfs = new ArrayList<>();
+    final File libsDir = new File(FlexTestUtils.getPathToCompleteFlexSdk("4.6") + "/frameworks/libs");
+    for (File swc : FileUtil.findFilesByMask(Pattern.compile(".*\\.swc"), libsDir)) {
+      swfs.add(loadLibrarySwf(swc));
+    }
+    assertFalse(swfs.isEmpty());
+
+    PlatformTestUtil.startPerformanceTest("Building interfaces of Flex SDK framework libs", 3_000, () -> {
+      for (byte[] swf : swfs) {
+        FlexImporter.buildInterface(swf);
+      }
+    }).attempts(3).assertTiming();
+  }
+
+  private static byte[] loadLibrarySwf(File swc) throws IOException {
+    try (ZipFile zipFile = new ZipFile(swc)) {
+      final ZipEntry zipEntry = zipFile.getEntry("library.swf");
+      try (InputStream inputStream = zipFile.getInputStream(zipEntry)) {
+        return FileUtil.loadBytes(inputStream, (int)zipEntry.getSize());
+      }
+    }
+  }
+}
@@ -90,6 +90,7 @@ public class FlexImporterTest extends TestCase {
     }
 
     String result = FlexImporter.buildInterfaceFromStream(new ByteArrayInputStream(contents));
+    assertEquals(result, FlexImporter.buildInterface(contents));
     String resultFileName = getTestDataPath() + fileName + ".txt";
 
     try {
@@ -0,0 +1,94 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.intellij.javascript.flex.compiled;
+
+import com.intellij.flex.parser.FlexImporterTest;
+import com.intellij.lang.javascript.flex.importer.FlexImporter;
+import com.intellij.openapi.util.io.FileUtil;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.stream.Stream;
+
+public class SwfDecompilationCacheTest extends TestCase {
+  private Path myCacheDir;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myCacheDir = FileUtil.createTempDirectory("flex-swf", null).toPath();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      FileUtil.delete(myCacheDir.toFile());
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  public void testInterfaceRoundTrip() throws IOException {
+    final byte[] content = FileUtil.loadFileBytes(new File(FlexImporterTest.getTestDataPath() + "employeedirectory.swf"));
+    final String key = SwfDecompilationCache.computeKey(content);
+    final String text = FlexImporter.buildInterface(content);
+
+    final SwfDecompilationCache cache = new SwfDecompilationCache(myCacheDir, 10);
+    assertNull(cache.getInterface(key));
+    cache.putInterface(key, text);
+    assertEquals(text, cache.getInterface(key));
+    assertEquals(text, new SwfDecompilationCache(myCacheDir, 10).getInterface(key));
+  }
+
+  public void testKeyDependsOnContent() {
+    final byte[] content = "CWS content".getBytes(StandardCharsets.UTF_8);
+    final byte[] otherContent = "CWS Content".getBytes(StandardCharsets.UTF_8);
+    assertEquals(SwfDecompilationCache.computeKey(content), SwfDecompilationCache.computeKey(content.clone()));
+    assertFalse(SwfDecompilationCache.computeKey(content).equals(SwfDecompilationCache.computeKey(otherContent)));
+
+    final SwfDecompilationCache cache = new SwfDecompilationCache(myCacheDir, 10);
+    cache.putInterface(SwfDecompilationCache.computeKey(content), "package a {}");
+    assertNull(cache.getInterface(SwfDecompilationCache.computeKey(otherContent)));
+  }
+
+  public void testEntriesAreKeyedByImporterVersion() throws IOException {
+    final SwfDecompilationCache cache = new SwfDecompilationCache(myCacheDir, 10);
+    cache.putInterface("key", "package a {}");
+    try (Stream<Path> files = Files.list(myCacheDir)) {
+      assertEquals("key." + FlexImporter.VERSION + ".as", files.findFirst().get().getFileName().toString());
+    }
+  }
+
+  public void testLeastRecentlyWrittenEntriesArePruned() throws IOException {
+    final SwfDecompilationCache cache = new SwfDecompilationCache(myCacheDir, 2);
+    for (int i = 0; i < 3; i++) {
+      cache.putInterface("key" + i, "package p" + i + " {}");
+    }
+    for (int i = 0; i < 3; i++) {
+      Files.setLastModifiedTime(myCacheDir.resolve("key" + i + "." + FlexImporter.VERSION + ".as"), FileTime.fromMillis(1000L * (i + 1)));
+    }
+
+    // pruning is done before the first write of a session
+    final SwfDecompilationCache nextSessionCache = new SwfDecompilationCache(myCacheDir, 2);
+    nextSessionCache.putInterface("key3", "package p3 {}");
+    assertNull(nextSessionCache.getInterface("key0"));
+    assertEquals("package p1 {}", nextSessionCache.getInterface("key1"));
+    assertEquals("package p2 {}", nextSessionCache.getInterface("key2"));
+    assertEquals("package p3 {}", nextSessionCache.getInterface("key3"));
+  }
+
+  public void testPruningIsRepeatedWhileWriting() throws IOException {
+    final SwfDecompilationCache cache = new SwfDecompilationCache(myCacheDir, 2);
+    for (int i = 0; i < 101; i++) {
+      cache.putInterface("key" + i, "package p" + i + " {}");
+    }
+    try (Stream<Path> files = Files.list(myCacheDir)) {
+      assertEquals(3, files.count());
+    }
+  }
+}
@@ -0,0 +1,67 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.intellij.javascript.flex.compiled;
+
+import com.intellij.flex.parser.FlexImporterTest;
+import com.intellij.lang.javascript.JavaScriptSupportLoader;
+import com.intellij.lang.javascript.flex.importer.FlexImporter;
+import com.intellij.lang.javascript.psi.stubs.impl.JSFileCachedData;
+import com.intellij.lang.javascript.psi.stubs.impl.JSFileStubImpl;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.impl.DebugUtil;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+
+import java.io.File;
+import java.nio.file.Path;
+
+public class SwfStubCacheTest extends BasePlatformTestCase {
+  private Path myCacheDir;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myCacheDir = FileUtil.createTempDirectory("flex-swf", null).toPath();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      FileUtil.delete(myCacheDir.toFile());
+    }
+    catch (Throwable e) {
+      addSuppressedException(e);
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  public void testStubTreeRoundTrip() throws Exception {
+    final byte[] content = FileUtil.loadFileBytes(new File(FlexImporterTest.getTestDataPath() + "employeedirectory.swf"));
+    final String key = SwfDecompilationCache.computeKey(content);
+    final JSFileStubImpl stub = createFileStub();
+    FlexImporter.buildStubsInterface(content, stub);
+
+    final SwfDecompilationCache cache = new SwfDecompilationCache(myCacheDir, 10);
+    assertFalse(cache.readStub(key, 1, createFileStub()));
+    cache.putStub(key, 1, stub);
+
+    final JSFileStubImpl cached = createFileStub();
+    assertTrue(new SwfDecompilationCache(myCacheDir, 10).readStub(key, 1, cached));
+    assertEquals(DebugUtil.stubTreeToString(stub), DebugUtil.stubTreeToString(cached));
+
+    // entries of another stub version are not used
+    assertFalse(cache.readStub(key, 2, createFileStub()));
+  }
+
+  public void testSwfOutsideOfLibrarySwcIsNotCached() {
+    final VirtualFile swf = LocalFileSystem.getInstance().findFileByPath(FlexImporterTest.getTestDataPath() + "employeedirectory.swf");
+    assertNotNull(swf);
+    assertFalse(SwfDecompilationCache.isCacheable(swf));
+  }
+
+  private static JSFileStubImpl createFileStub() {
+    return new JSFileStubImpl(JavaScriptSupportLoader.ECMA_SCRIPT_L4, new JSFileCachedData());
+  }
+}
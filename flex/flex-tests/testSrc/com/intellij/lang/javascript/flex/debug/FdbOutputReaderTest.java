@@ -0,0 +1,120 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.intellij.lang.javascript.flex.debug;
+
+import com.intellij.openapi.util.text.StringUtil;
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class FdbOutputReaderTest extends TestCase {
+  private final List<String> myTraces = new ArrayList<>();
+
+  /**
+   * Returns one chunk per read, as a pipe would if fdb flushed its output in these pieces
+   */
+  private static final class ChunkedReader extends Reader {
+    private final ArrayDeque<String> myChunks;
+
+    private ChunkedReader(String... chunks) {
+      myChunks = new ArrayDeque<>(Arrays.asList(chunks));
+    }
+
+    @Override
+    public int read(char[] buffer, int offset, int length) {
+      final String chunk = myChunks.pollFirst();
+      if (chunk == null) return -1;
+      assertTrue(chunk.length() <= length);
+      chunk.getChars(0, chunk.length(), buffer, offset);
+      return chunk.length();
+    }
+
+    @Override
+    public boolean ready() {
+      return !myChunks.isEmpty();
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+
+  private FdbOutputReader createReader(String... chunks) {
+    return new FdbOutputReader(new ByteArrayInputStream(new byte[0]), new ChunkedReader(chunks), myTraces::add);
+  }
+
+  public void testPromptSplitAcrossReads() throws IOException {
+    final FdbOutputReader reader = createReader("Breakpoint 1 at 0x1234: file A.as, line 5\n(f", "db", ") ");
+    assertEquals("Breakpoint 1 at 0x1234: file A.as, line 5\n", reader.readLine(false));
+    assertTrue(reader.isLastResponseTerminatedByPrompt());
+  }
+
+  public void testSeveralResponsesInOneRead() throws IOException {
+    final FdbOutputReader reader = createReader("first\n(fdb) second\n(fdb) Are you sure? (y or n)");
+    assertEquals("first\n", reader.readLine(false));
+    assertEquals("second\n", reader.readLine(false));
+    assertEquals("Are you sure? ", reader.readLine(false));
+    assertTrue(reader.isLastResponseTerminatedByPrompt());
+  }
+
+  public void testPartialPromptMatches() throws IOException {
+    final FdbOutputReader reader = createReader("a = (fd) b = (fdb c = (f", "(fdb", " (fdb) ");
+    assertEquals("a = (fd) b = (fdb c = (f(fdb ", reader.readLine(false));
+    assertTrue(reader.isLastResponseTerminatedByPrompt());
+  }
+
+  public void testPromptAfterUnfinishedPromptPrefix() throws IOException {
+    final FdbOutputReader reader = createReader("x((fdb", "(fdb) ");
+    assertEquals("x((fdb", reader.readLine(false));
+  }
+
+  public void testBufferWrapAround() throws IOException {
+    final String first = StringUtil.repeat("a", 8000);
+    final String second = StringUtil.repeat("b", 100);
+    final String third = StringUtil.repeat("c", 200);
+    // the rest of the second response stays at the end of the ring buffer, so the next read wraps around its start
+    final FdbOutputReader reader = createReader(first + "(fdb) " + second, third + "(fdb) ");
+    assertEquals(first, reader.readLine(false));
+    assertEquals(second + third, reader.readLine(false));
+    assertTrue(reader.isLastResponseTerminatedByPrompt());
+  }
+
+  public void testBufferGrowsForLongResponse() throws IOException {
+    final String chunk = StringUtil.repeat("0123456789", 500);
+    final FdbOutputReader reader = createReader("tail\n(fdb) " + chunk.substring(11), chunk, chunk, chunk, chunk, "(fd", "b) next(fdb) ");
+    assertEquals("tail\n", reader.readLine(false));
+    assertEquals(chunk.substring(11) + StringUtil.repeat(chunk, 4), reader.readLine(false));
+    assertEquals("next", reader.readLine(false));
+  }
+
+  public void testTraceLinesStreamedBeforePrompt() throws IOException {
+    final FdbOutputReader reader = createReader("[trace] one\n[trace] tw", "o\nresult(fdb) ");
+    assertEquals("\nresult", reader.readLine(false));
+    assertEquals(Arrays.asList("[trace] one", "[trace] two"), myTraces);
+  }
+
+  public void testWaitingForPlayerReturnedWithoutPrompt() throws IOException {
+    final FdbOutputReader reader = createReader("Waiting for Player to connect");
+    assertEquals("Waiting for Player to connect", reader.readLine(false));
+    assertFalse(reader.isLastResponseTerminatedByPrompt());
+  }
+
+  public void testNonblockReturnsAvailableText() throws IOException {
+    final FdbOutputReader reader = createReader("partial");
+    assertEquals("partial", reader.readLine(true));
+    assertFalse(reader.isLastResponseTerminatedByPrompt());
+  }
+
+  public void testEndOfStream() throws IOException {
+    assertNull(createReader().readLine(false));
+
+    final FdbOutputReader reader = createReader("done\n(fdb) ", "unterminated");
+    assertEquals("done\n", reader.readLine(false));
+    assertNull(reader.readLine(false));
+  }
+}
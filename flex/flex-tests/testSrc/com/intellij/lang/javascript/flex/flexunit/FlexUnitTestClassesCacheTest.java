@@ -0,0 +1,166 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.intellij.lang.javascript.flex.flexunit;
+
+import com.intellij.codeInsight.JavaCodeInsightTestCase;
+import com.intellij.flex.util.FlexTestUtils;
+import com.intellij.flex.util.FlexUnitLibs;
+import com.intellij.lang.javascript.JSTestOption;
+import com.intellij.lang.javascript.JSTestOptions;
+import com.intellij.lang.javascript.flex.FlexModuleType;
+import com.intellij.openapi.application.WriteAction;
+import com.intellij.openapi.module.ModuleType;
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.roots.ModifiableRootModel;
+import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.vfs.VfsUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.testFramework.PsiTestUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+public class FlexUnitTestClassesCacheTest extends JavaCodeInsightTestCase implements FlexUnitLibs {
+  private static final String TEST_CLASS_TEXT = "package tests {\n" +
+                                                "import flexunit.framework.TestCase;\n" +
+                                                "public class MyTest extends TestCase {\n" +
+                                                "  public function testFoo():void {}\n" +
+                                                "}\n" +
+                                                "}";
+  private static final String HELPER_CLASS_TEXT = "package tests {\n" +
+                                                  "public class Helper {}\n" +
+                                                  "}";
+
+  @Override
+  protected void setUp() throws Exception {
+    FlexTestUtils.allowFlexVfsRootsFor(getTestRootDisposable(), "flexUnit");
+    super.setUp();
+  }
+
+  @Override
+  protected void doCommitModel(@NotNull ModifiableRootModel rootModel) {
+    super.doCommitModel(rootModel);
+
+    FlexTestUtils.addFlexUnitLib(getClass(), getTestName(false), getModule(), getTestDataPath(), FLEX_UNIT_0_9_SWC, FLEX_UNIT_4_SWC);
+  }
+
+  @NotNull
+  @Override
+  protected String getTestDataPath() {
+    return FlexTestUtils.getTestDataPath("flexUnit");
+  }
+
+  @NotNull
+  @Override
+  protected ModuleType getModuleType() {
+    return FlexModuleType.getInstance();
+  }
+
+  @Override
+  protected void setUpJdk() {
+    FlexTestUtils.setupFlexSdk(myModule, getTestName(false), getClass(), getTestRootDisposable());
+  }
+
+  @JSTestOptions({JSTestOption.WithFlexFacet, JSTestOption.WithFlexUnit1})
+  public void testCacheHitsAndInvalidation() throws IOException {
+    final VirtualFile srcRoot = createSourceRoot();
+    final VirtualFile testFile = createFile(srcRoot, "MyTest.as", TEST_CLASS_TEXT);
+    createFile(srcRoot, "Helper.as", HELPER_CLASS_TEXT);
+
+    final FlexUnitTestClassesCache cache = new FlexUnitTestClassesCache(myProject);
+    assertEquals(Collections.singletonList("tests.MyTest"), findTestClasses(cache));
+    assertEquals(2, cache.getComputedInfoCount());
+    assertEquals(Collections.singletonList("tests.MyTest"), findTestClasses(cache));
+    assertEquals(2, cache.getComputedInfoCount());
+
+    final FlexUnitTestClassesCache reloaded = new FlexUnitTestClassesCache(myProject);
+    assertEquals(Collections.singletonList("tests.MyTest"), findTestClasses(reloaded));
+    assertEquals(0, reloaded.getComputedInfoCount());
+
+    setText(testFile, "package tests {\npublic class MyTest {}\n}");
+    assertEquals(Collections.emptyList(), findTestClasses(reloaded));
+    assertEquals(1, reloaded.getComputedInfoCount());
+  }
+
+  @JSTestOptions({JSTestOption.WithFlexFacet, JSTestOption.WithFlexUnit1})
+  public void testEntriesOfDeletedClassesAreDropped() throws IOException {
+    final VirtualFile srcRoot = createSourceRoot();
+    createFile(srcRoot, "MyTest.as", TEST_CLASS_TEXT);
+    final VirtualFile helperFile = createFile(srcRoot, "Helper.as", HELPER_CLASS_TEXT);
+
+    final FlexUnitTestClassesCache cache = new FlexUnitTestClassesCache(myProject);
+    assertEquals(Collections.singletonList("tests.MyTest"), findTestClasses(cache));
+    assertEquals(2, cache.getEntryCount());
+
+    WriteAction.run(() -> helperFile.delete(this));
+    final FlexUnitTestClassesCache reloaded = new FlexUnitTestClassesCache(myProject);
+    assertEquals(Collections.singletonList("tests.MyTest"), findTestClasses(reloaded));
+    assertEquals(0, reloaded.getComputedInfoCount());
+    assertEquals(1, reloaded.getEntryCount());
+  }
+
+  public void testUnusedFilesOfOtherProjectsArePruned() throws IOException {
+    final File dir = createTempDirectory();
+    final long now = System.currentTimeMillis();
+    final long minLastModified = now - TimeUnit.DAYS.toMillis(FlexUnitTestClassesCache.MAX_UNUSED_DAYS);
+    final File current = createCacheFile(dir, "current.dat", now - TimeUnit.DAYS.toMillis(100));
+    final File recent = createCacheFile(dir, "recent.dat", now - TimeUnit.DAYS.toMillis(1));
+    final File unused = createCacheFile(dir, "unused.dat", now - TimeUnit.DAYS.toMillis(100));
+
+    FlexUnitTestClassesCache.pruneUnusedFiles(dir, current, minLastModified);
+    assertTrue(current.exists());
+    assertTrue(recent.exists());
+    assertFalse(unused.exists());
+  }
+
+  private List<String> findTestClasses(@NotNull final FlexUnitTestClassesCache cache) {
+    final FlexUnitSupport support = FlexUnitSupport.getSupport(myModule);
+    assertNotNull(support);
+    final Collection<Pair<String, Set<String>>> classes =
+      cache.findTestClasses(myModule, support, "tests", new EmptyProgressIndicator());
+    assertNotNull(classes);
+
+    final List<String> result = new ArrayList<>();
+    for (Pair<String, Set<String>> pair : classes) {
+      result.add(pair.first);
+    }
+    Collections.sort(result);
+    return result;
+  }
+
+  private VirtualFile createSourceRoot() throws IOException {
+    final VirtualFile srcRoot = WriteAction.compute(() -> getOrCreateProjectBaseDir().createChildDirectory(this, "src"));
+    PsiTestUtil.addSourceRoot(myModule, srcRoot);
+    return srcRoot;
+  }
+
+  private VirtualFile createFile(@NotNull final VirtualFile srcRoot, @NotNull final String name, @NotNull final String text)
+    throws IOException {
+    final VirtualFile file = WriteAction.compute(() -> {
+      final VirtualFile dir = VfsUtil.createDirectoryIfMissing(srcRoot, "tests");
+      final VirtualFile result = dir.createChildData(this, name);
+      VfsUtil.saveText(result, text);
+      return result;
+    });
+    PsiDocumentManager.getInstance(myProject).commitAllDocuments();
+    return file;
+  }
+
+  private void setText(@NotNull final VirtualFile file, @NotNull final String text) throws IOException {
+    // a distinct timestamp even on file systems with a coarse one
+    final long timeStamp = file.getTimeStamp() + 2000;
+    WriteAction.run(() -> file.setBinaryContent(text.getBytes(StandardCharsets.UTF_8), -1, timeStamp));
+    PsiDocumentManager.getInstance(myProject).commitAllDocuments();
+  }
+
+  private static File createCacheFile(@NotNull final File dir, @NotNull final String name, final long lastModified) throws IOException {
+    final File file = new File(dir, name);
+    assertTrue(file.createNewFile());
+    assertTrue(file.setLastModified(lastModified));
+    return file;
+  }
+}
@@ -43,11 +43,12 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 public class FlexBuilder extends TargetBuilder<BuildRootDescriptor, FlexBuildTarget> {
 
   private static final Logger LOG = Logger.getInstance(FlexBuilder.class.getName());
-  private JpsBuiltInFlexCompilerHandler myBuiltInCompilerHandler;
+  private JpsBuiltInFlexCompilerPool myBuiltInCompilerPool;
 
   private enum Status {Ok, Failed, Cancelled}
 
@@ -64,15 +65,15 @@ public class FlexBuilder extends TargetBuilder<BuildRootDescriptor, FlexBuildTar
   @Override
   public void buildStarted(final CompileContext context) {
     super.buildStarted(context);
-    myBuiltInCompilerHandler = new JpsBuiltInFlexCompilerHandler(context.getProjectDescriptor().getProject());
+    myBuiltInCompilerPool = new JpsBuiltInFlexCompilerPool(context.getProjectDescriptor().getProject());
   }
 
   @Override
   public void buildFinished(final CompileContext context) {
-    LOG.assertTrue(myBuiltInCompilerHandler.getActiveCompilationsNumber() == 0,
-                   myBuiltInCompilerHandler.getActiveCompilationsNumber() + " Flex compilation(s) are not finished!");
-    myBuiltInCompilerHandler.stopCompilerProcess();
-    myBuiltInCompilerHandler = null;
+    LOG.assertTrue(myBuiltInCompilerPool.getActiveCompilationsNumber() == 0,
+                   myBuiltInCompilerPool.getActiveCompilationsNumber() + " Flex compilation(s) are not finished!");
+    myBuiltInCompilerPool.stopAll(context, getPresentableName());
+    myBuiltInCompilerPool = null;
 
     FlexCommonUtils.deleteTempFlexConfigFiles(context.getProjectDescriptor().getProject().getName());
 
@@ -112,19 +113,18 @@ public class FlexBuilder extends TargetBuilder<BuildRootDescriptor, FlexBuildTar
 
     final List<JpsFlexBuildConfiguration> bcsToCompile = getAllBCsToCompile(mainBC);
 
+    final Collection<String> removedFilePaths = holder.getRemovedFiles(buildTarget);
+    final FlexContentDigests contentDigests =
+      JpsFlexCompilerProjectExtension.getInstance(context.getProjectDescriptor().getProject()).CONTENT_DIGEST_UP_TO_DATE_CHECK
+      ? new FlexContentDigests(context.getProjectDescriptor().dataManager.getDataPaths().getTargetDataRoot(buildTarget))
+      : null;
+    // computed before compilation, as files may be modified while the compiler is running
+    final Map<String, byte[]> dirtyFileDigests =
+      contentDigests != null ? FlexContentDigests.computeDigests(dirtyFilePaths) : Collections.emptyMap();
+
     if (!FlexCommonUtils.isFlexUnitBC(mainBC) && !isFlexmojosBCWithUpdatedConfigFile(mainBC)) {
       if (dirtyFilePaths.isEmpty()) {
-        boolean outputFilesExist = true;
-
-        for (JpsFlexBuildConfiguration bc : bcsToCompile) {
-          if (!new File(bc.getActualOutputFilePath()).isFile()) {
-            outputFilesExist = false;
-            LOG.debug("recompile because output file doesn't exist: " + bc.getActualOutputFilePath());
-            break;
-          }
-        }
-
-        if (outputFilesExist) {
+        if (outputFilesExist(bcsToCompile)) {
           return;
         }
       }
@@ -133,10 +133,23 @@ public class FlexBuilder extends TargetBuilder<BuildRootDescriptor, FlexBuildTar
         FlexBuilderUtils.performPostCompileActions(context, mainBC, dirtyFilePaths, outputConsumer);
         return;
       }
+      else if (contentDigests != null && removedFilePaths.isEmpty() && outputFilesExist(bcsToCompile)) {
+        final List<String> changedFilePaths = contentDigests.findChangedFiles(dirtyFilePaths, dirtyFileDigests);
+        if (changedFilePaths.isEmpty()) {
+          context.processMessage(new CompilerMessage(FlexBuilderUtils.getCompilerName(mainBC), BuildMessage.Kind.INFO,
+                                                     FlexCommonBundle.message("content.of.dirty.files.not.changed",
+                                                                              String.valueOf(dirtyFilePaths.size()))));
+          return;
+        }
+        context.processMessage(new CompilerMessage(FlexBuilderUtils.getCompilerName(mainBC), BuildMessage.Kind.INFO,
+                                                   FlexCommonBundle.message("content.of.files.changed",
+                                                                            String.valueOf(changedFilePaths.size()),
+                                                                            getPresentablePaths(changedFilePaths))));
+      }
     }
 
     for (JpsFlexBuildConfiguration bc : bcsToCompile) {
-      final Status status = compileBuildConfiguration(context, bc, myBuiltInCompilerHandler);
+      final Status status = compileBuildConfiguration(context, bc, myBuiltInCompilerPool);
 
       switch (status) {
         case Ok:
@@ -162,6 +175,26 @@ public class FlexBuilder extends TargetBuilder<BuildRootDescriptor, FlexBuildTar
           return;
       }
     }
+
+    if (contentDigests != null) {
+      contentDigests.update(dirtyFilePaths, dirtyFileDigests, removedFilePaths);
+    }
+  }
+
+  private static String getPresentablePaths(final List<String> paths) {
+    final int maxPaths = 10;
+    final String result = StringUtil.join(paths.subList(0, Math.min(paths.size(), maxPaths)), "\n");
+    return paths.size() > maxPaths ? result + "\n..." : result;
+  }
+
+  private static boolean outputFilesExist(final List<JpsFlexBuildConfiguration> bcs) {
+    for (JpsFlexBuildConfiguration bc : bcs) {
+      if (!new File(bc.getActualOutputFilePath()).isFile()) {
+        LOG.debug("recompile because output file doesn't exist: " + bc.getActualOutputFilePath());
+        return false;
+      }
+    }
+    return true;
   }
 
   /**
@@ -283,7 +316,7 @@ public class FlexBuilder extends TargetBuilder<BuildRootDescriptor, FlexBuildTar
 
   private static Status compileBuildConfiguration(final CompileContext context,
                                                   final JpsFlexBuildConfiguration bc,
-                                                  final JpsBuiltInFlexCompilerHandler builtInCompilerHandler) {
+                                                  final JpsBuiltInFlexCompilerPool builtInCompilerPool) {
     setProgressMessage(context, bc);
 
     final String compilerName = FlexBuilderUtils.getCompilerName(bc);
@@ -298,7 +331,7 @@ public class FlexBuilder extends TargetBuilder<BuildRootDescriptor, FlexBuildTar
         return Status.Failed;
       }
 
-      return doCompile(context, bc, configFiles, compilerName, builtInCompilerHandler);
+      return doCompile(context, bc, configFiles, compilerName, builtInCompilerPool);
     }
     catch (IOException e) {
       context.processMessage(new CompilerMessage(compilerName, BuildMessage.Kind.ERROR, e.getMessage()));
@@ -351,7 +384,7 @@ public class FlexBuilder extends TargetBuilder<BuildRootDescriptor, FlexBuildTar
                                   final JpsFlexBuildConfiguration bc,
                                   final List<File> configFiles,
                                   final String compilerName,
-                                  final JpsBuiltInFlexCompilerHandler builtInCompilerHandler) {
+                                  final JpsBuiltInFlexCompilerPool builtInCompilerPool) {
     final boolean app = bc.getOutputType() != OutputType.Library;
     final JpsSdk<?> sdk = bc.getSdk();
     assert sdk != null;
@@ -361,11 +394,10 @@ public class FlexBuilder extends TargetBuilder<BuildRootDescriptor, FlexBuildTar
                           (JpsFlexCompilerProjectExtension.getInstance(bc.getModule().getProject()).PREFER_ASC_20 ||
                            FlexCommonUtils.isAirSdkWithoutFlex(sdk));
     final boolean builtIn = !asc20 &&
-                            JpsFlexCompilerProjectExtension.getInstance(bc.getModule().getProject()).USE_BUILT_IN_COMPILER &&
-                            builtInCompilerHandler.canBeUsedForSdk(sdk.getHomePath());
+                            JpsFlexCompilerProjectExtension.getInstance(bc.getModule().getProject()).USE_BUILT_IN_COMPILER;
 
     if (builtIn) {
-      return doCompileWithBuiltInCompiler(context, bc, configFiles, compilerName, builtInCompilerHandler);
+      return doCompileWithBuiltInCompiler(context, bc, configFiles, compilerName, builtInCompilerPool);
     }
 
     final List<String> compilerCommand = asc20 ? getASC20Command(bc.getModule().getProject(), sdk, app)
@@ -399,15 +431,33 @@ public class FlexBuilder extends TargetBuilder<BuildRootDescriptor, FlexBuildTar
                                                      final JpsFlexBuildConfiguration bc,
                                                      final List<File> configFiles,
                                                      final String compilerName,
-                                                     final JpsBuiltInFlexCompilerHandler builtInCompilerHandler) {
+                                                     final JpsBuiltInFlexCompilerPool builtInCompilerPool) {
+    final JpsBuiltInFlexCompilerHandler builtInCompilerHandler;
     try {
-      builtInCompilerHandler.startCompilerIfNeeded(bc.getSdk(), context, compilerName);
+      builtInCompilerHandler = builtInCompilerPool.acquire(bc.getSdk(), context, compilerName);
     }
     catch (IOException e) {
       context.processMessage(new CompilerMessage(compilerName, BuildMessage.Kind.ERROR, e.toString()));
       return Status.Failed;
     }
 
+    if (builtInCompilerHandler == null) {
+      return Status.Cancelled;
+    }
+
+    try {
+      return doCompileWithBuiltInCompiler(context, bc, configFiles, compilerName, builtInCompilerHandler);
+    }
+    finally {
+      builtInCompilerPool.release(builtInCompilerHandler);
+    }
+  }
+
+  private static Status doCompileWithBuiltInCompiler(final CompileContext context,
+                                                     final JpsFlexBuildConfiguration bc,
+                                                     final List<File> configFiles,
+                                                     final String compilerName,
+                                                     final JpsBuiltInFlexCompilerHandler builtInCompilerHandler) {
     final List<String> mxmlcOrCompc = Collections.singletonList(bc.getOutputType() == OutputType.Library ? "compc" : "mxmlc");
     final List<String> command = buildCommand(mxmlcOrCompc, configFiles, bc);
     final String plainCommand = StringUtil.join(command,
@@ -0,0 +1,137 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.intellij.jps.flex.build;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Content digests of the files of a Flex build target as of its last successful compilation, stored in the target data directory.
+ * Used if {@link com.intellij.flex.model.JpsFlexCompilerProjectExtension#CONTENT_DIGEST_UP_TO_DATE_CHECK} is on, so that files that were
+ * touched without changing their content (e.g. by a branch switch or a code generator) don't cause recompilation.
+ */
+final class FlexContentDigests {
+  private static final Logger LOG = Logger.getInstance(FlexContentDigests.class.getName());
+
+  private static final int FORMAT_VERSION = 1;
+  private static final String FILE_NAME = "content-digests.dat";
+
+  private final File myFile;
+  private final Map<String, byte[]> myPathToDigest = new HashMap<>();
+
+  FlexContentDigests(@NotNull final File targetDataRoot) {
+    myFile = new File(targetDataRoot, FILE_NAME);
+    load();
+  }
+
+  /**
+   * Computes digests of the files as they are now. Must be called before compilation, so that the stored digests match the compiled content
+   * even if the files are modified while the compiler is running.
+   *
+   * @return digests of the existing files
+   */
+  @NotNull
+  static Map<String, byte[]> computeDigests(@NotNull final Collection<String> paths) {
+    final Map<String, byte[]> result = new HashMap<>();
+    for (String path : paths) {
+      final byte[] digest = computeDigest(new File(path));
+      if (digest != null) {
+        result.put(path, digest);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @param digests digests computed by {@link #computeDigests(Collection)}
+   * @return files whose content differs from the one at the last successful compilation, or that don't exist
+   */
+  @NotNull
+  List<String> findChangedFiles(@NotNull final Collection<String> paths, @NotNull final Map<String, byte[]> digests) {
+    final List<String> result = new ArrayList<>();
+    for (String path : paths) {
+      final byte[] digest = digests.get(path);
+      if (digest == null || !Arrays.equals(digest, myPathToDigest.get(path))) {
+        result.add(path);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Stores exactly the given digests, computed before the successful compilation
+   */
+  void update(@NotNull final Collection<String> compiledPaths,
+              @NotNull final Map<String, byte[]> digests,
+              @NotNull final Collection<String> removedPaths) {
+    for (String path : removedPaths) {
+      myPathToDigest.remove(path);
+    }
+    for (String path : compiledPaths) {
+      final byte[] digest = digests.get(path);
+      if (digest != null) {
+        myPathToDigest.put(path, digest);
+      }
+      else {
+        myPathToDigest.remove(path);
+      }
+    }
+    save();
+  }
+
+  @Nullable
+  private static byte[] computeDigest(@NotNull final File file) {
+    try {
+      return MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(file.toPath()));
+    }
+    catch (IOException | NoSuchAlgorithmException e) {
+      return null;
+    }
+  }
+
+  private void load() {
+    if (!myFile.isFile()) return;
+
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(myFile)))) {
+      if (in.readInt() != FORMAT_VERSION) return;
+
+      final int size = in.readInt();
+      for (int i = 0; i < size; i++) {
+        final String path = in.readUTF();
+        final byte[] digest = new byte[in.readUnsignedByte()];
+        in.readFully(digest);
+        myPathToDigest.put(path, digest);
+      }
+    }
+    catch (IOException e) {
+      LOG.info("Failed to load " + myFile.getPath(), e);
+      myPathToDigest.clear();
+    }
+  }
+
+  private void save() {
+    try {
+      FileUtil.createParentDirs(myFile);
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(myFile)))) {
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(myPathToDigest.size());
+        for (Map.Entry<String, byte[]> entry : myPathToDigest.entrySet()) {
+          out.writeUTF(entry.getKey());
+          out.writeByte(entry.getValue().length);
+          out.write(entry.getValue());
+        }
+      }
+    }
+    catch (IOException e) {
+      LOG.info("Failed to save " + myFile.getPath(), e);
+      FileUtil.delete(myFile);
+    }
+  }
+}
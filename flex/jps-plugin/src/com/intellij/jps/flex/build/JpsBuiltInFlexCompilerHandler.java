@@ -14,6 +14,8 @@ import org.jetbrains.jps.model.library.sdk.JpsSdk;
 import org.jetbrains.jps.service.SharedThreadPool;
 
 import java.io.*;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.util.HashMap;
@@ -33,8 +35,10 @@ public final class JpsBuiltInFlexCompilerHandler {
   private ServerSocket myServerSocket;
   private DataInputStream myDataInputStream;
   private DataOutputStream myDataOutputStream;
+  private Process myProcess;
 
   private int commandNumber = 1;
+  private int myCompilationCount;
   private final Map<String, Listener> myActiveListeners = new HashMap<>();
 
   public interface Listener {
@@ -47,8 +51,75 @@ public final class JpsBuiltInFlexCompilerHandler {
     myProject = project;
   }
 
-  public synchronized boolean canBeUsedForSdk(final String sdkHome) {
-    return mySdkHome == null || mySdkHome.equals(sdkHome);
+  public synchronized String getSdkHome() {
+    return mySdkHome;
+  }
+
+  public synchronized boolean isRunning() {
+    return myDataOutputStream != null;
+  }
+
+  public synchronized int getCompilationCount() {
+    return myCompilationCount;
+  }
+
+  /**
+   * @return resident memory of the compiler process in megabytes or -1 if it can't be determined on this OS or JRE,
+   * in which case the pool falls back to the compilation count limit
+   */
+  public int getResidentMemoryMb() {
+    final Process process;
+    synchronized (this) {
+      process = myProcess;
+    }
+    if (process == null || !process.isAlive()) return -1;
+
+    final long pid = getPid(process);
+    if (pid < 0) return -1;
+
+    final File statusFile = new File("/proc/" + pid + "/status");
+    if (!statusFile.isFile()) return -1;
+
+    try {
+      for (String line : FileUtil.loadLines(statusFile)) {
+        if (line.startsWith("VmRSS:")) {
+          // VmRSS:    123456 kB
+          final String kb = StringUtil.trimEnd(line.substring("VmRSS:".length()).trim(), "kB").trim();
+          return (int)(Long.parseLong(kb) / 1024);
+        }
+      }
+    }
+    catch (IOException | NumberFormatException e) {
+      LOG.debug(e);
+    }
+    return -1;
+  }
+
+  /**
+   * {@code Process.pid()} is not available in Java 8, so the pid is taken from the private field of {@code java.lang.UNIXProcess}
+   * there, and {@code pid()} is called reflectively on newer JREs.
+   *
+   * @return pid of the process or -1 if it can't be determined
+   */
+  private static long getPid(final Process process) {
+    try {
+      final Method pidMethod = Process.class.getMethod("pid");
+      return (Long)pidMethod.invoke(process);
+    }
+    catch (NoSuchMethodException e) {
+      try {
+        final Field pidField = process.getClass().getDeclaredField("pid");
+        pidField.setAccessible(true);
+        return pidField.getInt(process);
+      }
+      catch (ReflectiveOperationException | RuntimeException e1) {
+        LOG.debug(e1);
+      }
+    }
+    catch (ReflectiveOperationException | RuntimeException e) {
+      LOG.debug(e);
+    }
+    return -1;
   }
 
   public synchronized void startCompilerIfNeeded(final JpsSdk<?> sdk,
@@ -106,6 +177,7 @@ public final class JpsBuiltInFlexCompilerHandler {
     context.processMessage(new CompilerMessage(compilerName, BuildMessage.Kind.INFO, "Starting Flex compiler:\n" + plainCommand));
 
     final Process process = processBuilder.start();
+    myProcess = process;
     readInputStreamUntilConnected(process, context, compilerName);
   }
 
@@ -210,6 +282,7 @@ public final class JpsBuiltInFlexCompilerHandler {
       LOG.debug("SENDING: [" + commandToSend + "]");
       myDataOutputStream.writeUTF(commandToSend);
       myActiveListeners.put(prefix, listener);
+      myCompilationCount++;
     }
     catch (IOException e) {
       listener.textAvailable("Error: Can't start compilation: " + e.toString());
@@ -259,6 +332,7 @@ public final class JpsBuiltInFlexCompilerHandler {
     myServerSocket = null;
     myDataInputStream = null;
     myDataOutputStream = null;
+    myProcess = null;
   }
 
   public synchronized void removeListener(final Listener listener) {
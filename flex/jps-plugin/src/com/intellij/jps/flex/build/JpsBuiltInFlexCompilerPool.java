@@ -0,0 +1,221 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.intellij.jps.flex.build;
+
+import com.intellij.flex.model.JpsFlexCompilerProjectExtension;
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jps.incremental.CompileContext;
+import org.jetbrains.jps.incremental.messages.BuildMessage;
+import org.jetbrains.jps.incremental.messages.CompilerMessage;
+import org.jetbrains.jps.model.JpsProject;
+import org.jetbrains.jps.model.library.sdk.JpsSdk;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Warm built-in compiler processes shared by the Flex build targets that are compiled concurrently. Each compilation gets a daemon
+ * started for its SDK exclusively, at most {@link JpsFlexCompilerProjectExtension#MAX_PARALLEL_COMPILATIONS} daemons are running at a time.
+ * <p>
+ * Idle daemons are reused in least-recently-used order. If all daemons are busy the compilation waits; if they are idle but started for
+ * other SDKs then the least recently used one is stopped. A daemon whose memory footprint exceeds the threshold is stopped when its
+ * compilation finishes, so that the next compilation starts a fresh one.
+ */
+public final class JpsBuiltInFlexCompilerPool {
+  private static final Logger LOG = Logger.getInstance(JpsBuiltInFlexCompilerPool.class.getName());
+
+  static final String RECYCLE_THRESHOLD_MB_PROPERTY = "flex.builtin.compiler.recycle.threshold.mb";
+  static final String MAX_COMPILATIONS_PER_DAEMON_PROPERTY = "flex.builtin.compiler.max.compilations";
+
+  /**
+   * Resident memory of a healthy daemon goes well beyond its heap: besides the heap committed up to -Xmx it holds metaspace with the classes
+   * of the compiler and the SDK libraries, code cache, GC structures and thread stacks. Only a daemon that exceeds twice its heap plus
+   * this margin is considered bloated.
+   */
+  private static final int RECYCLE_MARGIN_MB = 512;
+
+  private final JpsProject myProject;
+  private final int myMaxDaemons;
+  private final int myRecycleThresholdMb;
+  private final int myMaxCompilationsPerDaemon;
+
+  // from least to most recently used
+  private final List<JpsBuiltInFlexCompilerHandler> myIdleDaemons = new ArrayList<>();
+  private final Map<JpsBuiltInFlexCompilerHandler, Long> myBusyDaemonToStartNanos = new HashMap<>();
+  private final Map<JpsBuiltInFlexCompilerHandler, Long> myDaemonToCreationNanos = new HashMap<>();
+
+  private int myStartedDaemons;
+  private int myRecycledDaemons;
+  private int myPeakDaemons;
+  private int myCompilations;
+  private long myBusyNanos;
+  private long myLifetimeNanos;
+  private long myWaitingNanos;
+
+  JpsBuiltInFlexCompilerPool(@NotNull JpsProject project) {
+    myProject = project;
+
+    final JpsFlexCompilerProjectExtension settings = JpsFlexCompilerProjectExtension.getInstance(project);
+    myMaxDaemons = Math.max(1, settings.MAX_PARALLEL_COMPILATIONS);
+    myRecycleThresholdMb = Integer.getInteger(RECYCLE_THRESHOLD_MB_PROPERTY, settings.HEAP_SIZE_MB * 2 + RECYCLE_MARGIN_MB);
+    myMaxCompilationsPerDaemon = Integer.getInteger(MAX_COMPILATIONS_PER_DAEMON_PROPERTY, 50);
+  }
+
+  /**
+   * Returns a started compiler that must be {@link #release released} after compilation, or {@code null} if the build is cancelled
+   * while waiting for a free one.
+   */
+  @Nullable
+  JpsBuiltInFlexCompilerHandler acquire(@NotNull JpsSdk<?> sdk,
+                                        @NotNull CompileContext context,
+                                        @NotNull String compilerName) throws IOException {
+    final String sdkHome = sdk.getHomePath();
+    final long waitStart = System.nanoTime();
+    JpsBuiltInFlexCompilerHandler newDaemon = null;
+
+    synchronized (this) {
+      while (true) {
+        final JpsBuiltInFlexCompilerHandler idleDaemon = findIdleDaemon(sdkHome);
+        if (idleDaemon != null) {
+          myIdleDaemons.remove(idleDaemon);
+          markBusy(idleDaemon, waitStart);
+          return idleDaemon;
+        }
+
+        if (getDaemonCount() >= myMaxDaemons && !myIdleDaemons.isEmpty()) {
+          // all idle daemons are started for other SDKs
+          stopDaemon(myIdleDaemons.remove(0));
+        }
+
+        if (getDaemonCount() < myMaxDaemons) {
+          newDaemon = new JpsBuiltInFlexCompilerHandler(myProject);
+          myDaemonToCreationNanos.put(newDaemon, System.nanoTime());
+          markBusy(newDaemon, waitStart);
+          myStartedDaemons++;
+          myPeakDaemons = Math.max(myPeakDaemons, getDaemonCount());
+          break;
+        }
+
+        if (context.getCancelStatus().isCanceled()) {
+          myWaitingNanos += System.nanoTime() - waitStart;
+          return null;
+        }
+
+        try {
+          wait(100);
+        }
+        catch (InterruptedException e) {
+          myWaitingNanos += System.nanoTime() - waitStart;
+          return null;
+        }
+      }
+    }
+
+    // process start takes a while, don't hold the lock
+    try {
+      newDaemon.startCompilerIfNeeded(sdk, context, compilerName);
+      return newDaemon;
+    }
+    catch (IOException e) {
+      synchronized (this) {
+        myBusyDaemonToStartNanos.remove(newDaemon);
+        stopDaemon(newDaemon);
+        notifyAll();
+      }
+      throw e;
+    }
+  }
+
+  synchronized void release(@NotNull JpsBuiltInFlexCompilerHandler daemon) {
+    final Long busyStart = myBusyDaemonToStartNanos.remove(daemon);
+    if (busyStart == null) return;
+
+    myBusyNanos += System.nanoTime() - busyStart;
+    myCompilations++;
+
+    if (!daemon.isRunning()) {
+      stopDaemon(daemon);
+    }
+    else if (shouldRecycle(daemon)) {
+      LOG.info("Recycling built-in Flex compiler after " + daemon.getCompilationCount() + " compilation(s), resident memory: " +
+               daemon.getResidentMemoryMb() + " MB");
+      myRecycledDaemons++;
+      stopDaemon(daemon);
+    }
+    else {
+      myIdleDaemons.add(daemon);
+    }
+
+    notifyAll();
+  }
+
+  private boolean shouldRecycle(@NotNull JpsBuiltInFlexCompilerHandler daemon) {
+    final int residentMemoryMb = daemon.getResidentMemoryMb();
+    return residentMemoryMb >= 0 ? residentMemoryMb > myRecycleThresholdMb
+                                 : daemon.getCompilationCount() >= myMaxCompilationsPerDaemon;
+  }
+
+  /**
+   * Stops all daemons and reports their utilization to the build log
+   */
+  synchronized void stopAll(@NotNull CompileContext context, @NotNull String builderName) {
+    LOG.assertTrue(myBusyDaemonToStartNanos.isEmpty(), myBusyDaemonToStartNanos.size() + " Flex compilation(s) are not finished!");
+
+    for (JpsBuiltInFlexCompilerHandler daemon : new ArrayList<>(myDaemonToCreationNanos.keySet())) {
+      stopDaemon(daemon);
+    }
+    myIdleDaemons.clear();
+    myBusyDaemonToStartNanos.clear();
+
+    if (myStartedDaemons > 0) {
+      final String message = getUtilizationReport();
+      LOG.info(message);
+      context.processMessage(new CompilerMessage(builderName, BuildMessage.Kind.INFO, message));
+    }
+  }
+
+  synchronized int getActiveCompilationsNumber() {
+    int result = 0;
+    for (JpsBuiltInFlexCompilerHandler daemon : myDaemonToCreationNanos.keySet()) {
+      result += daemon.getActiveCompilationsNumber();
+    }
+    return result;
+  }
+
+  @NotNull
+  private String getUtilizationReport() {
+    final long utilizationPercent = myLifetimeNanos > 0 ? Math.round(100. * myBusyNanos / myLifetimeNanos) : 0;
+    return "Built-in Flex compiler daemons: " + myStartedDaemons + " started (" + myPeakDaemons + " at a time, " +
+           myMaxDaemons + " allowed), " + myRecycledDaemons + " recycled; " + myCompilations + " compilation(s), " +
+           "busy " + utilizationPercent + "% of daemon lifetime, " + myWaitingNanos / 1_000_000 + " ms spent waiting for a free daemon";
+  }
+
+  private void markBusy(@NotNull JpsBuiltInFlexCompilerHandler daemon, long waitStart) {
+    final long now = System.nanoTime();
+    myWaitingNanos += now - waitStart;
+    myBusyDaemonToStartNanos.put(daemon, now);
+  }
+
+  private void stopDaemon(@NotNull JpsBuiltInFlexCompilerHandler daemon) {
+    daemon.stopCompilerProcess();
+    final Long creationNanos = myDaemonToCreationNanos.remove(daemon);
+    if (creationNanos != null) {
+      myLifetimeNanos += System.nanoTime() - creationNanos;
+    }
+  }
+
+  @Nullable
+  private JpsBuiltInFlexCompilerHandler findIdleDaemon(@NotNull String sdkHome) {
+    for (JpsBuiltInFlexCompilerHandler daemon : myIdleDaemons) {
+      if (sdkHome.equals(daemon.getSdkHome())) {
+        return daemon;
+      }
+    }
+    return null;
+  }
+
+  private int getDaemonCount() {
+    return myDaemonToCreationNanos.size();
+  }
+}
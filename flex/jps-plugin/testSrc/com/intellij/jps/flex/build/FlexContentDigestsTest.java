@@ -0,0 +1,92 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.intellij.jps.flex.build;
+
+import com.intellij.openapi.util.io.FileUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Follows the sequence of calls made by {@link FlexBuilder#build} when the content digest up-to-date check is on.
+ */
+public class FlexContentDigestsTest {
+  private File myDir;
+  private File myDataRoot;
+  private File myA;
+  private File myB;
+
+  @Before
+  public void setUp() throws IOException {
+    myDir = FileUtil.createTempDirectory("flex-content-digests", null);
+    myDataRoot = new File(myDir, "data");
+    myA = new File(myDir, "A.as");
+    myB = new File(myDir, "B.as");
+    FileUtil.writeToFile(myA, "class A {}");
+    FileUtil.writeToFile(myB, "class B {}");
+    compiled(Arrays.asList(myA.getPath(), myB.getPath()), Collections.emptyList());
+  }
+
+  @After
+  public void tearDown() {
+    FileUtil.delete(myDir);
+  }
+
+  @Test
+  public void touchedButUnchangedFileIsSkipped() throws IOException {
+    FileUtil.writeToFile(myA, "class A {}");
+    assertTrue(findChangedFiles(myA.getPath()).isEmpty());
+  }
+
+  @Test
+  public void changedFilesAreAllReported() throws IOException {
+    FileUtil.writeToFile(myA, "class A { var a; }");
+    FileUtil.writeToFile(myB, "class B { var b; }");
+    assertEquals(Arrays.asList(myA.getPath(), myB.getPath()), findChangedFiles(myA.getPath(), myB.getPath()));
+
+    compiled(Arrays.asList(myA.getPath(), myB.getPath()), Collections.emptyList());
+    assertTrue(findChangedFiles(myA.getPath(), myB.getPath()).isEmpty());
+  }
+
+  @Test
+  public void fileModifiedDuringCompilationIsRecompiled() throws IOException {
+    FileUtil.writeToFile(myA, "class A { var a; }");
+    final Collection<String> dirty = Collections.singletonList(myA.getPath());
+    final Map<String, byte[]> digests = FlexContentDigests.computeDigests(dirty);
+
+    // the file is saved again while the compiler is running
+    FileUtil.writeToFile(myA, "class A { var a; var b; }");
+    new FlexContentDigests(myDataRoot).update(dirty, digests, Collections.emptyList());
+
+    assertEquals(dirty, findChangedFiles(myA.getPath()));
+  }
+
+  @Test
+  public void removedFileIsForgotten() throws IOException {
+    FileUtil.delete(myB);
+    compiled(Collections.emptyList(), Collections.singletonList(myB.getPath()));
+
+    // a file re-created with the same content is new for the build target
+    FileUtil.writeToFile(myB, "class B {}");
+    assertEquals(Collections.singletonList(myB.getPath()), findChangedFiles(myB.getPath()));
+  }
+
+  private List<String> findChangedFiles(String... paths) {
+    final List<String> dirty = Arrays.asList(paths);
+    return new FlexContentDigests(myDataRoot).findChangedFiles(dirty, FlexContentDigests.computeDigests(dirty));
+  }
+
+  private void compiled(Collection<String> dirty, Collection<String> removed) {
+    new FlexContentDigests(myDataRoot).update(dirty, FlexContentDigests.computeDigests(dirty), removed);
+  }
+}
@@ -0,0 +1,313 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.intellij.javascript.flex.compiled;
+
+import com.intellij.lang.javascript.flex.importer.FlexImporter;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.project.ProjectManager;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.stubs.*;
+import com.intellij.psi.tree.IElementType;
+import com.intellij.util.io.AbstractStringEnumerator;
+import com.intellij.util.io.DigestUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * On-disk cache of the AS3 interface text and the stub trees built by {@link FlexImporter} for library SWFs. It is shared by all projects,
+ * so that the same SDK or library SWC is decompiled only once even if it's used by another project.
+ * <p>
+ * Entries are keyed by the SHA-256 of the SWF content and {@link FlexImporter#VERSION} (and the stub version for stub trees), so they never
+ * need to be invalidated explicitly. Only SWFs of SWC libraries outside of the project content are cached, as project output changes
+ * on every build.
+ * <p>
+ * Stub trees are written with the external ids of their element types and with their own name table rather than with
+ * {@link SerializationManagerEx}, whose serializer ids are reassigned when indices are rebuilt.
+ */
+final class SwfDecompilationCache {
+  private static final Logger LOG = Logger.getInstance(SwfDecompilationCache.class.getName());
+
+  private static final int DEFAULT_MAX_ENTRIES = 2000;
+  private static final int WRITES_BETWEEN_PRUNING = 100;
+
+  private static final String INTERFACE_SUFFIX = ".as";
+  private static final String STUB_SUFFIX = ".stub";
+
+  private static final class Holder {
+    private static final SwfDecompilationCache INSTANCE =
+      new SwfDecompilationCache(Paths.get(PathManager.getSystemPath(), "flex-swf"), DEFAULT_MAX_ENTRIES);
+  }
+
+  private final @NotNull Path myCacheDir;
+  private final int myMaxEntries;
+  private final AtomicInteger myWrites = new AtomicInteger();
+  private volatile Map<String, IStubElementType<?, ?>> myStubTypes = Collections.emptyMap();
+
+  SwfDecompilationCache(@NotNull Path cacheDir, int maxEntries) {
+    myCacheDir = cacheDir;
+    myMaxEntries = maxEntries;
+  }
+
+  static @NotNull SwfDecompilationCache getInstance() {
+    return Holder.INSTANCE;
+  }
+
+  static @NotNull String computeKey(byte @NotNull [] swfContent) {
+    return StringUtil.toHexString(DigestUtil.sha256().digest(swfContent));
+  }
+
+  /**
+   * @return {@code true} if {@code swfFile} is the library SWF of an SWC that is a library of an open project and is not located under
+   * a content root of any open project, where it could be a build output
+   */
+  static boolean isCacheable(@NotNull VirtualFile swfFile) {
+    final VirtualFile swcFile = VfsUtilCore.getVirtualFileForJar(swfFile);
+    if (swcFile == null) return false;
+
+    return ReadAction.compute(() -> {
+      boolean inLibrary = false;
+      for (Project project : ProjectManager.getInstance().getOpenProjects()) {
+        if (project.isDisposed()) continue;
+        final ProjectFileIndex fileIndex = ProjectFileIndex.getInstance(project);
+        if (fileIndex.getContentRootForFile(swcFile, false) != null) return false;
+        inLibrary |= fileIndex.isInLibraryClasses(swfFile);
+      }
+      return inLibrary;
+    });
+  }
+
+  @Nullable String getInterface(@NotNull String key) {
+    final byte[] bytes = read(getFile(key, INTERFACE_SUFFIX));
+    return bytes != null ? new String(bytes, StandardCharsets.UTF_8) : null;
+  }
+
+  void putInterface(@NotNull String key, @NotNull String text) {
+    write(getFile(key, INTERFACE_SUFFIX), text.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Reads the cached children of a stub tree into {@code root}, which must have no children.
+   *
+   * @return {@code false} if there's no valid entry, then {@code root} may be partially filled and must be discarded
+   */
+  boolean readStub(@NotNull String key, int stubVersion, @NotNull StubElement<?> root) {
+    final Path file = getFile(key, "." + stubVersion + STUB_SUFFIX);
+    final byte[] bytes = read(file);
+    if (bytes == null) return false;
+
+    try {
+      final DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+      final NameTable names = new NameTable();
+      final int nameCount = in.readInt();
+      for (int i = 0; i < nameCount; i++) {
+        names.enumerate(in.readUTF());
+      }
+      if (readChildren(new StubInputStream(in, names), root)) return true;
+    }
+    catch (IOException | RuntimeException e) {
+      LOG.debug("Failed to read " + file, e);
+    }
+    deleteQuietly(file);
+    return false;
+  }
+
+  void putStub(@NotNull String key, int stubVersion, @NotNull StubElement<?> root) {
+    try {
+      final NameTable names = new NameTable();
+      final ByteArrayOutputStream treeBytes = new ByteArrayOutputStream();
+      final StubOutputStream stubOut = new StubOutputStream(treeBytes, names);
+      writeChildren(stubOut, root);
+      stubOut.flush();
+
+      final ByteArrayOutputStream bytes = new ByteArrayOutputStream(treeBytes.size() + 1024);
+      final DataOutputStream out = new DataOutputStream(bytes);
+      out.writeInt(names.myNames.size());
+      for (String name : names.myNames) {
+        out.writeUTF(name);
+      }
+      treeBytes.writeTo(out);
+      out.flush();
+      write(getFile(key, "." + stubVersion + STUB_SUFFIX), bytes.toByteArray());
+    }
+    catch (IOException | RuntimeException e) {
+      LOG.debug("Failed to serialize stubs of " + key, e);
+    }
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static void writeChildren(@NotNull StubOutputStream out, @NotNull StubElement<?> parent) throws IOException {
+    final List<StubElement<?>> children = getChildren(parent);
+    out.writeVarInt(children.size());
+    for (StubElement<?> child : children) {
+      final IStubElementType type = child.getStubType();
+      out.writeName(type.getExternalId());
+      type.serialize(child, out);
+      writeChildren(out, child);
+    }
+  }
+
+  /**
+   * @return {@code false} if the entry refers to an unknown element type
+   */
+  @SuppressWarnings("rawtypes")
+  private boolean readChildren(@NotNull StubInputStream in, @NotNull StubElement<?> parent) throws IOException {
+    final int childCount = in.readVarInt();
+    for (int i = 0; i < childCount; i++) {
+      final String externalId = in.readNameString();
+      final IStubElementType type = externalId != null ? findStubType(externalId) : null;
+      if (type == null) return false;
+
+      // the deserialized stub adds itself to the children of its parent
+      final StubElement<?> stub = (StubElement<?>)type.deserialize(in, parent);
+      if (!readChildren(in, stub)) return false;
+    }
+    return true;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static @NotNull List<StubElement<?>> getChildren(@NotNull StubElement<?> stub) {
+    return (List<StubElement<?>>)(List<?>)stub.getChildrenStubs();
+  }
+
+  private @Nullable IStubElementType<?, ?> findStubType(@NotNull String externalId) {
+    IStubElementType<?, ?> type = myStubTypes.get(externalId);
+    if (type == null) {
+      // element types are registered when their holder classes are loaded, so look them up again on a miss
+      final Map<String, IStubElementType<?, ?>> stubTypes = new HashMap<>();
+      for (IElementType elementType : IElementType.enumerate(t -> t instanceof IStubElementType)) {
+        stubTypes.put(((IStubElementType<?, ?>)elementType).getExternalId(), (IStubElementType<?, ?>)elementType);
+      }
+      myStubTypes = stubTypes;
+      type = stubTypes.get(externalId);
+    }
+    return type;
+  }
+
+  private byte @Nullable [] read(@NotNull Path file) {
+    try {
+      return Files.readAllBytes(file);
+    }
+    catch (NoSuchFileException e) {
+      return null;
+    }
+    catch (IOException e) {
+      LOG.debug("Failed to read " + file, e);
+      deleteQuietly(file);
+      return null;
+    }
+  }
+
+  private void write(@NotNull Path file, byte @NotNull [] bytes) {
+    Path tempFile = null;
+    try {
+      Files.createDirectories(myCacheDir);
+      if (myWrites.getAndIncrement() % WRITES_BETWEEN_PRUNING == 0) {
+        prune();
+      }
+
+      tempFile = Files.createTempFile(myCacheDir, "swf", ".tmp");
+      Files.write(tempFile, bytes);
+      try {
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      }
+      catch (AtomicMoveNotSupportedException e) {
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+      }
+    }
+    catch (IOException e) {
+      LOG.debug("Failed to write " + file, e);
+      if (tempFile != null) {
+        deleteQuietly(tempFile);
+      }
+    }
+  }
+
+  /**
+   * Keeps the cache size bounded: before the first write and then every {@link #WRITES_BETWEEN_PRUNING} writes removes the least recently
+   * written entries above the limit.
+   */
+  private void prune() throws IOException {
+    final List<Path> files = new ArrayList<>();
+    try (Stream<Path> stream = Files.list(myCacheDir)) {
+      stream.forEach(files::add);
+    }
+    if (files.size() <= myMaxEntries) return;
+
+    files.sort(Comparator.comparingLong(SwfDecompilationCache::getLastModified));
+    for (Path file : files.subList(0, files.size() - myMaxEntries)) {
+      deleteQuietly(file);
+    }
+  }
+
+  private @NotNull Path getFile(@NotNull String key, @NotNull String suffix) {
+    return myCacheDir.resolve(key + "." + FlexImporter.VERSION + suffix);
+  }
+
+  private static long getLastModified(@NotNull Path file) {
+    try {
+      return Files.getLastModifiedTime(file).toMillis();
+    }
+    catch (IOException e) {
+      return 0;
+    }
+  }
+
+  private static void deleteQuietly(@NotNull Path file) {
+    try {
+      Files.deleteIfExists(file);
+    }
+    catch (IOException ignore) {
+    }
+  }
+
+  /**
+   * Names written by stub serializers, stored in the entry itself
+   */
+  private static final class NameTable implements AbstractStringEnumerator {
+    private final List<String> myNames = new ArrayList<>();
+    private final Map<String, Integer> myIds = new HashMap<>();
+
+    @Override
+    public int enumerate(@Nullable String value) {
+      if (value == null) return 0;
+      return myIds.computeIfAbsent(value, v -> {
+        myNames.add(v);
+        return myNames.size();
+      });
+    }
+
+    @Override
+    public @Nullable String valueOf(int idx) {
+      return idx > 0 && idx <= myNames.size() ? myNames.get(idx - 1) : null;
+    }
+
+    @Override
+    public void markCorrupted() {
+    }
+
+    @Override
+    public boolean isDirty() {
+      return false;
+    }
+
+    @Override
+    public void force() {
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+}
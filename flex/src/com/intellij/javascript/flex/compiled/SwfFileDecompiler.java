@@ -21,7 +21,19 @@ public class SwfFileDecompiler implements BinaryFileDecompiler {
   public CharSequence decompile(@NotNull final VirtualFile file) {
     Project project = ArrayUtil.getFirstElement(ProjectManager.getInstance().getOpenProjects());
     try {
-      return project != null ? FlexImporter.buildInterfaceFromStream(file.getInputStream()) : "";
+      if (project == null) return "";
+
+      final byte[] content = file.contentsToByteArray();
+      if (!SwfDecompilationCache.isCacheable(file)) return FlexImporter.buildInterface(content);
+
+      final SwfDecompilationCache cache = SwfDecompilationCache.getInstance();
+      final String key = SwfDecompilationCache.computeKey(content);
+      String result = cache.getInterface(key);
+      if (result == null) {
+        result = FlexImporter.buildInterface(content);
+        cache.putInterface(key, result);
+      }
+      return result;
     }
     catch (IOException ex) {
       return Strings.EMPTY_CHAR_SEQUENCE;
@@ -17,8 +17,6 @@ import com.intellij.psi.stubs.StubElement;
 import com.intellij.util.indexing.FileContent;
 import org.jetbrains.annotations.NotNull;
 
-import java.io.ByteArrayInputStream;
-
 /**
  * @author Maxim.Mossienko
  */
@@ -37,13 +35,22 @@ public class SwfFileStubBuilder implements BinaryFileStubBuilder {
   }
 
   static PsiFileStub buildFileStub(VirtualFile file, byte[] content) {
-    PsiFileStubImpl stub = new JSFileStubImpl(JavaScriptSupportLoader.ECMA_SCRIPT_L4, new JSFileCachedData());
+    final boolean cacheable = SwfDecompilationCache.isCacheable(file);
+    final SwfDecompilationCache cache = SwfDecompilationCache.getInstance();
+    final String key = cacheable ? SwfDecompilationCache.computeKey(content) : null;
+    final int stubVersion = JSFileElementType.getVersion() + VERSION;
+    if (key != null) {
+      PsiFileStubImpl cached = createFileStub();
+      if (cache.readStub(key, stubVersion, cached)) return cached;
+    }
+
+    PsiFileStubImpl stub = createFileStub();
     try {
 
-      FlexImporter.buildStubsInterfaceFromStream(
-        new ByteArrayInputStream(content),
-        stub
-      );
+      FlexImporter.buildStubsInterface(content, stub);
+      if (key != null) {
+        cache.putStub(key, stubVersion, stub);
+      }
 
     } catch (Exception ex) {
       Logger.getInstance(SwfFileStubBuilder.class.getName()).warn(file.getPath(), ex);
@@ -52,6 +59,10 @@ public class SwfFileStubBuilder implements BinaryFileStubBuilder {
     return stub;
   }
 
+  private static PsiFileStubImpl createFileStub() {
+    return new JSFileStubImpl(JavaScriptSupportLoader.ECMA_SCRIPT_L4, new JSFileCachedData());
+  }
+
   @Override
   public int getStubVersion() {
     return JSFileElementType.getVersion() + VERSION;
@@ -29,6 +29,7 @@ import com.intellij.lang.javascript.psi.ecmal4.JSClass;
 import com.intellij.openapi.fileTypes.FileTypeRegistry;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.module.ModuleType;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.projectRoots.Sdk;
 import com.intellij.openapi.roots.LibraryOrderEntry;
@@ -52,10 +53,7 @@ import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
 
 /**
  * @author Maxim.Mossienko
@@ -76,12 +74,13 @@ public class CodeContext {
   final static String[] GUMBO_ATTRIBUTES = {FlexStateElementNames.INCLUDE_IN, FlexStateElementNames.EXCLUDE_FROM,
     FlexStateElementNames.ITEM_CREATION_POLICY, FlexStateElementNames.ITEM_DESTRUCTION_POLICY};
 
-  // Component name to descriptor
-  private final Map<String, ClassBackedElementDescriptor> myNameToDescriptorsMap;
+  // Component name to descriptor. Filled while context is computed, then it's frozen and shared between threads (see CodeContextHolder)
+  private Map<String, ClassBackedElementDescriptor> myNameToDescriptorsMap;
   final GlobalSearchScope scope;
   final String namespace;
   final Module module;
-  private final Set<Object> dependencies = new THashSet<>();
+  private Set<Object> dependencies = new THashSet<>();
+  private Object[] myFrozenDependencies;
 
   CodeContext(String _namespace, Module _module, GlobalSearchScope scope) {
     myNameToDescriptorsMap = new THashMap<>(100);
@@ -134,7 +133,26 @@ public class CodeContext {
   }
 
   Object[] getDependencies() {
-    return dependencies.toArray();
+    return myFrozenDependencies != null ? myFrozenDependencies.clone() : dependencies.toArray();
+  }
+
+  private CodeContext freeze() {
+    if (myFrozenDependencies == null) {
+      myNameToDescriptorsMap = Collections.unmodifiableMap(myNameToDescriptorsMap);
+      myFrozenDependencies = dependencies.toArray();
+      dependencies = Collections.emptySet();
+    }
+    return this;
+  }
+
+  private static Map<String, CodeContext> freeze(final Map<String, CodeContext> contexts, final boolean standard) {
+    final Map<String, CodeContext> result = new THashMap<>();
+    for (Map.Entry<String, CodeContext> entry : contexts.entrySet()) {
+      if (isStdNamespace(entry.getKey()) == standard) {
+        result.put(entry.getKey(), entry.getValue().freeze());
+      }
+    }
+    return Collections.unmodifiableMap(result);
   }
 
   public static CodeContext getContext(final String namespace, final Module module) {
@@ -150,26 +168,29 @@ public class CodeContext {
     final FlexBuildConfiguration bc = FlexBuildConfigurationManager.getInstance(module).getActiveConfiguration();
     if (bc == null) return EMPTY;
 
-    CodeContext codeContext;
-
-    synchronized (CodeContext.class) {
-      if (isStdNamespace(namespace)) {
-        return getStdCodeContext(namespace, module, scope, bc);
-      }
-
-      final CodeContextHolder contextHolder = CodeContextHolder.getInstance(module.getProject());
-      codeContext = contextHolder.getCodeContext(namespace, module, scope);
+    final CodeContextHolder contextHolder = CodeContextHolder.getInstance(module.getProject());
+    final CodeContext codeContext;
 
-      if (codeContext == null) {
-        codeContext = createCodeContext(namespace, module, bc, scope);
-        if (codeContext.getAllDescriptorsSize() > 0) {
-          // avoid adding of incorrect namespaces that appear during completion like "http://www.adobe.IntellijIdeaRulezzz com/2006/mxml"
-          contextHolder.putCodeContext(namespace, module, scope, codeContext);
-        }
-      }
+    if (isStdNamespace(namespace)) {
+      // make sure that namespaces from all the libraries are known as well, see CodeContextHolder.getNamespaces()
+      getLibraryContexts(contextHolder, module, scope, bc);
+      codeContext = contextHolder.getStandardContexts(module, () -> freeze(collectLibraryContexts(module, bc, true), true)).get(namespace);
+    }
+    else if (isPackageBackedNamespace(namespace)) {
+      codeContext = contextHolder.getPackageContext(namespace, module, scope, () -> createPackageContext(namespace, module, scope).freeze());
+    }
+    else {
+      codeContext = getLibraryContexts(contextHolder, module, scope, bc).get(namespace);
     }
 
-    return codeContext;
+    return codeContext != null ? codeContext : EMPTY;
+  }
+
+  private static Map<String, CodeContext> getLibraryContexts(CodeContextHolder contextHolder,
+                                                             Module module,
+                                                             GlobalSearchScope scope,
+                                                             FlexBuildConfiguration bc) {
+    return contextHolder.getLibraryContexts(module, scope, () -> freeze(collectLibraryContexts(module, bc, false), false));
   }
 
   public static boolean isStdNamespace(final String namespace) {
@@ -180,11 +201,7 @@ public class CodeContext {
     return namespace.equals("*") || namespace.endsWith(".*");
   }
 
-  private static CodeContext createCodeContext(String namespace, Module module, FlexBuildConfiguration bc, GlobalSearchScope scope) {
-    if (!isPackageBackedNamespace(namespace)) {
-      return createCodeContextFromLibraries(namespace, module, scope, bc);
-    }
-
+  private static CodeContext createPackageContext(String namespace, Module module, GlobalSearchScope scope) {
     final Project project = module.getProject();
     final CodeContext codeContext = new CodeContext(namespace, module, scope);
     final String packageName = namespace.endsWith(".*") ? namespace.substring(0, namespace.length() - 2) : "";
@@ -192,6 +209,7 @@ public class CodeContext {
     JSPackageIndex.processElementsInScope(packageName, null, new JSPackageIndex.PackageElementsProcessor() {
       @Override
       public boolean process(VirtualFile file, @NotNull String name, JSPackageIndexInfo.Kind kind, boolean isPublic) {
+        ProgressManager.checkCanceled();
         if (kind != JSPackageIndexInfo.Kind.CLASS) return true;
 
         if (JavaScriptSupportLoader.isMxmlOrFxgFile(file)) {
@@ -216,33 +234,37 @@ public class CodeContext {
     return codeContext;
   }
 
-  private static void handleSwcFromSdk(@NotNull Module module, @NotNull GlobalSearchScope scope, @NotNull FlexBuildConfiguration bc) {
+  private static void handleSwcFromSdk(@NotNull Module module,
+                                       @NotNull Map<String, CodeContext> contextsOfModule,
+                                       @NotNull FlexBuildConfiguration bc) {
     final Sdk sdk = bc.getSdk();
     if (sdk == null) return;
 
-    final Map<String, CodeContext> contextsOfModule = new THashMap<>();
     for (final VirtualFile file : sdk.getRootProvider().getFiles(OrderRootType.CLASSES)) {
       final String swcPath = VirtualFileManager.extractPath(StringUtil.trimEnd(file.getUrl(), JarFileSystem.JAR_SEPARATOR));
       if (BCUtils.getSdkEntryLinkageType(swcPath, bc) != null) {
         handleFileDependency(module, contextsOfModule, file);
       }
     }
-    final CodeContextHolder contextHolder = CodeContextHolder.getInstance(module.getProject());
-    for (final Map.Entry<String, CodeContext> entry : contextsOfModule.entrySet()) {
-      contextHolder.putCodeContext(entry.getKey(), module, scope, entry.getValue());
-    }
   }
 
-  private static CodeContext createCodeContextFromLibraries(String namespace,
-                                                            Module module,
-                                                            GlobalSearchScope scope,
-                                                            FlexBuildConfiguration bc) {
+  /**
+   * Collects contexts of all namespaces declared in the SDK and libraries the module depends on. Standard namespaces are handled only if
+   * {@code withStandardManifests} is {@code true}, in this case manifests of standard namespaces from SDK are processed first.
+   */
+  private static Map<String, CodeContext> collectLibraryContexts(Module module, FlexBuildConfiguration bc, boolean withStandardManifests) {
     final Map<String, CodeContext> contextsOfModule = new THashMap<>();
     final ModuleRootManager rootManager = ModuleRootManager.getInstance(module);
 
-    // TODO: this code should not be invoked per ns!
-    // If fixed - then method usage at getStdCodeContext() must be changed to make sure that all namespaces handled at that point.
+    if (withStandardManifests) {
+      handleAllStandardManifests(module, contextsOfModule, bc);
+    }
+
+    // swc files attached to Flex SDK may contribute to standard context
+    handleSwcFromSdk(module, contextsOfModule, bc);
+
     for (DependencyEntry entry : bc.getDependencies().getEntries()) {
+      ProgressManager.checkCanceled();
       if (entry.getDependencyType().getLinkageType() == LinkageType.LoadInRuntime) continue;
 
       if (entry instanceof BuildConfigurationEntry) {
@@ -271,16 +293,7 @@ public class CodeContext {
 
     addComponentsFromManifests(module, contextsOfModule, bc, false);
 
-    final CodeContextHolder contextHolder = CodeContextHolder.getInstance(module.getProject());
-    for (Map.Entry<String, CodeContext> entry : contextsOfModule.entrySet()) {
-      contextHolder.putCodeContext(entry.getKey(), module, scope, entry.getValue());
-    }
-
-    CodeContext codeContext = contextsOfModule.get(namespace);
-    if (codeContext == null) {
-      codeContext = EMPTY;
-    }
-    return codeContext;
+    return contextsOfModule;
   }
 
   private static void addComponentsFromManifests(final Module module, final Map<String, CodeContext> contextsOfModule,
@@ -310,6 +323,7 @@ public class CodeContext {
   }
 
   private static void handleFileDependency(Module module, Map<String, CodeContext> contextsOfModule, VirtualFile file) {
+    ProgressManager.checkCanceled();
     if (FileTypeRegistry.getInstance().isFileOfType(file, ArchiveFileType.INSTANCE) &&
         ("swc".equalsIgnoreCase(file.getExtension()) ||
          "ane".equalsIgnoreCase(file.getExtension()) ||
@@ -342,21 +356,10 @@ public class CodeContext {
   }
 
   private static CodeContext identifyCodeContext(Module module, Map<String, CodeContext> contextsOfModule, String uri) {
-    CodeContext codeContext;
-    if (isStdNamespace(uri)) {
-      final CodeContextHolder contextHolder = CodeContextHolder.getInstance(module.getProject());
-      codeContext = contextHolder.getStandardContext(uri, module);
-      if (codeContext == null) {
-        codeContext = new CodeContext(uri, module, GlobalSearchScope.moduleWithDependenciesAndLibrariesScope(module));
-        contextHolder.putStandardContext(uri, module, codeContext);
-      }
-    }
-    else {
-      codeContext = contextsOfModule.get(uri);
-      if (codeContext == null) {
-        codeContext = new CodeContext(uri, module, GlobalSearchScope.moduleWithDependenciesAndLibrariesScope(module));
-        contextsOfModule.put(uri, codeContext);
-      }
+    CodeContext codeContext = contextsOfModule.get(uri);
+    if (codeContext == null) {
+      codeContext = new CodeContext(uri, module, GlobalSearchScope.moduleWithDependenciesAndLibrariesScope(module));
+      contextsOfModule.put(uri, codeContext);
     }
     return codeContext;
   }
@@ -393,20 +396,6 @@ public class CodeContext {
       JSPackageIndex.buildQualifiedName(packageName, file.getNameWithoutExtension()), codeContext, project, file), true);
   }
 
-  private static CodeContext getStdCodeContext(final String namespace, final Module module, GlobalSearchScope scope, final FlexBuildConfiguration bc) {
-    final CodeContextHolder contextHolder = CodeContextHolder.getInstance(module.getProject());
-
-    if (!contextHolder.areSdkComponentsHandledForModule(module)) { // handleAllStandardManifests only once per module
-      handleAllStandardManifests(module, bc);
-      handleSwcFromSdk(module, scope, bc); //swc files attached to Flex SDK may contribute to standard context
-      createCodeContextFromLibraries(namespace, module, scope, bc); // other libraries may contribute to standard context
-      contextHolder.setSdkComponentsHandledForModule(module);
-    }
-
-    final CodeContext context = contextHolder.getStandardContext(namespace, module);
-    return context != null ? context : EMPTY;
-  }
-
   @Nullable
   public XmlElementDescriptor getElementDescriptor(final @NonNls String localName, final @Nullable XmlTag tag) {
     ClassBackedElementDescriptor descriptor = this == EMPTY ? null : myNameToDescriptorsMap.get(localName);
@@ -463,7 +452,9 @@ public class CodeContext {
     return descriptor;
   }
 
-  private static void handleAllStandardManifests(final Module module, @NotNull final FlexBuildConfiguration bc) {
+  private static void handleAllStandardManifests(final Module module,
+                                                 final Map<String, CodeContext> contextsOfModule,
+                                                 @NotNull final FlexBuildConfiguration bc) {
     final Sdk sdk = bc.getSdk();
     final String homePath = sdk == null ? null : sdk.getHomePath();
     final VirtualFile sdkHome = homePath == null ? null : LocalFileSystem.getInstance().findFileByPath(homePath);
@@ -473,23 +464,17 @@ public class CodeContext {
       final VirtualFile manifestFile = VfsUtilCore.findRelativeFile(relativePath, sdkHome);
 
       if (manifestFile != null) {
-        handleStandardManifest(module, namespace1, manifestFile, sdkHome);
+        handleStandardManifest(module, contextsOfModule, namespace1, manifestFile, sdkHome);
       }
     });
   }
 
   private static void handleStandardManifest(final Module module,
+                                             final Map<String, CodeContext> contextsOfModule,
                                              final String namespace,
                                              final VirtualFile manifestFile,
                                              final VirtualFile flexSdkRoot) {
-    final CodeContextHolder contextHolder = CodeContextHolder.getInstance(module.getProject());
-    CodeContext _context = contextHolder.getStandardContext(namespace, module);
-    if (_context == null) {
-      _context = new CodeContext(namespace, module, GlobalSearchScope.moduleWithDependenciesAndLibrariesScope(module));
-      contextHolder.putStandardContext(namespace, module, _context);
-    }
-
-    final CodeContext context = _context;
+    final CodeContext context = identifyCodeContext(module, contextsOfModule, namespace);
     context.addDependency(flexSdkRoot);
 
     processManifestFile(manifestFile, context);
@@ -3,45 +3,87 @@ package com.intellij.javascript.flex.mxml.schema;
 
 import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.module.Module;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.util.Trinity;
 import com.intellij.psi.search.GlobalSearchScope;
-import gnu.trove.THashMap;
+import com.intellij.util.ExceptionUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
+/**
+ * Caches {@link CodeContext}s. Each group of contexts is computed once by the first thread that needs it, concurrent requests of the same
+ * group wait for the result (cancellably), requests of other groups are not blocked. Computed contexts are not modified anymore, so they
+ * are shared between threads without synchronization.
+ * <ul>
+ * <li>contexts of standard namespaces are computed per module</li>
+ * <li>contexts of namespaces declared in libraries (catalog.xml of SWCs, manifests) are computed at once per module and scope</li>
+ * <li>contexts of package-backed namespaces are computed per namespace, module and scope</li>
+ * </ul>
+ */
 public class CodeContextHolder {
-  private final Set<Module> myModulesWithSdkComponentsHandled = new HashSet<>();
-  private final Map<String, Map<Module, CodeContext>> myStandardContexts = new HashMap<>();
-  private final Map<String, Map<Pair<Module, GlobalSearchScope>, CodeContext>> myNSToCodeContextMap = new THashMap<>();
+  private final ConcurrentMap<Module, CompletableFuture<Map<String, CodeContext>>> myStandardContexts = new ConcurrentHashMap<>();
+  private final ConcurrentMap<Pair<Module, GlobalSearchScope>, CompletableFuture<Map<String, CodeContext>>> myLibraryContexts =
+    new ConcurrentHashMap<>();
+  private final ConcurrentMap<Trinity<String, Module, GlobalSearchScope>, CompletableFuture<CodeContext>> myPackageContexts =
+    new ConcurrentHashMap<>();
 
-  synchronized void clear() {
-    myNSToCodeContextMap.clear();
+  void clear() {
     myStandardContexts.clear();
-    myModulesWithSdkComponentsHandled.clear();
+    myLibraryContexts.clear();
+    myPackageContexts.clear();
   }
 
-  @Nullable
-  public synchronized CodeContext getCodeContext(@NotNull String namespace, @NotNull Module module, @NotNull GlobalSearchScope scope) {
-    Map<Pair<Module, GlobalSearchScope>, CodeContext> map = myNSToCodeContextMap.get(namespace);
-    return map != null ? map.get(Pair.create(module, scope)) : null;
+  @NotNull
+  Map<String, CodeContext> getStandardContexts(@NotNull Module module, @NotNull Supplier<Map<String, CodeContext>> computation) {
+    return computeOnce(myStandardContexts, module, computation, contexts -> true);
+  }
+
+  @NotNull
+  Map<String, CodeContext> getLibraryContexts(@NotNull Module module,
+                                              @NotNull GlobalSearchScope scope,
+                                              @NotNull Supplier<Map<String, CodeContext>> computation) {
+    return computeOnce(myLibraryContexts, Pair.create(module, scope), computation, contexts -> true);
   }
 
-  synchronized void putCodeContext(@NotNull String namespace, @NotNull Module module, @NotNull GlobalSearchScope scope, @NotNull CodeContext codeContext) {
-    var map = myNSToCodeContextMap.get(namespace);
-    if (map == null) {
-      map = new THashMap<>();
-      myNSToCodeContextMap.put(namespace, map);
+  @NotNull
+  CodeContext getPackageContext(@NotNull String namespace,
+                                @NotNull Module module,
+                                @NotNull GlobalSearchScope scope,
+                                @NotNull Supplier<CodeContext> computation) {
+    // avoid caching of incorrect namespaces that appear during completion like "com.IntellijIdeaRulezzz .*"
+    return computeOnce(myPackageContexts, Trinity.create(namespace, module, scope), computation,
+                       context -> context.getAllDescriptorsSize() > 0);
+  }
+
+  /**
+   * @return already computed context, doesn't start computation
+   */
+  @Nullable
+  public CodeContext getCodeContext(@NotNull String namespace, @NotNull Module module, @NotNull GlobalSearchScope scope) {
+    if (CodeContext.isPackageBackedNamespace(namespace)) {
+      return getIfComputed(myPackageContexts.get(Trinity.create(namespace, module, scope)));
     }
-    map.put(Pair.create(module, scope), codeContext);
+    final Map<String, CodeContext> contexts = getIfComputed(myLibraryContexts.get(Pair.create(module, scope)));
+    return contexts == null ? null : contexts.get(namespace);
   }
 
-  synchronized void clearCodeContext(@NotNull String namespace, @NotNull Module module, @NotNull GlobalSearchScope scope) {
-    var map = myNSToCodeContextMap.get(namespace);
-    if (map != null) {
-      map.remove(Pair.create(module, scope));
+  void clearCodeContext(@NotNull String namespace, @NotNull Module module, @NotNull GlobalSearchScope scope) {
+    if (CodeContext.isStdNamespace(namespace)) return;
+
+    if (CodeContext.isPackageBackedNamespace(namespace)) {
+      myPackageContexts.remove(Trinity.create(namespace, module, scope));
+    }
+    else {
+      // contexts of all library namespaces are computed together
+      myLibraryContexts.remove(Pair.create(module, scope));
     }
   }
 
@@ -49,41 +91,99 @@ public class CodeContextHolder {
     return ServiceManager.getService(project, CodeContextHolder.class);
   }
 
+  /**
+   * @return already computed context, doesn't start computation
+   */
   @Nullable
-  public synchronized CodeContext getStandardContext(final String namespace, final Module module) {
-    final Map<Module, CodeContext> map = myStandardContexts.get(namespace);
-    return map == null ? null : map.get(module);
+  public CodeContext getStandardContext(final String namespace, final Module module) {
+    final Map<String, CodeContext> contexts = getIfComputed(myStandardContexts.get(module));
+    return contexts == null ? null : contexts.get(namespace);
   }
 
-  public synchronized Collection<String> getNamespaces(Module module, GlobalSearchScope scope) {
+  /**
+   * @return namespaces of already computed contexts
+   */
+  public Collection<String> getNamespaces(Module module, GlobalSearchScope scope) {
     final List<String> result = new ArrayList<>();
-    for (final Map.Entry<String, Map<Module, CodeContext>> entry : myStandardContexts.entrySet()) {
-      if (entry.getValue().containsKey(module)) {
-        result.add(entry.getKey());
-      }
+
+    final Map<String, CodeContext> standardContexts = getIfComputed(myStandardContexts.get(module));
+    if (standardContexts != null) {
+      result.addAll(standardContexts.keySet());
+    }
+
+    final Map<String, CodeContext> libraryContexts = getIfComputed(myLibraryContexts.get(Pair.create(module, scope)));
+    if (libraryContexts != null) {
+      result.addAll(libraryContexts.keySet());
     }
-    for (var entry : myNSToCodeContextMap.entrySet()) {
-      if (entry.getValue().containsKey(Pair.create(module, scope))) {
-        result.add(entry.getKey());
+
+    for (var entry : myPackageContexts.entrySet()) {
+      final Trinity<String, Module, GlobalSearchScope> key = entry.getKey();
+      if (key.second.equals(module) && key.third.equals(scope) && getIfComputed(entry.getValue()) != null) {
+        result.add(key.first);
       }
     }
     return result;
   }
 
-  synchronized void putStandardContext(final String namespace, final Module module, final CodeContext codeContext) {
-    Map<Module, CodeContext> map = myStandardContexts.get(namespace);
-    if (map == null) {
-      map = new HashMap<>();
-      myStandardContexts.put(namespace, map);
-    }
-    map.put(module, codeContext);
+  @Nullable
+  private static <T> T getIfComputed(@Nullable CompletableFuture<T> future) {
+    return future != null && future.isDone() && !future.isCompletedExceptionally() ? future.getNow(null) : null;
   }
 
-  synchronized boolean areSdkComponentsHandledForModule(final Module module) {
-    return myModulesWithSdkComponentsHandled.contains(module);
+  @NotNull
+  private static <K, V> V computeOnce(@NotNull ConcurrentMap<K, CompletableFuture<V>> map,
+                                      @NotNull K key,
+                                      @NotNull Supplier<V> computation,
+                                      @NotNull Predicate<V> cacheResult) {
+    while (true) {
+      CompletableFuture<V> future = map.get(key);
+      if (future == null) {
+        final CompletableFuture<V> newFuture = new CompletableFuture<>();
+        future = map.putIfAbsent(key, newFuture);
+        if (future == null) {
+          final V value;
+          try {
+            value = computation.get();
+          }
+          catch (Throwable e) {
+            map.remove(key, newFuture);
+            newFuture.completeExceptionally(e);
+            throw e;
+          }
+          if (!cacheResult.test(value)) {
+            map.remove(key, newFuture);
+          }
+          newFuture.complete(value);
+          return value;
+        }
+      }
+
+      final V value = awaitCancellably(future);
+      if (value != null) return value;
+      // computation in another thread was cancelled, compute it in this one
+    }
   }
 
-  synchronized boolean setSdkComponentsHandledForModule(final Module module) {
-    return myModulesWithSdkComponentsHandled.add(module);
+  /**
+   * @return {@code null} if the computation was cancelled
+   */
+  @Nullable
+  private static <V> V awaitCancellably(@NotNull CompletableFuture<V> future) {
+    while (true) {
+      ProgressManager.checkCanceled();
+      try {
+        return future.get(10, TimeUnit.MILLISECONDS);
+      }
+      catch (TimeoutException ignore) {
+      }
+      catch (InterruptedException e) {
+        throw new ProcessCanceledException(e);
+      }
+      catch (ExecutionException e) {
+        if (e.getCause() instanceof ProcessCanceledException) return null;
+        ExceptionUtil.rethrowUnchecked(e.getCause());
+        throw new RuntimeException(e.getCause());
+      }
+    }
   }
 }
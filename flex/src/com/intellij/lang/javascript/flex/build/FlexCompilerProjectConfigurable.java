@@ -31,7 +31,9 @@ public class FlexCompilerProjectConfigurable implements SearchableConfigurable,
   private JCheckBox myPreferASC20CheckBox;
 
   private JTextField myHeapSizeTextField;
+  private JTextField myMaxParallelCompilationsTextField;
   private RawCommandLineEditor myVMOptionsEditor;
+  private JCheckBox myContentDigestCheckBox;
 
   private final Project myProject;
   private final FlexCompilerProjectConfiguration myConfig;
@@ -70,7 +72,9 @@ public class FlexCompilerProjectConfigurable implements SearchableConfigurable,
            myConfig.USE_BUILT_IN_COMPILER != myBuiltInCompilerRadioButton.isSelected() ||
            myConfig.PREFER_ASC_20 != myPreferASC20CheckBox.isSelected() ||
            !myHeapSizeTextField.getText().trim().equals(String.valueOf(myConfig.HEAP_SIZE_MB)) ||
-           !myVMOptionsEditor.getText().trim().equals(myConfig.VM_OPTIONS);
+           !myMaxParallelCompilationsTextField.getText().trim().equals(String.valueOf(myConfig.MAX_PARALLEL_COMPILATIONS)) ||
+           !myVMOptionsEditor.getText().trim().equals(myConfig.VM_OPTIONS) ||
+           myConfig.CONTENT_DIGEST_UP_TO_DATE_CHECK != myContentDigestCheckBox.isSelected();
   }
 
   @Override
@@ -92,7 +96,21 @@ public class FlexCompilerProjectConfigurable implements SearchableConfigurable,
       throw new ConfigurationException(FlexBundle.message("invalid.flex.compiler.heap.size"));
     }
 
+    try {
+      final int maxParallelCompilations = Integer.parseInt(myMaxParallelCompilationsTextField.getText().trim());
+      if (maxParallelCompilations > 0) {
+        myConfig.MAX_PARALLEL_COMPILATIONS = maxParallelCompilations;
+      }
+      else {
+        throw new ConfigurationException(FlexBundle.message("invalid.flex.compiler.max.parallel.compilations"));
+      }
+    }
+    catch (NumberFormatException e) {
+      throw new ConfigurationException(FlexBundle.message("invalid.flex.compiler.max.parallel.compilations"));
+    }
+
     myConfig.VM_OPTIONS = myVMOptionsEditor.getText().trim();
+    myConfig.CONTENT_DIGEST_UP_TO_DATE_CHECK = myContentDigestCheckBox.isSelected();
   }
 
   @Override
@@ -101,7 +119,9 @@ public class FlexCompilerProjectConfigurable implements SearchableConfigurable,
     myMxmlcCompcRadioButton.setSelected(myConfig.USE_MXMLC_COMPC);
     myPreferASC20CheckBox.setSelected(myConfig.PREFER_ASC_20);
     myHeapSizeTextField.setText(String.valueOf(myConfig.HEAP_SIZE_MB));
+    myMaxParallelCompilationsTextField.setText(String.valueOf(myConfig.MAX_PARALLEL_COMPILATIONS));
     myVMOptionsEditor.setText(myConfig.VM_OPTIONS);
+    myContentDigestCheckBox.setSelected(myConfig.CONTENT_DIGEST_UP_TO_DATE_CHECK);
   }
 
   @Override
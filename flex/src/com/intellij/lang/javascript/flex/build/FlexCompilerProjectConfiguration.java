@@ -21,6 +21,7 @@ public class FlexCompilerProjectConfiguration implements PersistentStateComponen
   public int MAX_PARALLEL_COMPILATIONS = 4;
   public int HEAP_SIZE_MB = 512;
   public String VM_OPTIONS = "";
+  public boolean CONTENT_DIGEST_UP_TO_DATE_CHECK = false;
 
   public static FlexCompilerProjectConfiguration getInstance(final Project project) {
     return ServiceManager.getService(project, FlexCompilerProjectConfiguration.class);
@@ -47,8 +48,9 @@ public class FlexCompilerProjectConfiguration implements PersistentStateComponen
       USE_BUILT_IN_COMPILER = true;
     }
 
-    //  MAX_PARALLEL_COMPILATIONS = state.MAX_PARALLEL_COMPILATIONS;
+    MAX_PARALLEL_COMPILATIONS = state.MAX_PARALLEL_COMPILATIONS;
     HEAP_SIZE_MB = state.HEAP_SIZE_MB;
     VM_OPTIONS = state.VM_OPTIONS;
+    CONTENT_DIGEST_UP_TO_DATE_CHECK = state.CONTENT_DIGEST_UP_TO_DATE_CHECK;
   }
 }
@@ -0,0 +1,266 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.intellij.lang.javascript.flex.debug;
+
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.function.Consumer;
+
+/**
+ * Splits fdb output into responses terminated by the {@code (fdb) } or {@code (y or n)} prompts.
+ * <p>
+ * Unread output is kept in a ring buffer and prompt markers are recognized incrementally as the text arrives, so each char is scanned once
+ * regardless of how long fdb takes to print a response. Complete {@code [trace] } lines at the beginning of the unread output are passed to
+ * the trace consumer right away instead of waiting for the prompt that terminates the response.
+ */
+class FdbOutputReader {
+  @NonNls static final String FDB_MARKER = "(fdb) ";
+  @NonNls static final String Y_OR_N_MARKER = "(y or n)";
+  @NonNls static final String WAITING_PLAYER_MARKER_1 = "Waiting for Player to connect";
+  @NonNls static final String WAITING_PLAYER_MARKER_2 = "Trying to connect to Player";
+  @NonNls static final String TRACE_MARKER = "[trace] ";
+
+  private static final int PROMPT_MARKERS_COUNT = 2;
+
+  private final InputStream myInputStream;
+  private final Reader myReader;
+  private final Consumer<String> myTraceConsumer;
+  private final char[] myReadBuffer = new char[8192];
+
+  // unread text; capacity is a power of 2
+  private char[] myRing = new char[8192];
+  private int myHead;
+  private int mySize;
+  // number of chars consumed since the start, positions below are absolute
+  private long myConsumed;
+
+  private final MarkerMatcher[] myMatchers = {new MarkerMatcher(FDB_MARKER), new MarkerMatcher(Y_OR_N_MARKER),
+    new MarkerMatcher(WAITING_PLAYER_MARKER_1), new MarkerMatcher(WAITING_PLAYER_MARKER_2)};
+  // start and end positions of prompt markers found in the unread text
+  private final ArrayDeque<long[]> myPromptMarkers = new ArrayDeque<>();
+  // end positions of 'waiting for Player' markers found in the unread text
+  private final ArrayDeque<Long> myWaitingMarkerEnds = new ArrayDeque<>();
+
+  private boolean myLastResponseTerminatedByPrompt;
+
+  FdbOutputReader(@NotNull InputStream inputStream, @NotNull Reader reader, @NotNull Consumer<String> traceConsumer) {
+    myInputStream = inputStream;
+    myReader = reader;
+    myTraceConsumer = traceConsumer;
+  }
+
+  boolean hasSomeDataPending() throws IOException {
+    return myInputStream.available() > 0;
+  }
+
+  /**
+   * @return {@code true} if the last response returned by {@link #readLine} was terminated by a prompt, i.e. fdb waits for a command
+   */
+  boolean isLastResponseTerminatedByPrompt() {
+    return myLastResponseTerminatedByPrompt;
+  }
+
+  /**
+   * Returns text up to the next prompt, blocking until it is printed. If {@code nonblock} is {@code true}, or fdb is waiting for the
+   * Player, then the text that is available is returned even if there's no prompt yet.
+   *
+   * @return {@code null} at the end of stream
+   */
+  @Nullable
+  String readLine(boolean nonblock) throws IOException {
+    boolean tracesStreamed = streamTraceLines();
+    String response = pollResponse(nonblock);
+    if (response != null) return response;
+
+    while (true) {
+      if (nonblock && tracesStreamed && mySize == 0 && !myReader.ready()) {
+        // everything that was available has been streamed to the console
+        myLastResponseTerminatedByPrompt = false;
+        return "";
+      }
+
+      final int read = myReader.read(myReadBuffer, 0, myReadBuffer.length);
+      if (read == -1) return null;
+      append(myReadBuffer, read);
+
+      tracesStreamed |= streamTraceLines();
+      // in nonblock mode wait for the rest of output if it doesn't fit the buffer
+      response = pollResponse(nonblock && read < myReadBuffer.length);
+      if (response != null) return response;
+    }
+  }
+
+  @Nullable
+  private String pollResponse(final boolean allowEmptyMarker) {
+    final long[] promptMarker = myPromptMarkers.peekFirst();
+    if (promptMarker != null) {
+      final String result = getText((int)(promptMarker[0] - myConsumed));
+      consume((int)(promptMarker[1] - myConsumed));
+      if (isBlank()) consumeAll();
+      myLastResponseTerminatedByPrompt = true;
+      return result;
+    }
+
+    if ((allowEmptyMarker || !myWaitingMarkerEnds.isEmpty()) && mySize > 0) {
+      final String result = getText(mySize);
+      consumeAll();
+      myLastResponseTerminatedByPrompt = false;
+      return result;
+    }
+
+    return null;
+  }
+
+  /**
+   * Passes complete {@code [trace] } lines at the beginning of the unread text to the trace consumer
+   */
+  private boolean streamTraceLines() {
+    boolean streamed = false;
+    while (true) {
+      int lineStart = 0;
+      while (lineStart < mySize && isLineSeparator(charAt(lineStart))) lineStart++;
+      if (mySize - lineStart <= TRACE_MARKER.length() || !startsWith(lineStart, TRACE_MARKER)) return streamed;
+
+      int lineEnd = lineStart + TRACE_MARKER.length();
+      while (lineEnd < mySize && !isLineSeparator(charAt(lineEnd))) lineEnd++;
+      if (lineEnd == mySize) return streamed; // incomplete line
+
+      final String line = getText(lineEnd).substring(lineStart);
+      consume(lineEnd);
+      myTraceConsumer.accept(line);
+      streamed = true;
+    }
+  }
+
+  private void append(final char[] chars, final int length) {
+    ensureCapacity(mySize + length);
+    final long startPosition = myConsumed + mySize;
+    for (int i = 0; i < length; i++) {
+      final char c = chars[i];
+      myRing[(myHead + mySize + i) & (myRing.length - 1)] = c;
+
+      for (int m = 0; m < myMatchers.length; m++) {
+        final MarkerMatcher matcher = myMatchers[m];
+        if (matcher.feed(c)) {
+          final long end = startPosition + i + 1;
+          if (m < PROMPT_MARKERS_COUNT) {
+            myPromptMarkers.addLast(new long[]{end - matcher.myMarker.length(), end});
+          }
+          else {
+            myWaitingMarkerEnds.addLast(end);
+          }
+        }
+      }
+    }
+    mySize += length;
+  }
+
+  private void ensureCapacity(final int capacity) {
+    if (capacity <= myRing.length) return;
+
+    int newLength = myRing.length;
+    while (newLength < capacity) newLength <<= 1;
+
+    final char[] newRing = new char[newLength];
+    for (int i = 0; i < mySize; i++) {
+      newRing[i] = charAt(i);
+    }
+    myRing = newRing;
+    myHead = 0;
+  }
+
+  private char charAt(final int index) {
+    return myRing[(myHead + index) & (myRing.length - 1)];
+  }
+
+  private boolean startsWith(final int offset, final String prefix) {
+    for (int i = 0; i < prefix.length(); i++) {
+      if (charAt(offset + i) != prefix.charAt(i)) return false;
+    }
+    return true;
+  }
+
+  private boolean isBlank() {
+    for (int i = 0; i < mySize; i++) {
+      if (charAt(i) != ' ') return false;
+    }
+    return true;
+  }
+
+  private static boolean isLineSeparator(final char c) {
+    return c == '\n' || c == '\r';
+  }
+
+  @NotNull
+  private String getText(final int length) {
+    final int start = myHead;
+    final int firstPartLength = Math.min(length, myRing.length - start);
+    final StringBuilder builder = new StringBuilder(length);
+    builder.append(myRing, start, firstPartLength);
+    builder.append(myRing, 0, length - firstPartLength);
+    return builder.toString();
+  }
+
+  private void consume(final int length) {
+    myHead = (myHead + length) & (myRing.length - 1);
+    mySize -= length;
+    myConsumed += length;
+
+    while (!myPromptMarkers.isEmpty() && myPromptMarkers.peekFirst()[0] < myConsumed) {
+      myPromptMarkers.removeFirst();
+    }
+    while (!myWaitingMarkerEnds.isEmpty() && myWaitingMarkerEnds.peekFirst() <= myConsumed) {
+      myWaitingMarkerEnds.removeFirst();
+    }
+  }
+
+  private void consumeAll() {
+    consume(mySize);
+    myHead = 0;
+    // a marker can't start in the text that is already consumed
+    for (MarkerMatcher matcher : myMatchers) {
+      matcher.reset();
+    }
+  }
+
+  /**
+   * Knuth-Morris-Pratt matcher that is fed one char at a time
+   */
+  private static final class MarkerMatcher {
+    private final String myMarker;
+    private final int[] myFailure;
+    private int myMatched;
+
+    private MarkerMatcher(final String marker) {
+      myMarker = marker;
+      myFailure = new int[marker.length()];
+      for (int i = 1, k = 0; i < marker.length(); i++) {
+        while (k > 0 && marker.charAt(i) != marker.charAt(k)) k = myFailure[k - 1];
+        if (marker.charAt(i) == marker.charAt(k)) k++;
+        myFailure[i] = k;
+      }
+    }
+
+    /**
+     * @return {@code true} if the marker ends with this char
+     */
+    private boolean feed(final char c) {
+      while (myMatched > 0 && myMarker.charAt(myMatched) != c) myMatched = myFailure[myMatched - 1];
+      if (myMarker.charAt(myMatched) == c) myMatched++;
+      if (myMatched == myMarker.length()) {
+        myMatched = myFailure[myMatched - 1];
+        return true;
+      }
+      return false;
+    }
+
+    private void reset() {
+      myMatched = 0;
+    }
+  }
+}
@@ -79,10 +79,11 @@ import org.jetbrains.io.LocalFileFinder;
 import javax.swing.event.HyperlinkEvent;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
 
 import static com.intellij.lang.javascript.flex.run.FlashRunnerParameters.AirMobileDebugTransport;
 import static com.intellij.lang.javascript.flex.run.FlashRunnerParameters.AirMobileRunTarget;
@@ -92,7 +93,6 @@ import static com.intellij.lang.javascript.flex.run.RemoteFlashRunnerParameters.
  * @author Maxim.Mossienko
  */
 public class FlexDebugProcess extends XDebugProcess {
-  private static final String TRACE_MARKER = "[trace] ";
   public static final String DEBUGGER_GROUP_ID = "Debugger";
   private static final String SRC_PATH_ELEMENT = "/src/";
 
@@ -100,7 +100,7 @@ public class FlexDebugProcess extends XDebugProcess {
   private final Process fdbProcess;
   private Process adlProcess;
 
-  private final MyFdbOutputReader reader;
+  private final FdbOutputReader reader;
   private Alarm myOutputAlarm;
 
   private final Module myModule;
@@ -113,9 +113,6 @@ public class FlexDebugProcess extends XDebugProcess {
 
   @NonNls static final String RESOLVED_BREAKPOINT_MARKER = "Resolved breakpoint ";
   @NonNls static final String BREAKPOINT_MARKER = "Breakpoint ";
-  @NonNls private static final String FDB_MARKER = "(fdb) ";
-  @NonNls private static final String WAITING_PLAYER_MARKER_1 = "Waiting for Player to connect";
-  @NonNls private static final String WAITING_PLAYER_MARKER_2 = "Trying to connect to Player";
   @NonNls static final String ATTEMPTING_TO_RESOLVE_BREAKPOINT_MARKER = "Attempting to resolve breakpoint ";
 
   @NonNls private static final String ADL_PREFIX = "[AIR Debug Launcher]: ";
@@ -131,44 +128,15 @@ public class FlexDebugProcess extends XDebugProcess {
 
   private Object myStackFrameEqualityObject;
   private Map<String, String> myQName2IdMap;
+  // output of 'print #objectId.' commands; valid while VM is suspended
+  private final Map<String, String> myObjectIdToMembersOutput = new ConcurrentHashMap<>();
 
   private int myCurrentWorker = 0;
   private final KnownFilesInfo myKnownFilesInfo = new KnownFilesInfo(this);
 
   private String myFdbLaunchCommand;
 
-  private final LinkedList<DebuggerCommand> commandsToWrite = new LinkedList<>() {
-    @Override
-    public synchronized DebuggerCommand removeFirst() {
-      waitForData();
-      return super.removeFirst();
-    }
-
-    @Override
-    public synchronized void addFirst(final DebuggerCommand debuggerCommand) {
-      super.addFirst(debuggerCommand);
-      notify();
-    }
-
-    @Override
-    public synchronized void addLast(final DebuggerCommand debuggerCommand) {
-      super.addLast(debuggerCommand);
-      notify();
-    }
-
-    // TODO: other methods
-
-    private void waitForData() {
-      try {
-        while (size() == 0) {
-          wait();
-        }
-      }
-      catch (InterruptedException ex) {
-        throw new RuntimeException(ex);
-      }
-    }
-  };
+  private final LinkedBlockingDeque<DebuggerCommand> commandsToWrite = new LinkedBlockingDeque<>();
 
   private boolean suspended;
   private boolean fdbWaitingForPlayerStateReached;
@@ -279,7 +247,8 @@ public class FlexDebugProcess extends XDebugProcess {
       sendCommand(new StartDebuggingCommand());
     }
 
-    reader = new MyFdbOutputReader(fdbProcess.getInputStream());
+    reader = new FdbOutputReader(fdbProcess.getInputStream(), FlexCommonUtils.createInputStreamReader(fdbProcess.getInputStream()),
+                                 line -> myConsoleView.print(line + "\n", ConsoleViewContentType.NORMAL_OUTPUT));
 
     startCommandProcessingThread();
   }
@@ -563,7 +532,7 @@ public class FlexDebugProcess extends XDebugProcess {
           }
         }
         else if (line.contains("Additional ActionScript code has been loaded")) {
-          if (!suspended) reader.readLine(false);
+          if (!suspended) readFdbOutput(false);
           myKnownFilesInfo.setUpToDate(false);
         }
         else if ((index = line.indexOf(BREAKPOINT_MARKER)) != -1 && !line.contains(" created")) { // TODO: move to break point handler
@@ -700,11 +669,18 @@ public class FlexDebugProcess extends XDebugProcess {
   }
 
   String defaultReadCommand(DebuggerCommand command) throws IOException {
-    return reader.readLine(command.getEndVMState() == VMState.RUNNING);
+    return readFdbOutput(command.getEndVMState() == VMState.RUNNING);
+  }
+
+  @Nullable
+  private String readFdbOutput(final boolean nonblock) throws IOException {
+    final String output = reader.readLine(nonblock);
+    if (output != null) setSuspended(reader.isLastResponseTerminatedByPrompt());
+    return output;
   }
 
   private boolean handleStdResponse(String line, ResponseLineIterator iterator) {
-    if (line.startsWith(TRACE_MARKER)) {
+    if (line.startsWith(FdbOutputReader.TRACE_MARKER)) {
       myConsoleView.print(line + "\n", ConsoleViewContentType.NORMAL_OUTPUT);
       return true;
     }
@@ -952,8 +928,8 @@ public class FlexDebugProcess extends XDebugProcess {
     }
   }
 
-  private DebuggerCommand postCommand() throws IOException {
-    DebuggerCommand command = commandsToWrite.removeFirst();
+  private DebuggerCommand postCommand() throws IOException, InterruptedException {
+    DebuggerCommand command = commandsToWrite.takeFirst();
     final boolean currentlyExecuting = !suspended && startupDone;
 
     if (command.getStartVMState() == VMState.RUNNING) {
@@ -1186,6 +1162,9 @@ public class FlexDebugProcess extends XDebugProcess {
 
   private void setSuspended(final boolean suspended) {
     this.suspended = suspended;
+    if (!suspended) {
+      clearObjectMembersCache();
+    }
   }
 
   boolean filterStdResponse(String line) {
@@ -1220,80 +1199,19 @@ public class FlexDebugProcess extends XDebugProcess {
     return null;
   }
 
-  class MyFdbOutputReader {
-    private final InputStreamReader myReader;
-    private final char[] buf = new char[8192];
-    private final StringBuilder lastText = new StringBuilder();
-    private int lastTextMarkerScanningStart;
-    private final InputStream myInputStream;
-
-    MyFdbOutputReader(final InputStream _inputStream) {
-      myReader = FlexCommonUtils.createInputStreamReader(_inputStream);
-      myInputStream = _inputStream;
-    }
-
-    boolean hasSomeDataPending() throws IOException {
-      return myInputStream.available() > 0;
-    }
-
-    String readLine(boolean nonblock) throws IOException {
-      if (lastText != null) {
-        final String lastText = getNextLine(nonblock);
-        if (lastText != null) return lastText;
-      }
-
-      while (true) {
-        int read = myReader.read(buf, 0, buf.length);
-        if (read == -1) return null;
-        lastText.append(buf, 0, read);
-
-        if (read < buf.length) {
-          final String lastText = getNextLine(nonblock);
-          if (lastText != null) return lastText;
-        }
-      }
-    }
-
-    private String getNextLine(boolean allowEmptyMarker) {
-      String result;
-      String marker = FDB_MARKER;
-      int i = lastText.indexOf(marker, lastTextMarkerScanningStart);
-
-      if (i == -1) {
-        marker = "(y or n)";
-        i = lastText.indexOf(marker, lastTextMarkerScanningStart);
-      }
-
-      if (i == -1 &&
-          (allowEmptyMarker ||
-           lastText.indexOf(WAITING_PLAYER_MARKER_1, lastTextMarkerScanningStart) >= 0 ||
-           lastText.indexOf(WAITING_PLAYER_MARKER_2, lastTextMarkerScanningStart) >= 0) &&
-          lastText.length() > 0) {
-        i = lastText.length();
-        marker = "";
-      }
+  @Nullable
+  String getCachedObjectMembers(@NotNull String objectId) {
+    return myObjectIdToMembersOutput.get(objectId);
+  }
 
-      if (i != -1) {
-        result = lastText.substring(0, i);
-        lastText.delete(0, i + marker.length());
-        lastTextMarkerScanningStart = 0;
-        if (isBlank(lastText)) lastText.setLength(0);
-        setSuspended(marker.length() != 0);
-        return result;
-      }
-      else {
-        lastTextMarkerScanningStart = lastText.length();
-        result = null;
-      }
-      return result;
+  void cacheObjectMembers(@NotNull String objectId, @NotNull String fdbOutput) {
+    if (suspended) {
+      myObjectIdToMembersOutput.put(objectId, fdbOutput);
     }
+  }
 
-    private boolean isBlank(StringBuilder lastText) {
-      for (int i = 0; i < lastText.length(); ++i) {
-        if (lastText.charAt(i) != ' ') return false;
-      }
-      return true;
-    }
+  void clearObjectMembersCache() {
+    myObjectIdToMembersOutput.clear();
   }
 
   @Override
@@ -1344,7 +1262,7 @@ public class FlexDebugProcess extends XDebugProcess {
 
     @Override
     public String read(final FlexDebugProcess flexDebugProcess) throws IOException {
-      return reader.readLine(true);
+      return readFdbOutput(true);
     }
 
     @Override
@@ -1604,7 +1522,7 @@ public class FlexDebugProcess extends XDebugProcess {
         return CommandOutputProcessingMode.DONE;
       }
 
-      if (s.contains(WAITING_PLAYER_MARKER_1) || s.contains(WAITING_PLAYER_MARKER_2)) {
+      if (s.contains(FdbOutputReader.WAITING_PLAYER_MARKER_1) || s.contains(FdbOutputReader.WAITING_PLAYER_MARKER_2)) {
         fdbWaitingForPlayerStateReached = true;
         getSession().rebuildViews();
         notifyFdbWaitingForPlayerStateReached();
@@ -1698,5 +1616,6 @@ public class FlexDebugProcess extends XDebugProcess {
                                         @NotNull final DefaultActionGroup topToolbar,
                                         @NotNull DefaultActionGroup settings) {
     topToolbar.addAction(ActionManager.getInstance().getAction("Flex.Debugger.FilterSwfLoadUnloadMessages"));
+    settings.addAction(ActionManager.getInstance().getAction("Flex.Debugger.PrefetchObjectMembers"));
   }
 }
@@ -381,6 +381,10 @@ public class FlexStackFrame extends XStackFrame {
     }
 
     protected void dispatchResult(String s) {
+      // any evaluation may modify values, not only an assignment (e.g. a method call or a getter), so members of objects printed before
+      // may be out of date
+      myDebugProcess.clearObjectMembersCache();
+
       final int i = s.indexOf(DELIM);
       if (i != -1) s = s.substring(i + DELIM.length());
 
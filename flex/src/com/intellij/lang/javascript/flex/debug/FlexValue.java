@@ -7,6 +7,7 @@ import com.intellij.lang.javascript.index.JavaScriptIndex;
 import com.intellij.lang.javascript.psi.*;
 import com.intellij.lang.javascript.psi.ecmal4.JSClass;
 import com.intellij.lang.javascript.psi.resolve.JSInheritanceUtil;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.module.ModuleUtilCore;
 import com.intellij.openapi.project.DumbService;
@@ -50,6 +51,7 @@ class FlexValue extends XValue {
   private Icon myPreferredIcon;
 
   private static final String OBJECT_MARKER = "Object ";
+  private static final int MAX_PREFETCHED_OBJECTS = 50;
   private static final String XML_TYPE = "XML";
   private static final String XMLLIST_TYPE = "XMLList";
   static final String TEXT_MARKER = " text ";
@@ -400,8 +402,10 @@ class FlexValue extends XValue {
 
     final String typeFromFlexValueResult = getTypeAndAdditionalInfo(myResult).first;
 
+    final String objectId;
     final String expression;
     try {
+      objectId = getObjectId(myResult, i, OBJECT_MARKER);
       expression = referenceObjectBase(i, OBJECT_MARKER);
     }
     catch (StringIndexOutOfBoundsException e) {
@@ -410,72 +414,118 @@ class FlexValue extends XValue {
       return;
     }
 
+    final String cachedOutput = myDebugProcess.getCachedObjectMembers(objectId);
+    if (cachedOutput != null) {
+      ApplicationManager.getApplication()
+        .executeOnPooledThread(() -> addChildrenFromFdbOutput(node, typeFromFlexValueResult, cachedOutput));
+      return;
+    }
+
     final FlexStackFrame.EvaluateCommand
       command = myFlexStackFrame.new EvaluateCommand(expression, null) {
       @Override
       CommandOutputProcessingMode doOnTextAvailable(@NonNls final String resultS) {
-        StringTokenizer tokenizer = new StringTokenizer(resultS, "\r\n");
-
-        // skip first token; it contains $-prefix followed by myResult: $6 = [Object 30860193, class='__AS3__.vec::Vector.<String>']
-        tokenizer.nextToken();
-
-        final LinkedHashMap<String, FlexValue> fieldNameToFlexValueMap = new LinkedHashMap<>(tokenizer.countTokens());
-
-        final NodeClassInfo nodeClassInfo =
-          DumbService.getInstance(myDebugProcess.getSession().getProject()).runReadActionInSmartMode(() -> {
-            final Project project = myDebugProcess.getSession().getProject();
-            final JSClass jsClass = mySourcePosition == null
-                                    ? null
-                                    : findJSClass(project,
-                                                  ModuleUtilCore.findModuleForFile(mySourcePosition.getFile(), project),
-                                                  typeFromFlexValueResult);
-            return jsClass == null ? null : NodeClassInfo.getNodeClassInfo(jsClass);
-          });
-
-        while (tokenizer.hasMoreElements()) {
-          final String s = tokenizer.nextToken().trim();
-          if (s.length() == 0) continue;
-          final int delimIndex = s.indexOf(FlexStackFrame.DELIM);
-          if (delimIndex == -1) {
-            FlexDebugProcess.log("Unrecognized string:" + s);
-            continue;
-          }
-          final String fieldName = s.substring(0, delimIndex);
-          final String result = s.substring(delimIndex + FlexStackFrame.DELIM.length());
-
-          if (result.startsWith("[Setter ")) {
-            // such values do not give any useful information:
-            // [Setter 62, name='Child@3d613bb::staticSetter']
-            // [Setter 78]
-            continue;
-          }
+        myDebugProcess.cacheObjectMembers(objectId, resultS);
+        addChildrenFromFdbOutput(node, typeFromFlexValueResult, resultS);
+        return CommandOutputProcessingMode.DONE;
+      }
+    };
 
-          String evaluatedPath = myExpression;
+    myDebugProcess.sendCommand(command);
+  }
 
-          if (fieldName.length() > 0 && Character.isDigit(fieldName.charAt(0))) {
-            evaluatedPath += "[\"" + fieldName + "\"]";
-          }
-          else {
-            evaluatedPath += "." + fieldName;
-          }
-          // either parameter of static function from scopechain or a field. Static functions from scopechain look like following:
-          // // [Object 52571545, class='Main$/staticFunction']
-          final ValueType valueType =
-            typeFromFlexValueResult != null && typeFromFlexValueResult.indexOf('/') > -1 ? ValueType.Parameter : ValueType.Field;
-          final FlexValue flexValue =
-            new FlexValue(myFlexStackFrame, myDebugProcess, mySourcePosition, fieldName, evaluatedPath, result, FlexValue.this.myResult,
-                          valueType);
-
-          addValueCheckingDuplicates(flexValue, fieldNameToFlexValueMap);
-        }
+  private void addChildrenFromFdbOutput(final XCompositeNode node, final String typeFromFlexValueResult, @NonNls final String resultS) {
+    StringTokenizer tokenizer = new StringTokenizer(resultS, "\r\n");
 
-        addChildren(node, fieldNameToFlexValueMap, nodeClassInfo);
+    // skip first token; it contains $-prefix followed by myResult: $6 = [Object 30860193, class='__AS3__.vec::Vector.<String>']
+    tokenizer.nextToken();
 
-        return CommandOutputProcessingMode.DONE;
+    final LinkedHashMap<String, FlexValue> fieldNameToFlexValueMap = new LinkedHashMap<>(tokenizer.countTokens());
+
+    final NodeClassInfo nodeClassInfo =
+      DumbService.getInstance(myDebugProcess.getSession().getProject()).runReadActionInSmartMode(() -> {
+        final Project project = myDebugProcess.getSession().getProject();
+        final JSClass jsClass = mySourcePosition == null
+                                ? null
+                                : findJSClass(project,
+                                              ModuleUtilCore.findModuleForFile(mySourcePosition.getFile(), project),
+                                              typeFromFlexValueResult);
+        return jsClass == null ? null : NodeClassInfo.getNodeClassInfo(jsClass);
+      });
+
+    while (tokenizer.hasMoreElements()) {
+      final String s = tokenizer.nextToken().trim();
+      if (s.length() == 0) continue;
+      final int delimIndex = s.indexOf(FlexStackFrame.DELIM);
+      if (delimIndex == -1) {
+        FlexDebugProcess.log("Unrecognized string:" + s);
+        continue;
       }
-    };
+      final String fieldName = s.substring(0, delimIndex);
+      final String result = s.substring(delimIndex + FlexStackFrame.DELIM.length());
 
-    myDebugProcess.sendCommand(command);
+      if (result.startsWith("[Setter ")) {
+        // such values do not give any useful information:
+        // [Setter 62, name='Child@3d613bb::staticSetter']
+        // [Setter 78]
+        continue;
+      }
+
+      String evaluatedPath = myExpression;
+
+      if (fieldName.length() > 0 && Character.isDigit(fieldName.charAt(0))) {
+        evaluatedPath += "[\"" + fieldName + "\"]";
+      }
+      else {
+        evaluatedPath += "." + fieldName;
+      }
+      // either parameter of static function from scopechain or a field. Static functions from scopechain look like following:
+      // // [Object 52571545, class='Main$/staticFunction']
+      final ValueType valueType =
+        typeFromFlexValueResult != null && typeFromFlexValueResult.indexOf('/') > -1 ? ValueType.Parameter : ValueType.Field;
+      final FlexValue flexValue =
+        new FlexValue(myFlexStackFrame, myDebugProcess, mySourcePosition, fieldName, evaluatedPath, result, myResult,
+                      valueType);
+
+      addValueCheckingDuplicates(flexValue, fieldNameToFlexValueMap);
+    }
+
+    addChildren(node, fieldNameToFlexValueMap, nodeClassInfo);
+
+    if (!node.isObsolete() && PrefetchObjectMembersAction.isPrefetchEnabled(myDebugProcess.getSession().getProject())) {
+      prefetchMembers(node, fieldNameToFlexValueMap.values());
+    }
+  }
+
+  /**
+   * Requests members of child objects with a single command, so that expanding them is served from the cache
+   */
+  private void prefetchMembers(final XCompositeNode node, final Collection<FlexValue> children) {
+    final List<String> objectIds = new ArrayList<>();
+    for (FlexValue child : children) {
+      final String childObjectId = child.getObjectId();
+      if (childObjectId != null && myDebugProcess.getCachedObjectMembers(childObjectId) == null && !objectIds.contains(childObjectId)) {
+        objectIds.add(childObjectId);
+        if (objectIds.size() == MAX_PREFETCHED_OBJECTS) break;
+      }
+    }
+
+    if (!objectIds.isEmpty()) {
+      myDebugProcess.sendCommand(new CompositeDebuggerCommand(node, new PrintObjectMembersCommand(myDebugProcess, objectIds)));
+    }
+  }
+
+  @Nullable
+  private String getObjectId() {
+    final int i = myResult.indexOf(OBJECT_MARKER);
+    if (i == -1 || getTypeAndAdditionalInfo(myResult).first == null) return null;
+
+    try {
+      return getObjectId(myResult, i, OBJECT_MARKER);
+    }
+    catch (StringIndexOutOfBoundsException | NumberFormatException e) {
+      return null;
+    }
   }
 
   @Override
@@ -0,0 +1,29 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.intellij.lang.javascript.flex.debug;
+
+import com.intellij.ide.util.PropertiesComponent;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.ToggleAction;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.Project;
+import org.jetbrains.annotations.NotNull;
+
+public class PrefetchObjectMembersAction extends ToggleAction implements DumbAware {
+
+  private static final String PREFETCH_OBJECT_MEMBERS_PROPERTY = "flex.debug.prefetch.object.members";
+
+  @Override
+  public boolean isSelected(@NotNull final AnActionEvent e) {
+    final Project project = e.getProject();
+    return project != null && isPrefetchEnabled(project);
+  }
+
+  @Override
+  public void setSelected(@NotNull final AnActionEvent e, final boolean state) {
+    PropertiesComponent.getInstance(e.getProject()).setValue(PREFETCH_OBJECT_MEMBERS_PROPERTY, state, true);
+  }
+
+  public static boolean isPrefetchEnabled(final @NotNull Project project) {
+    return PropertiesComponent.getInstance(project).getBoolean(PREFETCH_OBJECT_MEMBERS_PROPERTY, true);
+  }
+}
@@ -0,0 +1,43 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.intellij.lang.javascript.flex.debug;
+
+import com.intellij.openapi.util.text.StringUtil;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * Prints members of several objects in one go: all {@code print #objectId.} lines are written to fdb at once and responses, one per
+ * {@code (fdb) } prompt, are put to the {@link FlexDebugProcess#cacheObjectMembers object members cache} in the same order.
+ */
+class PrintObjectMembersCommand extends DebuggerCommand {
+  private final FlexDebugProcess myDebugProcess;
+  private final List<String> myObjectIds;
+  private int myResponseCount;
+
+  PrintObjectMembersCommand(@NotNull FlexDebugProcess debugProcess, @NotNull List<String> objectIds) {
+    super(buildCommandText(objectIds), CommandOutputProcessingType.SPECIAL_PROCESSING);
+    assert !objectIds.isEmpty();
+    myDebugProcess = debugProcess;
+    myObjectIds = objectIds;
+  }
+
+  @NotNull
+  @NonNls
+  private static String buildCommandText(@NotNull List<String> objectIds) {
+    return StringUtil.join(objectIds, id -> "print #" + id + ".", "\n");
+  }
+
+  @Override
+  CommandOutputProcessingMode onTextAvailable(@NonNls String s) {
+    if (myDebugProcess.filterStdResponse(s)) return CommandOutputProcessingMode.PROCEEDING;
+
+    // $6 = [Object 30860193, class='flash.display::Sprite']
+    if (s.startsWith("$")) {
+      myDebugProcess.cacheObjectMembers(myObjectIds.get(myResponseCount), s);
+    }
+
+    return ++myResponseCount == myObjectIds.size() ? CommandOutputProcessingMode.DONE : CommandOutputProcessingMode.PROCEEDING;
+  }
+}
@@ -12,8 +12,6 @@ import com.intellij.flex.model.bc.TargetPlatform;
 import com.intellij.javascript.flex.resolve.ActionScriptClassResolver;
 import com.intellij.lang.javascript.flex.FlexBundle;
 import com.intellij.lang.javascript.flex.projectStructure.model.FlexBuildConfiguration;
-import com.intellij.lang.javascript.index.JSPackageIndex;
-import com.intellij.lang.javascript.index.JSPackageIndexInfo;
 import com.intellij.lang.javascript.psi.ecmal4.JSClass;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.compiler.CompileContext;
@@ -21,12 +19,12 @@ import com.intellij.openapi.compiler.CompileTask;
 import com.intellij.openapi.compiler.CompilerMessageCategory;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.module.Module;
+import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.project.DumbService;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.*;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.util.text.StringUtil;
-import com.intellij.psi.PsiElement;
 import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.ui.UIBundle;
 import com.intellij.util.ResourceUtil;
@@ -202,28 +200,14 @@ public final class FlexUnitPrecompileTask implements CompileTask {
       break;
 
       case Package: {
-        final Collection<Pair<String, Set<String>>> classes =
-          ApplicationManager.getApplication().runReadAction((NullableComputable<Collection<Pair<String, Set<String>>>>)() -> {
-            if (DumbService.getInstance(myProject).isDumb()) return null;
-
-            final Collection<Pair<String, Set<String>>> result = new ArrayList<>();
-            JSPackageIndex
-              .processElementsInScopeRecursive(params.getPackageName(), new JSPackageIndex.PackageQualifiedElementsProcessor() {
-                @Override
-                public boolean process(String qualifiedName, JSPackageIndexInfo.Kind kind, boolean isPublic) {
-                  if (kind == JSPackageIndexInfo.Kind.CLASS) {
-                    PsiElement clazz = ActionScriptClassResolver.findClassByQNameStatic(qualifiedName, moduleScope);
-                    if (clazz instanceof JSClass && support.isTestClass((JSClass)clazz, false)) {
-                      Set<String> customRunners = new THashSet<>();
-                      collectCustomRunners(customRunners, (JSClass)clazz, support, null);
-                      result.add(Pair.create(((JSClass)clazz).getQualifiedName(), customRunners));
-                    }
-                  }
-                  return true;
-                }
-              }, moduleScope, myProject);
-            return result;
-          });
+        final Collection<Pair<String, Set<String>>> classes;
+        try {
+          classes = FlexUnitTestClassesCache.getInstance(myProject)
+            .findTestClasses(module, support, params.getPackageName(), context.getProgressIndicator());
+        }
+        catch (ProcessCanceledException e) {
+          return false;
+        }
 
         if (classes == null) {
           context.addMessage(CompilerMessageCategory.ERROR, FlexBundle.message("dumb.mode.flex.unit.warning"), null, -1, -1);
@@ -316,10 +300,10 @@ public final class FlexUnitPrecompileTask implements CompileTask {
     return text.replace(pattern, replacement);
   }
 
-  private static void collectCustomRunners(Set<String> result,
-                                           JSClass testClass,
-                                           FlexUnitSupport flexUnitSupport,
-                                           @Nullable Collection<JSClass> seen) {
+  static void collectCustomRunners(Set<String> result,
+                                   JSClass testClass,
+                                   FlexUnitSupport flexUnitSupport,
+                                   @Nullable Collection<JSClass> seen) {
     if (seen != null && seen.contains(testClass)) return;
     final String customRunner = FlexUnitSupport.getCustomRunner(testClass);
     if (!StringUtil.isEmptyOrSpaces(customRunner)) result.add(customRunner);
@@ -0,0 +1,369 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.intellij.lang.javascript.flex.flexunit;
+
+import com.intellij.concurrency.JobLauncher;
+import com.intellij.javascript.flex.resolve.ActionScriptClassResolver;
+import com.intellij.lang.javascript.index.JSPackageIndex;
+import com.intellij.lang.javascript.index.JSPackageIndexInfo;
+import com.intellij.lang.javascript.psi.ecmal4.JSClass;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.search.GlobalSearchScope;
+import gnu.trove.THashSet;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.TestOnly;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Remembers which classes are FlexUnit test classes, so that running tests of a package doesn't resolve all classes of the package each
+ * time. Information about a class is up-to-date while timestamps of the files of the class, its superclasses and (for suites) the classes
+ * referenced by the suite are unchanged. Classes with outdated information are checked in parallel.
+ * <p>
+ * The cache is kept on disk per project. Entries whose files are gone are dropped on load, only the {@link #MAX_ENTRIES} most recently
+ * used entries are saved, and files of projects that haven't run FlexUnit tests for {@link #MAX_UNUSED_DAYS} days are deleted.
+ */
+public final class FlexUnitTestClassesCache {
+  private static final Logger LOG = Logger.getInstance(FlexUnitTestClassesCache.class.getName());
+
+  private static final int PERSISTENT_FORMAT_VERSION = 2;
+  private static final String PERSISTENT_DIR = "flexunit-test-classes";
+  static final int MAX_ENTRIES = 20000;
+  static final int MAX_UNUSED_DAYS = 30;
+
+  private final Project myProject;
+  // key is built by getKey()
+  private final ConcurrentMap<String, TestClassInfo> myKeyToInfo = new ConcurrentHashMap<>();
+  private boolean myLoaded;
+  private volatile boolean myModified;
+  private boolean myOtherProjectsPruned;
+  private final AtomicInteger myComputedInfoCount = new AtomicInteger();
+
+  public FlexUnitTestClassesCache(final Project project) {
+    myProject = project;
+  }
+
+  public static FlexUnitTestClassesCache getInstance(final Project project) {
+    return ServiceManager.getService(project, FlexUnitTestClassesCache.class);
+  }
+
+  /**
+   * @return qualified names of test classes found in the package and its subpackages paired with custom runners they use,
+   * or {@code null} if indices are not ready
+   * @throws ProcessCanceledException if the indicator is canceled
+   */
+  @Nullable
+  Collection<Pair<String, Set<String>>> findTestClasses(@NotNull final Module module,
+                                                        @NotNull final FlexUnitSupport support,
+                                                        @NotNull final String packageName,
+                                                        @NotNull final ProgressIndicator indicator) {
+    ensureLoaded();
+
+    final GlobalSearchScope moduleScope = GlobalSearchScope.moduleScope(module);
+    final List<String> classNames = ReadAction.compute(() -> {
+      if (DumbService.getInstance(myProject).isDumb()) return null;
+
+      final List<String> result = new ArrayList<>();
+      JSPackageIndex.processElementsInScopeRecursive(packageName, new JSPackageIndex.PackageQualifiedElementsProcessor() {
+        @Override
+        public boolean process(String qualifiedName, JSPackageIndexInfo.Kind kind, boolean isPublic) {
+          if (kind == JSPackageIndexInfo.Kind.CLASS) {
+            result.add(qualifiedName);
+          }
+          return true;
+        }
+      }, moduleScope, myProject);
+      return result;
+    });
+
+    if (classNames == null) return null;
+
+    final long startTime = System.currentTimeMillis();
+    final Map<String, TestClassInfo> classNameToInfo = new ConcurrentHashMap<>();
+    final boolean completed = JobLauncher.getInstance().invokeConcurrentlyUnderProgress(classNames, indicator, className -> {
+      final String key = getKey(module, support, className);
+      final TestClassInfo info = ReadAction.compute(() -> {
+        final TestClassInfo cachedInfo = myKeyToInfo.get(key);
+        if (cachedInfo != null && cachedInfo.isUpToDate()) {
+          // the order of eviction doesn't need to be precise, don't rewrite the file on each run just for this
+          if (cachedInfo.myLastUsed < startTime - TimeUnit.DAYS.toMillis(1)) {
+            cachedInfo.myLastUsed = startTime;
+            myModified = true;
+          }
+          return cachedInfo;
+        }
+        if (DumbService.getInstance(myProject).isDumb()) return null;
+
+        myComputedInfoCount.incrementAndGet();
+        final TestClassInfo newInfo = computeInfo(className, moduleScope, support);
+        newInfo.myLastUsed = startTime;
+        if (newInfo.isCacheable()) {
+          myKeyToInfo.put(key, newInfo);
+          myModified = true;
+        }
+        return newInfo;
+      });
+
+      if (info == null) return false;
+      classNameToInfo.put(className, info);
+      return true;
+    });
+
+    if (myModified) {
+      save();
+    }
+
+    if (!completed) {
+      indicator.checkCanceled();
+      return null;
+    }
+
+    final Collection<Pair<String, Set<String>>> result = new ArrayList<>();
+    for (String className : classNames) {
+      final TestClassInfo info = classNameToInfo.get(className);
+      if (info != null && info.myTestClass) {
+        result.add(Pair.create(className, info.myCustomRunners));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return number of classes checked since the cache was created, i.e. that weren't answered from the cache
+   */
+  @TestOnly
+  int getComputedInfoCount() {
+    return myComputedInfoCount.get();
+  }
+
+  @TestOnly
+  int getEntryCount() {
+    return myKeyToInfo.size();
+  }
+
+  @NotNull
+  private static TestClassInfo computeInfo(@NotNull final String className,
+                                           @NotNull final GlobalSearchScope moduleScope,
+                                           @NotNull final FlexUnitSupport support) {
+    final PsiElement clazz = ActionScriptClassResolver.findClassByQNameStatic(className, moduleScope);
+    if (!(clazz instanceof JSClass)) {
+      return new TestClassInfo(false, Collections.emptySet(), Collections.emptyMap());
+    }
+
+    final boolean testClass = support.isTestClass((JSClass)clazz, false);
+    final Set<String> customRunners = new THashSet<>();
+    final Set<JSClass> suites = new THashSet<>();
+    if (testClass) {
+      FlexUnitPrecompileTask.collectCustomRunners(customRunners, (JSClass)clazz, support, suites);
+    }
+
+    final Map<String, Long> fileUrlToTimestamp = new HashMap<>();
+    final Set<JSClass> visited = new THashSet<>();
+    collectFileTimestamps((JSClass)clazz, visited, fileUrlToTimestamp);
+    for (JSClass suite : suites) {
+      for (JSClass suiteTestClass : support.getSuiteTestClasses(suite)) {
+        collectFileTimestamps(suiteTestClass, visited, fileUrlToTimestamp);
+      }
+    }
+
+    return new TestClassInfo(testClass, customRunners, fileUrlToTimestamp);
+  }
+
+  private static void collectFileTimestamps(@NotNull final JSClass clazz,
+                                            @NotNull final Set<JSClass> visited,
+                                            @NotNull final Map<String, Long> fileUrlToTimestamp) {
+    if (!visited.add(clazz)) return;
+
+    final PsiFile psiFile = clazz.getContainingFile();
+    final VirtualFile file = psiFile == null ? null : psiFile.getOriginalFile().getVirtualFile();
+    if (file != null) {
+      fileUrlToTimestamp.put(file.getUrl(), file.getTimeStamp());
+    }
+
+    for (JSClass superClass : clazz.getSuperClasses()) {
+      collectFileTimestamps(superClass, visited, fileUrlToTimestamp);
+    }
+  }
+
+  @NotNull
+  private static String getKey(@NotNull final Module module, @NotNull final FlexUnitSupport support, @NotNull final String className) {
+    // test class detection depends on the testing frameworks available in the module
+    final String frameworks = (support.flexUnit4Present ? "FlexUnit4" : "FlexUnit1") + (support.flunitTestClass != null ? "+Fluint" : "");
+    return module.getName() + "/" + frameworks + "/" + className;
+  }
+
+  @NotNull
+  private File getPersistentFile() {
+    return new File(getPersistentDir(), myProject.getLocationHash() + ".dat");
+  }
+
+  @NotNull
+  private static File getPersistentDir() {
+    return new File(PathManager.getSystemPath(), PERSISTENT_DIR);
+  }
+
+  private synchronized void ensureLoaded() {
+    if (myLoaded) return;
+    myLoaded = true;
+
+    final File file = getPersistentFile();
+    if (!file.isFile()) return;
+
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      if (in.readInt() != PERSISTENT_FORMAT_VERSION) return;
+
+      final int count = in.readInt();
+      for (int i = 0; i < count; i++) {
+        final String key = in.readUTF();
+        final TestClassInfo info = TestClassInfo.read(in);
+        // information about deleted classes would never be used again
+        if (info.filesExist()) {
+          myKeyToInfo.put(key, info);
+        }
+        else {
+          myModified = true;
+        }
+      }
+    }
+    catch (IOException e) {
+      LOG.info("Failed to load FlexUnit test classes from " + file.getPath(), e);
+      myKeyToInfo.clear();
+    }
+  }
+
+  private synchronized void save() {
+    myModified = false;
+
+    final File file = getPersistentFile();
+    try {
+      FileUtil.createParentDirs(file);
+      final File tempFile = new File(file.getPath() + ".tmp");
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+        out.writeInt(PERSISTENT_FORMAT_VERSION);
+
+        List<Map.Entry<String, TestClassInfo>> entries = new ArrayList<>(myKeyToInfo.entrySet());
+        if (entries.size() > MAX_ENTRIES) {
+          entries.sort(Comparator.comparingLong((Map.Entry<String, TestClassInfo> entry) -> entry.getValue().myLastUsed).reversed());
+          for (Map.Entry<String, TestClassInfo> entry : entries.subList(MAX_ENTRIES, entries.size())) {
+            myKeyToInfo.remove(entry.getKey(), entry.getValue());
+          }
+          entries = entries.subList(0, MAX_ENTRIES);
+        }
+        out.writeInt(entries.size());
+        for (Map.Entry<String, TestClassInfo> entry : entries) {
+          out.writeUTF(entry.getKey());
+          entry.getValue().write(out);
+        }
+      }
+      FileUtil.rename(tempFile, file);
+    }
+    catch (IOException e) {
+      LOG.info("Failed to save FlexUnit test classes to " + file.getPath(), e);
+    }
+
+    if (!myOtherProjectsPruned) {
+      myOtherProjectsPruned = true;
+      pruneUnusedFiles(getPersistentDir(), file, System.currentTimeMillis() - TimeUnit.DAYS.toMillis(MAX_UNUSED_DAYS));
+    }
+  }
+
+  /**
+   * Deletes files of other projects that haven't been saved since {@code minLastModified}, e.g. of deleted projects
+   */
+  static void pruneUnusedFiles(@NotNull final File dir, @NotNull final File currentFile, final long minLastModified) {
+    final File[] files = dir.listFiles();
+    if (files == null) return;
+
+    for (File file : files) {
+      if (!file.equals(currentFile) && file.lastModified() < minLastModified) {
+        FileUtil.delete(file);
+      }
+    }
+  }
+
+  private static final class TestClassInfo {
+    private final boolean myTestClass;
+    private final Set<String> myCustomRunners;
+    private final Map<String, Long> myFileUrlToTimestamp;
+    private volatile long myLastUsed;
+
+    private TestClassInfo(final boolean testClass, final Set<String> customRunners, final Map<String, Long> fileUrlToTimestamp) {
+      myTestClass = testClass;
+      myCustomRunners = customRunners;
+      myFileUrlToTimestamp = fileUrlToTimestamp;
+    }
+
+    private boolean isCacheable() {
+      // class not found, nothing to check
+      return !myFileUrlToTimestamp.isEmpty();
+    }
+
+    private boolean isUpToDate() {
+      final VirtualFileManager fileManager = VirtualFileManager.getInstance();
+      for (Map.Entry<String, Long> entry : myFileUrlToTimestamp.entrySet()) {
+        final VirtualFile file = fileManager.findFileByUrl(entry.getKey());
+        if (file == null || file.getTimeStamp() != entry.getValue()) return false;
+      }
+      return isCacheable();
+    }
+
+    private boolean filesExist() {
+      final VirtualFileManager fileManager = VirtualFileManager.getInstance();
+      for (String url : myFileUrlToTimestamp.keySet()) {
+        if (fileManager.findFileByUrl(url) == null) return false;
+      }
+      return true;
+    }
+
+    private void write(final DataOutput out) throws IOException {
+      out.writeLong(myLastUsed);
+      out.writeBoolean(myTestClass);
+      out.writeInt(myCustomRunners.size());
+      for (String customRunner : myCustomRunners) {
+        out.writeUTF(customRunner);
+      }
+      out.writeInt(myFileUrlToTimestamp.size());
+      for (Map.Entry<String, Long> entry : myFileUrlToTimestamp.entrySet()) {
+        out.writeUTF(entry.getKey());
+        out.writeLong(entry.getValue());
+      }
+    }
+
+    private static TestClassInfo read(final DataInput in) throws IOException {
+      final long lastUsed = in.readLong();
+      final boolean testClass = in.readBoolean();
+      final int runnerCount = in.readInt();
+      final Set<String> customRunners = new THashSet<>(runnerCount);
+      for (int i = 0; i < runnerCount; i++) {
+        customRunners.add(in.readUTF());
+      }
+      final int fileCount = in.readInt();
+      final Map<String, Long> fileUrlToTimestamp = new HashMap<>(fileCount);
+      for (int i = 0; i < fileCount; i++) {
+        fileUrlToTimestamp.put(in.readUTF(), in.readLong());
+      }
+      final TestClassInfo info = new TestClassInfo(testClass, customRunners, fileUrlToTimestamp);
+      info.myLastUsed = lastUsed;
+      return info;
+    }
+  }
+}
@@ -142,6 +142,12 @@ class AS3InterfaceDumper extends AbstractDumpProcessor {
     myDumpTypeRef = false;
   }
 
+  @Override
+  public boolean doParseMethodBodies() {
+    // interfaces and stubs contain only declarations
+    return false;
+  }
+
   @Override
   public boolean doStarTypeDumpInExtends() {
     return false;
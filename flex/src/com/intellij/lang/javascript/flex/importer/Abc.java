@@ -328,7 +328,10 @@ class Abc {
     parseInstanceInfos();
     parseClassInfos();
     parseScriptInfos();
-    parseMethodBodies();
+    // method bodies are the last section of abc, it's safe not to read it at all
+    if (processor.doParseMethodBodies()) {
+      parseMethodBodies();
+    }
   }
 
   private static Object[] buildSparseArray(int index, @NonNls String s1) {
@@ -868,10 +871,7 @@ class Abc {
       int maxScopeDepth = readU32();
       m.max_scope = maxScopeDepth - initScopeDepth;
       int code_length = readU32();
-      m.code = new ByteBuffer();
-      m.code.setLittleEndian();
-
-      if (code_length > 0) data.readBytes(m.code, code_length);
+      m.code = data.slice(code_length);
 
       int ex_count = readU32();
       for (int j = 0; j < ex_count; j++) {
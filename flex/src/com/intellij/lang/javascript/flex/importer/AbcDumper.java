@@ -82,6 +82,11 @@ class AbcDumper extends AbstractDumpProcessor {
     processMultinameAsPackageName(type, parentName);
   }
 
+  @Override
+  public boolean doParseMethodBodies() {
+    return true;
+  }
+
   @Override
   public boolean doStarTypeDumpInExtends() {
     return true;
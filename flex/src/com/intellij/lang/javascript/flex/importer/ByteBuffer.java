@@ -2,29 +2,48 @@ package com.intellij.lang.javascript.flex.importer;
 
 import org.jetbrains.annotations.NotNull;
 
-import java.io.ByteArrayInputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
-import java.util.zip.InflaterInputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
 
 /**
+ * A view of the {@code [offset, offset + size)} range of a byte array. Nested ABC blocks and method bodies are {@link #slice(int) sliced}
+ * from the enclosing buffer, so the content of a SWF or SWC is kept in memory only once.
+ * Positions are relative to the start of the view.
+ *
  * @author Maxim.Mossienko
 */
 class ByteBuffer {
+  private static final int MAX_EXPECTED_COMPRESSION_RATIO = 8;
+
   private byte[] bytes;
+  private int offset;
+  private int size;
   private int position;
   private boolean littleEndian;
 
   void read(@NotNull InputStream inputStream) throws IOException {
     try {
-      bytes = readStream(inputStream);
+      wrap(readStream(inputStream));
     }
     finally {
       inputStream.close();
     }
   }
 
+  /**
+   * Uses {@code content} without copying, so it must not be modified while this buffer is in use
+   */
+  void wrap(byte @NotNull [] content) {
+    bytes = content;
+    offset = 0;
+    size = content.length;
+    position = 0;
+  }
+
   void setLittleEndian() {
     littleEndian = true;
   }
@@ -32,10 +51,12 @@ class ByteBuffer {
   int readInt() {
     int result;
     if (littleEndian) {
-      result = (((bytes[position + 3] & 0xFF) << 8 | (bytes[position + 2] & 0xFF)) << 16) + ((bytes[position + 1] & 0xFF) << 8) | (bytes[position] & 0xFF);
+      final int p = offset + position;
+      result = (((bytes[p + 3] & 0xFF) << 8 | (bytes[p + 2] & 0xFF)) << 16) + ((bytes[p + 1] & 0xFF) << 8) | (bytes[p] & 0xFF);
     }
     else {
-      result = (((bytes[position] & 0xFF) << 8 | (bytes[position + 1] & 0xFF)) << 16) + ((bytes[position + 2] & 0xFF) << 8) | (bytes[position + 3] & 0xFF);
+      final int p = offset + position;
+      result = (((bytes[p] & 0xFF) << 8 | (bytes[p + 1] & 0xFF)) << 16) + ((bytes[p + 2] & 0xFF) << 8) | (bytes[p + 3] & 0xFF);
     }
     position += 4;
     return result;
@@ -50,15 +71,48 @@ class ByteBuffer {
   }
 
   public int bytesSize() {
-    return bytes.length;
+    return size;
   }
 
-  public void uncompress() throws IOException {
-    final InflaterInputStream zipInputStream = new InflaterInputStream(new ByteArrayInputStream(bytes));
-
-    bytes = readStream(zipInputStream);
+  /**
+   * Replaces the content with its inflated version.
+   *
+   * @param expectedSize uncompressed size as declared in the file header, used to allocate the result array at once; may be inaccurate.
+   *                     The header is not trusted beyond {@link #MAX_EXPECTED_COMPRESSION_RATIO} times the compressed size
+   */
+  public void uncompress(int expectedSize) throws IOException {
+    final Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(bytes, offset, size);
+      final long maxInitialSize = (long)size * MAX_EXPECTED_COMPRESSION_RATIO;
+      byte[] result = new byte[(int)Math.max(Math.min(expectedSize, maxInitialSize), 8192)];
+      int total = 0;
+
+      while (!inflater.finished()) {
+        if (total == result.length) {
+          byte[] newresult = new byte[result.length * 2];
+          System.arraycopy(result, 0, newresult, 0, total);
+          result = newresult;
+        }
+
+        final int read = inflater.inflate(result, total, result.length - total);
+        if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          throw new EOFException("Unexpected end of ZLIB input stream");
+        }
+        total += read;
+      }
 
-    zipInputStream.close();
+      bytes = result;
+      offset = 0;
+      size = total;
+      position = 0;
+    }
+    catch (DataFormatException e) {
+      throw new IOException(e);
+    }
+    finally {
+      inflater.end();
+    }
   }
 
   private static byte[] readStream(final InputStream zipInputStream) throws IOException {
@@ -85,42 +139,49 @@ class ByteBuffer {
   }
 
   public int readUnsignedByte() {
-    return bytes[position++] & 0xFF;
+    return bytes[offset + position++] & 0xFF;
   }
 
   public int readByte() {
-    return bytes[position++];
+    return bytes[offset + position++];
   }
 
   public int readUnsignedShort() {
     int result;
     if (littleEndian) {
-      result = (bytes[position + 1] & 0xFF) << 8 | (bytes[position] & 0xFF);
+      result = (bytes[offset + position + 1] & 0xFF) << 8 | (bytes[offset + position] & 0xFF);
     }
     else {
-      result = (bytes[position] & 0xFF) << 8 | (bytes[position + 1] & 0xFF);
+      result = (bytes[offset + position] & 0xFF) << 8 | (bytes[offset + position + 1] & 0xFF);
     }
     position += 2;
     return result;
   }
 
-  public void readBytes(ByteBuffer data2, int length) {
-    data2.bytes = new byte[length];
-    System.arraycopy(bytes, position, data2.bytes, 0, length);
+  /**
+   * @return a little-endian view of the next {@code length} bytes sharing the content with this buffer
+   */
+  public @NotNull ByteBuffer slice(int length) {
+    if (length < 0 || position + length > size) throw new ArrayIndexOutOfBoundsException(position + length);
+
+    final ByteBuffer result = new ByteBuffer();
+    result.bytes = bytes;
+    result.offset = offset + position;
+    result.size = length;
+    result.littleEndian = true;
     position += length;
+    return result;
   }
 
   public boolean eof() {
-    return position >= bytes.length;
+    return position >= size;
   }
 
   public String readUTFBytes(int i) {
-    final byte[] buf = new byte[i];
-    while (i > 0) {
-      buf[buf.length - i] = (byte)readByte();
-      --i;
-    }
-    return new String(buf, StandardCharsets.UTF_8);
+    if (i < 0 || position + i > size) throw new ArrayIndexOutOfBoundsException(position + i);
+    final String result = new String(bytes, offset + position, i, StandardCharsets.UTF_8);
+    position += i;
+    return result;
   }
 
   public double readDouble() {
@@ -142,7 +203,7 @@ class ByteBuffer {
   }
 
   public byte getByte(int i) {
-    return bytes[i];
+    return bytes[offset + i];
   }
 
   public int getPosition() {
@@ -28,6 +28,11 @@ interface FlexByteCodeInformationProcessor {
   String REST_PARAMETER_TYPE = "...";
   void processParameter(final @NotNull String name, @Nullable Multiname type, String parentName, @Nullable Multiname value, boolean rest);
 
+  /**
+   * @return {@code false} if the processor never looks at method code, local counts and activation traits
+   */
+  boolean doParseMethodBodies();
+
   boolean doStarTypeDumpInExtends();
   boolean doStarMetaAttrNameDump();
 
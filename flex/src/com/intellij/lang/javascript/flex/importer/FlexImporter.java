@@ -12,6 +12,11 @@ import java.io.*;
  * Produced from abcdump.as
  */
 public final class FlexImporter {
+  /**
+   * Must be incremented whenever the produced interfaces or stubs change, interfaces and stub trees of library SWFs are cached on disk by it
+   */
+  public static final int VERSION = 1;
+
   private static final int ABC_VER = 46 << 16 | 14;
   private static final int ABC_VER2 = 46 << 16 | 15;
   private static final int ABC_VER3 = 46 << 16 | 16;
@@ -51,9 +56,31 @@ public final class FlexImporter {
 
   @NonNls
   public static String buildInterfaceFromStream(final InputStream in) {
+    try {
+      final ByteBuffer data = new ByteBuffer();
+      data.read(in);
+      return buildInterface(data);
+    }
+    catch (IOException ex) {
+      return "/* " + ex.getLocalizedMessage() + " */";
+    }
+  }
+
+  /**
+   * Same as {@link #buildInterfaceFromStream(InputStream)} but doesn't copy the {@code content}
+   */
+  @NonNls
+  public static String buildInterface(final byte @NotNull [] content) {
+    final ByteBuffer data = new ByteBuffer();
+    data.wrap(content);
+    return buildInterface(data);
+  }
+
+  @NonNls
+  private static String buildInterface(@NotNull ByteBuffer data) {
     try {
       final AbstractDumpProcessor abcDumper = new AS3InterfaceDumper();
-      processFlexByteCode(in, abcDumper);
+      processFlexByteCode(data, abcDumper);
       final String s = abcDumper.getResult();
       //saveStringAsFile(s, File.createTempFile("fleximport", ".as").getPath());
       return s;
@@ -71,9 +98,22 @@ public final class FlexImporter {
     processFlexByteCode(in, new AS3InterfaceStubDumper(parent));
   }
 
+  /**
+   * Same as {@link #buildStubsInterfaceFromStream(InputStream, StubElement)} but doesn't copy the {@code content}
+   */
+  public static void buildStubsInterface(final byte @NotNull [] content, final StubElement parent) throws Exception {
+    final ByteBuffer data = new ByteBuffer();
+    data.wrap(content);
+    processFlexByteCode(data, new AS3InterfaceStubDumper(parent));
+  }
+
   private static void processFlexByteCode(@NotNull final InputStream in, @NotNull FlexByteCodeInformationProcessor processor) throws IOException {
     ByteBuffer data = new ByteBuffer();
     data.read(in);
+    processFlexByteCode(data, processor);
+  }
+
+  private static void processFlexByteCode(@NotNull final ByteBuffer data, @NotNull FlexByteCodeInformationProcessor processor) throws IOException {
     data.setLittleEndian();
     if (data.bytesSize() == 0) return;
     int version = data.readUnsignedInt();
@@ -84,12 +124,12 @@ public final class FlexImporter {
     }
     else if ((version & SWF_MAGIC) == SWF_MAGIC) {
       final int delta = 8;
+      // uncompressed file length including the header
+      final int length = data.readUnsignedInt();
       data.setPosition(delta);
-      ByteBuffer udata = new ByteBuffer();
-      udata.setLittleEndian();
-      data.readBytes(udata, data.bytesSize() - delta);
+      ByteBuffer udata = data.slice(data.bytesSize() - delta);
       int csize = udata.bytesSize();
-      udata.uncompress();
+      udata.uncompress(length - delta);
       processor.dumpStat("decompressed swf " + csize + " -> " + udata.bytesSize() + "\n");
       udata.setPosition(0);
       new Swf(udata, processor);
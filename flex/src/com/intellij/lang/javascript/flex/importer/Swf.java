@@ -183,9 +183,7 @@ class Swf {
           length -= (data.getPosition() - pos1);
           // fall through
         case stagDoABC:
-          ByteBuffer data2 = new ByteBuffer();
-          data2.setLittleEndian();
-          data.readBytes(data2, length);
+          ByteBuffer data2 = data.slice(length);
           new Abc(data2, processor).dump(processor.getAbcInSwfIndent());
           processor.append("\n");
           break;